@@ -0,0 +1,167 @@
+package com.vojtechruzicka.xjsexporter;
+
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a single command from the command line without the interactive shell, for scheduled and scripted runs:
+ * <pre>
+ * java -jar xjs-exporter.jar batch generate --intermediatePath data --targetPath out
+ * </pre>
+ * Spring Shell, JLine line reading and its command catalog are not started at all, and beans are created lazily,
+ * so only the beans the command needs are initialized. Options are the same as in the shell. The process exits
+ * with status 1 if the command fails.
+ */
+public class BatchRunner {
+
+    public static final String BATCH_COMMAND = "batch";
+
+    private static final List<String> EXCLUDED_AUTO_CONFIGURATIONS = List.of(
+            // Method validation post-processes every bean and pulls in Hibernate Validator, no command uses it
+            "org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration",
+            "org.springframework.shell.boot.ExitCodeAutoConfiguration",
+            "org.springframework.shell.boot.ShellContextAutoConfiguration",
+            "org.springframework.shell.boot.SpringShellAutoConfiguration",
+            "org.springframework.shell.boot.ShellRunnerAutoConfiguration",
+            "org.springframework.shell.boot.ApplicationRunnerAutoConfiguration",
+            "org.springframework.shell.boot.CommandCatalogAutoConfiguration",
+            "org.springframework.shell.boot.LineReaderAutoConfiguration",
+            "org.springframework.shell.boot.CompleterAutoConfiguration",
+            "org.springframework.shell.boot.UserConfigAutoConfiguration",
+            "org.springframework.shell.boot.JLineAutoConfiguration",
+            "org.springframework.shell.boot.JLineShellAutoConfiguration",
+            "org.springframework.shell.boot.ParameterResolverAutoConfiguration",
+            "org.springframework.shell.boot.StandardAPIAutoConfiguration",
+            "org.springframework.shell.boot.ThemingAutoConfiguration",
+            "org.springframework.shell.boot.StandardCommandsAutoConfiguration",
+            "org.springframework.shell.boot.ComponentFlowAutoConfiguration",
+            "org.springframework.shell.boot.TerminalUIAutoConfiguration"
+    );
+
+    /**
+     * Runs the command given by the arguments following {@value #BATCH_COMMAND}.
+     *
+     * @param args Command name followed by its options, e.g. {@code generate --targetPath out --precompress}
+     * @return The process exit status
+     */
+    public static int run(String[] args) {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.err.println("Usage: batch <command> [--option value]... (commands: extract, generate, export, ...)");
+            return 2;
+        }
+        String command = args[0];
+        Map<String, String> options = parseOptions(Arrays.copyOfRange(args, 1, args.length));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(XjsExporterApplication.class, BatchTerminal.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .lazyInitialization(true)
+                .properties(Map.of("spring.autoconfigure.exclude", String.join(",", EXCLUDED_AUTO_CONFIGURATIONS)))
+                .run()) {
+
+            for (String beanName : context.getBeanNamesForAnnotation(ShellComponent.class)) {
+                Class<?> beanType = ClassUtils.getUserClass(context.getType(beanName));
+                for (Method method : beanType.getMethods()) {
+                    ShellMethod shellMethod = method.getAnnotation(ShellMethod.class);
+                    if (shellMethod != null && Arrays.asList(shellMethod.key()).contains(command)) {
+                        Object result = method.invoke(context.getBean(beanName), resolveArguments(method, options));
+                        System.out.println(result);
+                        return result instanceof CommandResult commandResult && commandResult.failed() ? 1 : 0;
+                    }
+                }
+            }
+            System.err.println("Unknown command: " + command);
+            return 2;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        } catch (InvocationTargetException e) {
+            System.err.println("Command " + command + " failed: " + e.getCause());
+            return 1;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses {@code --name value}, {@code --name=value} and {@code --flag} options.
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                options.put(name.substring(0, equals), name.substring(equals + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Converts the options to the method parameters, using the defaults of the shell options for missing ones.
+     */
+    private static Object[] resolveArguments(Method method, Map<String, String> options) {
+        Map<String, String> remaining = new HashMap<>(options);
+        Parameter[] parameters = method.getParameters();
+        Object[] arguments = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            String name = parameters[i].getName();
+            ShellOption shellOption = parameters[i].getAnnotation(ShellOption.class);
+            String value = remaining.remove(name);
+            if (value == null && shellOption != null && !ShellOption.NONE.equals(shellOption.defaultValue())) {
+                value = ShellOption.NULL.equals(shellOption.defaultValue()) ? null : shellOption.defaultValue();
+            } else if (value == null) {
+                throw new IllegalArgumentException("Missing option --" + name);
+            }
+            arguments[i] = value != null ? DefaultConversionService.getSharedInstance().convert(value, parameters[i].getType()) : null;
+        }
+        if (!remaining.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + remaining.keySet());
+        }
+        return arguments;
+    }
+
+    /**
+     * Replaces the terminal of Spring Shell. Not a {@code @Configuration}, so that component scanning
+     * does not pick it up in the interactive shell.
+     */
+    static class BatchTerminal {
+
+        @Bean
+        Terminal terminal() throws IOException {
+            return TerminalBuilder.builder()
+                    .system(false)
+                    .dumb(true)
+                    .streams(System.in, System.out)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.vojtechruzicka.xjsexporter;
+
+/**
+ * Result of a shell command, printed by the shell as its message.
+ * <p>
+ * Commands report failures in the result rather than by throwing, so the shell prints them like any other
+ * result, while batch runs, jobs and multi journal exports tell them apart by {@link #failed()}.
+ *
+ * @param failed  Whether the command failed
+ * @param message The message printed for the user
+ */
+public record CommandResult(boolean failed, String message) {
+
+    public static CommandResult success(String message) {
+        return new CommandResult(false, message);
+    }
+
+    public static CommandResult failure(String message) {
+        return new CommandResult(true, message);
+    }
+
+    /**
+     * The same result with the given text appended to the message.
+     */
+    public CommandResult append(String text) {
+        return new CommandResult(failed, message + text);
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -0,0 +1,198 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.vojtechruzicka.xjsexporter.Generator.Page;
+import com.vojtechruzicka.xjsexporter.model.Attachment;
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.api.ApiAttachment;
+import com.vojtechruzicka.xjsexporter.model.api.ApiEntry;
+import com.vojtechruzicka.xjsexporter.model.api.ApiEntrySummary;
+import com.vojtechruzicka.xjsexporter.model.api.ApiItem;
+import com.vojtechruzicka.xjsexporter.model.api.ApiListing;
+import com.vojtechruzicka.xjsexporter.model.api.ApiNavigation;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the JSON data output: a static app shell which renders the journal in the browser
+ * from JSON data files.
+ * <p>
+ * Unlike the HTML output, where every page repeats the styles, scripts and the whole navigation,
+ * the navigation is written once to {@code data/navigation.json}, every entry to
+ * {@code data/entries/<location>.json} and the listings of all entries and of every person,
+ * category and year to pages of {@value #PAGE_SIZE} entries, e.g. {@code data/persons/<slug>/1.json}.
+ */
+@Service
+public class DataApiGenerator {
+
+    public static final int PAGE_SIZE = 50;
+    public static final String SHELL_PAGE = "index.html";
+    public static final String SCRIPT_FILE = "app.js";
+    public static final String STYLES_FILE = "styles.css";
+    public static final String NAVIGATION_FILE = "data/navigation.json";
+
+    // Entry bodies link attachments relative to the entries directory, the shell is in the site root
+    private static final Pattern ENTRY_RELATIVE_ATTACHMENT = Pattern.compile("((?:src|href)\\s*=\\s*[\"'])\\.\\./attachments/", Pattern.CASE_INSENSITIVE);
+
+    private final HtmlGenerator htmlGenerator;
+    private final FileService fileService;
+    private final SiteAssets assets;
+    private final ObjectWriter jsonWriter;
+    private final Collator czechCollator = Collator.getInstance(Locale.of("cs", "CZ"));
+
+    public DataApiGenerator(HtmlGenerator htmlGenerator, FileService fileService, SiteAssets assets, JsonIntermediateStorage jsonStorage) {
+        this.htmlGenerator = htmlGenerator;
+        this.fileService = fileService;
+        this.assets = assets;
+        this.jsonWriter = jsonStorage.getCompactJsonWriter();
+        czechCollator.setStrength(Collator.PRIMARY);
+    }
+
+    /**
+     * Lists all files of the JSON data output without rendering them. Entry data comes first, in the order of the entries.
+     *
+     * @param sortedEntries All entries of the journal, newest first
+     * @return The files, each rendered only when its renderer is called
+     */
+    public List<Page> getPages(List<Entry> sortedEntries) {
+        List<Page> pages = new ArrayList<>();
+
+        for (Entry entry : sortedEntries) {
+            pages.add(new Page(getEntryDataPath(entry), "entry", entry.id(), () -> toJson(toApiEntry(entry))));
+        }
+
+        Map<String, List<Entry>> byPerson = groupBy(sortedEntries, Entry::persons);
+        Map<String, List<Entry>> byCategory = groupBy(sortedEntries, Entry::categories);
+        Map<String, List<Entry>> byYear = new TreeMap<>(Comparator.reverseOrder());
+        for (Entry entry : sortedEntries) {
+            byYear.computeIfAbsent(String.valueOf(entry.created().getYear()), year -> new ArrayList<>()).add(entry);
+        }
+
+        addListingPages(pages, "index", "data/index", sortedEntries);
+        byYear.forEach((year, entries) -> addListingPages(pages, "year", "data/years/" + year, entries));
+        byPerson.forEach((person, entries) -> addListingPages(pages, "person", "data/persons/" + slug(person), entries));
+        byCategory.forEach((category, entries) -> addListingPages(pages, "category", "data/categories/" + slug(category), entries));
+
+        pages.add(new Page(NAVIGATION_FILE, "navigation", null, () -> toJson(new ApiNavigation(
+                sortedEntries.size(),
+                pageCount(sortedEntries.size()),
+                PAGE_SIZE,
+                toItems(byPerson, true),
+                toItems(byCategory, true),
+                toItems(byYear, false)))));
+        pages.add(new Page(SHELL_PAGE, "shell", null, () -> readResource("/static/app/index.html")));
+        pages.add(new Page(STYLES_FILE, "shell", null, assets::css));
+        pages.add(new Page(SCRIPT_FILE, "shell", null, () -> readResource("/static/js/app.js")));
+        return pages;
+    }
+
+    /**
+     * Site relative path of the data file of an entry.
+     */
+    public String getEntryDataPath(Entry entry) {
+        return "data/entries/" + fileService.getEntryFileName(entry) + ".json";
+    }
+
+    private void addListingPages(List<Page> pages, String kind, String directory, List<Entry> entries) {
+        int pageCount = pageCount(entries.size());
+        for (int page = 1; page <= pageCount; page++) {
+            int from = (page - 1) * PAGE_SIZE;
+            List<Entry> pageEntries = entries.subList(from, Math.min(from + PAGE_SIZE, entries.size()));
+            int number = page;
+            pages.add(new Page(directory + "/" + page + ".json", kind, null, () -> toJson(new ApiListing(
+                    number,
+                    pageCount,
+                    entries.size(),
+                    pageEntries.stream().map(this::toSummary).toList()))));
+        }
+    }
+
+    /**
+     * Entries by each of their persons or categories, in the order of the entries.
+     */
+    private Map<String, List<Entry>> groupBy(List<Entry> entries, Function<Entry, List<String>> items) {
+        Map<String, List<Entry>> groups = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            items.apply(entry).stream()
+                    .distinct()
+                    .forEach(item -> groups.computeIfAbsent(item, key -> new ArrayList<>()).add(entry));
+        }
+        return groups;
+    }
+
+    private List<ApiItem> toItems(Map<String, List<Entry>> groups, boolean sortByName) {
+        List<ApiItem> items = new ArrayList<>();
+        groups.forEach((name, entries) -> items.add(new ApiItem(name, slug(name), entries.size(), pageCount(entries.size()))));
+        if (sortByName) {
+            items.sort(Comparator.comparing(ApiItem::name, czechCollator::compare));
+        }
+        return items;
+    }
+
+    private ApiEntry toApiEntry(Entry entry) {
+        String body = htmlGenerator.processAttachmentUrls(entry.html());
+        if (body != null) {
+            body = ENTRY_RELATIVE_ATTACHMENT.matcher(body).replaceAll("$1attachments/");
+        }
+        List<ApiAttachment> attachments = entry.attachments().stream()
+                .map(this::toApiAttachment)
+                .toList();
+        return new ApiEntry(entry.id(), entry.title(), entry.created(), body, entry.persons(), entry.categories(), attachments);
+    }
+
+    private ApiAttachment toApiAttachment(Attachment attachment) {
+        return new ApiAttachment(attachment.name(), "attachments/" + attachment.relativeLocation(), attachment.extension(),
+                attachment.mimeType(), attachment.size(), attachment.formattedSize());
+    }
+
+    private ApiEntrySummary toSummary(Entry entry) {
+        return new ApiEntrySummary(fileService.getEntryFileName(entry), entry.title(), entry.created(), entry.persons(), entry.categories());
+    }
+
+    private String toJson(Object value) {
+        try {
+            return jsonWriter.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String readResource(String resourcePath) {
+        try (var resource = getClass().getResourceAsStream(resourcePath)) {
+            if (resource == null) {
+                throw new IllegalStateException("Missing resource " + resourcePath);
+            }
+            return new String(resource.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int pageCount(int entries) {
+        return Math.max(1, (entries + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    /**
+     * Directory name of a person or category, the same as in the names of the HTML listing pages.
+     */
+    private static String slug(String name) {
+        return name.replace(' ', '_');
+    }
+
+}
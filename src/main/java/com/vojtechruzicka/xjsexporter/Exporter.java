@@ -0,0 +1,226 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.EntryMetadata;
+import com.vojtechruzicka.xjsexporter.model.EntryStore;
+import com.vojtechruzicka.xjsexporter.model.Metadata;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.output.OutputSink;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import com.vojtechruzicka.xjsexporter.service.InlineImageExtractor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import io.micrometer.common.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Command converting an XJS journal to HTML in one pass, without reading the intermediate data back.
+ * <p>
+ * The navigation only needs entry headers, which come from {@code journal.xjn}. So headers are built
+ * first, and then each body is parsed, rendered and written before the next one is read. Writing the
+ * intermediate Markdown is an optional side branch of the same pass.
+ */
+@Slf4j
+@ShellComponent
+public class Exporter {
+
+    private final MetadataExtractor metadataExtractor;
+    private final Extractor extractor;
+    private final Generator generator;
+    private final JsonIntermediateStorage jsonStorage;
+    private final OutputSinkFactory outputSinks;
+    private final ExportMetrics metrics;
+    private final InlineImageExtractor inlineImages;
+    private final JfrRecorder jfrRecorder;
+    private final Terminal terminal;
+    private final SourceFileSystems sources;
+    // Creates a pipeline for every run of the command, null in the exporter of a pipeline
+    private final PipelineFactory pipelines;
+
+    public Exporter(MetadataExtractor metadataExtractor, Extractor extractor, Generator generator, JsonIntermediateStorage jsonStorage, OutputSinkFactory outputSinks, ExportMetrics metrics, InlineImageExtractor inlineImages, JfrRecorder jfrRecorder, Terminal terminal, SourceFileSystems sources, PipelineFactory pipelines) {
+        this.metadataExtractor = metadataExtractor;
+        this.extractor = extractor;
+        this.generator = generator;
+        this.jsonStorage = jsonStorage;
+        this.outputSinks = outputSinks;
+        this.metrics = metrics;
+        this.inlineImages = inlineImages;
+        this.jfrRecorder = jfrRecorder;
+        this.terminal = terminal;
+        this.sources = sources;
+        this.pipelines = pipelines;
+    }
+
+    @ShellMethod(value = "Exports an XJS journal directly to HTML, optionally keeping the intermediate files", key = "export")
+    public CommandResult export(
+            @ShellOption(defaultValue = "C:\\Users\\vojte\\Dropbox\\_Archiv\\Denik\\XJS\\Deník\\",
+                    help = "Source directory containing XJS journal entries, or a .zip backup of it") String sourcePath,
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\OUT\\",
+                    help = "Target directory for generated HTML files, or a .zip file to write a single archive") String targetPath,
+            @ShellOption(defaultValue = "",
+                    help = "Also write intermediate files (and metrics reports) into this directory") String intermediatePath,
+            @ShellOption(defaultValue = "false",
+                    help = "Record the run with Java Flight Recorder into reports/export.jfr, requires --intermediatePath") boolean jfr,
+            @ShellOption(defaultValue = "false",
+                    help = "Also write gzip compressed .gz siblings of all HTML, CSS and JS files") boolean precompress) {
+
+        if (pipelines != null) {
+            // Runs of the shared command get their own metrics, so runs overlapping with watch or other commands don't mix
+            return pipelines.create(terminal).exporter().export(sourcePath, targetPath, intermediatePath, jfr, precompress);
+        }
+
+        final String finalSourcePath;
+        try {
+            finalSourcePath = sources.open(sourcePath);
+        } catch (IOException e) {
+            return CommandResult.failure("Failed to open source " + sourcePath + ": " + e.getMessage());
+        }
+        final String finalTargetPath = OutputSinkFactory.isArchive(targetPath) || targetPath.endsWith(File.separator) ? targetPath : targetPath + File.separator;
+        final String finalIntermediatePath = StringUtils.isBlank(intermediatePath) ? null
+                : intermediatePath.endsWith(File.separator) ? intermediatePath : intermediatePath + File.separator;
+
+        if (jfr && finalIntermediatePath == null) {
+            return CommandResult.failure("JFR recording requires --intermediatePath to store the recording");
+        }
+
+        try (JfrRecorder.ActiveRecording recording = jfr ? jfrRecorder.start(finalIntermediatePath, "export") : null;
+             OutputSink sink = outputSinks.open(finalTargetPath, precompress)) {
+            return export(finalSourcePath, finalIntermediatePath, sink);
+        } catch (IOException e) {
+            terminal.writer().println("Could not write target: " + finalTargetPath + ", Error: " + e);
+            return CommandResult.failure("Failed to export: " + e.getMessage());
+        }
+    }
+
+    private CommandResult export(String finalSourcePath, String finalIntermediatePath, OutputSink sink) throws IOException {
+        metrics.reset();
+        CommandResult result = null;
+        try {
+            result = exportAll(finalSourcePath, finalIntermediatePath, sink);
+            return result;
+        } finally {
+            // Failed and interrupted runs are reported too, with what they recorded until they stopped
+            if (finalIntermediatePath != null) {
+                try {
+                    metrics.writeReport(finalIntermediatePath, "export", result != null ? result.message() : "Export interrupted");
+                } catch (IOException e) {
+                    terminal.writer().println("Could not write metrics report: " + e);
+                }
+            }
+        }
+    }
+
+    private CommandResult exportAll(String finalSourcePath, String finalIntermediatePath, OutputSink sink) throws IOException {
+        Metadata metadata;
+
+        long metadataStart = metrics.start();
+        try {
+            metadata = metadataExtractor.extractMetadata(finalSourcePath);
+            metrics.recordXmlParse(metadataStart, Files.size(sources.toPath(finalSourcePath + SourceFileSystems.JOURNAL_FILE)));
+        } catch (IOException e) {
+            metrics.recordError("metadata");
+            return CommandResult.failure(MessageFormat.format("Failed to extract metadata: {0}", e.getMessage()));
+        }
+        metrics.recordPhase("export", "metadata", metadataStart);
+
+        // Side branch: intermediate directory structure, metadata and attachment copies
+        if (finalIntermediatePath != null) {
+            long intermediateStart = metrics.start();
+            try {
+                jsonStorage.createDirectoryStructure(finalIntermediatePath);
+                jsonStorage.saveMetadata(finalIntermediatePath, metadata);
+                jsonStorage.saveManifest(finalIntermediatePath, metadata, finalSourcePath);
+            } catch (IOException e) {
+                terminal.writer().println("Could not save intermediate metadata: " + e);
+                return CommandResult.failure("Failed to save intermediate metadata: " + e.getMessage());
+            }
+            metrics.recordPhase("export", "intermediate", intermediateStart);
+        }
+
+        // Entry headers without bodies are all the navigation and listings need
+        Map<String, EntryMetadata> entryMetadataById = new HashMap<>();
+        EntryStore.Builder headers = EntryStore.builder();
+        for (EntryMetadata entryMetadata : metadata.entries().values()) {
+            Entry header = jsonStorage.toEntry(metadata, entryMetadata, null);
+            if (header == null) {
+                log.warn("Skipping entry without creation date: {}", entryMetadata.id());
+                continue;
+            }
+            headers.add(header);
+            entryMetadataById.put(header.id(), entryMetadata);
+        }
+        List<Entry> sortedHeaders = headers.build().newestFirst();
+        Metadata navigation = jsonStorage.buildMetadata(sortedHeaders);
+
+        // Inline images go to the intermediate attachments, or to a scratch directory without intermediate files
+        Path inlineDir;
+        try {
+            inlineDir = finalIntermediatePath != null ? jsonStorage.getInlineImagesDirectory(finalIntermediatePath)
+                    : Files.createTempDirectory("xjs-inline-images");
+        } catch (IOException e) {
+            return CommandResult.failure("Failed to create directory for inline images: " + e.getMessage());
+        }
+
+        // Parse, render and write entries one by one, all with the same navigation
+        HtmlGenerator.NavigationData siteNavigation = generator.getNavigationData(navigation, sortedHeaders);
+        long entriesStart = metrics.start();
+        metrics.planItems(sortedHeaders.size());
+        int entryCount = 0;
+        for (Entry header : sortedHeaders) {
+            EntryMetadata entryMetadata = entryMetadataById.get(header.id());
+            try {
+                String htmlBody = inlineImages.extractImages(extractor.getHtmlBody(entryMetadata), inlineDir);
+                if (finalIntermediatePath != null) {
+                    long writeStart = metrics.start();
+                    Path written = jsonStorage.saveEntry(finalIntermediatePath, metadata, entryMetadata, htmlBody);
+                    metrics.recordMarkdownWrite(writeStart, Files.size(written));
+                }
+                Entry entry = jsonStorage.toEntry(metadata, entryMetadata, htmlBody);
+                generator.writePage(sink, generator.getEntryPage(siteNavigation, entry));
+                metrics.recordItem("export", "ok");
+                entryCount++;
+            } catch (IOException | RuntimeException e) {
+                metrics.recordItem("export", "error");
+                metrics.recordError("entry");
+                terminal.writer().println("Could not export entry: " + entryMetadata.id() + ", Error: " + e);
+            }
+        }
+        metrics.recordPhase("export", "entries", entriesStart);
+
+        // Listings and attachments, entry pages are already written
+        generator.writeSite(navigation, sortedHeaders, null, sink, path -> !path.startsWith("entries/"));
+        generator.copyInlineImages(inlineDir, sink, path -> true);
+        if (finalIntermediatePath == null) {
+            deleteScratchDirectory(inlineDir);
+        }
+
+        sink.commit();
+        return CommandResult.success("Export finished, " + entryCount + " entries exported to " + sink.location());
+    }
+
+    private void deleteScratchDirectory(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("Could not delete scratch directory {}: {}", directory, e.getMessage());
+        }
+    }
+}
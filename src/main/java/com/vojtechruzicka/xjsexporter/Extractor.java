@@ -1,14 +1,25 @@
 package com.vojtechruzicka.xjsexporter;
 
 import com.vojtechruzicka.xjsexporter.config.ExporterConfiguration;
+import com.vojtechruzicka.xjsexporter.jfr.EntryParseEvent;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
 import com.vojtechruzicka.xjsexporter.model.*;
 import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.render.ThymeleafPageRenderer;
+import com.vojtechruzicka.xjsexporter.service.BodyExtractor;
+import com.vojtechruzicka.xjsexporter.service.Cancellation;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
 import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.InlineImageExtractor;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
 import io.micrometer.common.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
-import org.jsoup.Jsoup;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
@@ -21,6 +32,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 @Slf4j
 @ShellComponent
@@ -29,82 +46,258 @@ public class Extractor {
     private final MetadataExtractor metadataExtractor;
     private final Terminal terminal;
     private final JsonIntermediateStorage jsonStorage;
+    private final ExportMetrics metrics;
+    private final JfrRecorder jfrRecorder;
+    private final InlineImageExtractor inlineImages;
+    private final BodyExtractor bodyExtractor;
+    private final CheckpointStore checkpoints;
+    private final SourceFileSystems sources;
+    // Copies attachments, shared by all extractions
+    private final ExecutorService attachmentCopyExecutor;
+    // Creates a pipeline for every run of the command, null in the extractor of a pipeline
+    private final PipelineFactory pipelines;
 
-    public Extractor(MetadataExtractor metadataExtractor, Terminal terminal, JsonIntermediateStorage jsonStorage) {
+    public Extractor(MetadataExtractor metadataExtractor, Terminal terminal, JsonIntermediateStorage jsonStorage, ExportMetrics metrics, JfrRecorder jfrRecorder, InlineImageExtractor inlineImages, BodyExtractor bodyExtractor, CheckpointStore checkpoints, SourceFileSystems sources, ExecutorService attachmentCopyExecutor, PipelineFactory pipelines) {
         this.metadataExtractor = metadataExtractor;
         this.terminal = terminal;
         this.jsonStorage = jsonStorage;
+        this.metrics = metrics;
+        this.jfrRecorder = jfrRecorder;
+        this.inlineImages = inlineImages;
+        this.bodyExtractor = bodyExtractor;
+        this.checkpoints = checkpoints;
+        this.sources = sources;
+        this.attachmentCopyExecutor = attachmentCopyExecutor;
+        this.pipelines = pipelines;
     }
 
     @ShellMethod(value = "Extracts journal entries from XJS format and saves as JSON", key = "extract")
-    public String extract(
+    public CommandResult extract(
             @ShellOption(defaultValue = "C:\\Users\\vojte\\Dropbox\\_Archiv\\Denik\\XJS\\Deník\\", 
-                    help = "Source directory containing XJS journal entries") String sourcePath,
+                    help = "Source directory containing XJS journal entries, or a .zip backup of it") String sourcePath,
             @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\intermediate-data\\", 
-                    help = "Target directory for intermediate JSON files") String intermediatePath) {
+                    help = "Target directory for intermediate JSON files") String intermediatePath,
+            @ShellOption(defaultValue = "false",
+                    help = "Record the run with Java Flight Recorder into reports/extract.jfr") boolean jfr,
+            @ShellOption(defaultValue = "false",
+                    help = "Continue an interrupted run, skipping entries and attachments which were already extracted") boolean resume) {
+
+        if (pipelines != null) {
+            // Runs of the shared command get their own metrics, so runs overlapping with watch or other commands don't mix
+            return pipelines.create(terminal).extractor().extract(sourcePath, intermediatePath, jfr, resume);
+        }
 
         // Ensure paths end with separator
-        final String finalSourcePath = sourcePath.endsWith(File.separator) ? sourcePath : sourcePath + File.separator;
+        final String finalSourcePath;
+        try {
+            finalSourcePath = sources.open(sourcePath);
+        } catch (IOException e) {
+            return CommandResult.failure("Failed to open source " + sourcePath + ": " + e.getMessage());
+        }
         final String finalIntermediatePath = intermediatePath.endsWith(File.separator) ? intermediatePath : intermediatePath + File.separator;
 
+        try (JfrRecorder.ActiveRecording recording = jfr ? jfrRecorder.start(finalIntermediatePath, "extract") : null) {
+            return extract(finalSourcePath, finalIntermediatePath, resume);
+        } catch (IOException e) {
+            return CommandResult.failure("Failed to start JFR recording: " + e.getMessage());
+        }
+    }
+
+    private CommandResult extract(String finalSourcePath, String finalIntermediatePath, boolean resume) {
+        metrics.reset();
+        CommandResult result = null;
+        try {
+            result = extractAll(finalSourcePath, finalIntermediatePath, resume);
+            return result;
+        } finally {
+            // Failed and interrupted runs are reported too, with what they recorded until they stopped
+            writeMetricsReport(finalIntermediatePath, "extract", result != null ? result.message() : "Extract interrupted");
+        }
+    }
+
+    private CommandResult extractAll(String finalSourcePath, String finalIntermediatePath, boolean resume) {
         Metadata metadata;
 
+        long metadataStart = metrics.start();
         try {
             metadata = metadataExtractor.extractMetadata(finalSourcePath);
+            metrics.recordXmlParse(metadataStart, Files.size(sources.toPath(finalSourcePath + SourceFileSystems.JOURNAL_FILE)));
         } catch (IOException e) {
-            return MessageFormat.format("Failed to extract metadata: {0}", e.getMessage());
+            metrics.recordError("metadata");
+            return CommandResult.failure(MessageFormat.format("Failed to extract metadata: {0}", e.getMessage()));
         }
+        metrics.recordPhase("extract", "metadata", metadataStart);
 
         // Create intermediate data directory structure
         try {
             jsonStorage.createDirectoryStructure(finalIntermediatePath);
         } catch (IOException e) {
             terminal.writer().println("Could not create intermediate data directory structure: " + finalIntermediatePath + ", Error: " + e);
-            return "Failed to create intermediate data directory structure: " + e.getMessage();
+            return CommandResult.failure("Failed to create intermediate data directory structure: " + e.getMessage());
         }
 
+        try (CheckpointStore.Checkpoint checkpoint = checkpoints.open(Path.of(finalIntermediatePath), "extract", Path.of(finalIntermediatePath),
+                CheckpointStore.fingerprint(finalSourcePath, CheckpointStore.fingerprintFiles(sources.toPath(finalSourcePath))), resume)) {
+            int entryCount = extract(finalIntermediatePath, metadata, checkpoint);
+            if (entryCount < 0) {
+                return CommandResult.failure("Failed to save metadata to JSON files");
+            }
+
+            // Save manifest file
+            try {
+                jsonStorage.saveManifest(finalIntermediatePath, metadata, finalSourcePath);
+            } catch (IOException e) {
+                terminal.writer().println("Could not save manifest file: " + e);
+                return CommandResult.failure("Failed to save manifest file: " + e.getMessage());
+            }
+            checkpoint.complete();
+
+            return CommandResult.success("Extract finished, " + entryCount + " entries extracted to " + finalIntermediatePath
+                    + (checkpoint.skippedCount() > 0 ? ", " + checkpoint.skippedCount() + " items kept from the interrupted run" : ""));
+        } catch (IOException e) {
+            terminal.writer().println("Could not save checkpoint: " + e);
+            return CommandResult.failure("Failed to save checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves metadata, attachments and entries, skipping the items the checkpoint holds as done.
+     *
+     * @return Number of extracted entries, or -1 if the metadata could not be saved
+     */
+    private int extract(String finalIntermediatePath, Metadata metadata, CheckpointStore.Checkpoint checkpoint) throws IOException {
         // Save metadata to JSON files
+        long attachmentsStart = metrics.start();
         try {
-            jsonStorage.saveMetadata(finalIntermediatePath, metadata);
+            jsonStorage.saveMetadataFiles(finalIntermediatePath, metadata);
         } catch (IOException e) {
             terminal.writer().println("Could not save metadata to JSON files: " + e);
-            return "Failed to save metadata to JSON files: " + e.getMessage();
+            return -1;
         }
 
+        // Copy attachment files into intermediate storage
+        copyAttachments(finalIntermediatePath, metadata, checkpoint);
+        metrics.recordPhase("extract", "attachments", attachmentsStart);
+
         // Save entries to JSON files
+        Path basePath = Path.of(finalIntermediatePath);
+        long entriesStart = metrics.start();
         int entryCount = 0;
+        List<EntryMetadata> pendingEntries = new ArrayList<>();
         for (EntryMetadata entryMetadata : metadata.entries().values()) {
+            if (checkpoint.isDone("entry", entryMetadata.id())) {
+                entryCount++;
+            } else {
+                pendingEntries.add(entryMetadata);
+            }
+        }
+        metrics.planItems(pendingEntries.size());
+        for (EntryMetadata entryMetadata : pendingEntries) {
+            Cancellation.check();
             try {
-                String htmlBody = getHtmlBody(entryMetadata);
-                jsonStorage.saveEntry(finalIntermediatePath, metadata, entryMetadata, htmlBody);
+                Path written = extractEntry(finalIntermediatePath, metadata, entryMetadata);
+                checkpoint.done("entry", entryMetadata.id(), basePath.relativize(written).toString(), true);
+                metrics.recordItem("extract", "ok");
                 entryCount++;
             } catch (IOException e) {
+                metrics.recordItem("extract", "error");
+                metrics.recordError("entry");
                 terminal.writer().println("Could not save entry to JSON file: " + entryMetadata.id() + ", Error: " + e);
             }
         }
+        metrics.recordPhase("extract", "entries", entriesStart);
+        return entryCount;
+    }
 
-        // Save manifest file
+    /**
+     * Copies the attachment files into the intermediate storage in parallel on the shared attachment copy
+     * executor. Attachments are separate files, also in a zip archive, whose entries are read and inflated
+     * independently.
+     */
+    private void copyAttachments(String finalIntermediatePath, Metadata metadata, CheckpointStore.Checkpoint checkpoint) throws IOException {
+        Path basePath = Path.of(finalIntermediatePath);
+        List<Future<?>> copies = new ArrayList<>();
         try {
-            jsonStorage.saveManifest(finalIntermediatePath, metadata, finalSourcePath);
-        } catch (IOException e) {
-            terminal.writer().println("Could not save manifest file: " + e);
-            return "Failed to save manifest file: " + e.getMessage();
+            for (AttachmentMetadata attachment : metadata.attachments().values()) {
+                Cancellation.check();
+                if (checkpoint.isDone("attachment", attachment.name())) {
+                    continue;
+                }
+                copies.add(attachmentCopyExecutor.submit(() -> {
+                    Path copied = jsonStorage.copyAttachment(finalIntermediatePath, attachment);
+                    if (copied != null) {
+                        checkpoint.done("attachment", attachment.name(), basePath.relativize(copied).toString(), false);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> copy : copies) {
+                copy.get();
+            }
+        } catch (InterruptedException e) {
+            copies.forEach(copy -> copy.cancel(true));
+            throw new CancellationException("Cancelled");
+        } catch (ExecutionException e) {
+            copies.forEach(copy -> copy.cancel(true));
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (CancellationException e) {
+            // The executor is shared, so the copies already submitted must not outlive the cancelled extraction
+            copies.forEach(copy -> copy.cancel(true));
+            throw e;
         }
+    }
 
-        return "Extract finished, " + entryCount + " entries extracted to " + finalIntermediatePath;
+    /**
+     * Extracts the body of a single entry and saves it as Markdown into the intermediate storage.
+     * Inline images are moved from the body into the intermediate attachments.
+     *
+     * @param intermediatePath The intermediate data directory, ending with a separator
+     * @param metadata         The journal metadata used to resolve persons, categories and attachments
+     * @param entryMetadata    The entry to extract
+     * @return The path of the written Markdown file
+     * @throws IOException If an I/O error occurs
+     */
+    public Path extractEntry(String intermediatePath, Metadata metadata, EntryMetadata entryMetadata) throws IOException {
+        String htmlBody = inlineImages.extractImages(getHtmlBody(entryMetadata), jsonStorage.getInlineImagesDirectory(intermediatePath));
+        long writeStart = metrics.start();
+        Path written = jsonStorage.saveEntry(intermediatePath, metadata, entryMetadata, htmlBody);
+        metrics.recordMarkdownWrite(writeStart, Files.size(written));
+        return written;
+    }
+
+    private void writeMetricsReport(String intermediatePath, String command, String result) {
+        try {
+            metrics.writeReport(intermediatePath, command, result);
+        } catch (IOException e) {
+            terminal.writer().println("Could not write metrics report: " + e);
+        }
     }
 
-    private String getHtmlBody(EntryMetadata entryMetadata) {
+    /**
+     * Reads the HTML body of an entry from its source file.
+     *
+     * @param entryMetadata The entry
+     * @return The body or null if the entry has no source file
+     */
+    public String getHtmlBody(EntryMetadata entryMetadata) {
         if(StringUtils.isBlank(entryMetadata.location())) {
             return null;
         }
 
-        Path path = Path.of(entryMetadata.location());
+        Path path = sources.toPath(entryMetadata.location());
 
         if(Files.exists(path)) {
             try {
-                return Jsoup.parse(path).body().html();
+                EntryParseEvent parseEvent = new EntryParseEvent();
+                parseEvent.begin();
+                long parseStart = metrics.start();
+                String body = bodyExtractor.extractBody(path);
+                long sourceBytes = Files.size(path);
+                metrics.recordBodyParse(parseStart, sourceBytes);
+                parseEvent.finish(entryMetadata.id(), sourceBytes, body.length());
+                return body;
             } catch (IOException e) {
+                metrics.recordError("body");
                 terminal.writer().println("Could not read file: " + path + ", Error: " + e.getMessage());
                 throw new RuntimeException(e);
             }
@@ -116,8 +309,10 @@ public class Extractor {
 
     public static void main(String[] args) throws IOException {
         ByteArrayInputStream inputStream = new ByteArrayInputStream("help".getBytes());
-        FileService fileService = new FileService();
+        SourceFileSystems sources = new SourceFileSystems();
+        FileService fileService = new FileService(sources);
         fileService.init();
+        ExportMetrics metrics = new ExportMetrics();
 
         // Capture all output written to the terminal
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -129,9 +324,10 @@ public class Extractor {
                 .build();
 
         // Create components
-        MetadataExtractor metadataExtractor = new MetadataExtractor();
-        HtmlGenerator htmlGenerator = new HtmlGenerator(new ExporterConfiguration().defaultTemplatingEngine(), fileService);
-        JsonIntermediateStorage jsonStorage = new JsonIntermediateStorage(fileService);
+        MetadataExtractor metadataExtractor = new MetadataExtractor(sources);
+        SiteAssets assets = new SiteAssets();
+        HtmlGenerator htmlGenerator = new HtmlGenerator(new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets), assets, fileService, metrics);
+        JsonIntermediateStorage jsonStorage = new JsonIntermediateStorage(fileService, metrics);
         
         // Define paths
         String sourcePath = "C:\\Users\\vojte\\Dropbox\\_Archiv\\Denik\\XJS\\Deník\\";
@@ -139,13 +335,14 @@ public class Extractor {
         String targetPath = "C:\\projects\\xjs-exporter\\OUT\\";
         
         // Extract data to JSON
-        Extractor extractor = new Extractor(metadataExtractor, terminal, jsonStorage);
-        String extractResult = extractor.extract(sourcePath, intermediatePath);
+        Extractor extractor = new Extractor(metadataExtractor, terminal, jsonStorage, metrics, new JfrRecorder(), new InlineImageExtractor(metrics), new BodyExtractor(), new CheckpointStore(),
+                sources, new ExporterConfiguration().attachmentCopyExecutor(), null);
+        CommandResult extractResult = extractor.extract(sourcePath, intermediatePath, false, false);
         System.out.println(extractResult);
         
         // Generate HTML from JSON
-        Generator generator = new Generator(htmlGenerator, jsonStorage, terminal, fileService);
-        String generateResult = generator.generate(intermediatePath, targetPath);
+        Generator generator = new Generator(htmlGenerator, new DataApiGenerator(htmlGenerator, fileService, assets, jsonStorage), jsonStorage, terminal, fileService, metrics, new JfrRecorder(), new OutputSinkFactory(new Precompressor()), new CheckpointStore(), null);
+        CommandResult generateResult = generator.generate(intermediatePath, targetPath, Generator.FORMAT_HTML, false, false, false, "");
         System.out.println(generateResult);
 
 
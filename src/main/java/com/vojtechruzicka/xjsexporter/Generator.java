@@ -1,10 +1,24 @@
 package com.vojtechruzicka.xjsexporter;
 
+import com.vojtechruzicka.xjsexporter.jfr.AttachmentCopyEvent;
+import com.vojtechruzicka.xjsexporter.jfr.FileWriteEvent;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
 import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.EntryStore;
 import com.vojtechruzicka.xjsexporter.model.Metadata;
 import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
 import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage.MetadataAndEntries;
+import com.vojtechruzicka.xjsexporter.model.json.ShardEntryJson;
+import com.vojtechruzicka.xjsexporter.model.json.ShardSummaryJson;
+import com.vojtechruzicka.xjsexporter.output.CheckpointOutputSink;
+import com.vojtechruzicka.xjsexporter.output.OutputSink;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.service.Cancellation;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
 import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.InlineImageExtractor;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
 import lombok.extern.slf4j.Slf4j;
 import org.jline.terminal.Terminal;
 import org.springframework.shell.standard.ShellComponent;
@@ -15,13 +29,19 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Command for generating HTML output from intermediate JSON files.
@@ -30,191 +50,550 @@ import java.util.stream.Collectors;
 @ShellComponent
 public class Generator {
 
+    public static final String INDEX_PAGE = "index.html";
+    public static final String PERSONS_LIST_PAGE = "lists/persons_list.html";
+    public static final String CATEGORIES_LIST_PAGE = "lists/categories_list.html";
+    public static final String YEARS_LIST_PAGE = "lists/years_list.html";
+    public static final String DAYS_LIST_PAGE = "lists/days_list.html";
+    public static final String FORMAT_HTML = "html";
+    public static final String FORMAT_JSON = "json";
+    public static final String SHARDS_DIR = ".shards";
+    private static final String CHANGED_FILES_SUFFIX = "-changed-files.txt";
+
+    // Pages listing or counting all entries, written by merge after a sharded generation
+    private static final Set<String> GLOBAL_PAGE_KINDS = Set.of("index", "list", "navigation", "shell");
+
     private final HtmlGenerator htmlGenerator;
+    private final DataApiGenerator dataApiGenerator;
     private final JsonIntermediateStorage jsonStorage;
     private final Terminal terminal;
     private final FileService fileService;
+    private final ExportMetrics metrics;
+    private final JfrRecorder jfrRecorder;
+    private final OutputSinkFactory outputSinks;
+    private final CheckpointStore checkpoints;
+    // Creates a pipeline for every run of the command, null in the generator of a pipeline
+    private final PipelineFactory pipelines;
 
-    public Generator(HtmlGenerator htmlGenerator, JsonIntermediateStorage jsonStorage, Terminal terminal, FileService fileService) {
+    public Generator(HtmlGenerator htmlGenerator, DataApiGenerator dataApiGenerator, JsonIntermediateStorage jsonStorage, Terminal terminal, FileService fileService, ExportMetrics metrics, JfrRecorder jfrRecorder, OutputSinkFactory outputSinks, CheckpointStore checkpoints, PipelineFactory pipelines) {
         this.htmlGenerator = htmlGenerator;
+        this.dataApiGenerator = dataApiGenerator;
         this.jsonStorage = jsonStorage;
         this.terminal = terminal;
         this.fileService = fileService;
+        this.metrics = metrics;
+        this.jfrRecorder = jfrRecorder;
+        this.outputSinks = outputSinks;
+        this.checkpoints = checkpoints;
+        this.pipelines = pipelines;
     }
 
     @ShellMethod(value = "Generates HTML output from intermediate JSON files", key = "generate")
-    public String generate(
+    public CommandResult generate(
             @ShellOption(defaultValue = "D:\\Dropbox\\_INBOX\\_DENIK_TRANSFER\\OUT - Markdown\\intermediate-data",
                     help = "Source directory containing intermediate JSON files") String intermediatePath,
             @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\OUT\\", 
-                    help = "Target directory for generated HTML files") String targetPath) {
+                    help = "Target directory for generated HTML files, or a .zip file to write a single archive") String targetPath,
+            @ShellOption(defaultValue = FORMAT_HTML,
+                    help = "Output format: html for static pages, json for JSON data files rendered in the browser by a static app shell") String format,
+            @ShellOption(defaultValue = "false",
+                    help = "Record the run with Java Flight Recorder into reports/generate.jfr") boolean jfr,
+            @ShellOption(defaultValue = "false",
+                    help = "Also write gzip compressed .gz siblings of all HTML, CSS and JS files") boolean precompress,
+            @ShellOption(defaultValue = "false",
+                    help = "Continue an interrupted run, skipping pages and attachments which were already written") boolean resume,
+            @ShellOption(defaultValue = "",
+                    help = "Write only shard i of N, e.g. 2/4, of the entry pages, listings and attachments, run merge after all shards") String shard) {
+
+        if (pipelines != null) {
+            // Runs of the shared command get their own metrics, so runs overlapping with watch or other commands don't mix
+            return pipelines.create(terminal).generator().generate(intermediatePath, targetPath, format, jfr, precompress, resume, shard);
+        }
+
+        if (!FORMAT_HTML.equals(format) && !FORMAT_JSON.equals(format)) {
+            return CommandResult.failure("Failed to generate: unknown format " + format + ", use " + FORMAT_HTML + " or " + FORMAT_JSON);
+        }
+
+        Shard selectedShard = null;
+        if (!shard.isBlank()) {
+            try {
+                selectedShard = Shard.parse(shard);
+            } catch (IllegalArgumentException e) {
+                return CommandResult.failure("Failed to generate: " + e.getMessage());
+            }
+            if (OutputSinkFactory.isArchive(targetPath)) {
+                return CommandResult.failure("Failed to generate: shards can only be written to a target directory, not to an archive");
+            }
+            if (precompress) {
+                return CommandResult.failure("Failed to generate: shards can't be precompressed, they would overwrite each other's " + Precompressor.INDEX_FILE);
+            }
+        }
+        String run = getRunName(selectedShard);
 
-        // Ensure paths end with separator
+        // Ensure paths end with separator (archive targets are files)
         final String finalIntermediatePath = intermediatePath.endsWith(File.separator) ? intermediatePath : intermediatePath + File.separator;
-        final String finalTargetPath = targetPath.endsWith(File.separator) ? targetPath : targetPath + File.separator;
+        final String finalTargetPath = OutputSinkFactory.isArchive(targetPath) || targetPath.endsWith(File.separator) ? targetPath : targetPath + File.separator;
 
-        // Load data from intermediate storage
-        MetadataAndEntries data;
+        if (OutputSinkFactory.isArchive(finalTargetPath)) {
+            if (resume) {
+                return CommandResult.failure("Archive targets can't be resumed, the archive is always written as a whole");
+            }
+            try (JfrRecorder.ActiveRecording recording = jfr ? jfrRecorder.start(finalIntermediatePath, run) : null;
+                 OutputSink sink = outputSinks.open(finalTargetPath, precompress)) {
+                return generate(finalIntermediatePath, sink, null, format, null, run);
+            } catch (IOException e) {
+                terminal.writer().println("Could not write target: " + finalTargetPath + ", Error: " + e);
+                return CommandResult.failure("Generation failed: " + e.getMessage());
+            }
+        }
+
+        // Directory targets record their progress, so that an interrupted run can be resumed
+        CommandResult result;
+        Set<String> changedPaths;
+        try (JfrRecorder.ActiveRecording recording = jfr ? jfrRecorder.start(finalIntermediatePath, run) : null;
+             CheckpointOutputSink sink = new CheckpointOutputSink(outputSinks.open(finalTargetPath, precompress),
+                     checkpoints.open(Path.of(finalIntermediatePath), run, Path.of(finalTargetPath),
+                             getInputFingerprint(finalIntermediatePath, finalTargetPath, precompress, format, selectedShard), resume))) {
+            result = generate(finalIntermediatePath, sink, sink, format, selectedShard, run);
+            changedPaths = sink.changedPaths();
+        } catch (IOException e) {
+            terminal.writer().println("Could not write target: " + finalTargetPath + ", Error: " + e);
+            return CommandResult.failure("Generation failed: " + e.getMessage());
+        }
+        if (result.failed()) {
+            return result;
+        }
+        // The sink is closed, so precompressed files are complete too
         try {
-            data = jsonStorage.loadAll(finalIntermediatePath);
+            Path list = writeChangedPaths(finalIntermediatePath, run, changedPaths);
+            return result.append(", " + changedPaths.size() + " files created or changed, listed in " + list);
         } catch (IOException e) {
-            return MessageFormat.format("Failed to load data from intermediate storage: {0}", e.getMessage());
+            terminal.writer().println("Could not write the list of changed files: " + e);
+            return result;
         }
+    }
 
-        Metadata metadata = data.metadata();
-        List<Entry> entries = data.entries();
+    /**
+     * Name of the checkpoint, reports and recording a run keeps in the intermediate directory. Shards of the
+     * same intermediate data keep their own.
+     *
+     * @param shard The shard written by the run, or null for a whole site
+     */
+    public static String getRunName(Shard shard) {
+        return shard != null ? "generate-" + shard.name() : "generate";
+    }
 
-        // Sort entries by date (newest first)
-        entries = entries.stream()
-                .sorted(Comparator.comparing(Entry::created).reversed())
-                .collect(Collectors.toList());
+    /**
+     * Writes the sorted target paths of the files created or changed by a run into the reports directory,
+     * one per line, for deployments copying only what changed.
+     *
+     * @return The path of the list
+     */
+    private Path writeChangedPaths(String intermediatePath, String run, Set<String> changedPaths) throws IOException {
+        Path reportsDir = Path.of(intermediatePath).resolve(ExportMetrics.REPORTS_DIR);
+        Files.createDirectories(reportsDir);
+        Path list = reportsDir.resolve(run + CHANGED_FILES_SUFFIX);
+        Files.write(list, changedPaths.stream().sorted().toList());
+        return list;
+    }
 
-        // Create target directory and subdirectories if they don't exist
+    private CommandResult generate(String finalIntermediatePath, OutputSink sink, CheckpointOutputSink checkpoint, String format, Shard shard, String run) throws IOException {
+        metrics.reset();
+        CommandResult result = null;
         try {
-            Files.createDirectories(Path.of(finalTargetPath));
-            Files.createDirectories(Path.of(finalTargetPath + "persons"));
-            Files.createDirectories(Path.of(finalTargetPath + "categories"));
-            Files.createDirectories(Path.of(finalTargetPath + "entries"));
-            Files.createDirectories(Path.of(finalTargetPath + "years"));
-            Files.createDirectories(Path.of(finalTargetPath + "lists"));
+            result = generateAll(finalIntermediatePath, sink, checkpoint, format, shard);
+            return result;
+        } finally {
+            // Failed and interrupted runs are reported too, with what they recorded until they stopped
+            String reported = result != null ? result.message() : "Generation interrupted";
+            try {
+                metrics.writeReport(finalIntermediatePath, run, reported);
+            } catch (IOException e) {
+                terminal.writer().println("Could not write metrics report: " + e);
+            }
+        }
+    }
+
+    private CommandResult generateAll(String finalIntermediatePath, OutputSink sink, CheckpointOutputSink checkpoint, String format, Shard shard) throws IOException {
+        // Load data from intermediate storage
+        MetadataAndEntries data;
+        long loadStart = metrics.start();
+        try {
+            data = jsonStorage.loadAll(finalIntermediatePath);
         } catch (IOException e) {
-            terminal.writer().println("Could not create target directory: " + finalTargetPath + ", Error: " + e);
-            return "Failed to create target directory: " + e.getMessage();
+            metrics.recordError("load");
+            return CommandResult.failure(MessageFormat.format("Failed to load data from intermediate storage: {0}", e.getMessage()));
         }
+        metrics.recordLoad(loadStart, data.entries().size());
+        metrics.recordPhase("generate", "load", loadStart);
 
-        // Create final references for use in lambdas
-        final List<Entry> finalEntries = entries;
-        final Metadata finalMetadata = metadata;
-        
-        // Generate main index page
-        String mainPage = htmlGenerator.generateMainPage(finalMetadata, finalEntries);
+        Predicate<String> selection = checkpoint != null ? path -> !checkpoint.isDone(path) : path -> true;
+        String result;
+        if (shard != null) {
+            int shardEntries = writeShard(data, format, shard, finalIntermediatePath, sink, selection);
+            result = "Generation of shard " + shard + " finished, " + shardEntries + " of " + data.entries().size()
+                    + " entries generated to " + sink.location() + ", run merge when all shards are finished";
+        } else {
+            if (FORMAT_JSON.equals(format)) {
+                writeDataSite(data.metadata(), data.entries(), finalIntermediatePath, sink, selection);
+            } else {
+                writeSite(data.metadata(), data.entries(), finalIntermediatePath, sink, selection);
+            }
+            result = "Generation finished, " + data.entries().size() + " entries generated to " + sink.location();
+        }
+        sink.commit();
 
-        // Write individual entry pages
-        finalEntries.forEach(entry -> {
-            try {
-                String html = htmlGenerator.generateEntryPage(
-                        finalMetadata, 
-                        entry.title(), 
-                        entry.created(), 
-                        entry.html(), 
-                        entry.categories(), 
-                        entry.persons(), 
-                        entry.attachments(),
-                        finalEntries
-                );
-                
-                Files.write(
-                    Path.of(finalTargetPath + "entries" + File.separator + fileService.getEntryFileName(entry) + ".html"),
-                    html.getBytes(), 
-                    StandardOpenOption.CREATE, 
-                    StandardOpenOption.WRITE, 
-                    StandardOpenOption.TRUNCATE_EXISTING
-                );
-            } catch (IOException e) {
-                terminal.writer().println("Could not write entry file: " + entry.id() + ", Error: " + e);
+        if (checkpoint != null) {
+            checkpoint.complete();
+            if (checkpoint.skippedCount() > 0) {
+                result += ", " + checkpoint.skippedCount() + " files kept from the interrupted run";
             }
-        });
+        }
+        return CommandResult.success(result);
+    }
 
-        // Copy attachment files - prefer intermediate storage copies
-        metadata.attachments().values().forEach(attachmentMetadata -> {
-            try {
-                Path target = Path.of(finalTargetPath + "attachments" + File.separator + attachmentMetadata.name());
-                Files.createDirectories(target.getParent());
+    /**
+     * Fingerprint of everything a generation run reads, so that a checkpoint is only resumed for the same inputs.
+     */
+    private String getInputFingerprint(String intermediatePath, String targetPath, boolean precompress, String format, Shard shard) throws IOException {
+        return CheckpointStore.fingerprint(intermediatePath, targetPath, precompress, format, shard,
+                CheckpointStore.fingerprintFiles(jsonStorage.getEntriesDirectory(intermediatePath)),
+                CheckpointStore.fingerprintFiles(jsonStorage.getMetadataDirectory(intermediatePath)),
+                CheckpointStore.fingerprintFiles(jsonStorage.getAttachmentsDirectory(intermediatePath)));
+    }
 
-                Path intermediateSource = Path.of(finalIntermediatePath + "attachments" + File.separator + attachmentMetadata.name());
-                Path originalSource = Path.of(attachmentMetadata.absoluteSourcePath());
+    /**
+     * Writes the entry pages, listings and attachments of a shard, and a summary of the entries of the shard
+     * for {@link ShardMerger}. Pages listing or counting all entries are left to the merge.
+     *
+     * @return Number of entries of the shard
+     */
+    private int writeShard(MetadataAndEntries data, String format, Shard shard, String intermediatePath, OutputSink sink,
+                           Predicate<String> selection) throws IOException {
+        List<Entry> sortedEntries = sortNewestFirst(data.entries());
+        List<Page> pages = FORMAT_JSON.equals(format) ? dataApiGenerator.getPages(sortedEntries) : getPages(data.metadata(), sortedEntries);
 
-                Path sourceToUse = Files.exists(intermediateSource) ? intermediateSource : originalSource;
-                Files.copy(sourceToUse, target, StandardCopyOption.REPLACE_EXISTING);
-            } catch (IOException e) {
-                terminal.writer().println("Could not copy attachment file for: " + attachmentMetadata.name() + ", Error: " + e);
+        // Entries of the same page path overwrite each other, the shard of the last one writes all of them in order
+        Map<String, String> entryPageOwners = new HashMap<>();
+        Set<String> globalPages = new HashSet<>();
+        for (Page page : pages) {
+            if (page.entryId() != null) {
+                entryPageOwners.put(page.path(), page.entryId());
+            } else if (isGlobalPage(page)) {
+                globalPages.add(page.path());
             }
-        });
+        }
+        writePages(pages, data.metadata(), intermediatePath, sink, selection.and(path ->
+                !globalPages.contains(path) && shard.owns(entryPageOwners.getOrDefault(path, path))));
 
-        // Write main index page
-        try {
-            Files.write(Path.of(finalTargetPath + "index.html"), mainPage.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (IOException e) {
-            terminal.writer().println("Could not write main index file, Error: " + e);
+        List<ShardEntryJson> shardEntries = sortedEntries.stream()
+                .filter(entry -> shard.owns(entry.id()))
+                .map(entry -> new ShardEntryJson(entry.id(), entry.title(), entry.created(), List.copyOf(entry.persons()), List.copyOf(entry.categories())))
+                .toList();
+        sink.write(getShardSummaryPath(shard), jsonStorage.toJson(new ShardSummaryJson(shard.index(), shard.count(), format,
+                sortedEntries.size(), getEntriesFingerprint(sortedEntries), shardEntries)));
+        return shardEntries.size();
+    }
+
+    /**
+     * Whether a page lists or counts all entries, so that it is written by {@link ShardMerger} rather than by a shard.
+     */
+    public static boolean isGlobalPage(Page page) {
+        return GLOBAL_PAGE_KINDS.contains(page.kind());
+    }
+
+    /**
+     * Site relative path of the summary of a shard.
+     */
+    public static String getShardSummaryPath(Shard shard) {
+        return SHARDS_DIR + "/" + shard.name() + ".json";
+    }
+
+    /**
+     * Fingerprint of the IDs and creation times of all entries, equal in all shards of the same intermediate data.
+     */
+    public static String getEntriesFingerprint(List<Entry> sortedEntries) {
+        return CheckpointStore.fingerprint(sortedEntries.stream().map(entry -> entry.id() + " " + entry.created()).toArray());
+    }
+
+    /**
+     * Sorts entries by date, newest first, and entries created at the same time by ID, so that the order does not
+     * depend on the order the entries were loaded in. Entries of an {@link EntryStore} are sorted as a view, without copying them.
+     */
+    public static List<Entry> sortNewestFirst(List<Entry> entries) {
+        if (entries instanceof EntryStore.Entries storeEntries) {
+            return storeEntries.store().newestFirst();
         }
+        return entries.stream()
+                .sorted(Comparator.comparing(Entry::created).reversed().thenComparing(Entry::id))
+                .collect(Collectors.toList());
+    }
 
-        // Generate year-based pages
-        Map<Integer, List<Entry>> entriesByYear = entries.stream()
-                .collect(Collectors.groupingBy(entry -> entry.created().getYear()));
-        
-        entriesByYear.forEach((year, yearEntries) -> {
-            String yearPage = htmlGenerator.generateMainPage(metadata, yearEntries, "year", String.valueOf(year));
-            try {
-                Files.write(Path.of(finalTargetPath + "years" + File.separator + year + ".html"), yearPage.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-            } catch (IOException e) {
-                terminal.writer().println("Could not write year file: " + year + ", Error: " + e);
-            }
-        });
+    /**
+     * Site relative paths of all pages generated for the given entries, attachments excluded.
+     */
+    public Set<String> getPagePaths(List<Entry> entries) {
+        Set<String> pages = new HashSet<>(List.of(INDEX_PAGE, PERSONS_LIST_PAGE, CATEGORIES_LIST_PAGE, YEARS_LIST_PAGE, DAYS_LIST_PAGE));
+        for (Entry entry : entries) {
+            pages.add(fileService.getEntryPagePath(entry));
+            pages.add(fileService.getYearPagePath(entry.created().getYear()));
+            pages.add(fileService.getDayPagePath(fileService.getDayOfYear(entry.created())));
+            entry.persons().forEach(person -> pages.add(fileService.getPersonPagePath(person)));
+            entry.categories().forEach(category -> pages.add(fileService.getCategoryPagePath(category)));
+        }
+        return pages;
+    }
+
+    /**
+     * Lists all pages of the site without rendering them. Entry pages come first, in the order of the entries.
+     *
+     * @param metadata      The metadata used for navigation
+     * @param sortedEntries All entries of the journal, newest first
+     * @return The pages, each rendered only when its renderer is called
+     */
+    public List<Page> getPages(Metadata metadata, List<Entry> sortedEntries) {
+        List<Page> pages = new ArrayList<>();
+        // Navigation of the whole site, computed once for all entry and list pages
+        HtmlGenerator.NavigationData navigation = getNavigationData(metadata, sortedEntries);
+
+        // Individual entry pages
+        for (Entry entry : sortedEntries) {
+            pages.add(getEntryPage(navigation, entry));
+        }
+
+        // Main index page
+        pages.add(new Page(INDEX_PAGE, "index", null, () -> htmlGenerator.generateMainPage(navigation, sortedEntries)));
+
+        // Entries by year and by day of the year, grouped in a single pass, newest first within each group
+        Map<Integer, List<Entry>> entriesByYear = new HashMap<>();
+        Map<String, List<Entry>> entriesByDay = new TreeMap<>();
+        for (Entry entry : sortedEntries) {
+            entriesByYear.computeIfAbsent(entry.created().getYear(), year -> new ArrayList<>()).add(entry);
+            entriesByDay.computeIfAbsent(fileService.getDayOfYear(entry.created()), day -> new ArrayList<>()).add(entry);
+        }
 
-        // Generate person-based pages
-        List<String> allPersons = finalEntries.stream()
+        // Year-based pages
+        entriesByYear.forEach((year, yearEntries) -> pages.add(new Page(fileService.getYearPagePath(year), "year", null,
+                () -> htmlGenerator.generateMainPage(metadata, yearEntries, "year", String.valueOf(year)))));
+
+        // Pages of the days of the year, listing the entries written on that day in all years
+        entriesByDay.forEach((day, dayEntries) -> pages.add(new Page(fileService.getDayPagePath(day), "day", null,
+                () -> htmlGenerator.generateMainPage(metadata, dayEntries, "day", day))));
+
+        // Person-based pages
+        sortedEntries.stream()
                 .flatMap(entry -> entry.persons().stream())
                 .distinct()
                 .sorted()
-                .toList();
-        
-        allPersons.forEach(person -> {
-            List<Entry> personEntries = finalEntries.stream()
-                    .filter(entry -> entry.persons().contains(person))
-                    .collect(Collectors.toList());
-            
-            if (!personEntries.isEmpty()) {
-                String personPage = htmlGenerator.generateMainPage(finalMetadata, personEntries, "person", person);
-                try {
-                    String fileName = "person_" + person.replace(' ', '_') + ".html";
-                    Files.write(Path.of(finalTargetPath + "persons" + File.separator + fileName), personPage.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-                } catch (IOException e) {
-                    terminal.writer().println("Could not write person file: " + person + ", Error: " + e);
-                }
-            }
-        });
+                .forEach(person -> pages.add(new Page(fileService.getPersonPagePath(person), "person", null, () -> {
+                    List<Entry> personEntries = sortedEntries.stream()
+                            .filter(entry -> entry.persons().contains(person))
+                            .collect(Collectors.toList());
+                    return htmlGenerator.generateMainPage(metadata, personEntries, "person", person);
+                })));
 
-        // Generate category-based pages
-        List<String> allCategories = finalEntries.stream()
+        // Category-based pages
+        sortedEntries.stream()
                 .flatMap(entry -> entry.categories().stream())
                 .distinct()
                 .sorted()
+                .forEach(category -> pages.add(new Page(fileService.getCategoryPagePath(category), "category", null, () -> {
+                    List<Entry> categoryEntries = sortedEntries.stream()
+                            .filter(entry -> entry.categories().contains(category))
+                            .collect(Collectors.toList());
+                    return htmlGenerator.generateMainPage(metadata, categoryEntries, "category", category);
+                })));
+
+        // List pages
+        pages.add(new Page(PERSONS_LIST_PAGE, "list", null, () -> htmlGenerator.generatePersonsListPage(navigation)));
+        pages.add(new Page(CATEGORIES_LIST_PAGE, "list", null, () -> htmlGenerator.generateCategoriesListPage(navigation)));
+        pages.add(new Page(YEARS_LIST_PAGE, "list", null, () -> htmlGenerator.generateYearsListPage(navigation)));
+        pages.add(new Page(DAYS_LIST_PAGE, "list", null, () -> htmlGenerator.generateListPage("days", navigation)));
+        return pages;
+    }
+
+    /**
+     * The page of a single entry.
+     *
+     * @param navigation The navigation of all entries of the journal, see {@link #getNavigationData}
+     * @param entry      The entry including its body
+     * @return The page, rendered only when its renderer is called
+     */
+    public Page getEntryPage(HtmlGenerator.NavigationData navigation, Entry entry) {
+        return new Page(fileService.getEntryPagePath(entry), "entry", entry.id(), () -> htmlGenerator.generateEntryPage(
+                navigation,
+                entry.id(),
+                entry.title(),
+                entry.created(),
+                entry.html(),
+                entry.categories(),
+                entry.persons(),
+                entry.attachments()
+        ));
+    }
+
+    /**
+     * Navigation of the whole site, computed once per run and shared by the pages showing it.
+     *
+     * @param metadata      The metadata used for navigation
+     * @param sortedEntries All entries of the journal, newest first
+     */
+    public HtmlGenerator.NavigationData getNavigationData(Metadata metadata, List<Entry> sortedEntries) {
+        return htmlGenerator.getNavigationData(metadata, sortedEntries);
+    }
+
+    /**
+     * Renders and writes the selected pages of the site and copies the selected attachments.
+     * Pages which are not selected are neither rendered nor written.
+     *
+     * @param metadata         The metadata used for navigation
+     * @param entries          All entries of the journal
+     * @param intermediatePath The intermediate data directory holding attachment copies, or null to copy from the source
+     * @param sink             The output to write to
+     * @param selection        Selects pages and attachments by their site relative path
+     */
+    public void writeSite(Metadata metadata, List<Entry> entries, String intermediatePath, OutputSink sink, Predicate<String> selection) {
+        // Sort entries by date (newest first)
+        writePages(getPages(metadata, sortNewestFirst(entries)), metadata, intermediatePath, sink, selection);
+    }
+
+    /**
+     * Writes the selected files of the JSON data output and copies the selected attachments.
+     *
+     * @param metadata         The metadata of the attachments
+     * @param entries          All entries of the journal
+     * @param intermediatePath The intermediate data directory holding attachment copies, or null to copy from the source
+     * @param sink             The output to write to
+     * @param selection        Selects files and attachments by their site relative path
+     * @see DataApiGenerator
+     */
+    public void writeDataSite(Metadata metadata, List<Entry> entries, String intermediatePath, OutputSink sink, Predicate<String> selection) {
+        writePages(dataApiGenerator.getPages(sortNewestFirst(entries)), metadata, intermediatePath, sink, selection);
+    }
+
+    private void writePages(List<Page> pages, Metadata metadata, String intermediatePath, OutputSink sink, Predicate<String> selection) {
+        // Write individual entry pages
+        long entriesStart = metrics.start();
+        List<Page> entryPages = pages.stream()
+                .filter(page -> page.kind().equals("entry") && selection.test(page.path()))
                 .toList();
-        
-        allCategories.forEach(category -> {
-            List<Entry> categoryEntries = finalEntries.stream()
-                    .filter(entry -> entry.categories().contains(category))
-                    .collect(Collectors.toList());
-            
-            if (!categoryEntries.isEmpty()) {
-                String categoryPage = htmlGenerator.generateMainPage(finalMetadata, categoryEntries, "category", category);
-                try {
-                    String fileName = "category_" + category.replace(' ', '_') + ".html";
-                    Files.write(Path.of(finalTargetPath + "categories" + File.separator + fileName), categoryPage.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-                } catch (IOException e) {
-                    terminal.writer().println("Could not write category file: " + category + ", Error: " + e);
-                }
+        metrics.planItems(entryPages.size());
+        entryPages.forEach(page -> writeSelectedPage(sink, page, path -> true));
+        metrics.recordPhase("generate", "entries", entriesStart);
+
+        // Copy attachment files - prefer intermediate storage copies
+        long attachmentsStart = metrics.start();
+        metadata.attachments().values().forEach(attachmentMetadata -> {
+            Cancellation.check();
+            String attachmentPath = fileService.getAttachmentPath(attachmentMetadata.name());
+            if (!selection.test(attachmentPath)) {
+                return;
+            }
+            try {
+                AttachmentCopyEvent copyEvent = new AttachmentCopyEvent();
+                copyEvent.begin();
+                long copyStart = metrics.start();
+                Path intermediateSource = intermediatePath != null ? Path.of(intermediatePath + "attachments" + File.separator + attachmentMetadata.name()) : null;
+                Path originalSource = fileService.getSourcePath(attachmentMetadata.absoluteSourcePath());
+
+                Path sourceToUse = intermediateSource != null && Files.exists(intermediateSource) ? intermediateSource : originalSource;
+                long bytes = sink.copy(attachmentPath, sourceToUse);
+                metrics.recordAttachmentCopy("generate", copyStart, bytes);
+                copyEvent.finish("generate", attachmentMetadata.name(), bytes);
+            } catch (IOException e) {
+                metrics.recordError("attachment");
+                terminal.writer().println("Could not copy attachment file for: " + attachmentMetadata.name() + ", Error: " + e);
             }
         });
-        
-        // Generate list pages
+        if (intermediatePath != null) {
+            copyInlineImages(jsonStorage.getInlineImagesDirectory(intermediatePath), sink, selection);
+        }
+        metrics.recordPhase("generate", "attachments", attachmentsStart);
+
+        // Index, year, person, category and list pages
+        long listingsStart = metrics.start();
+        pages.stream()
+                .filter(page -> !page.kind().equals("entry"))
+                .forEach(page -> writeSelectedPage(sink, page, selection));
+        metrics.recordPhase("generate", "listings", listingsStart);
+    }
+
+    /**
+     * Copies the selected images extracted from entry bodies.
+     *
+     * @param inlineDir Directory holding the extracted images
+     * @param sink      The output to write to
+     * @param selection Selects images by their site relative path
+     */
+    public void copyInlineImages(Path inlineDir, OutputSink sink, Predicate<String> selection) {
+        if (!Files.isDirectory(inlineDir)) {
+            return;
+        }
+        try (Stream<Path> images = Files.list(inlineDir)) {
+            for (Path image : (Iterable<Path>) images::iterator) {
+                String imagePath = InlineImageExtractor.SITE_PREFIX + image.getFileName();
+                if (!selection.test(imagePath)) {
+                    continue;
+                }
+                long copyStart = metrics.start();
+                long bytes = sink.copy(imagePath, image);
+                metrics.recordAttachmentCopy("generate", copyStart, bytes);
+            }
+        } catch (IOException e) {
+            metrics.recordError("attachment");
+            terminal.writer().println("Could not copy inline images from: " + inlineDir + ", Error: " + e);
+        }
+    }
+
+    /**
+     * Renders and writes a single page. Processed items are recorded by the caller.
+     */
+    public void writePage(OutputSink sink, Page page) throws IOException {
+        Cancellation.check();
+        writePage(sink, page.path(), page.renderer().get(), page.kind(), page.entryId());
+    }
+
+    private void writeSelectedPage(OutputSink sink, Page page, Predicate<String> selection) {
+        Cancellation.check();
+        if (!selection.test(page.path())) {
+            return;
+        }
+        boolean entry = page.kind().equals("entry");
         try {
-            String listsDir = "lists" + File.separator;
-            // Persons list page
-            String personsListPage = htmlGenerator.generatePersonsListPage(finalMetadata, finalEntries);
-            Files.write(Path.of(finalTargetPath + listsDir + "persons_list.html"), personsListPage.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-            
-            // Categories list page
-            String categoriesListPage = htmlGenerator.generateCategoriesListPage(finalMetadata, finalEntries);
-            Files.write(Path.of(finalTargetPath + listsDir + "categories_list.html"), categoriesListPage.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-            
-            // Years list page
-            String yearsListPage = htmlGenerator.generateYearsListPage(finalEntries, finalMetadata);
-            Files.write(Path.of(finalTargetPath + listsDir + "years_list.html"), yearsListPage.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writePage(sink, page.path(), page.renderer().get(), page.kind(), page.entryId());
+            if (entry) {
+                metrics.recordItem("generate", "ok");
+            }
         } catch (IOException e) {
-            terminal.writer().println("Could not write list pages, Error: " + e);
+            if (entry) {
+                metrics.recordItem("generate", "error");
+                metrics.recordError("entry");
+            }
+            terminal.writer().println("Could not write " + page.kind() + " file: " + page.path() + ", Error: " + e);
         }
+    }
+
+    /**
+     * Writes a rendered page and records the write time and size.
+     */
+    private void writePage(OutputSink sink, String relativePath, String html, String kind, String entryId) throws IOException {
+        FileWriteEvent writeEvent = new FileWriteEvent();
+        writeEvent.begin();
+        long writeStart = metrics.start();
+        byte[] bytes = html.getBytes();
+        sink.write(relativePath, bytes);
+        metrics.recordWrite(kind, writeStart, bytes.length);
+        writeEvent.finish(entryId, kind, relativePath, bytes.length);
+    }
 
-        return "Generation finished, " + entries.size() + " entries generated to " + finalTargetPath;
+    /**
+     * A page of the generated site, rendered on demand.
+     *
+     * @param path     Site relative path of the page
+     * @param kind     Page kind (entry, index, year, day, person, category, list, and navigation and shell of the JSON data output)
+     * @param entryId  ID of the entry for entry pages, null otherwise
+     * @param renderer Renders the HTML of the page
+     */
+    public record Page(String path, String kind, String entryId, Supplier<String> renderer) {
     }
-}
\ No newline at end of file
+}
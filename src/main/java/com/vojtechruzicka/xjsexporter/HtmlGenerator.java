@@ -1,21 +1,27 @@
 package com.vojtechruzicka.xjsexporter;
 
+import com.vojtechruzicka.xjsexporter.jfr.TemplateRenderEvent;
 import com.vojtechruzicka.xjsexporter.model.Attachment;
 import com.vojtechruzicka.xjsexporter.model.Entry;
 import com.vojtechruzicka.xjsexporter.model.Metadata;
 import com.vojtechruzicka.xjsexporter.model.PersonMetadata;
+import com.vojtechruzicka.xjsexporter.render.EntryListPage;
+import com.vojtechruzicka.xjsexporter.render.EntryPage;
+import com.vojtechruzicka.xjsexporter.render.ItemListPage;
+import com.vojtechruzicka.xjsexporter.render.Navigation;
+import com.vojtechruzicka.xjsexporter.render.PageRenderer;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
 import com.vojtechruzicka.xjsexporter.service.FileService;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
-import java.io.IOException;
 import java.text.Collator;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,59 +29,41 @@ import java.util.regex.Pattern;
 public class HtmlGenerator {
 
     public static final String BASE_PATH_SUBDIRECTORY = "../";
-    private final TemplateEngine templateEngine;
+    private static final Pattern ATTACHMENT_IMAGE_PATTERN = Pattern.compile("(<img[^>]+src\\s*=\\s*[\"'])([^\"']*\\\\Attachments[^\"']*?)([\"'][^>]*>)", Pattern.CASE_INSENSITIVE);
+    private final PageRenderer renderer;
+    private final SiteAssets assets;
     private final Collator czechCollator = Collator.getInstance(Locale.of("cs", "CZ"));
     private final FileService fileService;
+    private final ExportMetrics metrics;
 
-    public HtmlGenerator(TemplateEngine templateEngine, FileService fileService) {
-        this.templateEngine = templateEngine;
+    public HtmlGenerator(PageRenderer renderer, SiteAssets assets, FileService fileService, ExportMetrics metrics) {
+        this.renderer = renderer;
+        this.assets = assets;
         czechCollator.setStrength(Collator.PRIMARY);
         this.fileService = fileService;
+        this.metrics = metrics;
     }
 
-    private String getCssContent() {
-        try (var resource = getClass().getResourceAsStream("/static/css/styles.css")) {
-            if (resource != null) {
-                return new String(resource.readAllBytes());
-            } else {
-                return "/* CSS file not found */";
-            }
-        } catch (IOException e) {
-            return "/* CSS file not found: " + e.getMessage() + " */";
-        }
-    }
-    
-    private String getJavaScriptContent() {
-        try (var resource = getClass().getResourceAsStream("/static/js/navigation.js")) {
-            if (resource != null) {
-                return new String(resource.readAllBytes());
-            } else {
-                return "/* JavaScript file not found */";
-            }
-        } catch (IOException e) {
-            return "/* JavaScript file not found: " + e.getMessage() + " */";
-        }
-    }
-    
     /**
      * Public method to get CSS content for use in other controllers
      */
     public String getPublicCssContent() {
-        return getCssContent();
+        return assets.css();
     }
     
     /**
      * Public method to get JavaScript content for use in other controllers
      */
     public String getPublicJavaScriptContent() {
-        return getJavaScriptContent();
+        return assets.javaScript();
     }
 
     /**
-     * Sets up common context variables used across multiple templates
+     * Navigation lists and entry counts for the given entries, computed in a single pass over the entries.
+     * Computed once per run for all entries and passed to every page showing the navigation of the whole
+     * site, so that rendering all pages does not count all entries again for every page.
      */
-    private void setupCommonContext(Context context, Metadata metadata, List<Entry> allEntries, 
-                                   String pageType, String currentItem, String pageTitle) {
+    public NavigationData getNavigationData(Metadata metadata, List<Entry> entries) {
         // Get all available categories, persons, and years for navigation
         List<String> allCategories = metadata.categories().values().stream()
                 .map(CategoryMetadata::title)
@@ -88,97 +76,79 @@ public class HtmlGenerator {
                 .distinct()
                 .sorted(czechCollator::compare)
                 .toList();
-                
-        List<String> allYears = allEntries.stream()
-                .map(e -> String.valueOf(e.created().getYear()))
-                .distinct()
+
+        // Count entries for each person, category, year and day of the year, each entry at most once per item
+        Map<String, Integer> personCounts = new HashMap<>();
+        Map<String, Integer> categoryCounts = new HashMap<>();
+        Map<String, Integer> yearCounts = new HashMap<>();
+        Map<String, Integer> dayCounts = new HashMap<>();
+        for (Entry entry : entries) {
+            countDistinct(entry.persons(), personCounts);
+            countDistinct(entry.categories(), categoryCounts);
+            yearCounts.merge(String.valueOf(entry.created().getYear()), 1, Integer::sum);
+            dayCounts.merge(fileService.getDayOfYear(entry.created()), 1, Integer::sum);
+        }
+
+        List<String> allYears = yearCounts.keySet().stream()
                 .sorted()
                 .toList().reversed();
-        
-        // Calculate counts for each item
-        Map<String, Integer> counts = new HashMap<>();
-        
-        // Count entries for each person
+        List<String> allDays = dayCounts.keySet().stream()
+                .sorted()
+                .toList();
+
+        // Categories and years take precedence over persons of the same name, and everything over days
+        Map<String, Integer> counts = new HashMap<>(dayCounts);
         for (String person : allPersons) {
-            int count = (int) allEntries.stream()
-                    .filter(e -> e.persons().contains(person))
-                    .count();
-            counts.put(person, count);
+            counts.put(person, personCounts.getOrDefault(person, 0));
         }
-        
-        // Count entries for each category
         for (String category : allCategories) {
-            int count = (int) allEntries.stream()
-                    .filter(e -> e.categories().contains(category))
-                    .count();
-            counts.put(category, count);
+            counts.put(category, categoryCounts.getOrDefault(category, 0));
         }
-        
-        // Count entries for each year
-        for (String year : allYears) {
-            int count = (int) allEntries.stream()
-                    .filter(e -> String.valueOf(e.created().getYear()).equals(year))
-                    .count();
-            counts.put(year, count);
+        counts.putAll(yearCounts);
+
+        return new NavigationData(allPersons, allCategories, allYears, allDays, counts);
+    }
+
+    private static void countDistinct(List<String> items, Map<String, Integer> counts) {
+        for (int i = 0; i < items.size(); i++) {
+            String item = items.get(i);
+            if (items.indexOf(item) == i) {
+                counts.merge(item, 1, Integer::sum);
+            }
         }
-        
-        // Add CSS content
-        context.setVariable("cssContent", getCssContent());
-        
-        // Add JavaScript content
-        context.setVariable("jsContent", getJavaScriptContent());
-        
-        // Add navigation variables
-        context.setVariable("persons", allPersons);
-        context.setVariable("categories", allCategories);
-        context.setVariable("years", allYears);
-        context.setVariable("pageType", pageType);
-        context.setVariable("currentItem", currentItem);
-        context.setVariable("pageTitle", pageTitle);
-        context.setVariable("counts", counts);
-        
-        // Set filtered lists to all lists by default (for list pages)
-        context.setVariable("filteredPersons", allPersons);
-        context.setVariable("filteredCategories", allCategories);
-        context.setVariable("filteredYears", allYears);
     }
 
-    public String generateEntryPage(Metadata metadata, String title, LocalDateTime created, String htmlBody, List<String> categories, List<String> persons, List<Attachment> attachments, List<Entry> allEntries) {
-        Context context = new Context();
-        
-        // Setup common context variables for navigation
-        setupCommonContext(context, metadata, allEntries, "entry", title, title);
+    /**
+     * @param navigationData Navigation of all entries of the site
+     */
+    public String generateEntryPage(NavigationData navigationData, String entryId, String title, LocalDateTime created, String htmlBody, List<String> categories, List<String> persons, List<Attachment> attachments) {
+        Navigation navigation = navigationData.navigation("entry", title, title, BASE_PATH_SUBDIRECTORY,
+                navigationData.persons(), navigationData.categories(), navigationData.years());
 
         // Process HTML body to fix attachment URLs
         String processedHtmlBody = processAttachmentUrls(htmlBody);
 
-        // Set specific variables for the entry page
-        context.setVariable("title", title);
-        context.setVariable("body", processedHtmlBody != null ? processedHtmlBody : htmlBody);
-        context.setVariable("categories", categories);
-        context.setVariable("persons", persons);
-        context.setVariable("attachments", attachments);
-        context.setVariable("dateCreated", created.toLocalDate());
-        context.setVariable("basePath", BASE_PATH_SUBDIRECTORY);
-
-        boolean hasImages = attachments.stream().anyMatch(attachment -> 
-            attachment.mimeType() != null && attachment.mimeType().startsWith("image/"));
-        context.setVariable("hasImageAttachments", hasImages);
-        
-        // Count non-image attachments
-        long nonImageAttachmentsCount = attachments.stream().filter(attachment -> 
-            attachment.mimeType() == null || !attachment.mimeType().startsWith("image/")).count();
-        context.setVariable("nonImageAttachmentsCount", nonImageAttachmentsCount);
-
-
-        return templateEngine.process("entry", context);
+        EntryPage page = new EntryPage(navigation, title, created.toLocalDate(),
+                processedHtmlBody != null ? processedHtmlBody : htmlBody, categories, persons, attachments);
+        return process(entryId, "entry", navigation, () -> renderer.renderEntry(page));
     }
 
-    public String generateMainPage(Metadata metadata, List<Entry> entries) {
-        return generateMainPage(metadata, entries, "main", null);
+    /**
+     * @param navigationData Navigation of all entries of the site
+     * @param entries        All entries of the site
+     */
+    public String generateMainPage(NavigationData navigationData, List<Entry> entries) {
+        return generateMainPage(navigationData, entries, "main", null);
     }
 
+    /**
+     * The page listing the entries of a person, category, year or day, with the navigation of the listed entries.
+     */
     public String generateMainPage(Metadata metadata, List<Entry> entries, String pageType, String currentItem) {
+        return generateMainPage(getNavigationData(metadata, entries), entries, pageType, currentItem);
+    }
+
+    private String generateMainPage(NavigationData navigationData, List<Entry> entries, String pageType, String currentItem) {
         // Create filtered lists based on the current entries
         List<String> filteredCategories = entries.stream()
                 .flatMap(e -> e.categories().stream())
@@ -191,16 +161,7 @@ public class HtmlGenerator {
                 .distinct()
                 .sorted(czechCollator::compare)
                 .toList();
-        
-        List<String> filteredYears = entries.stream()
-                .map(e -> String.valueOf(e.created().getYear()))
-                .distinct()
-                .sorted()
-                .toList().reversed();
 
-        // Set up the context
-        Context context = new Context();
-        
         // Set page title based on page type
         String pageTitle = "Journal Entries";
         if (pageType.equals("person") && currentItem != null) {
@@ -209,43 +170,28 @@ public class HtmlGenerator {
             pageTitle = "Entries for Category: " + currentItem;
         } else if (pageType.equals("year") && currentItem != null) {
             pageTitle = "Entries for Year: " + currentItem;
+        } else if (pageType.equals("day") && currentItem != null) {
+            pageTitle = "Entries for Day: " + currentItem;
         }
-        
-        // Setup common context variables
-        setupCommonContext(context, metadata, entries, pageType, currentItem, pageTitle);
 
-        List<Entry> entriesWithFileName = entries.stream().map(e -> new Entry(e, fileService.getEntryFileName(e))).toList();
-
-        // Add journal entries
-        context.setVariable("journalEntries", entriesWithFileName);
-        
-        // Override filtered lists with actual filtered data
-        context.setVariable("filteredPersons", filteredPersons);
-        context.setVariable("filteredCategories", filteredCategories);
-        context.setVariable("filteredYears", filteredYears);
+        // Counts of the filtered entries, the years of the filtered entries are the navigation years
+        Navigation navigation = navigationData.navigation(pageType, currentItem, pageTitle,
+                currentItem != null ? BASE_PATH_SUBDIRECTORY : "",
+                filteredPersons, filteredCategories, navigationData.years());
 
-        if(currentItem != null) {
-            context.setVariable("basePath", BASE_PATH_SUBDIRECTORY);
-        } else {
-            context.setVariable("basePath", "");
-        }
+        List<Entry> entriesWithFileName = entries.stream().map(e -> new Entry(e, fileService.getEntryFileName(e))).toList();
 
-        return templateEngine.process("journal_entries_display", context);
+        EntryListPage page = new EntryListPage(navigation, entriesWithFileName);
+        return process(null, "journal_entries_display", navigation, () -> renderer.renderEntryList(page));
     }
     
     /**
      * Generic method to generate any type of list page (persons, categories, years)
-     * @param listType The type of list to generate ("persons", "categories", or "years")
-     * @param metadata The metadata object
-     * @param allEntries The list of all entries
+     * @param listType The type of list to generate ("persons", "categories", "years" or "days")
+     * @param navigationData Navigation of all entries of the site
      * @return The generated HTML
      */
-    public String generateListPage(String listType, Metadata metadata, List<Entry> allEntries) {
-        Context context = new Context();
-        
-        // Variables to be set based on list type
-        List<String> items;
-        Map<String, Integer> counts = new HashMap<>();
+    public String generateListPage(String listType, NavigationData navigationData) {
         String pageType = listType + "_list";
         String pageTitle = capitalizeFirstLetter(listType) + " List";
         String listTitle = "All " + capitalizeFirstLetter(listType);
@@ -259,83 +205,35 @@ public class HtmlGenerator {
         }
 
         // Get items based on list type
-        items = switch (listType) {
-            case "persons" -> metadata.people().values().stream()
-                    .map(PersonMetadata::getFullName)
-                    .distinct()
-                    .sorted(czechCollator::compare)
-                    .toList();
-            case "categories" -> metadata.categories().values().stream()
-                    .map(CategoryMetadata::title)
-                    .distinct()
-                    .sorted(czechCollator::compare)
-                    .toList();
-            case "years" -> allEntries.stream()
-                    .map(e -> String.valueOf(e.created().getYear()))
-                    .distinct()
-                    .sorted()
-                    .toList();
+        List<String> items = switch (listType) {
+            case "persons" -> navigationData.persons();
+            case "categories" -> navigationData.categories();
+            case "years" -> navigationData.years().reversed();
+            case "days" -> navigationData.days();
             default -> throw new IllegalArgumentException("Invalid list type: " + listType);
         };
-        
-        // Calculate counts for all entity types, not just the current list type
-        
-        // Get all persons, categories, and years
-        List<String> allPersons = metadata.people().values().stream()
-                .map(PersonMetadata::getFullName)
-                .distinct()
-                .sorted(czechCollator::compare)
-                .toList();
-                
-        List<String> allCategories = metadata.categories().values().stream()
-                .map(CategoryMetadata::title)
-                .distinct()
-                .sorted(czechCollator::compare)
-                .toList();
-                
-        List<String> allYears = allEntries.stream()
-                .map(e -> String.valueOf(e.created().getYear()))
-                .distinct()
-                .sorted()
-                .toList();
-        
-        // Count entries for each person
-        for (String person : allPersons) {
-            int count = (int) allEntries.stream()
-                    .filter(e -> e.persons().contains(person))
-                    .count();
-            counts.put(person, count);
-        }
-        
-        // Count entries for each category
-        for (String category : allCategories) {
-            int count = (int) allEntries.stream()
-                    .filter(e -> e.categories().contains(category))
-                    .count();
-            counts.put(category, count);
-        }
-        
-        // Count entries for each year
-        for (String year : allYears) {
-            int count = (int) allEntries.stream()
-                    .filter(e -> String.valueOf(e.created().getYear()).equals(year))
-                    .count();
-            counts.put(year, count);
-        }
-        
-        // Setup common context variables
-        setupCommonContext(context, metadata, allEntries, pageType, null, pageTitle);
-        
-        // Add specific variables for the generic template
-        context.setVariable("items", items);
-        context.setVariable("counts", counts);
-        context.setVariable("itemType", itemType);
-        context.setVariable("listTitle", listTitle);
-        context.setVariable("basePath", BASE_PATH_SUBDIRECTORY);
-        
-        return templateEngine.process("generic_list", context);
+
+        Navigation navigation = navigationData.navigation(pageType, null, pageTitle, BASE_PATH_SUBDIRECTORY,
+                navigationData.persons(), navigationData.categories(), navigationData.years());
+        ItemListPage page = new ItemListPage(navigation, listTitle, itemType, items);
+        return process(null, "generic_list", navigation, () -> renderer.renderItemList(page));
     }
     
+    /**
+     * Renders the page and records the render time per template
+     *
+     * @param entryId Id of the entry of an entry page, null for listing pages
+     */
+    private String process(String entryId, String template, Navigation navigation, Supplier<String> render) {
+        TemplateRenderEvent renderEvent = new TemplateRenderEvent();
+        renderEvent.begin();
+        long renderStart = metrics.start();
+        String html = render.get();
+        metrics.recordRender(template, renderStart, html.length());
+        renderEvent.finish(entryId, template, navigation.pageType(), navigation.currentItem(), html.length());
+        return html;
+    }
+
     /**
      * Helper method to capitalize the first letter of a string
      */
@@ -347,30 +245,29 @@ public class HtmlGenerator {
     }
     
     // Maintain backward compatibility with existing code
-    public String generatePersonsListPage(Metadata metadata, List<Entry> allEntries) {
-        return generateListPage("persons", metadata, allEntries);
+    public String generatePersonsListPage(NavigationData navigationData) {
+        return generateListPage("persons", navigationData);
     }
     
-    public String generateCategoriesListPage(Metadata metadata, List<Entry> allEntries) {
-        return generateListPage("categories", metadata, allEntries);
+    public String generateCategoriesListPage(NavigationData navigationData) {
+        return generateListPage("categories", navigationData);
     }
     
-    public String generateYearsListPage(List<Entry> allEntries, Metadata metadata) {
-        return generateListPage("years", metadata, allEntries);
+    public String generateYearsListPage(NavigationData navigationData) {
+        return generateListPage("years", navigationData);
     }
 
     /**
      * Processes HTML content to replace attachment URLs containing \Attachments
      * with the correct relative path ../attachments
      */
-    private String processAttachmentUrls(String htmlContent) {
+    String processAttachmentUrls(String htmlContent) {
         if (htmlContent == null) {
             return null;
         }
 
-        // Pattern to find img tags with src attributes containing \Attachments
-        Pattern pattern = Pattern.compile("(<img[^>]+src\\s*=\\s*[\"'])([^\"']*\\\\Attachments[^\"']*?)([\"'][^>]*>)", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(htmlContent);
+        // Find img tags with src attributes containing \Attachments
+        Matcher matcher = ATTACHMENT_IMAGE_PATTERN.matcher(htmlContent);
 
         StringBuilder result = new StringBuilder();
 
@@ -394,4 +291,16 @@ public class HtmlGenerator {
 
     }
 
+    /**
+     * Navigation lists and entry counts computed for a list of entries.
+     */
+    public record NavigationData(List<String> persons, List<String> categories, List<String> years, List<String> days,
+                                 Map<String, Integer> counts) {
+
+        private Navigation navigation(String pageType, String currentItem, String pageTitle, String basePath,
+                              List<String> persons, List<String> categories, List<String> years) {
+            return new Navigation(pageType, currentItem, pageTitle, basePath, persons, categories, years, counts);
+        }
+    }
+
 }
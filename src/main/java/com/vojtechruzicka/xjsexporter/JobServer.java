@@ -0,0 +1,572 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vojtechruzicka.xjsexporter.model.json.JobRequestJson;
+import com.vojtechruzicka.xjsexporter.model.json.JobStatusJson;
+import com.vojtechruzicka.xjsexporter.service.JournalCache;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.terminal.impl.DumbTerminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command running {@code extract} and {@code generate} jobs submitted over a local HTTP API.
+ * <p>
+ * Jobs wait in a bounded queue and run on a fixed number of threads, each with its own metrics and
+ * generators like the journals of {@code export-journals}. The page renderer and a {@link JournalCache}
+ * of parsed metadata and loaded intermediate data are shared by all jobs, so repeated jobs of the same
+ * journal skip parsing. Running jobs report their progress and can be cancelled; a cancelled job keeps
+ * its checkpoint and can be resumed.
+ */
+@Slf4j
+@ShellComponent
+public class JobServer {
+
+    private static final String JOBS_PATH = "/jobs";
+    private static final int MAX_FINISHED_JOBS = 100;
+    private static final int MAX_OUTPUT_CHARS = 16 * 1024;
+
+    private final PipelineFactory pipelines;
+    private final Terminal terminal;
+    private final ObjectMapper objectMapper;
+
+    public JobServer(PipelineFactory pipelines, Terminal terminal) {
+        this.pipelines = pipelines;
+        this.terminal = terminal;
+        this.objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    @ShellMethod(value = "Runs extract and generate jobs submitted over a local HTTP API", key = "serve-jobs")
+    public CommandResult serveJobs(
+            @ShellOption(defaultValue = "8090", help = "HTTP port to listen on") int port,
+            @ShellOption(defaultValue = "2", help = "Number of jobs running at the same time") int concurrency,
+            @ShellOption(defaultValue = "16", help = "Number of jobs waiting to run, further jobs are rejected") int queueSize,
+            @ShellOption(defaultValue = "8",
+                    help = "Number of journals whose metadata and intermediate data are kept in memory between jobs") int cacheSize) {
+
+        if (concurrency < 1 || queueSize < 1 || cacheSize < 1) {
+            return CommandResult.failure("Failed to start job server: concurrency, queue size and cache size must be at least 1");
+        }
+        // Metadata and intermediate data are cached separately
+        Jobs jobs = new Jobs(new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize)), new JournalCache(cacheSize * 2));
+
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        } catch (IOException e) {
+            return CommandResult.failure("Could not start server on port " + port + ": " + e.getMessage());
+        }
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        // Terminal providers and templates are resolved through the context class loader, which server and pool threads do not inherit
+        ClassLoader classLoader = getClass().getClassLoader();
+        server.createContext(JOBS_PATH, exchange -> {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            try (exchange) {
+                try {
+                    handle(exchange, jobs);
+                } catch (RuntimeException e) {
+                    log.error("Failed to serve {}", exchange.getRequestURI(), e);
+                    // Headers can only be sent once, a failure after them just ends the response
+                    if (exchange.getResponseCode() < 0) {
+                        exchange.sendResponseHeaders(500, -1);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Failed to serve {}: {}", exchange.getRequestURI(), e.getMessage());
+            }
+        });
+        server.start();
+
+        terminal.writer().println("Accepting jobs at http://localhost:" + port + JOBS_PATH + ", " + concurrency
+                + " at a time and " + queueSize + " waiting, press Ctrl+C to stop");
+        terminal.writer().flush();
+
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.stop(0);
+            // Running jobs are cancelled and keep their checkpoints
+            jobs.executor().shutdownNow();
+            try {
+                jobs.executor().awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return CommandResult.success("Job server stopped, " + jobs.submitted() + " jobs submitted, cache: " + jobs.cache().describe());
+    }
+
+    private void handle(HttpExchange exchange, Jobs jobs) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals(JOBS_PATH) || path.equals(JOBS_PATH + "/")) {
+            switch (method) {
+                case "GET" -> sendJson(exchange, 200, jobs.list().stream().map(Job::status).toList());
+                case "POST" -> submit(exchange, jobs);
+                default -> sendStatus(exchange, 405);
+            }
+            return;
+        }
+
+        Job job = jobs.get(path.substring(JOBS_PATH.length() + 1));
+        if (job == null) {
+            sendError(exchange, 404, "No job " + path.substring(JOBS_PATH.length() + 1));
+            return;
+        }
+        switch (method) {
+            case "GET" -> sendJson(exchange, 200, job.status());
+            case "DELETE" -> {
+                if (job.cancel(jobs.executor())) {
+                    sendJson(exchange, 202, job.status());
+                } else {
+                    sendError(exchange, 409, "Job " + job.id() + " is already " + job.state().name().toLowerCase());
+                }
+            }
+            default -> sendStatus(exchange, 405);
+        }
+    }
+
+    private void submit(HttpExchange exchange, Jobs jobs) throws IOException {
+        JobRequestJson request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = objectMapper.readValue(body, JobRequestJson.class);
+        } catch (JsonProcessingException e) {
+            sendError(exchange, 400, "Invalid job: " + e.getOriginalMessage());
+            return;
+        }
+        String problem = validate(request);
+        if (problem != null) {
+            sendError(exchange, 400, "Invalid job: " + problem);
+            return;
+        }
+
+        Job job;
+        try {
+            job = jobs.submit(request, this::newTerminal);
+        } catch (JobConflictException e) {
+            sendError(exchange, 409, e.getMessage());
+            return;
+        } catch (RejectedExecutionException e) {
+            sendError(exchange, 503, "The job queue is full, try again later");
+            return;
+        }
+        exchange.getResponseHeaders().set("Location", JOBS_PATH + "/" + job.id());
+        sendJson(exchange, 202, job.status());
+    }
+
+    /**
+     * @return Description of what is wrong with the job, or null if it can be run
+     */
+    private static String validate(JobRequestJson request) {
+        if (request == null || request.command() == null) {
+            return "command is missing, use extract or generate";
+        }
+        if (isBlank(request.intermediatePath())) {
+            return "intermediatePath is missing";
+        }
+        switch (request.command()) {
+            case "extract" -> {
+                if (isBlank(request.sourcePath())) {
+                    return "sourcePath is missing";
+                }
+            }
+            case "generate" -> {
+                if (isBlank(request.targetPath())) {
+                    return "targetPath is missing";
+                }
+                if (request.format() != null && !request.format().equals(Generator.FORMAT_HTML) && !request.format().equals(Generator.FORMAT_JSON)) {
+                    return "unknown format " + request.format() + ", use " + Generator.FORMAT_HTML + " or " + Generator.FORMAT_JSON;
+                }
+                if (!isBlank(request.shard())) {
+                    try {
+                        Shard.parse(request.shard());
+                    } catch (IllegalArgumentException e) {
+                        return e.getMessage();
+                    }
+                }
+            }
+            default -> {
+                return "unknown command " + request.command() + ", use extract or generate";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a job on a thread of the job pool, unless it was cancelled while waiting.
+     */
+    private void run(Job job, PipelineFactory.Pipeline pipeline) {
+        if (!job.start()) {
+            return;
+        }
+        Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+        JobRequestJson request = job.request();
+        terminal.writer().println("Job " + job.id() + " started: " + request.command() + " " + job.output());
+        terminal.writer().flush();
+        try {
+            CommandResult result = request.command().equals("extract")
+                    ? pipeline.extractor().extract(request.sourcePath(), request.intermediatePath(), false, request.resume())
+                    : pipeline.generator().generate(request.intermediatePath(), request.targetPath(),
+                    request.format() != null ? request.format() : Generator.FORMAT_HTML, false, request.precompress(), request.resume(),
+                    request.shard() != null ? request.shard() : "");
+            job.finish(result.failed() ? State.FAILED : State.SUCCEEDED, result.message());
+        } catch (CancellationException e) {
+            job.finish(State.CANCELLED, "Cancelled after " + pipeline.metrics().doneItems() + " of "
+                    + pipeline.metrics().plannedItems() + " items, resume to continue");
+        } catch (RuntimeException e) {
+            log.error("Job {} failed", job.id(), e);
+            job.finish(State.FAILED, "Job failed: " + e);
+        } finally {
+            // A cancellation arriving after the last check must not leak into the next job of the thread
+            Thread.interrupted();
+            terminal.writer().println("Job " + job.id() + " " + job.state().name().toLowerCase() + ": " + job.result());
+            terminal.writer().flush();
+        }
+    }
+
+    /**
+     * Each job writes its messages into its own terminal, reported with its status. A dumb terminal
+     * writes straight into the stream, unlike the terminals of {@link TerminalBuilder}, which pump it through a pseudo terminal.
+     */
+    private Terminal newTerminal(OutputStream output) {
+        try {
+            return new DumbTerminal(InputStream.nullInputStream(), output);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create job terminal", e);
+        }
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(value);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, Map.of("error", message));
+    }
+
+    private void sendStatus(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    /**
+     * Submitted jobs by ID, in the order of submission. Only the last {@value #MAX_FINISHED_JOBS} finished jobs are kept.
+     */
+    private final class Jobs {
+
+        private final ThreadPoolExecutor executor;
+        private final JournalCache cache;
+        private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+        private final AtomicLong ids = new AtomicLong();
+
+        Jobs(ThreadPoolExecutor executor, JournalCache cache) {
+            this.executor = executor;
+            this.cache = cache;
+        }
+
+        ThreadPoolExecutor executor() {
+            return executor;
+        }
+
+        JournalCache cache() {
+            return cache;
+        }
+
+        long submitted() {
+            return ids.get();
+        }
+
+        synchronized Job get(String id) {
+            return jobs.get(id);
+        }
+
+        synchronized List<Job> list() {
+            return new ArrayList<>(jobs.values());
+        }
+
+        /**
+         * Queues a job, unless it writes into a directory an unfinished job reads or writes, reads a directory an
+         * unfinished job writes into, or keeps the same checkpoint and reports as an unfinished job.
+         *
+         * @throws JobConflictException       If the job conflicts with an unfinished job
+         * @throws RejectedExecutionException If the queue is full
+         */
+        synchronized Job submit(JobRequestJson request, TerminalFactory terminals) {
+            Path output = Job.outputOf(request);
+            Footprint footprint = Footprint.of(request);
+            for (Job other : jobs.values()) {
+                String conflict = other.isActive() ? footprint.conflictWith(other.footprint()) : null;
+                if (conflict != null) {
+                    throw new JobConflictException("Job " + other.id() + " " + conflict);
+                }
+            }
+            ByteArrayOutputStream messages = new ByteArrayOutputStream();
+            Terminal jobTerminal = terminals.create(messages);
+            PipelineFactory.Pipeline pipeline = pipelines.create(jobTerminal, cache);
+            Job job = new Job(String.valueOf(ids.get() + 1), request, output, footprint, messages, jobTerminal, pipeline);
+            synchronized (job) {
+                // The job waits for its future before it starts
+                try {
+                    job.future = executor.submit(() -> run(job, pipeline));
+                } catch (RejectedExecutionException e) {
+                    job.finish(State.CANCELLED, "Rejected");
+                    throw e;
+                }
+            }
+            ids.incrementAndGet();
+            jobs.put(job.id(), job);
+            prune();
+            return job;
+        }
+
+        private void prune() {
+            long finished = jobs.values().stream().filter(job -> !job.isActive()).count();
+            Iterator<Job> oldest = jobs.values().iterator();
+            while (finished > MAX_FINISHED_JOBS && oldest.hasNext()) {
+                if (!oldest.next().isActive()) {
+                    oldest.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+
+    /**
+     * The directories a job reads and writes, and the run whose checkpoint and reports it keeps in its
+     * intermediate directory. A generate reads the intermediate directory, but only writes its own run files there.
+     *
+     * @param reads  Directories and archives read by the job
+     * @param writes Directories and archives written by the job
+     * @param run    The intermediate directory and run name of the checkpoint and reports of the job
+     */
+    private record Footprint(List<Path> reads, List<Path> writes, String run) {
+
+        static Footprint of(JobRequestJson request) {
+            Path intermediate = normalize(request.intermediatePath());
+            if (request.command().equals("extract")) {
+                return new Footprint(List.of(normalize(request.sourcePath())), List.of(intermediate), intermediate + " as extract");
+            }
+            Shard shard = isBlank(request.shard()) ? null : Shard.parse(request.shard());
+            return new Footprint(List.of(intermediate), List.of(normalize(request.targetPath())),
+                    intermediate + " as " + Generator.getRunName(shard));
+        }
+
+        /**
+         * @return Why a job with this footprint can't run next to a job with the other one, or null if it can
+         */
+        String conflictWith(Footprint other) {
+            for (Path write : writes) {
+                for (Path otherWrite : other.writes) {
+                    if (overlap(write, otherWrite)) {
+                        return "is already writing into " + otherWrite;
+                    }
+                }
+                for (Path otherRead : other.reads) {
+                    if (overlap(write, otherRead)) {
+                        return "is reading " + otherRead;
+                    }
+                }
+            }
+            for (Path read : reads) {
+                for (Path otherWrite : other.writes) {
+                    if (overlap(read, otherWrite)) {
+                        return "is writing into " + otherWrite;
+                    }
+                }
+            }
+            if (run.equals(other.run)) {
+                return "keeps its checkpoint and reports in " + run + " too";
+            }
+            return null;
+        }
+
+        private static boolean overlap(Path path, Path other) {
+            return path.startsWith(other) || other.startsWith(path);
+        }
+
+        private static Path normalize(String path) {
+            return Path.of(path).toAbsolutePath().normalize();
+        }
+    }
+
+    private static final class JobConflictException extends RuntimeException {
+        JobConflictException(String message) {
+            super(message);
+        }
+    }
+
+    private interface TerminalFactory {
+        Terminal create(OutputStream output);
+    }
+
+    private static final class Job {
+
+        private final String id;
+        private final JobRequestJson request;
+        private final Path output;
+        private final Footprint footprint;
+        private final ByteArrayOutputStream messages;
+        private final Terminal terminal;
+        private final PipelineFactory.Pipeline pipeline;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private State state = State.QUEUED;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private String result;
+        private boolean cancelRequested;
+        private Future<?> future;
+
+        Job(String id, JobRequestJson request, Path output, Footprint footprint, ByteArrayOutputStream messages, Terminal terminal, PipelineFactory.Pipeline pipeline) {
+            this.id = id;
+            this.request = request;
+            this.output = output;
+            this.footprint = footprint;
+            this.messages = messages;
+            this.terminal = terminal;
+            this.pipeline = pipeline;
+        }
+
+        /**
+         * The directory a job writes into: the intermediate directory of an extract, the target of a generate.
+         */
+        static Path outputOf(JobRequestJson request) {
+            String output = request.command().equals("extract") ? request.intermediatePath() : request.targetPath();
+            return Path.of(output).toAbsolutePath().normalize();
+        }
+
+        String id() {
+            return id;
+        }
+
+        JobRequestJson request() {
+            return request;
+        }
+
+        Path output() {
+            return output;
+        }
+
+        Footprint footprint() {
+            return footprint;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized String result() {
+            return result;
+        }
+
+        synchronized boolean isActive() {
+            return state == State.QUEUED || state == State.RUNNING;
+        }
+
+        synchronized boolean start() {
+            if (state != State.QUEUED) {
+                return false;
+            }
+            state = State.RUNNING;
+            startedAt = LocalDateTime.now();
+            return true;
+        }
+
+        synchronized void finish(State finalState, String finalResult) {
+            // A command stopped by the cancellation may fail on its way out rather than report the cancellation
+            state = cancelRequested && finalState == State.FAILED ? State.CANCELLED : finalState;
+            result = finalResult;
+            finishedAt = LocalDateTime.now();
+            terminal.writer().flush();
+            try {
+                terminal.close();
+            } catch (IOException e) {
+                log.debug("Could not close terminal of job {}: {}", id, e.getMessage());
+            }
+        }
+
+        /**
+         * Cancels a waiting job, or interrupts a running one, which stops before its next item.
+         *
+         * @return Whether the job was still waiting or running
+         */
+        synchronized boolean cancel(ThreadPoolExecutor executor) {
+            if (state == State.QUEUED) {
+                future.cancel(false);
+                // Frees the place of the job in the queue
+                executor.purge();
+                finish(State.CANCELLED, "Cancelled before it started");
+                return true;
+            }
+            if (state == State.RUNNING) {
+                cancelRequested = true;
+                future.cancel(true);
+                return true;
+            }
+            return false;
+        }
+
+        synchronized JobStatusJson status() {
+            if (state == State.RUNNING) {
+                terminal.writer().flush();
+            }
+            String text = messages.toString(StandardCharsets.UTF_8);
+            if (text.length() > MAX_OUTPUT_CHARS) {
+                text = "..." + text.substring(text.length() - MAX_OUTPUT_CHARS);
+            }
+            return new JobStatusJson(id, request.command(),
+                    cancelRequested && state == State.RUNNING ? "CANCELLING" : state.name(),
+                    submittedAt, startedAt, finishedAt,
+                    pipeline.metrics().doneItems(), pipeline.metrics().plannedItems(), result, text);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.EntryMetadata;
+import com.vojtechruzicka.xjsexporter.model.Metadata;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.output.OutputSink;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.InlineImageExtractor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import io.micrometer.common.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Command keeping the generated HTML in sync with a live XJS journal.
+ * <p>
+ * After an initial full export the source directory, the entry directories and {@code Attachments/}
+ * are watched. Bursts of file events are debounced and only the affected entries are extracted again.
+ * Parsed metadata and loaded entries stay in memory between runs, so only the pages whose content
+ * depends on the changed entries are rendered and written.
+ */
+@Slf4j
+@ShellComponent
+public class JournalWatcher {
+
+    private static final String JOURNAL_FILE = "journal.xjn";
+    private static final String ATTACHMENTS_DIR = "Attachments";
+
+    private final Extractor extractor;
+    private final MetadataExtractor metadataExtractor;
+    private final JsonIntermediateStorage jsonStorage;
+    private final Generator generator;
+    private final FileService fileService;
+    private final OutputSinkFactory outputSinks;
+    private final Terminal terminal;
+
+    public JournalWatcher(Extractor extractor, MetadataExtractor metadataExtractor, JsonIntermediateStorage jsonStorage, Generator generator, FileService fileService, OutputSinkFactory outputSinks, Terminal terminal) {
+        this.extractor = extractor;
+        this.metadataExtractor = metadataExtractor;
+        this.jsonStorage = jsonStorage;
+        this.generator = generator;
+        this.fileService = fileService;
+        this.outputSinks = outputSinks;
+        this.terminal = terminal;
+    }
+
+    @ShellMethod(value = "Watches an XJS journal and incrementally exports changed entries until interrupted", key = "watch")
+    public CommandResult watch(
+            @ShellOption(defaultValue = "C:\\Users\\vojte\\Dropbox\\_Archiv\\Denik\\XJS\\Deník\\",
+                    help = "Source directory containing XJS journal entries") String sourcePath,
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\intermediate-data\\",
+                    help = "Target directory for intermediate files") String intermediatePath,
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\OUT\\",
+                    help = "Target directory for generated HTML files") String targetPath,
+            @ShellOption(defaultValue = "300",
+                    help = "Quiet period in milliseconds to wait for further changes before exporting") long debounce) {
+
+        final String finalSourcePath = sourcePath.endsWith(File.separator) ? sourcePath : sourcePath + File.separator;
+        final String finalIntermediatePath = intermediatePath.endsWith(File.separator) ? intermediatePath : intermediatePath + File.separator;
+        final String finalTargetPath = targetPath.endsWith(File.separator) ? targetPath : targetPath + File.separator;
+
+        if (OutputSinkFactory.isArchive(targetPath)) {
+            return CommandResult.failure("Watch mode only supports a target directory, not an archive: " + targetPath);
+        }
+        if (SourceFileSystems.isArchive(sourcePath)) {
+            return CommandResult.failure("Watch mode only supports a source directory, not an archive: " + sourcePath);
+        }
+
+        WatchState state;
+        try {
+            state = fullExport(finalSourcePath, finalIntermediatePath, finalTargetPath);
+        } catch (IOException e) {
+            return CommandResult.failure("Initial export failed: " + e.getMessage());
+        }
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+            registerDirectories(watchService, watchedDirectories, state);
+            println("Watching " + finalSourcePath + " for changes, press Ctrl+C to stop");
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                // Collect events until nothing has changed for the debounce period
+                while (key != null) {
+                    collectChanges(key, watchedDirectories, changed);
+                    key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+                }
+
+                long start = System.nanoTime();
+                try {
+                    state = update(state, changed);
+                    registerDirectories(watchService, watchedDirectories, state);
+                } catch (IOException e) {
+                    println("Incremental export failed: " + e.getMessage());
+                    continue;
+                }
+                log.info("Processed {} changed files in {} ms", changed.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            return CommandResult.failure("Could not watch source directory: " + e.getMessage());
+        }
+        return CommandResult.success("Watch stopped");
+    }
+
+    /**
+     * Runs the full extraction and generation and captures the in-memory state used by incremental runs.
+     */
+    WatchState fullExport(String sourcePath, String intermediatePath, String targetPath) throws IOException {
+        long start = System.nanoTime();
+        CommandResult extracted = extractor.extract(sourcePath, intermediatePath, false, false);
+        println(extracted.message());
+        if (extracted.failed()) {
+            throw new IOException(extracted.message());
+        }
+
+        Metadata sourceMetadata = metadataExtractor.extractMetadata(sourcePath);
+        Map<String, Entry> entries = new HashMap<>();
+        jsonStorage.loadAll(intermediatePath).entries().forEach(entry -> entries.put(entry.id(), entry));
+
+        Map<String, String> markdownFiles = new HashMap<>();
+        sourceMetadata.entries().values().forEach(entryMetadata ->
+                markdownFiles.put(entryMetadata.id(), jsonStorage.getEntryMarkdownFileName(entryMetadata)));
+        WatchState state = new WatchState(sourcePath, intermediatePath, targetPath, sourceMetadata, entries, markdownFiles);
+        List<Entry> allEntries = state.entryList();
+        try (OutputSink sink = outputSinks.open(targetPath, false)) {
+            generator.writeSite(jsonStorage.buildMetadata(allEntries), allEntries, intermediatePath, sink, path -> true);
+            sink.commit();
+        }
+        state.pages = generator.getPagePaths(allEntries);
+        println("Full export of " + entries.size() + " entries finished in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return state;
+    }
+
+    /**
+     * Exports the entries and attachments affected by the changed source files.
+     *
+     * @param state   State of the previous run, updated in place unless a full export replaces it
+     * @param changed Absolute normalized paths of the changed source files
+     * @return The state after the update
+     */
+    WatchState update(WatchState state, Set<Path> changed) throws IOException {
+        long start = System.nanoTime();
+        Metadata sourceMetadata = state.sourceMetadata;
+
+        Path journalFile = Path.of(state.sourcePath, JOURNAL_FILE).toAbsolutePath().normalize();
+        if (changed.contains(journalFile)) {
+            sourceMetadata = metadataExtractor.extractMetadata(state.sourcePath);
+            if (!sourceMetadata.people().equals(state.sourceMetadata.people()) || !sourceMetadata.categories().equals(state.sourceMetadata.categories())) {
+                // Names are resolved into every entry, start over
+                println("Persons or categories changed, running full export");
+                WatchState fresh = fullExport(state.sourcePath, state.intermediatePath, state.targetPath);
+                deleteStalePages(state, state.pages, fresh.pages);
+                return fresh;
+            }
+        }
+        Changes changes = findChanges(state.sourceMetadata, sourceMetadata, changed);
+        state.sourceMetadata = sourceMetadata;
+        Set<String> dirtyEntries = changes.entries();
+        Set<AttachmentMetadata> dirtyAttachments = changes.attachments();
+        for (AttachmentMetadata attachment : dirtyAttachments) {
+            jsonStorage.copyAttachment(state.intermediatePath, attachment);
+        }
+
+        if (dirtyEntries.isEmpty() && dirtyAttachments.isEmpty()) {
+            return state;
+        }
+
+        // Extract and reload the dirty entries
+        List<Entry> before = state.entryList();
+        Path entriesDir = jsonStorage.getEntriesDirectory(state.intermediatePath);
+        Path attachmentsDir = Path.of(state.intermediatePath).resolve("attachments");
+        List<Entry> changedBefore = new ArrayList<>();
+        List<Entry> changedAfter = new ArrayList<>();
+        for (String id : dirtyEntries) {
+            Entry oldEntry = state.entries.remove(id);
+            EntryMetadata entryMetadata = sourceMetadata.entries().get(id);
+            String oldFile = state.markdownFiles.remove(id);
+            if (oldEntry != null) {
+                changedBefore.add(oldEntry);
+            }
+            if (entryMetadata != null) {
+                Path written = extractor.extractEntry(state.intermediatePath, sourceMetadata, entryMetadata);
+                Entry entry = jsonStorage.loadEntry(written, attachmentsDir);
+                if (entry != null) {
+                    state.entries.put(id, entry);
+                    state.markdownFiles.put(id, written.getFileName().toString());
+                    changedAfter.add(entry);
+                }
+            }
+            String newFile = state.markdownFiles.get(id);
+            if (oldFile != null && !oldFile.equals(newFile)) {
+                Files.deleteIfExists(entriesDir.resolve(oldFile));
+            }
+        }
+        List<Entry> after = state.entryList();
+
+        // Navigation with counts is part of every page, changed counts mean all pages are outdated
+        Set<String> selected = new HashSet<>();
+        boolean navigationChanged = navigationChanged(before, after);
+        if (!navigationChanged) {
+            selected.addAll(List.of(Generator.INDEX_PAGE, Generator.PERSONS_LIST_PAGE, Generator.CATEGORIES_LIST_PAGE, Generator.YEARS_LIST_PAGE, Generator.DAYS_LIST_PAGE));
+            selected.addAll(generator.getPagePaths(changedBefore));
+            selected.addAll(generator.getPagePaths(changedAfter));
+        }
+        dirtyAttachments.forEach(attachment -> selected.add(fileService.getAttachmentPath(attachment.name())));
+
+        Set<String> pages = generator.getPagePaths(after);
+        deleteStalePages(state, state.pages, pages);
+        state.pages = pages;
+        try (OutputSink sink = outputSinks.open(state.targetPath, false)) {
+            generator.writeSite(jsonStorage.buildMetadata(after), after, state.intermediatePath, sink,
+                    path -> (navigationChanged ? !path.startsWith("attachments/") || selected.contains(path) : selected.contains(path))
+                            // Inline images are content addressed, new ones are the only ones missing
+                            || path.startsWith(InlineImageExtractor.SITE_PREFIX) && !Files.exists(Path.of(state.targetPath).resolve(path)));
+            sink.commit();
+        }
+
+        println("Updated " + dirtyEntries.size() + " entries and " + dirtyAttachments.size() + " attachments"
+                + (navigationChanged ? ", navigation changed so all pages were regenerated" : "")
+                + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return state;
+    }
+
+    /**
+     * Finds the entries and attachments affected by a change of the journal metadata and of source files.
+     * Entries using a changed attachment are affected too, their pages list its size.
+     *
+     * @param before  Metadata of the previous run
+     * @param after   Current metadata, the same instance if journal.xjn did not change
+     * @param changed Absolute normalized paths of the changed source files
+     * @return IDs of the entries to extract again, removed entries included, and the attachments to copy again
+     */
+    static Changes findChanges(Metadata before, Metadata after, Set<Path> changed) {
+        Set<String> dirtyEntries = new HashSet<>();
+        Set<AttachmentMetadata> dirtyAttachments = new HashSet<>();
+        if (after != before) {
+            Set<String> ids = new HashSet<>(before.entries().keySet());
+            ids.addAll(after.entries().keySet());
+            for (String id : ids) {
+                if (!Objects.equals(before.entries().get(id), after.entries().get(id))) {
+                    dirtyEntries.add(id);
+                }
+            }
+            after.attachments().forEach((id, attachment) -> {
+                if (!attachment.equals(before.attachments().get(id))) {
+                    dirtyAttachments.add(attachment);
+                }
+            });
+        }
+
+        // Map changed files to the entries and attachments they belong to
+        for (Path path : changed) {
+            for (EntryMetadata entryMetadata : after.entries().values()) {
+                if (StringUtils.isNotBlank(entryMetadata.location()) && path.equals(Path.of(entryMetadata.location()).toAbsolutePath().normalize())) {
+                    dirtyEntries.add(entryMetadata.id());
+                }
+            }
+            for (AttachmentMetadata attachment : after.attachments().values()) {
+                if (attachment.absoluteSourcePath() != null && path.equals(Path.of(attachment.absoluteSourcePath()).toAbsolutePath().normalize())) {
+                    dirtyAttachments.add(attachment);
+                }
+            }
+        }
+        for (AttachmentMetadata attachment : dirtyAttachments) {
+            after.entries().values().stream()
+                    .filter(entryMetadata -> entryMetadata.attachmentIds().contains(attachment.id()))
+                    .forEach(entryMetadata -> dirtyEntries.add(entryMetadata.id()));
+        }
+        return new Changes(dirtyEntries, dirtyAttachments);
+    }
+
+    /**
+     * Whether the navigation shown on every page differs, which means all pages have to be written again.
+     */
+    static boolean navigationChanged(List<Entry> before, List<Entry> after) {
+        return !navigationFingerprint(before).equals(navigationFingerprint(after));
+    }
+
+    /**
+     * Entry counts per person, category and year, which are shown in the navigation of every page.
+     */
+    private static Map<String, Integer> navigationFingerprint(List<Entry> entries) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Entry entry : entries) {
+            entry.persons().forEach(person -> counts.merge("person:" + person, 1, Integer::sum));
+            entry.categories().forEach(category -> counts.merge("category:" + category, 1, Integer::sum));
+            counts.merge("year:" + entry.created().getYear(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private void deleteStalePages(WatchState state, Set<String> before, Set<String> after) throws IOException {
+        for (String page : before) {
+            if (!after.contains(page)) {
+                Files.deleteIfExists(Path.of(state.targetPath).resolve(page));
+            }
+        }
+    }
+
+    private void registerDirectories(WatchService watchService, Map<WatchKey, Path> watchedDirectories, WatchState state) throws IOException {
+        Set<Path> directories = new HashSet<>();
+        Path sourceDir = Path.of(state.sourcePath).toAbsolutePath().normalize();
+        directories.add(sourceDir);
+        Path attachmentsDir = sourceDir.resolve(ATTACHMENTS_DIR);
+        if (Files.isDirectory(attachmentsDir)) {
+            try (Stream<Path> tree = Files.walk(attachmentsDir)) {
+                tree.filter(Files::isDirectory).forEach(directories::add);
+            }
+        }
+        for (EntryMetadata entryMetadata : state.sourceMetadata.entries().values()) {
+            if (StringUtils.isNotBlank(entryMetadata.location())) {
+                Path parent = Path.of(entryMetadata.location()).toAbsolutePath().normalize().getParent();
+                if (parent != null && Files.isDirectory(parent)) {
+                    directories.add(parent);
+                }
+            }
+        }
+
+        directories.removeAll(watchedDirectories.values());
+        for (Path directory : directories) {
+            WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, directory);
+        }
+    }
+
+    private void collectChanges(WatchKey key, Map<WatchKey, Path> watchedDirectories, Set<Path> changed) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory != null && event.context() instanceof Path name) {
+                changed.add(directory.resolve(name).toAbsolutePath().normalize());
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    private void println(String message) {
+        terminal.writer().println(message);
+        terminal.writer().flush();
+    }
+
+    /**
+     * @param entries     IDs of the entries to extract again
+     * @param attachments Attachments to copy again
+     */
+    record Changes(Set<String> entries, Set<AttachmentMetadata> attachments) {
+    }
+
+    /**
+     * Parsed source metadata and loaded entries kept between incremental runs.
+     */
+    static class WatchState {
+
+        private final String sourcePath;
+        private final String intermediatePath;
+        private final String targetPath;
+        private final Map<String, Entry> entries;
+        // Names of the Markdown files of the entries, by entry ID
+        private final Map<String, String> markdownFiles;
+        private Metadata sourceMetadata;
+        private Set<String> pages = Set.of();
+
+        private WatchState(String sourcePath, String intermediatePath, String targetPath, Metadata sourceMetadata, Map<String, Entry> entries,
+                           Map<String, String> markdownFiles) {
+            this.sourcePath = sourcePath;
+            this.intermediatePath = intermediatePath;
+            this.targetPath = targetPath;
+            this.sourceMetadata = sourceMetadata;
+            this.entries = entries;
+            this.markdownFiles = markdownFiles;
+        }
+
+        List<Entry> entryList() {
+            return new ArrayList<>(entries.values());
+        }
+
+        /**
+         * Site relative paths of the pages of the last run.
+         */
+        Set<String> pages() {
+            return pages;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.vojtechruzicka.xjsexporter;
 import com.vojtechruzicka.xjsexporter.model.EntryMetadata;
 import com.vojtechruzicka.xjsexporter.model.Metadata;
 import com.vojtechruzicka.xjsexporter.model.PersonMetadata;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
 import io.micrometer.common.util.StringUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -10,8 +11,8 @@ import org.jsoup.nodes.Element;
 import org.jsoup.parser.Parser;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -20,20 +21,31 @@ import java.util.Map;
 @Service
 public class MetadataExtractor {
 
+    private final SourceFileSystems sources;
+
+    public MetadataExtractor(SourceFileSystems sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Parses journal.xjn of a journal.
+     *
+     * @param filePath Location of the journal directory, ending with a separator, see {@link SourceFileSystems#open(String)}
+     */
     public Metadata extractMetadata(String filePath) throws IOException {
 
-        File inputFile = new File(filePath + "journal.xjn");
-        Document doc = Jsoup.parse(inputFile, "UTF-8", "", Parser.xmlParser());
+        Path sourceDir = sources.toPath(filePath);
+        Document doc = Jsoup.parse(sourceDir.resolve(SourceFileSystems.JOURNAL_FILE), "UTF-8", "", Parser.xmlParser());
 
-        Map<String, EntryMetadata> entries = getEntries(filePath, doc);
+        Map<String, EntryMetadata> entries = getEntries(sourceDir, doc);
         Map<String, PersonMetadata> persons = getPersons(doc);
         Map<String, CategoryMetadata> categories = getCategories(doc);
-        Map<String, AttachmentMetadata> attachments = getAttachments(filePath,doc);
+        Map<String, AttachmentMetadata> attachments = getAttachments(sourceDir,doc);
 
         return new Metadata(persons, categories, attachments, entries);
     }
 
-    private Map<String, EntryMetadata> getEntries(String filePath, Document doc) {
+    private Map<String, EntryMetadata> getEntries(Path sourceDir, Document doc) {
 
         Map<String, EntryMetadata> entries = new HashMap<>();
 
@@ -44,7 +56,7 @@ public class MetadataExtractor {
             String title = titleElement != null ? titleElement.text() : null;
             LocalDateTime dateTime = StringUtils.isNotBlank(dateCreated) ? LocalDateTime.parse(dateCreated) : null;
             String location = entryElement.select("content > value").text();
-            String absoluteLocationPath = filePath != null ? filePath.substring(0, filePath.lastIndexOf(File.separator)) + File.separator + location : null;
+            String absoluteLocationPath = SourceFileSystems.toLocation(sourceDir.resolve(location));
 
             List<String> attachmentIds = entryElement.select("attachment-ids > id").eachText();
             List<String> categoryIds = entryElement.select("category-ids > id").eachText();
@@ -58,7 +70,7 @@ public class MetadataExtractor {
         return entries;
     }
 
-    private Map<String, AttachmentMetadata> getAttachments(String filePath, Document doc) {
+    private Map<String, AttachmentMetadata> getAttachments(Path sourceDir, Document doc) {
 
         Map<String, AttachmentMetadata> attachments = new HashMap<>();
 
@@ -68,7 +80,7 @@ public class MetadataExtractor {
 
             String relativeLocation = locationElement != null ? locationElement.text() : null;
             String attachementName = relativeLocation;
-            String absoluteSourcePath = filePath != null ? filePath.substring(0, filePath.lastIndexOf(File.separator)) + File.separator + "Attachments" + File.separator + attachementName : null;
+            String absoluteSourcePath = SourceFileSystems.toLocation(sourceDir.resolve("Attachments").resolve(String.valueOf(attachementName)));
 
             AttachmentMetadata attachment = new AttachmentMetadata(id, absoluteSourcePath, attachementName,relativeLocation);
             attachments.put(id, attachment);
@@ -118,9 +130,11 @@ public class MetadataExtractor {
     
 
     public static void main(String[] args) throws IOException {
-        MetadataExtractor extractor = new MetadataExtractor();
+        SourceFileSystems sources = new SourceFileSystems();
+        MetadataExtractor extractor = new MetadataExtractor(sources);
         Metadata metadata = extractor.extractMetadata("C:\\Users\\vojte\\Dropbox\\_Archiv\\Denik\\XJS\\Deník\\");
         System.out.println(metadata);
+        sources.close();
     }
 
 }
@@ -0,0 +1,211 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.service.AttachmentDeduplicator;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Command extracting and generating several XJS journals in one run, each into its own intermediate
+ * directory and target.
+ * <p>
+ * Journals run concurrently on one pool of a bounded number of threads, in a single JVM with a single
+ * page renderer, so Spring startup, template parsing and JIT warm-up are paid once for all journals.
+ * Every journal gets its own metrics and generators: a failing journal does not stop the others, and
+ * every intermediate directory gets its own metrics reports. Identical attachments of all journals can
+ * be hard linked to a single file afterwards.
+ */
+@Slf4j
+@ShellComponent
+public class MultiJournalExporter {
+
+    private static final String FIELD_SEPARATOR = "|";
+
+    private final PipelineFactory pipelines;
+    private final AttachmentDeduplicator deduplicator;
+    private final Terminal terminal;
+
+    public MultiJournalExporter(PipelineFactory pipelines, AttachmentDeduplicator deduplicator, Terminal terminal) {
+        this.pipelines = pipelines;
+        this.deduplicator = deduplicator;
+        this.terminal = terminal;
+    }
+
+    @ShellMethod(value = "Extracts and generates several XJS journals concurrently", key = "export-journals")
+    public CommandResult exportJournals(
+            @ShellOption(help = "File listing the journals, one 'source dir or .zip | intermediate dir | target' line per journal") String journals,
+            @ShellOption(defaultValue = "0",
+                    help = "Number of journals processed at the same time, 0 for the number of processors") int threads,
+            @ShellOption(defaultValue = Generator.FORMAT_HTML,
+                    help = "Output format: html for static pages, json for JSON data files rendered in the browser by a static app shell") String format,
+            @ShellOption(defaultValue = "false",
+                    help = "Also write gzip compressed .gz siblings of all HTML, CSS, JS and JSON files") boolean precompress,
+            @ShellOption(defaultValue = "false",
+                    help = "Continue interrupted runs, skipping what was already extracted and written") boolean resume,
+            @ShellOption(defaultValue = "false",
+                    help = "Replace identical attachments of all journals by hard links to a single file") boolean deduplicate) {
+
+        List<Journal> jobs;
+        try {
+            jobs = readJournals(Path.of(journals));
+        } catch (IOException | IllegalArgumentException e) {
+            return CommandResult.failure("Failed to read journals from " + journals + ": " + e.getMessage());
+        }
+        if (jobs.isEmpty()) {
+            return CommandResult.failure("Failed to export journals: no journals listed in " + journals);
+        }
+
+        int poolSize = Math.min(jobs.size(), threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        List<JournalResult> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(poolSize)) {
+            List<Future<JournalResult>> futures = new ArrayList<>();
+            for (Journal journal : jobs) {
+                futures.add(executor.submit(() -> export(journal, format, precompress, resume)));
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                results.add(await(jobs.get(i), futures.get(i)));
+            }
+        }
+
+        StringBuilder summary = new StringBuilder();
+        long failed = results.stream().filter(result -> !result.ok()).count();
+        summary.append("Exported ").append(results.size() - failed).append(" of ").append(results.size()).append(" journals");
+        if (failed > 0) {
+            summary.append(", ").append(failed).append(" failed");
+        }
+        summary.append(" in ").append(seconds(System.nanoTime() - start)).append(" on ").append(poolSize).append(" threads");
+        for (JournalResult result : results) {
+            summary.append(System.lineSeparator())
+                    .append(result.ok() ? "  OK     " : "  FAILED ")
+                    .append(result.journal().sourcePath())
+                    .append(" (").append(seconds(result.nanos())).append("): ")
+                    .append(result.message());
+        }
+        boolean deduplicationFailed = false;
+        if (deduplicate) {
+            CommandResult deduplicated = deduplicate(results);
+            summary.append(System.lineSeparator()).append(deduplicated.message());
+            deduplicationFailed = deduplicated.failed();
+        }
+        return new CommandResult(failed > 0 || deduplicationFailed, summary.toString());
+    }
+
+    /**
+     * Extracts and generates a single journal with its own metrics and generators.
+     */
+    private JournalResult export(Journal journal, String format, boolean precompress, boolean resume) {
+        long start = System.nanoTime();
+        terminal.writer().println("Exporting " + journal.sourcePath());
+        try {
+            PipelineFactory.Pipeline pipeline = pipelines.create(terminal);
+            CommandResult extracted = pipeline.extractor().extract(journal.sourcePath(), journal.intermediatePath(), false, resume);
+            if (extracted.failed()) {
+                return done(journal, false, extracted.message(), start);
+            }
+            CommandResult generated = pipeline.generator().generate(journal.intermediatePath(), journal.targetPath(), format, false, precompress, resume, "");
+            return done(journal, !generated.failed(), generated.message(), start);
+        } catch (RuntimeException e) {
+            log.error("Export of {} failed", journal.sourcePath(), e);
+            return done(journal, false, "Export failed: " + e, start);
+        }
+    }
+
+    private JournalResult done(Journal journal, boolean ok, String message, long start) {
+        JournalResult result = new JournalResult(journal, ok, message, System.nanoTime() - start);
+        terminal.writer().println((ok ? "Finished " : "Failed ") + journal.sourcePath() + ": " + message);
+        return result;
+    }
+
+    private JournalResult await(Journal journal, Future<JournalResult> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // Errors are not caught by the journal task itself
+            return new JournalResult(journal, false, "Export failed: " + e.getCause(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return new JournalResult(journal, false, "Export interrupted", 0);
+        }
+    }
+
+    /**
+     * Links identical attachments of the intermediate directories and target directories of the exported journals.
+     */
+    private CommandResult deduplicate(List<JournalResult> results) {
+        List<Path> directories = new ArrayList<>();
+        for (JournalResult result : results) {
+            if (!result.ok()) {
+                continue;
+            }
+            directories.add(Path.of(result.journal().intermediatePath()).resolve(FileService.ATTACHMENTS_DIR));
+            if (!OutputSinkFactory.isArchive(result.journal().targetPath())) {
+                directories.add(Path.of(result.journal().targetPath()).resolve(FileService.ATTACHMENTS_DIR));
+            }
+        }
+        try {
+            AttachmentDeduplicator.Result deduplicated = deduplicator.deduplicate(directories);
+            return CommandResult.success(String.format("Linked %d identical attachments, %.1f MB saved%s", deduplicated.linkedFiles(),
+                    deduplicated.savedBytes() / (1024.0 * 1024.0),
+                    deduplicated.failedLinks() > 0 ? ", " + deduplicated.failedLinks() + " could not be linked and were kept as copies" : ""));
+        } catch (IOException e) {
+            terminal.writer().println("Could not deduplicate attachments: " + e);
+            return CommandResult.failure("Attachment deduplication failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the journal list. Blank lines and lines starting with # are ignored.
+     */
+    private List<Journal> readJournals(Path file) throws IOException {
+        List<Journal> jobs = new ArrayList<>();
+        Set<Path> outputs = new HashSet<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNumber++;
+            if (line.isBlank() || line.strip().startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\" + FIELD_SEPARATOR, -1);
+            if (fields.length != 3 || fields[0].isBlank() || fields[1].isBlank() || fields[2].isBlank()) {
+                throw new IllegalArgumentException("line " + lineNumber + " is not 'source dir | intermediate dir | target'");
+            }
+            Journal journal = new Journal(fields[0].strip(), fields[1].strip(), fields[2].strip());
+            // Journals running at the same time must not write into the same directory
+            for (String output : List.of(journal.intermediatePath(), journal.targetPath())) {
+                if (!outputs.add(Path.of(output).toAbsolutePath().normalize())) {
+                    throw new IllegalArgumentException("line " + lineNumber + " writes into " + output + " again");
+                }
+            }
+            jobs.add(journal);
+        }
+        return jobs;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format("%.1f s", nanos / 1_000_000_000.0);
+    }
+
+    private record Journal(String sourcePath, String intermediatePath, String targetPath) {
+    }
+
+    private record JournalResult(Journal journal, boolean ok, String message, long nanos) {
+    }
+}
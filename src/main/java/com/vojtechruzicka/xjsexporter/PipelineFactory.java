@@ -0,0 +1,139 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.model.Metadata;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage.MetadataAndEntries;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.render.PageRenderer;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.service.BodyExtractor;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.InlineImageExtractor;
+import com.vojtechruzicka.xjsexporter.service.JournalCache;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.jline.terminal.Terminal;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates extractors, generators and exporters for every run of a command, also of the commands of the shell.
+ * <p>
+ * Components holding per run state (metrics, generators, storage) are created for every pipeline, so
+ * pipelines can run concurrently. Stateless components, above all the page renderer with its parsed
+ * templates, are shared by all of them.
+ */
+@Service
+public class PipelineFactory {
+
+    private final MetadataExtractor metadataExtractor;
+    private final PageRenderer renderer;
+    private final SiteAssets assets;
+    private final FileService fileService;
+    private final BodyExtractor bodyExtractor;
+    private final CheckpointStore checkpoints;
+    private final OutputSinkFactory outputSinks;
+    private final JfrRecorder jfrRecorder;
+    private final SourceFileSystems sources;
+    private final ExecutorService attachmentCopyExecutor;
+
+    public PipelineFactory(MetadataExtractor metadataExtractor, PageRenderer renderer, SiteAssets assets, FileService fileService, BodyExtractor bodyExtractor, CheckpointStore checkpoints, OutputSinkFactory outputSinks, JfrRecorder jfrRecorder, SourceFileSystems sources, ExecutorService attachmentCopyExecutor) {
+        this.metadataExtractor = metadataExtractor;
+        this.renderer = renderer;
+        this.assets = assets;
+        this.fileService = fileService;
+        this.bodyExtractor = bodyExtractor;
+        this.checkpoints = checkpoints;
+        this.outputSinks = outputSinks;
+        this.jfrRecorder = jfrRecorder;
+        this.sources = sources;
+        this.attachmentCopyExecutor = attachmentCopyExecutor;
+    }
+
+    /**
+     * Creates a pipeline writing its messages to the given terminal.
+     */
+    public Pipeline create(Terminal terminal) {
+        return create(terminal, null);
+    }
+
+    /**
+     * Creates a pipeline writing its messages to the given terminal.
+     *
+     * @param terminal Terminal for the messages of the pipeline
+     * @param cache    Cache of journal metadata and intermediate data shared with other pipelines, or null
+     */
+    public Pipeline create(Terminal terminal, JournalCache cache) {
+        ExportMetrics metrics = new ExportMetrics();
+        JsonIntermediateStorage jsonStorage = cache != null
+                ? new CachingJsonStorage(fileService, metrics, cache)
+                : new JsonIntermediateStorage(fileService, metrics);
+        MetadataExtractor metadata = cache != null ? new CachingMetadataExtractor(metadataExtractor, sources, cache) : metadataExtractor;
+        HtmlGenerator htmlGenerator = new HtmlGenerator(renderer, assets, fileService, metrics);
+        Extractor extractor = new Extractor(metadata, terminal, jsonStorage, metrics, jfrRecorder,
+                new InlineImageExtractor(metrics), bodyExtractor, checkpoints, sources, attachmentCopyExecutor, null);
+        Generator generator = new Generator(htmlGenerator, new DataApiGenerator(htmlGenerator, fileService, assets, jsonStorage),
+                jsonStorage, terminal, fileService, metrics, jfrRecorder, outputSinks, checkpoints, null);
+        Exporter exporter = new Exporter(metadata, extractor, generator, jsonStorage, outputSinks, metrics,
+                new InlineImageExtractor(metrics), jfrRecorder, terminal, sources, null);
+        return new Pipeline(extractor, generator, exporter, metrics);
+    }
+
+    /**
+     * @param metrics Metrics of the pipeline, showing the progress of its current command
+     */
+    public record Pipeline(Extractor extractor, Generator generator, Exporter exporter, ExportMetrics metrics) {
+    }
+
+    /**
+     * Reuses metadata parsed from the same journal.xjn, by its size and modification time.
+     */
+    private static class CachingMetadataExtractor extends MetadataExtractor {
+
+        private final MetadataExtractor delegate;
+        private final SourceFileSystems sources;
+        private final JournalCache cache;
+
+        CachingMetadataExtractor(MetadataExtractor delegate, SourceFileSystems sources, JournalCache cache) {
+            super(sources);
+            this.delegate = delegate;
+            this.sources = sources;
+            this.cache = cache;
+        }
+
+        @Override
+        public Metadata extractMetadata(String filePath) throws IOException {
+            Path journal = sources.toPath(filePath + SourceFileSystems.JOURNAL_FILE);
+            String fingerprint = CheckpointStore.fingerprint(Files.size(journal), Files.getLastModifiedTime(journal).toMillis());
+            return cache.get("metadata " + SourceFileSystems.toLocation(journal.toAbsolutePath().normalize()), fingerprint, () -> delegate.extractMetadata(filePath));
+        }
+    }
+
+    /**
+     * Reuses intermediate data loaded from unchanged entry, metadata and attachment files.
+     */
+    private static class CachingJsonStorage extends JsonIntermediateStorage {
+
+        private final JournalCache cache;
+
+        CachingJsonStorage(FileService fileService, ExportMetrics metrics, JournalCache cache) {
+            super(fileService, metrics);
+            this.cache = cache;
+        }
+
+        @Override
+        public MetadataAndEntries loadAll(String basePath) throws IOException {
+            String fingerprint = CheckpointStore.fingerprint(
+                    CheckpointStore.fingerprintFiles(getEntriesDirectory(basePath)),
+                    CheckpointStore.fingerprintFiles(getMetadataDirectory(basePath)),
+                    CheckpointStore.fingerprintFiles(getAttachmentsDirectory(basePath)));
+            return cache.get("data " + Path.of(basePath).toAbsolutePath().normalize(), fingerprint, () -> super.loadAll(basePath));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage.MetadataAndEntries;
+import com.vojtechruzicka.xjsexporter.service.PageCache;
+import com.vojtechruzicka.xjsexporter.service.PageCache.CachedPage;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Command serving the site straight from the intermediate data without generating it first.
+ * <p>
+ * Pages are rendered on first request and kept in a size bounded {@link PageCache}, with ETags so
+ * browsers revalidate with {@code If-None-Match}. Attachments are streamed from the intermediate
+ * storage and support single range requests.
+ */
+@Slf4j
+@ShellComponent
+public class PreviewServer {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final String ATTACHMENTS_PREFIX = "attachments/";
+
+    private final JsonIntermediateStorage jsonStorage;
+    private final Generator generator;
+    private final Terminal terminal;
+
+    public PreviewServer(JsonIntermediateStorage jsonStorage, Generator generator, Terminal terminal) {
+        this.jsonStorage = jsonStorage;
+        this.generator = generator;
+        this.terminal = terminal;
+    }
+
+    @ShellMethod(value = "Serves the site from intermediate files, rendering pages on demand", key = "serve")
+    public CommandResult serve(
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\intermediate-data\\",
+                    help = "Source directory containing intermediate files") String intermediatePath,
+            @ShellOption(defaultValue = "8080", help = "HTTP port to listen on") int port,
+            @ShellOption(defaultValue = "64", help = "Maximum size of the rendered page cache in megabytes") long cacheSize) {
+
+        final String finalIntermediatePath = intermediatePath.endsWith(File.separator) ? intermediatePath : intermediatePath + File.separator;
+
+        long loadStart = System.nanoTime();
+        MetadataAndEntries data;
+        try {
+            data = jsonStorage.loadAll(finalIntermediatePath);
+        } catch (IOException e) {
+            return CommandResult.failure("Failed to load data from intermediate storage: " + e.getMessage());
+        }
+
+        // Only page lookups are prepared here, rendering happens on request
+        Map<String, Generator.Page> pages = new HashMap<>();
+        generator.getPages(data.metadata(), Generator.sortNewestFirst(data.entries()))
+                .forEach(page -> pages.put(page.path(), page));
+        PageCache cache = new PageCache(cacheSize * 1024 * 1024);
+        Path attachmentsDir = Path.of(finalIntermediatePath).resolve("attachments").toAbsolutePath().normalize();
+
+        HttpServer server;
+        try {
+            server = start(new InetSocketAddress("localhost", port), pages, cache, attachmentsDir);
+        } catch (IOException e) {
+            return CommandResult.failure("Could not start server on port " + port + ": " + e.getMessage());
+        }
+
+        terminal.writer().println("Serving " + data.entries().size() + " entries at http://localhost:" + port + "/ (loaded in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart) + " ms), press Ctrl+C to stop");
+        terminal.writer().flush();
+
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.stop(0);
+        }
+        return CommandResult.success("Server stopped, cache: " + cache.describe());
+    }
+
+    /**
+     * Starts serving the pages and the attachments from the given directory.
+     *
+     * @param address        Address to listen on
+     * @param pages          Pages by their site relative path
+     * @param cache          Cache of the rendered pages
+     * @param attachmentsDir Absolute normalized directory of the attachments
+     * @return The started server
+     * @throws IOException If the server can't listen on the address
+     */
+    HttpServer start(InetSocketAddress address, Map<String, Generator.Page> pages, PageCache cache, Path attachmentsDir) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        // Templates are resolved through the context class loader, which server threads do not inherit
+        ClassLoader classLoader = getClass().getClassLoader();
+        server.createContext("/", exchange -> {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            try (exchange) {
+                try {
+                    handle(exchange, pages, cache, attachmentsDir);
+                } catch (RuntimeException e) {
+                    log.error("Failed to render {}", exchange.getRequestURI(), e);
+                    // Headers can only be sent once, a failure after them just ends the response
+                    if (exchange.getResponseCode() < 0) {
+                        exchange.sendResponseHeaders(500, -1);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Failed to serve {}: {}", exchange.getRequestURI(), e.getMessage());
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private void handle(HttpExchange exchange, Map<String, Generator.Page> pages, PageCache cache, Path attachmentsDir) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            sendStatus(exchange, 405);
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        path = path.startsWith("/") ? path.substring(1) : path;
+        if (path.isEmpty()) {
+            path = Generator.INDEX_PAGE;
+        }
+
+        if (path.startsWith(ATTACHMENTS_PREFIX)) {
+            Path file = attachmentsDir.resolve(path.substring(ATTACHMENTS_PREFIX.length())).normalize();
+            if (!file.startsWith(attachmentsDir) || !Files.isRegularFile(file)) {
+                sendStatus(exchange, 404);
+                return;
+            }
+            sendFile(exchange, file);
+            return;
+        }
+
+        Generator.Page page = pages.get(path);
+        if (page == null) {
+            sendStatus(exchange, 404);
+            return;
+        }
+        CachedPage cached = cache.get(path);
+        if (cached == null) {
+            cached = cache.put(path, page.renderer().get().getBytes(StandardCharsets.UTF_8));
+        }
+
+        exchange.getResponseHeaders().set("ETag", cached.etag());
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (cached.etag().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        if (method.equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, cached.body().length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(cached.body());
+        }
+    }
+
+    private void sendFile(HttpExchange exchange, Path file) throws IOException {
+        long size = Files.size(file);
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "\"";
+        String contentType = Files.probeContentType(file);
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("Content-Type", contentType != null ? contentType : "application/octet-stream");
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            Matcher matcher = RANGE.matcher(range.trim());
+            // Multiple ranges are not supported, the whole file is sent instead
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                if (matcher.group(1).isEmpty()) {
+                    start = Math.max(0, size - Long.parseLong(matcher.group(2)));
+                } else {
+                    start = Long.parseLong(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(matcher.group(2)));
+                    }
+                }
+                if (start > end) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + size);
+                    sendStatus(exchange, 416);
+                    return;
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        // A zero length would mean chunked encoding for HttpServer
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             WritableByteChannel out = Channels.newChannel(exchange.getResponseBody())) {
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end - position + 1, out);
+            }
+        }
+    }
+
+    private void sendStatus(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+}
@@ -0,0 +1,82 @@
+package com.vojtechruzicka.xjsexporter;
+
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Command summarizing the slowest export pipeline items recorded with the {@code --jfr} option.
+ */
+@ShellComponent
+public class RecordingSummary {
+
+    private static final String EVENT_PREFIX = "xjsexporter.";
+    private static final Set<String> IGNORED_FIELDS = Set.of("startTime", "duration", "eventThread", "stackTrace");
+
+    @ShellMethod(value = "Summarizes the slowest export items in a JFR recording", key = "jfr-summary")
+    public CommandResult summarize(
+            @ShellOption(help = "JFR recording file, e.g. intermediate-data/reports/generate.jfr") String file,
+            @ShellOption(defaultValue = "10", help = "Number of slowest items listed per event type") int limit) {
+
+        Path recording = Path.of(file);
+        if (!Files.exists(recording)) {
+            return CommandResult.failure("Recording not found: " + recording);
+        }
+
+        // Group pipeline events by type
+        Map<String, List<RecordedEvent>> eventsByType = new TreeMap<>();
+        try (RecordingFile recordingFile = new RecordingFile(recording)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String type = event.getEventType().getName();
+                if (type.startsWith(EVENT_PREFIX)) {
+                    eventsByType.computeIfAbsent(type, t -> new ArrayList<>()).add(event);
+                }
+            }
+        } catch (IOException e) {
+            return CommandResult.failure("Failed to read recording: " + e.getMessage());
+        }
+
+        if (eventsByType.isEmpty()) {
+            return CommandResult.success("No XJS Exporter events found in " + recording);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        eventsByType.forEach((type, events) -> {
+            double totalMs = events.stream().mapToDouble(e -> e.getDuration().toNanos() / 1_000_000.0).sum();
+            sb.append(String.format("%s: %d events, total %.1f ms, mean %.3f ms%n",
+                    events.getFirst().getEventType().getLabel(), events.size(), totalMs, totalMs / events.size()));
+
+            events.stream()
+                    .sorted(Comparator.comparing(RecordedEvent::getDuration, Comparator.reverseOrder()))
+                    .limit(limit)
+                    .forEach(event -> sb.append(String.format("  %10.3f ms  %s%n",
+                            event.getDuration().toNanos() / 1_000_000.0, describeFields(event))));
+            sb.append(System.lineSeparator());
+        });
+        return CommandResult.success(sb.toString().stripTrailing());
+    }
+
+    private String describeFields(RecordedEvent event) {
+        List<String> values = new ArrayList<>();
+        for (ValueDescriptor field : event.getFields()) {
+            if (!IGNORED_FIELDS.contains(field.getName())) {
+                values.add(field.getName() + "=" + event.getValue(field.getName()));
+            }
+        }
+        return String.join(", ", values);
+    }
+}
@@ -0,0 +1,147 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.SearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Commands building and querying the search index of the entries in an intermediate directory.
+ * <p>
+ * The index is kept in {@value SearchIndex#INDEX_DIR}/{@value SearchIndex#INDEX_FILE} of the intermediate
+ * directory and updated incrementally by {@code index}. The last loaded index stays in memory until its file
+ * changes, so repeated searches in the shell only pay for the query.
+ */
+@Slf4j
+@ShellComponent
+public class SearchCommands {
+
+    private final JsonIntermediateStorage storage;
+    private final FileService fileService;
+    private final Terminal terminal;
+
+    private LoadedIndex loaded;
+
+    public SearchCommands(JsonIntermediateStorage storage, FileService fileService, Terminal terminal) {
+        this.storage = storage;
+        this.fileService = fileService;
+        this.terminal = terminal;
+    }
+
+    @ShellMethod(value = "Builds or updates the search index of the entries in the intermediate data", key = "index")
+    public CommandResult index(
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\intermediate-data\\",
+                    help = "Intermediate data directory") String intermediatePath) {
+
+        Path entriesDir = storage.getEntriesDirectory(intermediatePath);
+        if (!Files.isDirectory(entriesDir)) {
+            return CommandResult.failure("Failed to index: no entries found in " + entriesDir);
+        }
+        Path indexFile = SearchIndex.getIndexFile(intermediatePath);
+        Path attachmentsDir = storage.getAttachmentsDirectory(intermediatePath);
+        long start = System.nanoTime();
+        try {
+            SearchIndex previous = SearchIndex.load(indexFile);
+            SearchIndex.Update update = previous.update(entriesDir, file -> storage.loadEntry(file, attachmentsDir), fileService::getEntryPagePath);
+            if (update.added() + update.changed() + update.removed() > 0 || !Files.exists(indexFile)) {
+                update.index().save(indexFile);
+            }
+            return CommandResult.success(String.format("Indexed %d entries and %d words in %d ms: %d added, %d changed, %d removed, %d unchanged%s",
+                    update.index().size(), update.index().termCount(), (System.nanoTime() - start) / 1_000_000,
+                    update.added(), update.changed(), update.removed(), update.unchanged(),
+                    update.skipped() > 0 ? ", " + update.skipped() + " files skipped as no valid entries" : ""));
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Indexing of {} failed", intermediatePath, e);
+            terminal.writer().println("Could not index " + intermediatePath + ": " + e);
+            return CommandResult.failure("Failed to index: " + e.getMessage());
+        }
+    }
+
+    @ShellMethod(value = "Searches the entries in the intermediate data by words of their titles, bodies, persons and categories", key = "search")
+    public CommandResult search(
+            @ShellOption(defaultValue = "",
+                    help = "Words which all have to match, ignoring case and accents, a word ending with * matches all words starting with it") String query,
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\intermediate-data\\",
+                    help = "Intermediate data directory indexed by the index command") String intermediatePath,
+            @ShellOption(defaultValue = "", help = "Only entries with a person whose name contains this") String person,
+            @ShellOption(defaultValue = "", help = "Only entries with a category whose title contains this") String category,
+            @ShellOption(defaultValue = "", help = "Only entries created on this day or later, yyyy-MM-dd") String from,
+            @ShellOption(defaultValue = "", help = "Only entries created on this day or earlier, yyyy-MM-dd") String to,
+            @ShellOption(defaultValue = "20", help = "Maximum number of entries listed") int limit) {
+
+        SearchIndex.Query searchQuery;
+        try {
+            searchQuery = new SearchIndex.Query(query, blankToNull(person), blankToNull(category), parseDate(from), parseDate(to));
+        } catch (DateTimeParseException e) {
+            return CommandResult.failure("Failed to search: " + e.getParsedString() + " is not a yyyy-MM-dd date");
+        }
+        if (query.isBlank() && searchQuery.person() == null && searchQuery.category() == null
+                && searchQuery.from() == null && searchQuery.to() == null) {
+            return CommandResult.failure("Failed to search: give a query or at least one filter");
+        }
+
+        Path indexFile = SearchIndex.getIndexFile(intermediatePath);
+        if (!Files.exists(indexFile)) {
+            return CommandResult.failure("Failed to search: no index in " + intermediatePath + ", build it with the index command first");
+        }
+        long loadStart = System.nanoTime();
+        SearchIndex index;
+        try {
+            index = load(indexFile);
+        } catch (IOException e) {
+            terminal.writer().println("Could not load index " + indexFile + ": " + e);
+            return CommandResult.failure("Failed to search: " + e.getMessage());
+        }
+        long searchStart = System.nanoTime();
+        SearchIndex.Result result = index.search(searchQuery, limit);
+        long searchNanos = System.nanoTime() - searchStart;
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%d of %d entries match (search %.1f ms, index loaded in %d ms)",
+                result.total(), index.size(), searchNanos / 1_000_000.0, (searchStart - loadStart) / 1_000_000));
+        for (SearchIndex.Hit hit : result.hits()) {
+            SearchIndex.Document document = hit.document();
+            List<String> tags = new ArrayList<>(document.persons());
+            tags.addAll(document.categories());
+            lines.add(String.format("  %6.2f  %s  %s%s  %s", hit.score(), document.createdAt().toLocalDate(), document.title(),
+                    tags.isEmpty() ? "" : " [" + String.join(", ", tags) + "]", document.page()));
+        }
+        return CommandResult.success(String.join(System.lineSeparator(), lines));
+    }
+
+    /**
+     * Returns the index loaded before unless its file changed since.
+     */
+    private synchronized SearchIndex load(Path indexFile) throws IOException {
+        long modified = Files.getLastModifiedTime(indexFile).toMillis();
+        Path file = indexFile.toAbsolutePath().normalize();
+        if (loaded == null || !loaded.file().equals(file) || loaded.modified() != modified) {
+            loaded = new LoadedIndex(file, modified, SearchIndex.load(indexFile));
+        }
+        return loaded.index();
+    }
+
+    private static String blankToNull(String value) {
+        return value.isBlank() ? null : value.strip();
+    }
+
+    private static LocalDate parseDate(String value) {
+        return value.isBlank() ? null : LocalDate.parse(value.strip());
+    }
+
+    private record LoadedIndex(Path file, long modified, SearchIndex index) {
+    }
+}
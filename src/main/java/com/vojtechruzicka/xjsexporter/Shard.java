@@ -0,0 +1,59 @@
+package com.vojtechruzicka.xjsexporter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * One of several shards of a generation run, e.g. {@code 2/4}. Entry pages are assigned to shards by
+ * a hash of the entry ID and all other files by a hash of their site relative path, so every shard
+ * selects the same files on every machine.
+ *
+ * @param index Number of the shard, from 1 to {@code count}
+ * @param count Number of shards
+ */
+public record Shard(int index, int count) {
+
+    public Shard {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count + ", use i/N with 1 <= i <= N");
+        }
+    }
+
+    /**
+     * Parses a shard given as {@code i/N}.
+     *
+     * @throws IllegalArgumentException If the value is not a valid shard
+     */
+    public static Shard parse(String value) {
+        String[] parts = value.trim().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid shard " + value + ", use i/N, e.g. 2/4");
+        }
+        try {
+            return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid shard " + value + ", use i/N, e.g. 2/4");
+        }
+    }
+
+    /**
+     * Whether the entry or file with the given key (entry ID or site relative path) belongs to this shard.
+     */
+    public boolean owns(String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() % count == index - 1;
+    }
+
+    /**
+     * Name used for the checkpoint, report and summary files of the shard, e.g. {@code shard-2-of-4}.
+     */
+    public String name() {
+        return "shard-" + index + "-of-" + count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
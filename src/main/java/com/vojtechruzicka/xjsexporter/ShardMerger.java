@@ -0,0 +1,141 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.Metadata;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.model.json.ShardEntryJson;
+import com.vojtechruzicka.xjsexporter.model.json.ShardSummaryJson;
+import com.vojtechruzicka.xjsexporter.output.OutputSink;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Command completing a sharded generation ({@code generate --shard i/N}).
+ * <p>
+ * Every shard writes its entry pages, listings and attachments and a summary of its entries into
+ * {@value Generator#SHARDS_DIR} of the target directory. Once all shards are in the same target directory,
+ * the merge writes the pages listing or counting all entries from the entry headers of the summaries, without
+ * the intermediate data, and removes the summaries. The result is the same as of a single generation run.
+ */
+@Slf4j
+@ShellComponent
+public class ShardMerger {
+
+    private final Generator generator;
+    private final DataApiGenerator dataApiGenerator;
+    private final JsonIntermediateStorage jsonStorage;
+    private final OutputSinkFactory outputSinks;
+    private final Terminal terminal;
+
+    public ShardMerger(Generator generator, DataApiGenerator dataApiGenerator, JsonIntermediateStorage jsonStorage, OutputSinkFactory outputSinks, Terminal terminal) {
+        this.generator = generator;
+        this.dataApiGenerator = dataApiGenerator;
+        this.jsonStorage = jsonStorage;
+        this.outputSinks = outputSinks;
+        this.terminal = terminal;
+    }
+
+    @ShellMethod(value = "Writes the index and list pages of a sharded generation once all shards are finished", key = "merge")
+    public CommandResult merge(
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\OUT\\",
+                    help = "Target directory holding the output of all shards") String targetPath) {
+
+        Path shardsDir = Path.of(targetPath).resolve(Generator.SHARDS_DIR);
+        List<ShardSummaryJson> summaries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(shardsDir)) {
+            for (Path file : (Iterable<Path>) files.filter(file -> file.toString().endsWith(".json")).sorted()::iterator) {
+                summaries.add(jsonStorage.loadShardSummary(file));
+            }
+        } catch (IOException e) {
+            return CommandResult.failure("Failed to merge: could not read shard summaries from " + shardsDir + ": " + e.getMessage());
+        }
+        String problem = checkComplete(summaries);
+        if (problem != null) {
+            return CommandResult.failure("Failed to merge: " + problem);
+        }
+
+        List<Entry> headers = new ArrayList<>();
+        for (ShardSummaryJson summary : summaries) {
+            for (ShardEntryJson entry : summary.entries()) {
+                headers.add(new Entry(entry.id(), entry.title(), entry.created(), null, entry.persons(), entry.categories(), List.of(), null));
+            }
+        }
+        List<Entry> sortedHeaders = Generator.sortNewestFirst(headers);
+        ShardSummaryJson first = summaries.getFirst();
+        if (headers.size() != first.totalEntries() || !Generator.getEntriesFingerprint(sortedHeaders).equals(first.entriesFingerprint())) {
+            return CommandResult.failure("Failed to merge: the shards hold " + headers.size() + " entries, but were generated from " + first.totalEntries());
+        }
+
+        // The same metadata as loaded from the intermediate data, which is built from the entries too
+        Metadata metadata = jsonStorage.buildMetadata(sortedHeaders);
+        List<Generator.Page> pages = Generator.FORMAT_JSON.equals(first.format())
+                ? dataApiGenerator.getPages(sortedHeaders)
+                : generator.getPages(metadata, sortedHeaders);
+        int written = 0;
+        try (OutputSink sink = outputSinks.open(targetPath, false)) {
+            for (Generator.Page page : pages) {
+                if (Generator.isGlobalPage(page)) {
+                    generator.writePage(sink, page);
+                    written++;
+                }
+            }
+            sink.commit();
+        } catch (IOException e) {
+            terminal.writer().println("Could not write target: " + targetPath + ", Error: " + e);
+            return CommandResult.failure("Failed to merge: " + e.getMessage());
+        }
+
+        deleteSummaries(shardsDir);
+        return CommandResult.success("Merge finished, " + first.shards() + " shards with " + headers.size() + " entries merged, "
+                + written + " pages written to " + targetPath);
+    }
+
+    /**
+     * Checks that the summaries are of all shards of the same generation.
+     *
+     * @return Description of the problem, or null if the shards are complete
+     */
+    private String checkComplete(List<ShardSummaryJson> summaries) {
+        if (summaries.isEmpty()) {
+            return "no shard summaries found";
+        }
+        ShardSummaryJson first = summaries.getFirst();
+        TreeSet<Integer> missing = new TreeSet<>(IntStream.rangeClosed(1, first.shards()).boxed().toList());
+        for (ShardSummaryJson summary : summaries) {
+            if (summary.shards() != first.shards() || !summary.format().equals(first.format())
+                    || !summary.entriesFingerprint().equals(first.entriesFingerprint())) {
+                return "shard " + summary.shard() + "/" + summary.shards() + " is of a different generation than shard "
+                        + first.shard() + "/" + first.shards() + ", delete " + Generator.SHARDS_DIR + " and generate all shards again";
+            }
+            missing.remove(summary.shard());
+        }
+        if (!missing.isEmpty()) {
+            return "shards " + missing + " of " + first.shards() + " are not finished yet";
+        }
+        return null;
+    }
+
+    private void deleteSummaries(Path shardsDir) {
+        try (Stream<Path> files = Files.list(shardsDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(shardsDir);
+        } catch (IOException e) {
+            log.warn("Could not delete shard summaries {}: {}", shardsDir, e.getMessage());
+        }
+    }
+}
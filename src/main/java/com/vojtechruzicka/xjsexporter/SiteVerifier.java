@@ -0,0 +1,113 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.service.LinkChecker;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.terminal.Terminal;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command checking the internal links and assets of a generated site, a directory or a {@code .zip} archive.
+ *
+ * @see LinkChecker
+ */
+@Slf4j
+@ShellComponent
+public class SiteVerifier {
+
+    private final LinkChecker linkChecker;
+    private final Terminal terminal;
+
+    public SiteVerifier(LinkChecker linkChecker, Terminal terminal) {
+        this.linkChecker = linkChecker;
+        this.terminal = terminal;
+    }
+
+    @ShellMethod(value = "Checks that all internal links and assets of the generated pages exist", key = "verify")
+    public CommandResult verify(
+            @ShellOption(defaultValue = "C:\\projects\\xjs-exporter\\OUT\\",
+                    help = "Generated site, a directory or a .zip file") String targetPath,
+            @ShellOption(defaultValue = "50", help = "Maximum number of broken links listed") int limit,
+            @ShellOption(defaultValue = "",
+                    help = "File to write all broken links into, one 'page | link | reason' line per link and page") String report) {
+
+        Path target = Path.of(targetPath);
+        if (!Files.exists(target)) {
+            return CommandResult.failure("Failed to verify: " + targetPath + " does not exist");
+        }
+        long start = System.nanoTime();
+        LinkChecker.Result result;
+        try {
+            if (OutputSinkFactory.isArchive(targetPath)) {
+                try (FileSystem archive = FileSystems.newFileSystem(target)) {
+                    result = linkChecker.check(archive.getPath("/"));
+                }
+            } else {
+                result = linkChecker.check(target);
+            }
+        } catch (IOException e) {
+            log.error("Verification of {} failed", targetPath, e);
+            terminal.writer().println("Could not verify " + targetPath + ": " + e);
+            return CommandResult.failure("Failed to verify: " + e.getMessage());
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        if (!report.isBlank()) {
+            try {
+                writeReport(Path.of(report), result);
+            } catch (IOException e) {
+                terminal.writer().println("Could not write report " + report + ": " + e);
+            }
+        }
+
+        String checked = String.format("%,d links of %,d pages checked against %,d files in %,d ms, %,d external links skipped",
+                result.links(), result.pages(), result.files(), millis, result.external());
+        if (result.broken().isEmpty()) {
+            return CommandResult.success("Verification finished, no broken links: " + checked);
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Verification failed, %,d broken links on %,d pages: %s", result.brokenCount(), result.broken().size(), checked));
+        int listed = 0;
+        for (Map.Entry<String, List<LinkChecker.BrokenLink>> page : result.broken().entrySet()) {
+            if (listed >= limit) {
+                break;
+            }
+            lines.add("  " + page.getKey());
+            for (LinkChecker.BrokenLink link : page.getValue()) {
+                if (listed++ >= limit) {
+                    break;
+                }
+                lines.add("    " + link.link() + " (" + describe(link) + ")");
+            }
+        }
+        if (result.brokenCount() > limit) {
+            lines.add("  ... " + (result.brokenCount() - limit) + " more" + (report.isBlank() ? ", use --report to list all" : ", all listed in " + report));
+        }
+        return CommandResult.failure(String.join(System.lineSeparator(), lines));
+    }
+
+    private void writeReport(Path file, LinkChecker.Result result) throws IOException {
+        List<String> lines = new ArrayList<>();
+        result.broken().forEach((page, links) -> links.forEach(link -> lines.add(page + " | " + link.link() + " | " + describe(link))));
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, lines);
+    }
+
+    private static String describe(LinkChecker.BrokenLink link) {
+        return link.occurrences() > 1 ? link.reason() + ", " + link.occurrences() + " times" : link.reason();
+    }
+}
@@ -2,11 +2,22 @@ package com.vojtechruzicka.xjsexporter;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.core.NativeDetector;
+
+import java.util.Arrays;
 
 @SpringBootApplication
 public class XjsExporterApplication {
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals(BatchRunner.BATCH_COMMAND)) {
+            System.exit(BatchRunner.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (NativeDetector.inNativeImage()) {
+            // The native executable is built from the batch mode context, it has no interactive shell
+            System.err.println("Usage: xjs-exporter batch <command> [--option value]...");
+            System.exit(2);
+        }
         SpringApplication.run(XjsExporterApplication.class, args);
     }
 }
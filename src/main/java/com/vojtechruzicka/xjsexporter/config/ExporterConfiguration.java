@@ -2,11 +2,16 @@ package com.vojtechruzicka.xjsexporter.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
+@ImportRuntimeHints(NativeHints.class)
 public class ExporterConfiguration {
 
     @Bean
@@ -24,4 +29,14 @@ public class ExporterConfiguration {
         return templateEngine;
     }
 
+    /**
+     * Copies attachments into the intermediate storage for all extractions, so concurrent runs share one pool
+     * of threads instead of starting one per run. The threads are daemons, the pool is shut down with the context.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService attachmentCopyExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                Thread.ofPlatform().name("attachment-copy-", 0).daemon().factory());
+    }
+
 }
@@ -0,0 +1,97 @@
+package com.vojtechruzicka.xjsexporter.config;
+
+import com.vojtechruzicka.xjsexporter.XjsExporterApplication;
+import com.vojtechruzicka.xjsexporter.model.Attachment;
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.EntryStore;
+import com.vojtechruzicka.xjsexporter.model.api.ApiEntry;
+import com.vojtechruzicka.xjsexporter.model.api.ApiListing;
+import com.vojtechruzicka.xjsexporter.model.api.ApiNavigation;
+import com.vojtechruzicka.xjsexporter.model.json.AttachmentJson;
+import com.vojtechruzicka.xjsexporter.model.json.CategoryJson;
+import com.vojtechruzicka.xjsexporter.model.json.EntryJson;
+import com.vojtechruzicka.xjsexporter.model.json.JobRequestJson;
+import com.vojtechruzicka.xjsexporter.model.json.JobStatusJson;
+import com.vojtechruzicka.xjsexporter.model.json.ManifestJson;
+import com.vojtechruzicka.xjsexporter.model.json.PersonJson;
+import com.vojtechruzicka.xjsexporter.model.json.ShardSummaryJson;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.shell.standard.ShellComponent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reachability metadata for the native executable, which only sees what is registered at build time.
+ * <p>
+ * Templates, styles and the JFR configuration are read as classpath resources. Thymeleaf evaluates
+ * template expressions with SpEL, which calls the accessors of the model objects and the methods of
+ * the collections passed to templates reflectively. Jackson binds the intermediate JSON records, the
+ * records of the JSON data output, the shard summaries and the jobs of the job server, and the batch
+ * mode finds and invokes the shell commands reflectively.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    // Runtime classes of the lists and maps used as template variables. The JDK classes are taken from lists
+    // built like the template variables, so they follow the JDK the executable is built with
+    private static final List<Class<?>> TEMPLATE_COLLECTIONS = List.of(
+            ArrayList.class,
+            HashMap.class,
+            List.of(1).getClass(),
+            List.of(1, 2, 3).getClass(),
+            Stream.of(1).toList().getClass(),
+            Stream.of(1, 2, 3).toList().getClass(),
+            Stream.of(1, 2, 3).toList().reversed().getClass(),
+            Collections.unmodifiableList(new ArrayList<>()).getClass()
+    );
+
+    // Lists of the entries of an entry store, private to it
+    private static final String ENTRY_STORE_REFS = EntryStore.class.getName() + "$Refs";
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources()
+                .registerPattern("templates/*.html")
+                .registerPattern("templates/fragments/*.html")
+                .registerPattern("static/css/*.css")
+                .registerPattern("static/js/*.js")
+                .registerPattern("static/app/*.html")
+                .registerPattern("jfr/*.jfc")
+                .registerPattern("slugify*.properties")
+                .registerPattern("org/thymeleaf/thymeleaf.properties");
+
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                ManifestJson.class, PersonJson.class, CategoryJson.class, AttachmentJson.class, EntryJson.class,
+                ApiNavigation.class, ApiListing.class, ApiEntry.class, ShardSummaryJson.class,
+                JobRequestJson.class, JobStatusJson.class);
+
+        for (Class<?> type : List.of(Entry.class, Attachment.class, LocalDate.class, LocalDateTime.class, String.class,
+                org.thymeleaf.expression.Strings.class, org.thymeleaf.expression.Temporals.class)) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        for (Class<?> type : TEMPLATE_COLLECTIONS) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        hints.reflection().registerType(TypeReference.of(ENTRY_STORE_REFS), MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.setResourceLoader(new DefaultResourceLoader(classLoader));
+        scanner.addIncludeFilter(new AnnotationTypeFilter(ShellComponent.class));
+        for (BeanDefinition command : scanner.findCandidateComponents(XjsExporterApplication.class.getPackageName())) {
+            hints.reflection().registerType(TypeReference.of(command.getBeanClassName()), MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.vojtechruzicka.xjsexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Copying of a single attachment file.
+ */
+@Name("xjsexporter.AttachmentCopy")
+@Label("Attachment Copy")
+@Category({"XJS Exporter", "Attachments"})
+@Description("Copying of a single attachment file")
+@StackTrace(false)
+public class AttachmentCopyEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Attachment")
+    String name;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Ends the event and commits it with the given values if the event is enabled.
+     */
+    public void finish(String stage, String name, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            this.name = name;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.vojtechruzicka.xjsexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Parsing of a single XJS entry HTML body.
+ */
+@Name("xjsexporter.EntryParse")
+@Label("Entry Parse")
+@Category({"XJS Exporter", "Extract"})
+@Description("Parsing of a single XJS entry HTML body")
+@StackTrace(false)
+public class EntryParseEvent extends Event {
+
+    @Label("Entry Id")
+    String entryId;
+
+    @Label("Source Size")
+    @DataAmount
+    long sourceBytes;
+
+    @Label("Body Length")
+    @Description("Number of characters of the extracted body")
+    long bodyChars;
+
+    /**
+     * Ends the event and commits it with the given values if the event is enabled.
+     */
+    public void finish(String entryId, long sourceBytes, long bodyChars) {
+        end();
+        if (shouldCommit()) {
+            this.entryId = entryId;
+            this.sourceBytes = sourceBytes;
+            this.bodyChars = bodyChars;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.vojtechruzicka.xjsexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Writing of a single generated page.
+ */
+@Name("xjsexporter.FileWrite")
+@Label("Page Write")
+@Category({"XJS Exporter", "Generate"})
+@Description("Writing of a single generated page")
+@StackTrace(false)
+public class FileWriteEvent extends Event {
+
+    @Label("Entry Id")
+    @Description("Id of the entry for entry pages, empty for listing pages")
+    String entryId;
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Ends the event and commits it with the given values if the event is enabled.
+     */
+    public void finish(String entryId, String kind, String path, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.entryId = entryId;
+            this.kind = kind;
+            this.path = path;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.vojtechruzicka.xjsexporter.jfr;
+
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Starts Java Flight Recorder recordings of the export pipeline using the shipped
+ * {@code jfr/xjs-exporter.jfc} configuration.
+ */
+@Service
+@Slf4j
+public class JfrRecorder {
+
+    public static final String CONFIGURATION = "/jfr/xjs-exporter.jfc";
+
+    /**
+     * Starts a recording written to {@code reports/<command>.jfr} under the given base path.
+     *
+     * @param basePath The base path (intermediate data directory)
+     * @param command  The command name used as recording file name
+     * @return The running recording, dumped to the file when closed
+     * @throws IOException If the configuration can't be read or the directory can't be created
+     */
+    public ActiveRecording start(String basePath, String command) throws IOException {
+        Path destination = Path.of(basePath).resolve(ExportMetrics.REPORTS_DIR).resolve(command + ".jfr");
+        Files.createDirectories(destination.getParent());
+
+        Recording recording = new Recording(loadConfiguration());
+        recording.setName("xjs-exporter " + command);
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        recording.start();
+        log.info("JFR recording started, will be written to {}", destination);
+        return new ActiveRecording(recording, destination);
+    }
+
+    private Configuration loadConfiguration() throws IOException {
+        try (var resource = getClass().getResourceAsStream(CONFIGURATION)) {
+            if (resource == null) {
+                throw new IOException("JFR configuration not found: " + CONFIGURATION);
+            }
+            try (Reader reader = new InputStreamReader(resource, StandardCharsets.UTF_8)) {
+                return Configuration.create(reader);
+            }
+        } catch (ParseException e) {
+            throw new IOException("Invalid JFR configuration " + CONFIGURATION + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A running recording. Closing it stops the recording and writes it to the destination file.
+     */
+    public record ActiveRecording(Recording recording, Path destination) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            recording.stop();
+            recording.close();
+            log.info("JFR recording written to {}", destination);
+        }
+    }
+}
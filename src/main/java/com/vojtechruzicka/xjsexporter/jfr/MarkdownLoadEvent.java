@@ -0,0 +1,43 @@
+package com.vojtechruzicka.xjsexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Loading and parsing of a single entry Markdown file from the intermediate storage.
+ */
+@Name("xjsexporter.MarkdownLoad")
+@Label("Markdown Load")
+@Category({"XJS Exporter", "Generate"})
+@Description("Loading and parsing of a single entry Markdown file from the intermediate storage")
+@StackTrace(false)
+public class MarkdownLoadEvent extends Event {
+
+    @Label("Entry Id")
+    String entryId;
+
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Ends the event and commits it with the given values if the event is enabled.
+     */
+    public void finish(String entryId, String file, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.entryId = entryId;
+            this.file = file;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
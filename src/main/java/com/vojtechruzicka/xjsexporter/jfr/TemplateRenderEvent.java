@@ -0,0 +1,52 @@
+package com.vojtechruzicka.xjsexporter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Rendering of a single page from a template.
+ */
+@Name("xjsexporter.TemplateRender")
+@Label("Template Render")
+@Category({"XJS Exporter", "Generate"})
+@Description("Rendering of a single page from a template")
+@StackTrace(false)
+public class TemplateRenderEvent extends Event {
+
+    @Label("Entry Id")
+    @Description("Id of the entry for entry pages, empty for listing pages")
+    String entryId;
+
+    @Label("Template")
+    String template;
+
+    @Label("Page Type")
+    String pageType;
+
+    @Label("Item")
+    @Description("Entry title, person, category or year the page is rendered for")
+    String item;
+
+    @Label("Page Length")
+    @Description("Number of characters of the rendered page")
+    long chars;
+
+    /**
+     * Ends the event and commits it with the given values if the event is enabled.
+     */
+    public void finish(String entryId, String template, String pageType, String item, long chars) {
+        end();
+        if (shouldCommit()) {
+            this.entryId = entryId;
+            this.template = template;
+            this.pageType = pageType;
+            this.item = item;
+            this.chars = chars;
+            commit();
+        }
+    }
+}
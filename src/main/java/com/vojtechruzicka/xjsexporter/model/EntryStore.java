@@ -0,0 +1,236 @@
+package com.vojtechruzicka.xjsexporter.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+
+/**
+ * Compact in-memory storage of all entries of a journal.
+ * <p>
+ * Person names, category titles and attachments are kept once in dictionaries and entries refer
+ * to them by {@code int} indexes. Attachment records are shared by all entries which refer to the
+ * same file, and creation times are stored as epoch seconds. {@link Entry} instances are only
+ * lightweight views created on access, their person, category and attachment lists read the
+ * dictionaries directly and nothing is copied.
+ */
+public final class EntryStore {
+
+    private static final int[] NONE = new int[0];
+
+    private final String[] persons;
+    private final String[] categories;
+    private final Attachment[] attachments;
+
+    private final String[] ids;
+    private final String[] titles;
+    private final String[] bodies;
+    private final String[] locations;
+    private final long[] createdSeconds;
+    // Only allocated when some creation time is not a whole second
+    private final int[] createdNanos;
+    private final int[][] personRefs;
+    private final int[][] categoryRefs;
+    private final int[][] attachmentRefs;
+
+    private final Entries entries;
+    private Entries newestFirst;
+
+    private EntryStore(Builder builder) {
+        this.persons = builder.persons.toArray(String[]::new);
+        this.categories = builder.categories.toArray(String[]::new);
+        this.attachments = builder.attachments.toArray(Attachment[]::new);
+        int size = builder.ids.size();
+        this.ids = builder.ids.toArray(String[]::new);
+        this.titles = builder.titles.toArray(String[]::new);
+        this.bodies = builder.bodies.toArray(String[]::new);
+        this.locations = builder.locations.toArray(String[]::new);
+        this.createdSeconds = Arrays.copyOf(builder.createdSeconds, size);
+        this.createdNanos = builder.createdNanos != null ? Arrays.copyOf(builder.createdNanos, size) : null;
+        this.personRefs = builder.personRefs.toArray(int[][]::new);
+        this.categoryRefs = builder.categoryRefs.toArray(int[][]::new);
+        this.attachmentRefs = builder.attachmentRefs.toArray(int[][]::new);
+        this.entries = new Entries(null);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Stores the given entries.
+     */
+    public static EntryStore of(List<Entry> entries) {
+        Builder builder = builder();
+        entries.forEach(builder::add);
+        return builder.build();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * All entries in the order they were added.
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * All entries sorted by creation time, newest first. Entries created at the same time are sorted
+     * by ID, so the order does not depend on the order the entries were added in.
+     */
+    public synchronized List<Entry> newestFirst() {
+        if (newestFirst == null) {
+            Comparator<Integer> byCreated = Comparator.<Integer>comparingLong(i -> createdSeconds[i])
+                    .thenComparingInt(i -> createdNanos != null ? createdNanos[i] : 0);
+            newestFirst = new Entries(IntStream.range(0, size()).boxed()
+                    .sorted(byCreated.reversed().thenComparing(i -> ids[i]))
+                    .mapToInt(Integer::intValue)
+                    .toArray());
+        }
+        return newestFirst;
+    }
+
+    private Entry entry(int index) {
+        return new Entry(
+                ids[index],
+                titles[index],
+                LocalDateTime.ofEpochSecond(createdSeconds[index], createdNanos != null ? createdNanos[index] : 0, ZoneOffset.UTC),
+                bodies[index],
+                new Refs<>(persons, personRefs[index]),
+                new Refs<>(categories, categoryRefs[index]),
+                new Refs<>(attachments, attachmentRefs[index]),
+                locations[index]
+        );
+    }
+
+    /**
+     * Entries of the store in insertion order, or in the order given by a permutation.
+     */
+    public final class Entries extends AbstractList<Entry> implements RandomAccess {
+
+        private final int[] order;
+
+        private Entries(int[] order) {
+            this.order = order;
+        }
+
+        public EntryStore store() {
+            return EntryStore.this;
+        }
+
+        @Override
+        public Entry get(int index) {
+            return entry(order != null ? order[index] : index);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * Read-only list of dictionary values selected by indexes.
+     */
+    private static final class Refs<T> extends AbstractList<T> implements RandomAccess {
+
+        private final T[] dictionary;
+        private final int[] refs;
+
+        private Refs(T[] dictionary, int[] refs) {
+            this.dictionary = dictionary;
+            this.refs = refs;
+        }
+
+        @Override
+        public T get(int index) {
+            return dictionary[refs[index]];
+        }
+
+        @Override
+        public int size() {
+            return refs.length;
+        }
+    }
+
+    /**
+     * Collects entries into a store. Not thread safe.
+     */
+    public static final class Builder {
+
+        private final List<String> persons = new ArrayList<>();
+        private final List<String> categories = new ArrayList<>();
+        private final List<Attachment> attachments = new ArrayList<>();
+        private final Map<String, Integer> personIndex = new HashMap<>();
+        private final Map<String, Integer> categoryIndex = new HashMap<>();
+        private final Map<Attachment, Integer> attachmentIndex = new HashMap<>();
+
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> titles = new ArrayList<>();
+        private final List<String> bodies = new ArrayList<>();
+        private final List<String> locations = new ArrayList<>();
+        private long[] createdSeconds = new long[256];
+        private int[] createdNanos;
+        private final List<int[]> personRefs = new ArrayList<>();
+        private final List<int[]> categoryRefs = new ArrayList<>();
+        private final List<int[]> attachmentRefs = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder add(Entry entry) {
+            int index = ids.size();
+            if (index == createdSeconds.length) {
+                createdSeconds = Arrays.copyOf(createdSeconds, index * 2);
+                if (createdNanos != null) {
+                    createdNanos = Arrays.copyOf(createdNanos, index * 2);
+                }
+            }
+            createdSeconds[index] = entry.created().toEpochSecond(ZoneOffset.UTC);
+            int nanos = entry.created().getNano();
+            if (nanos != 0) {
+                if (createdNanos == null) {
+                    createdNanos = new int[createdSeconds.length];
+                }
+                createdNanos[index] = nanos;
+            }
+
+            ids.add(entry.id());
+            titles.add(entry.title());
+            bodies.add(entry.html());
+            locations.add(entry.location());
+            personRefs.add(encode(entry.persons(), persons, personIndex));
+            categoryRefs.add(encode(entry.categories(), categories, categoryIndex));
+            attachmentRefs.add(encode(entry.attachments(), attachments, attachmentIndex));
+            return this;
+        }
+
+        private static <T> int[] encode(List<T> values, List<T> dictionary, Map<T, Integer> index) {
+            if (values == null || values.isEmpty()) {
+                return NONE;
+            }
+            int[] refs = new int[values.size()];
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = index.computeIfAbsent(values.get(i), value -> {
+                    dictionary.add(value);
+                    return dictionary.size() - 1;
+                });
+            }
+            return refs;
+        }
+
+        public EntryStore build() {
+            return new EntryStore(this);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.vojtechruzicka.xjsexporter.model.api;
+
+/**
+ * An attachment of an entry.
+ *
+ * @param href Path of the attachment relative to the site root
+ */
+public record ApiAttachment(
+        String name,
+        String href,
+        String extension,
+        String mimeType,
+        Integer size,
+        String formattedSize
+) {
+}
@@ -0,0 +1,20 @@
+package com.vojtechruzicka.xjsexporter.model.api;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * {@code data/entries/<location>.json}, a single entry including its body.
+ *
+ * @param body HTML body with links to attachments relative to the site root
+ */
+public record ApiEntry(
+        String id,
+        String title,
+        LocalDateTime created,
+        String body,
+        List<String> persons,
+        List<String> categories,
+        List<ApiAttachment> attachments
+) {
+}
@@ -0,0 +1,18 @@
+package com.vojtechruzicka.xjsexporter.model.api;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * An entry in a listing, without its body.
+ *
+ * @param location File name of the entry data, without the extension
+ */
+public record ApiEntrySummary(
+        String location,
+        String title,
+        LocalDateTime created,
+        List<String> persons,
+        List<String> categories
+) {
+}
@@ -0,0 +1,12 @@
+package com.vojtechruzicka.xjsexporter.model.api;
+
+/**
+ * A person, category or year in the navigation.
+ *
+ * @param name  Display name
+ * @param slug  Name of the directory holding the listing pages of the item
+ * @param count Number of entries
+ * @param pages Number of listing pages
+ */
+public record ApiItem(String name, String slug, int count, int pages) {
+}
@@ -0,0 +1,13 @@
+package com.vojtechruzicka.xjsexporter.model.api;
+
+import java.util.List;
+
+/**
+ * One page of a listing of entries, newest first.
+ *
+ * @param page  Number of the page, starting with 1
+ * @param pages Number of pages of the listing
+ * @param total Number of entries of the whole listing
+ */
+public record ApiListing(int page, int pages, int total, List<ApiEntrySummary> entries) {
+}
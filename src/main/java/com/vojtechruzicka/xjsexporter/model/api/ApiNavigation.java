@@ -0,0 +1,20 @@
+package com.vojtechruzicka.xjsexporter.model.api;
+
+import java.util.List;
+
+/**
+ * {@code data/navigation.json} of the JSON data output, loaded once by the client.
+ *
+ * @param entryCount Number of all entries
+ * @param indexPages Number of pages of the listing of all entries
+ * @param pageSize   Maximum number of entries per listing page
+ */
+public record ApiNavigation(
+        int entryCount,
+        int indexPages,
+        int pageSize,
+        List<ApiItem> persons,
+        List<ApiItem> categories,
+        List<ApiItem> years
+) {
+}
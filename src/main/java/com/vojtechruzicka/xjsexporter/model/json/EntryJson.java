@@ -20,9 +20,7 @@ public record EntryJson(
         List<String> personIds,
         List<String> categoryIds,
         List<String> attachmentIds,
-        String source,
-        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
-        LocalDateTime extractedAt
+        String source
 ) {
     /**
      * Constructor with validation to ensure no null lists.
@@ -0,0 +1,17 @@
+package com.vojtechruzicka.xjsexporter.model.json;
+
+/**
+ * JSON body of a job submitted to the job server. The fields are the options of the {@code extract}
+ * or {@code generate} command given as {@code command}, missing options take their defaults.
+ */
+public record JobRequestJson(
+        String command,
+        String sourcePath,
+        String intermediatePath,
+        String targetPath,
+        String format,
+        boolean precompress,
+        boolean resume,
+        String shard
+) {
+}
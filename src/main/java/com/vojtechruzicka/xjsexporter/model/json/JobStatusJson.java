@@ -0,0 +1,21 @@
+package com.vojtechruzicka.xjsexporter.model.json;
+
+import java.time.LocalDateTime;
+
+/**
+ * JSON status of a job of the job server. Progress counts the entries of the job, {@code itemsPlanned}
+ * is known once the job has loaded its input. The output holds the end of the messages of the job.
+ */
+public record JobStatusJson(
+        String id,
+        String command,
+        String state,
+        LocalDateTime submittedAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt,
+        long itemsDone,
+        long itemsPlanned,
+        String result,
+        String output
+) {
+}
@@ -1,20 +1,29 @@
 package com.vojtechruzicka.xjsexporter.model.json;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.vojtechruzicka.xjsexporter.AttachmentMetadata;
 import com.vojtechruzicka.xjsexporter.CategoryMetadata;
+import com.vojtechruzicka.xjsexporter.jfr.AttachmentCopyEvent;
+import com.vojtechruzicka.xjsexporter.jfr.MarkdownLoadEvent;
+import com.vojtechruzicka.xjsexporter.jfr.MarkdownWriteEvent;
 import com.vojtechruzicka.xjsexporter.model.Entry;
 import com.vojtechruzicka.xjsexporter.model.EntryMetadata;
+import com.vojtechruzicka.xjsexporter.model.EntryStore;
 import com.vojtechruzicka.xjsexporter.model.Metadata;
 import com.vojtechruzicka.xjsexporter.model.PersonMetadata;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
 import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.InlineImageExtractor;
+import com.vojtechruzicka.xjsexporter.service.StableFiles;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
@@ -46,13 +55,36 @@ public class JsonIntermediateStorage {
 
     private final ObjectMapper objectMapper;
     private final FileService fileService;
+    private final ExportMetrics metrics;
 
-    public JsonIntermediateStorage(FileService fileService) {
+    public JsonIntermediateStorage(FileService fileService, ExportMetrics metrics) {
         this.objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
         this.fileService = fileService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Writer of compact JSON with the same modules and date format as the intermediate files.
+     */
+    public ObjectWriter getCompactJsonWriter() {
+        return objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    /**
+     * Serializes the summary of a generation shard as compact JSON.
+     */
+    public byte[] toJson(ShardSummaryJson summary) throws IOException {
+        return getCompactJsonWriter().writeValueAsBytes(summary);
+    }
+
+    /**
+     * Loads the summary of a generation shard.
+     */
+    public ShardSummaryJson loadShardSummary(Path file) throws IOException {
+        return objectMapper.readValue(file.toFile(), ShardSummaryJson.class);
     }
 
     /**
@@ -80,6 +112,22 @@ public class JsonIntermediateStorage {
      * @throws IOException If an I/O error occurs
      */
     public void saveMetadata(String basePath, Metadata metadata) throws IOException {
+        saveMetadataFiles(basePath, metadata);
+
+        // Copy attachment files into intermediate storage
+        for (AttachmentMetadata att : metadata.attachments().values()) {
+            copyAttachment(basePath, att);
+        }
+    }
+
+    /**
+     * Saves the metadata JSON files without copying the attachment files.
+     *
+     * @param basePath The base path for the intermediate data
+     * @param metadata The metadata to save
+     * @throws IOException If an I/O error occurs
+     */
+    public void saveMetadataFiles(String basePath, Metadata metadata) throws IOException {
         Path baseDir = Path.of(basePath);
         Path metadataDir = baseDir.resolve(METADATA_DIR);
         Path attachmentsDir = baseDir.resolve(ATTACHMENTS_DIR);
@@ -92,37 +140,54 @@ public class JsonIntermediateStorage {
         List<PersonJson> people = metadata.people().values().stream()
                 .map(this::convertToPersonJson)
                 .collect(Collectors.toList());
-        objectMapper.writeValue(metadataDir.resolve(PEOPLE_FILE).toFile(), people);
+        StableFiles.write(metadataDir.resolve(PEOPLE_FILE), objectMapper.writeValueAsBytes(people));
 
         // Save categories.json
         List<CategoryJson> categories = metadata.categories().values().stream()
                 .map(this::convertToCategoryJson)
                 .collect(Collectors.toList());
-        objectMapper.writeValue(metadataDir.resolve(CATEGORIES_FILE).toFile(), categories);
+        StableFiles.write(metadataDir.resolve(CATEGORIES_FILE), objectMapper.writeValueAsBytes(categories));
 
         // Save attachments.json
         List<AttachmentJson> attachments = metadata.attachments().values().stream()
                 .map(this::convertToAttachmentJson)
                 .collect(Collectors.toList());
-        objectMapper.writeValue(metadataDir.resolve(ATTACHMENTS_FILE).toFile(), attachments);
+        StableFiles.write(metadataDir.resolve(ATTACHMENTS_FILE), objectMapper.writeValueAsBytes(attachments));
+    }
 
-        // Copy attachment files into intermediate storage
-        metadata.attachments().values().forEach(att -> {
-            try {
-                if (att.absoluteSourcePath() != null && !att.absoluteSourcePath().isEmpty()) {
-                    Path source = Path.of(att.absoluteSourcePath());
-                    if (Files.exists(source)) {
-                        Path target = attachmentsDir.resolve(att.name());
-                        Files.createDirectories(target.getParent());
-                        Files.copy(source, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                    } else {
-                        log.warn("Attachment source file does not exist: {}", source);
-                    }
+    /**
+     * Copies a single attachment file into the intermediate storage.
+     * Missing source files and copy failures are logged, not thrown.
+     *
+     * @param basePath   The base path for the intermediate data
+     * @param attachment The attachment to copy
+     * @return The path of the copy, or null if the attachment was not copied
+     */
+    public Path copyAttachment(String basePath, AttachmentMetadata attachment) {
+        Path attachmentsDir = Path.of(basePath).resolve(ATTACHMENTS_DIR);
+        try {
+            if (attachment.absoluteSourcePath() != null && !attachment.absoluteSourcePath().isEmpty()) {
+                Path source = fileService.getSourcePath(attachment.absoluteSourcePath());
+                if (Files.exists(source)) {
+                    AttachmentCopyEvent copyEvent = new AttachmentCopyEvent();
+                    copyEvent.begin();
+                    long copyStart = metrics.start();
+                    Path target = attachmentsDir.resolve(attachment.name());
+                    Files.createDirectories(target.getParent());
+                    StableFiles.copy(source, target);
+                    long bytes = Files.size(target);
+                    metrics.recordAttachmentCopy("extract", copyStart, bytes);
+                    copyEvent.finish("extract", attachment.name(), bytes);
+                    return target;
+                } else {
+                    log.warn("Attachment source file does not exist: {}", source);
                 }
-            } catch (IOException e) {
-                log.error("Failed to copy attachment '{}' to intermediate storage: {}", att.name(), e.getMessage());
             }
-        });
+        } catch (IOException e) {
+            metrics.recordError("attachment");
+            log.error("Failed to copy attachment '{}' to intermediate storage: {}", attachment.name(), e.getMessage());
+        }
+        return null;
     }
 
     /**
@@ -131,36 +196,29 @@ public class JsonIntermediateStorage {
      * @param basePath      The base path for the intermediate data
      * @param entryMetadata The entry metadata to save
      * @param htmlBody      The HTML body of the entry
+     * @return The path of the Markdown file, which is left alone if it already holds the same content
      * @throws IOException If an I/O error occurs
      */
-    public void saveEntry(String basePath, Metadata metadata, EntryMetadata entryMetadata, String htmlBody) throws IOException {
+    public Path saveEntry(String basePath, Metadata metadata, EntryMetadata entryMetadata, String htmlBody) throws IOException {
+        MarkdownWriteEvent writeEvent = new MarkdownWriteEvent();
+        writeEvent.begin();
         Path baseDir = Path.of(basePath);
         Path entriesDir = baseDir.resolve(ENTRIES_DIR);
 
         // Use Markdown with YAML frontmatter for entries
-        String filename = fileService.getEntryFileName(entryMetadata.dateCreated(), entryMetadata.title())+".md";
+        String filename = getEntryMarkdownFileName(entryMetadata);
 
         // Resolve person names and category titles from IDs for Markdown front matter
-        List<String> personNames = new ArrayList<>();
-        for (String pid : entryMetadata.personIds()) {
-            PersonMetadata pm = metadata.people().get(pid);
-            if (pm != null) {
-                personNames.add(pm.getFullName());
-            }
-        }
-        List<String> categoryTitles = new ArrayList<>();
-        for (String cid : entryMetadata.categoryIds()) {
-            CategoryMetadata cm = metadata.categories().get(cid);
-            if (cm != null) {
-                categoryTitles.add(cm.title());
-            }
-        }
+        List<String> personNames = resolvePersonNames(metadata, entryMetadata);
+        List<String> categoryTitles = resolveCategoryTitles(metadata, entryMetadata);
 
         StringBuilder sb = new StringBuilder();
         sb.append("---\n");
         sb.append("id: ").append(escapeYaml(entryMetadata.id())).append("\n");
         sb.append("title: ").append(escapeYaml(entryMetadata.title())).append("\n");
-        sb.append("dateCreated: ").append(entryMetadata.dateCreated().format(DateTimeFormatter.ISO_DATE_TIME)).append("\n");
+        if (entryMetadata.dateCreated() != null) {
+            sb.append("dateCreated: ").append(entryMetadata.dateCreated().format(DateTimeFormatter.ISO_DATE_TIME)).append("\n");
+        }
         if (entryMetadata.location() != null) {
             sb.append("location: ").append(escapeYaml(entryMetadata.location())).append("\n");
         }
@@ -168,29 +226,135 @@ public class JsonIntermediateStorage {
         sb.append("persons: ").append(formatYamlList(personNames)).append("\n");
         sb.append("categories: ").append(formatYamlList(categoryTitles)).append("\n");
         // New preferred: attachment names (filenames) for easier HTML generation
-        List<String> attachmentNames = new ArrayList<>();
-        for (String aid : entryMetadata.attachmentIds()) {
-            AttachmentMetadata am = metadata.attachments().get(aid);
-            if (am != null) {
-                attachmentNames.add(am.name());
-            }
-        }
+        List<String> attachmentNames = resolveAttachments(metadata, entryMetadata).stream()
+                .map(AttachmentMetadata::name)
+                .toList();
         sb.append("attachments: ").append(formatYamlList(attachmentNames)).append("\n");
         // Legacy fallback retained for backward compatibility
         sb.append("attachmentIds: ").append(formatYamlList(entryMetadata.attachmentIds())).append("\n");
         sb.append("source: ").append(escapeYaml(SOURCE_SYSTEM)).append("\n");
-        sb.append("extractedAt: ").append(LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)).append("\n");
         sb.append("---\n\n");
         if (htmlBody != null) {
             sb.append(htmlBody);
             if (!htmlBody.endsWith("\n")) sb.append("\n");
         }
 
-        Files.writeString(entriesDir.resolve(filename), sb.toString());
+        byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Path written = entriesDir.resolve(filename);
+        StableFiles.write(written, content);
+        writeEvent.finish(entryMetadata.id(), filename, content.length);
+        return written;
     }
 
     /**
-     * Saves the manifest file.
+     * Builds an entry directly from the extracted metadata and body, the same way
+     * {@link #loadEntry(Path, Path)} reads it back after {@link #saveEntry}, but without
+     * the Markdown round trip. Attachments point to their source files.
+     *
+     * @param metadata      The journal metadata used to resolve persons, categories and attachments
+     * @param entryMetadata The entry
+     * @param htmlBody      The HTML body of the entry, may be null
+     * @return The entry or null if the entry has no creation date
+     */
+    public Entry toEntry(Metadata metadata, EntryMetadata entryMetadata, String htmlBody) {
+        if (entryMetadata.id() == null || entryMetadata.id().isEmpty() || entryMetadata.dateCreated() == null) {
+            return null;
+        }
+
+        List<com.vojtechruzicka.xjsexporter.model.Attachment> attachments = new ArrayList<>();
+        for (AttachmentMetadata am : resolveAttachments(metadata, entryMetadata)) {
+            if (am.name() == null || am.name().isBlank()) continue;
+            attachments.add(fileService.getAttachmentFromMetadata(new AttachmentMetadata(
+                    am.name(),
+                    am.absoluteSourcePath(),
+                    am.name(),
+                    am.name()
+            )));
+        }
+
+        return new Entry(
+                entryMetadata.id(),
+                entryMetadata.title() != null ? entryMetadata.title() : "",
+                entryMetadata.dateCreated(),
+                htmlBody != null ? htmlBody.trim() : "",
+                resolvePersonNames(metadata, entryMetadata),
+                resolveCategoryTitles(metadata, entryMetadata),
+                attachments,
+                entryMetadata.location()
+        );
+    }
+
+    private List<String> resolvePersonNames(Metadata metadata, EntryMetadata entryMetadata) {
+        List<String> personNames = new ArrayList<>();
+        for (String pid : entryMetadata.personIds()) {
+            PersonMetadata pm = metadata.people().get(pid);
+            if (pm != null) {
+                personNames.add(pm.getFullName());
+            }
+        }
+        return personNames;
+    }
+
+    private List<String> resolveCategoryTitles(Metadata metadata, EntryMetadata entryMetadata) {
+        List<String> categoryTitles = new ArrayList<>();
+        for (String cid : entryMetadata.categoryIds()) {
+            CategoryMetadata cm = metadata.categories().get(cid);
+            if (cm != null) {
+                categoryTitles.add(cm.title());
+            }
+        }
+        return categoryTitles;
+    }
+
+    private List<AttachmentMetadata> resolveAttachments(Metadata metadata, EntryMetadata entryMetadata) {
+        List<AttachmentMetadata> attachments = new ArrayList<>();
+        for (String aid : entryMetadata.attachmentIds()) {
+            AttachmentMetadata am = metadata.attachments().get(aid);
+            if (am != null) {
+                attachments.add(am);
+            }
+        }
+        return attachments;
+    }
+
+    /**
+     * Name of the Markdown file an entry is saved to.
+     */
+    public String getEntryMarkdownFileName(EntryMetadata entryMetadata) {
+        return fileService.getEntryFileName(entryMetadata.id(), entryMetadata.dateCreated(), entryMetadata.title()) + ".md";
+    }
+
+    /**
+     * Path of the directory holding the Markdown entry files.
+     */
+    public Path getEntriesDirectory(String basePath) {
+        return Path.of(basePath).resolve(ENTRIES_DIR);
+    }
+
+    /**
+     * Path of the directory holding the metadata JSON files.
+     */
+    public Path getMetadataDirectory(String basePath) {
+        return Path.of(basePath).resolve(METADATA_DIR);
+    }
+
+    /**
+     * Path of the directory holding the attachment copies.
+     */
+    public Path getAttachmentsDirectory(String basePath) {
+        return Path.of(basePath).resolve(ATTACHMENTS_DIR);
+    }
+
+    /**
+     * Path of the directory holding images extracted from entry bodies.
+     */
+    public Path getInlineImagesDirectory(String basePath) {
+        return Path.of(basePath).resolve(ATTACHMENTS_DIR).resolve(InlineImageExtractor.INLINE_DIR);
+    }
+
+    /**
+     * Saves the manifest file. The manifest is the only intermediate file holding the time of the run,
+     * all other files only change when their content does.
      *
      * @param basePath        The base path for the intermediate data
      * @param metadata        The metadata
@@ -230,14 +394,8 @@ public class JsonIntermediateStorage {
         // Validate directory structure (Markdown-only mode)
         validateDirectoryStructure(baseDir, entriesDir, metadataDir);
 
-        // Prepare metadata holders built purely from Markdown and filesystem
-        Map<String, PersonMetadata> personMap = new HashMap<>();
-        Map<String, CategoryMetadata> categoryMap = new HashMap<>();
-        Map<String, AttachmentMetadata> attachmentMap = new HashMap<>();
-
-        // Load entries from Markdown
-        List<Entry> entries = new ArrayList<>();
-        Map<String, EntryMetadata> entryMetadataMap = new HashMap<>();
+        // Load entries from Markdown into the compact store
+        EntryStore.Builder store = EntryStore.builder();
 
         File[] entryFiles = entriesDir.toFile().listFiles((dir, name) -> name.toLowerCase().endsWith(".md"));
         if (entryFiles == null || entryFiles.length == 0) {
@@ -249,94 +407,13 @@ public class JsonIntermediateStorage {
 
         for (File entryFile : entryFiles) {
             try {
-                MdEntry md = parseMarkdownEntry(entryFile.toPath());
-                if (md == null || md.id == null || md.id.isEmpty() || md.dateCreated == null) {
+                Entry entry = loadEntry(entryFile.toPath(), attachmentsDir);
+                if (entry == null) {
                     log.warn("Skipping invalid entry Markdown in file: {}", entryFile.getName());
                     errorCount++;
                     continue;
                 }
-
-                String id = md.id;
-                String title = md.title;
-                LocalDateTime created = md.dateCreated;
-                String location = md.location;
-                List<String> personNames = (md.personNames != null && !md.personNames.isEmpty()) ? md.personNames : md.personIds;
-                List<String> categoryTitles = (md.categoryTitles != null && !md.categoryTitles.isEmpty()) ? md.categoryTitles : md.categoryIds;
-                List<String> attachmentNames = (md.attachmentNames != null && !md.attachmentNames.isEmpty()) ? md.attachmentNames : md.attachmentIds;
-                String bodyHtml = md.body;
-
-                // Build/ensure people metadata
-                List<String> personIdsForMeta = new ArrayList<>();
-                for (String name : personNames) {
-                    if (name == null || name.isBlank()) continue;
-                    String personId = name; // use full name as ID to avoid JSON dep
-                    if (!personMap.containsKey(personId)) {
-                        String first = name;
-                        String last = "";
-                        int space = name.lastIndexOf(' ');
-                        if (space > 0) {
-                            first = name.substring(0, space).trim();
-                            last = name.substring(space + 1).trim();
-                        }
-                        personMap.put(personId, new PersonMetadata(personId, first, last, null));
-                    }
-                    personIdsForMeta.add(personId);
-                }
-
-                // Build/ensure category metadata
-                List<String> categoryIdsForMeta = new ArrayList<>();
-                for (String cat : categoryTitles) {
-                    if (cat == null || cat.isBlank()) continue;
-                    String categoryId = cat; // use title as ID
-                    categoryMap.putIfAbsent(categoryId, new CategoryMetadata(categoryId, cat));
-                    categoryIdsForMeta.add(categoryId);
-                }
-
-                // Resolve attachments for the entry
-                List<String> attachmentIdsForMeta = new ArrayList<>();
-                List<com.vojtechruzicka.xjsexporter.model.Attachment> entryAttachments = new ArrayList<>();
-                for (String fname : attachmentNames) {
-                    if (fname == null || fname.isBlank()) continue;
-
-
-                    // Try to resolve by creating metadata pointing to attachments dir
-                    Path p = attachmentsDir.resolve(fname);
-                    AttachmentMetadata am = new AttachmentMetadata(
-                            fname,
-                            p.toFile().getAbsolutePath(),
-                            fname,
-                            fname
-                    );
-                    attachmentMap.put(fname, am);
-
-                    attachmentIdsForMeta.add(am.id());
-                    entryAttachments.add(fileService.getAttachmentFromMetadata(am));
-                }
-
-                // Create and store EntryMetadata (IDs are names we used as IDs)
-                EntryMetadata entryMetadata = new EntryMetadata(
-                        id,
-                        title,
-                        location,
-                        created,
-                        attachmentIdsForMeta,
-                        categoryIdsForMeta,
-                        personIdsForMeta
-                );
-                entryMetadataMap.put(id, entryMetadata);
-
-                // Create entry model with resolved names and attachments
-                Entry entry = new Entry(
-                        id,
-                        title,
-                        created,
-                        bodyHtml,
-                        personNames,
-                        categoryTitles,
-                        entryAttachments,
-                        location
-                );
-                entries.add(entry);
+                store.add(entry);
                 successCount++;
             } catch (Exception e) {
                 log.error("Error loading entry from file {}: {}", entryFile.getName(), e.getMessage());
@@ -346,12 +423,127 @@ public class JsonIntermediateStorage {
 
         log.info("Loaded {} entries successfully, {} entries with errors", successCount, errorCount);
 
-        if (entries.isEmpty()) {
+        if (successCount == 0) {
             throw new IOException("No entries could be loaded successfully from " + entriesDir);
         }
 
-        Metadata reconstructedMetadata = new Metadata(personMap, categoryMap, attachmentMap, entryMetadataMap);
-        return new MetadataAndEntries(reconstructedMetadata, entries);
+        List<Entry> entries = store.build().entries();
+        return new MetadataAndEntries(buildMetadata(entries), entries);
+    }
+
+    /**
+     * Loads a single entry from its Markdown file.
+     *
+     * @param entryFile      The Markdown file of the entry
+     * @param attachmentsDir The directory holding the attachment copies
+     * @return The entry or null if the file is not a valid entry
+     * @throws IOException If an I/O error occurs
+     */
+    public Entry loadEntry(Path entryFile, Path attachmentsDir) throws IOException {
+        MarkdownLoadEvent loadEvent = new MarkdownLoadEvent();
+        loadEvent.begin();
+        MdEntry md = parseMarkdownEntry(entryFile);
+        loadEvent.finish(md != null ? md.id : null, entryFile.getFileName().toString(), loadEvent.isEnabled() ? Files.size(entryFile) : 0);
+        if (md == null || md.id == null || md.id.isEmpty() || md.dateCreated == null) {
+            return null;
+        }
+
+        List<String> personNames = (md.personNames != null && !md.personNames.isEmpty()) ? md.personNames : md.personIds;
+        List<String> categoryTitles = (md.categoryTitles != null && !md.categoryTitles.isEmpty()) ? md.categoryTitles : md.categoryIds;
+        List<String> attachmentNames = (md.attachmentNames != null && !md.attachmentNames.isEmpty()) ? md.attachmentNames : md.attachmentIds;
+
+        // Resolve attachments for the entry by pointing to the attachments dir
+        List<com.vojtechruzicka.xjsexporter.model.Attachment> entryAttachments = new ArrayList<>();
+        for (String fname : attachmentNames) {
+            if (fname == null || fname.isBlank()) continue;
+            Path p = attachmentsDir.resolve(fname);
+            entryAttachments.add(fileService.getAttachmentFromMetadata(new AttachmentMetadata(
+                    fname,
+                    p.toFile().getAbsolutePath(),
+                    fname,
+                    fname
+            )));
+        }
+
+        // Create entry model with resolved names and attachments
+        return new Entry(
+                md.id,
+                md.title,
+                md.dateCreated,
+                md.body,
+                personNames,
+                categoryTitles,
+                entryAttachments,
+                md.location
+        );
+    }
+
+    /**
+     * Reconstructs the metadata from loaded entries. Person names, category titles and
+     * attachment names are used as IDs.
+     *
+     * @param entries The loaded entries
+     * @return The reconstructed metadata
+     */
+    public Metadata buildMetadata(List<Entry> entries) {
+        Map<String, PersonMetadata> personMap = new HashMap<>();
+        Map<String, CategoryMetadata> categoryMap = new HashMap<>();
+        Map<String, AttachmentMetadata> attachmentMap = new HashMap<>();
+        Map<String, EntryMetadata> entryMetadataMap = new HashMap<>();
+
+        for (Entry entry : entries) {
+            // Build/ensure people metadata
+            List<String> personIdsForMeta = new ArrayList<>();
+            for (String name : entry.persons()) {
+                if (name == null || name.isBlank()) continue;
+                String personId = name; // use full name as ID to avoid JSON dep
+                if (!personMap.containsKey(personId)) {
+                    String first = name;
+                    String last = "";
+                    int space = name.lastIndexOf(' ');
+                    if (space > 0) {
+                        first = name.substring(0, space).trim();
+                        last = name.substring(space + 1).trim();
+                    }
+                    personMap.put(personId, new PersonMetadata(personId, first, last, null));
+                }
+                personIdsForMeta.add(personId);
+            }
+
+            // Build/ensure category metadata
+            List<String> categoryIdsForMeta = new ArrayList<>();
+            for (String cat : entry.categories()) {
+                if (cat == null || cat.isBlank()) continue;
+                String categoryId = cat; // use title as ID
+                categoryMap.putIfAbsent(categoryId, new CategoryMetadata(categoryId, cat));
+                categoryIdsForMeta.add(categoryId);
+            }
+
+            // Attachments are identified by their name
+            List<String> attachmentIdsForMeta = new ArrayList<>();
+            for (com.vojtechruzicka.xjsexporter.model.Attachment attachment : entry.attachments()) {
+                attachmentMap.put(attachment.name(), new AttachmentMetadata(
+                        attachment.name(),
+                        attachment.absoluteSourcePath(),
+                        attachment.name(),
+                        attachment.relativeLocation()
+                ));
+                attachmentIdsForMeta.add(attachment.name());
+            }
+
+            // Create and store EntryMetadata (IDs are names we used as IDs)
+            entryMetadataMap.put(entry.id(), new EntryMetadata(
+                    entry.id(),
+                    entry.title(),
+                    entry.location(),
+                    entry.created(),
+                    attachmentIdsForMeta,
+                    categoryIdsForMeta,
+                    personIdsForMeta
+            ));
+        }
+
+        return new Metadata(personMap, categoryMap, attachmentMap, entryMetadataMap);
     }
 
     /**
@@ -0,0 +1,16 @@
+package com.vojtechruzicka.xjsexporter.model.json;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JSON representation of an entry header, without body and attachments, in a shard summary.
+ */
+public record ShardEntryJson(
+        String id,
+        String title,
+        LocalDateTime created,
+        List<String> persons,
+        List<String> categories
+) {
+}
@@ -0,0 +1,17 @@
+package com.vojtechruzicka.xjsexporter.model.json;
+
+import java.util.List;
+
+/**
+ * JSON summary written by every shard of a sharded generation and read by the merge step.
+ * Holds the headers of the entries of the shard, which is all the global pages need.
+ */
+public record ShardSummaryJson(
+        int shard,
+        int shards,
+        String format,
+        int totalEntries,
+        String entriesFingerprint,
+        List<ShardEntryJson> entries
+) {
+}
@@ -0,0 +1,92 @@
+package com.vojtechruzicka.xjsexporter.output;
+
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore.Checkpoint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Records every file written to a directory sink in a checkpoint, so an interrupted generation
+ * can skip it when resumed. Generated pages are verified by hash, copied files by size.
+ * <p>
+ * A file is recorded only when the sink reports it complete, with its precompressed sibling, so a run
+ * interrupted while compressing writes the missing {@code .gz} files again when resumed.
+ */
+public class CheckpointOutputSink implements OutputSink {
+
+    public static final String PAGE = "page";
+    public static final String COPY = "copy";
+
+    private final OutputSink delegate;
+    private final Checkpoint checkpoint;
+    private volatile boolean completed;
+
+    public CheckpointOutputSink(OutputSink delegate, Checkpoint checkpoint) {
+        this.delegate = delegate;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Whether the file at the given site path was written completely by a previous run.
+     */
+    public boolean isDone(String relativePath) {
+        return checkpoint.isDone(PAGE, relativePath) || checkpoint.isDone(COPY, relativePath);
+    }
+
+    /**
+     * Marks the whole site as written. The checkpoint is deleted when the sink is closed, once the files derived
+     * from the written ones are complete too.
+     */
+    public void complete() {
+        completed = true;
+    }
+
+    /**
+     * Number of files a previous run had already written.
+     */
+    public int skippedCount() {
+        return checkpoint.skippedCount();
+    }
+
+    @Override
+    public void write(String relativePath, byte[] content) throws IOException {
+        delegate.write(relativePath, content, () -> checkpoint.done(PAGE, relativePath, relativePath, content));
+    }
+
+    @Override
+    public long copy(String relativePath, Path source) throws IOException {
+        return delegate.copy(relativePath, source, () -> checkpoint.done(COPY, relativePath, relativePath, false));
+    }
+
+    @Override
+    public void commit() throws IOException {
+        delegate.commit();
+    }
+
+    @Override
+    public String location() {
+        return delegate.location();
+    }
+
+    @Override
+    public Set<String> changedPaths() {
+        return delegate.changedPaths();
+    }
+
+    @Override
+    public void close() throws IOException {
+        boolean closed = false;
+        try {
+            delegate.close();
+            closed = true;
+        } finally {
+            // A failed precompression keeps the checkpoint, so the files it missed are written again when resumed
+            if (completed && closed) {
+                checkpoint.complete();
+            } else {
+                checkpoint.close();
+            }
+        }
+    }
+}
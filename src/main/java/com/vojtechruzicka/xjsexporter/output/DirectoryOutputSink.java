@@ -0,0 +1,142 @@
+package com.vojtechruzicka.xjsexporter.output;
+
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.StableFiles;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default output writing the site as a tree of files into a target directory.
+ * Optionally writes precompressed siblings through a {@link Precompressor.Session}.
+ * <p>
+ * Files which already hold the same content are left alone with their modification times, see
+ * {@link StableFiles}, and the paths of all files created or changed are collected.
+ */
+@Slf4j
+public class DirectoryOutputSink implements OutputSink {
+
+    private final Path root;
+    private final Precompressor.Session precompression;
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+    private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+    private final Set<String> writtenPaths = ConcurrentHashMap.newKeySet();
+
+    public DirectoryOutputSink(Path root, Precompressor.Session precompression) throws IOException {
+        this.root = root;
+        this.precompression = precompression;
+        Files.createDirectories(root);
+        createdDirectories.add(root);
+    }
+
+    @Override
+    public void write(String relativePath, byte[] content) throws IOException {
+        write(relativePath, content, () -> {
+        });
+    }
+
+    @Override
+    public void write(String relativePath, byte[] content, Completion completion) throws IOException {
+        if (isDuplicate(relativePath)) {
+            completion.complete();
+            return;
+        }
+        Path target = resolve(relativePath);
+        if (StableFiles.write(target, content)) {
+            changedPaths.add(relativePath);
+        }
+        if (precompression != null) {
+            precompression.submit(target, content, unchecked(completion));
+        } else {
+            completion.complete();
+        }
+    }
+
+    @Override
+    public long copy(String relativePath, Path source) throws IOException {
+        return copy(relativePath, source, () -> {
+        });
+    }
+
+    @Override
+    public long copy(String relativePath, Path source, Completion completion) throws IOException {
+        if (isDuplicate(relativePath)) {
+            completion.complete();
+            return 0;
+        }
+        Path target = resolve(relativePath);
+        if (StableFiles.copy(source, target)) {
+            changedPaths.add(relativePath);
+        }
+        long bytes = Files.size(target);
+        if (precompression != null) {
+            precompression.submit(target, unchecked(completion));
+        } else {
+            completion.complete();
+        }
+        return bytes;
+    }
+
+    /**
+     * Whether the path was already written by this sink. The first file is kept, like in an archive, which
+     * can't replace an entry.
+     */
+    private boolean isDuplicate(String relativePath) {
+        if (writtenPaths.add(relativePath)) {
+            return false;
+        }
+        log.warn("Skipping duplicate file {} in {}, the first one is kept", relativePath, root);
+        return true;
+    }
+
+    /**
+     * The completion as run by a compression task, whose failures are reported when the session is closed.
+     */
+    private static Runnable unchecked(Completion completion) {
+        return () -> {
+            try {
+                completion.complete();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @Override
+    public String location() {
+        return root.toString();
+    }
+
+    @Override
+    public Set<String> changedPaths() {
+        if (precompression == null) {
+            return changedPaths;
+        }
+        Set<String> paths = new HashSet<>(changedPaths);
+        paths.addAll(precompression.compressedFiles());
+        return paths;
+    }
+
+    private Path resolve(String relativePath) throws IOException {
+        Path target = root.resolve(relativePath);
+        Path parent = target.getParent();
+        if (parent != null && !createdDirectories.contains(parent)) {
+            Files.createDirectories(parent);
+            createdDirectories.add(parent);
+        }
+        return target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (precompression != null) {
+            precompression.close();
+        }
+    }
+}
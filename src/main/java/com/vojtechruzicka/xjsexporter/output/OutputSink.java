@@ -0,0 +1,96 @@
+package com.vojtechruzicka.xjsexporter.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Destination of the generated site. Paths are relative to the site root and always use
+ * forward slashes, e.g. {@code entries/2020-01-01_10-00-00_title.html}.
+ * <p>
+ * Every path is written once per sink. A later write or copy of the same path, e.g. of two attachments
+ * with the same name, is skipped with a warning, so all sinks keep the same first file.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * Writes a generated file.
+     *
+     * @param relativePath The path relative to the site root
+     * @param content      The file content
+     * @throws IOException If an I/O error occurs
+     */
+    void write(String relativePath, byte[] content) throws IOException;
+
+    /**
+     * Copies an existing file (e.g. an attachment) into the site.
+     *
+     * @param relativePath The path relative to the site root
+     * @param source       The file to copy
+     * @return The number of bytes copied
+     * @throws IOException If an I/O error occurs
+     */
+    long copy(String relativePath, Path source) throws IOException;
+
+    /**
+     * Writes a generated file and calls the completion once the file and the files derived from it, like a
+     * precompressed sibling, are complete. The completion may be called later on another thread, and is not
+     * called if a derived file fails. Sinks deriving no files call it right away.
+     *
+     * @param relativePath The path relative to the site root
+     * @param content      The file content
+     * @param completion   Called when the file is complete
+     * @throws IOException If an I/O error occurs
+     */
+    default void write(String relativePath, byte[] content, Completion completion) throws IOException {
+        write(relativePath, content);
+        completion.complete();
+    }
+
+    /**
+     * Copies an existing file into the site and calls the completion once the copy and the files derived from
+     * it are complete, like {@link #write(String, byte[], Completion)}.
+     *
+     * @return The number of bytes copied
+     * @throws IOException If an I/O error occurs
+     */
+    default long copy(String relativePath, Path source, Completion completion) throws IOException {
+        long bytes = copy(relativePath, source);
+        completion.complete();
+        return bytes;
+    }
+
+    /**
+     * @return Human readable location of the output, used in command results
+     */
+    String location();
+
+    /**
+     * Marks the output as complete. Sinks replacing the previous output as a whole, like an archive, only do so
+     * when committed, and discard what was written when closed without a commit. Files written to a directory
+     * stay in place either way.
+     *
+     * @throws IOException If the output can't be completed
+     */
+    default void commit() throws IOException {
+    }
+
+    /**
+     * Paths of the files this sink created or changed, relative to the site root. Complete once the sink is
+     * closed.
+     *
+     * @return The paths, or null if the sink does not track changes, like an archive written as a whole
+     */
+    default Set<String> changedPaths() {
+        return null;
+    }
+
+    /**
+     * Called when a written file is complete.
+     */
+    @FunctionalInterface
+    interface Completion {
+        void complete() throws IOException;
+    }
+}
@@ -0,0 +1,45 @@
+package com.vojtechruzicka.xjsexporter.output;
+
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Chooses the output sink for a target path: a {@code .zip} target is written as a single
+ * streaming archive, anything else as a directory tree.
+ */
+@Service
+public class OutputSinkFactory {
+
+    private final Precompressor precompressor;
+
+    public OutputSinkFactory(Precompressor precompressor) {
+        this.precompressor = precompressor;
+    }
+
+    public static boolean isArchive(String targetPath) {
+        return targetPath.toLowerCase().endsWith(".zip");
+    }
+
+    /**
+     * Opens the sink for the given target.
+     *
+     * @param targetPath  Target directory, or target {@code .zip} file
+     * @param precompress Whether to write {@code .gz} siblings (directory output only)
+     * @return The opened sink
+     * @throws IOException If the target can't be created
+     */
+    public OutputSink open(String targetPath, boolean precompress) throws IOException {
+        if (isArchive(targetPath)) {
+            if (precompress) {
+                throw new IOException("Precompression is only supported for directory output, not for " + targetPath);
+            }
+            return new ZipOutputSink(Path.of(targetPath));
+        }
+
+        Path root = Path.of(targetPath);
+        return new DirectoryOutputSink(root, precompress ? precompressor.open(root) : null);
+    }
+}
@@ -0,0 +1,115 @@
+package com.vojtechruzicka.xjsexporter.output;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the whole site sequentially into a single ZIP archive instead of creating thousands
+ * of small files. Generated pages are deflated, attachments are stored as they are (they are
+ * mostly already compressed images and documents).
+ * <p>
+ * The archive is written to a temporary file next to the target and moved into place when the
+ * sink is committed. Closing the sink without a commit, after a failed or interrupted run, deletes
+ * the temporary file and leaves an existing archive alone.
+ */
+@Slf4j
+public class ZipOutputSink implements OutputSink {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path archive;
+    private final Path temp;
+    private final ZipOutputStream zip;
+    private final Set<String> writtenEntries = new HashSet<>();
+    private boolean closed;
+
+    public ZipOutputSink(Path archive) throws IOException {
+        this.archive = archive;
+        if (archive.getParent() != null) {
+            Files.createDirectories(archive.getParent());
+        }
+        this.temp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE));
+        zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    @Override
+    public synchronized void write(String relativePath, byte[] content) throws IOException {
+        if (!writtenEntries.add(relativePath)) {
+            log.warn("Skipping duplicate file {} in {}, the first one is kept", relativePath, archive);
+            return;
+        }
+        ZipEntry entry = new ZipEntry(relativePath);
+        entry.setMethod(ZipEntry.DEFLATED);
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    @Override
+    public synchronized long copy(String relativePath, Path source) throws IOException {
+        if (!writtenEntries.add(relativePath)) {
+            log.warn("Skipping duplicate file {} in {}, the first one is kept", relativePath, archive);
+            return 0;
+        }
+        // Stored entries need size and CRC up front
+        long size = Files.size(source);
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(source)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+
+        ZipEntry entry = new ZipEntry(relativePath);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        try (InputStream in = Files.newInputStream(source)) {
+            in.transferTo(zip);
+        }
+        zip.closeEntry();
+        return size;
+    }
+
+    @Override
+    public String location() {
+        return archive.toString();
+    }
+
+    @Override
+    public synchronized void commit() throws IOException {
+        zip.close();
+        closed = true;
+        Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            zip.close();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import com.vojtechruzicka.xjsexporter.model.Attachment;
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders pages by appending markup directly, without evaluating template expressions.
+ * <p>
+ * Each method mirrors one of the Thymeleaf templates and produces exactly the same markup, including
+ * the whitespace Thymeleaf leaves behind removed elements and repeats between iterations. Any change
+ * of a template has to be made here too; {@code PageRendererParityTest} compares the output of both renderers
+ * for every kind of page, and {@code RendererBenchmarkTest} compares their speed on a synthetic journal.
+ * Selected by {@code xjs.renderer=direct}.
+ */
+@Component
+@ConditionalOnProperty(name = "xjs.renderer", havingValue = "direct")
+public class DirectPageRenderer implements PageRenderer {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd. MM. yyyy");
+
+    private final SiteAssets assets;
+
+    public DirectPageRenderer(SiteAssets assets) {
+        this.assets = assets;
+    }
+
+    /**
+     * entry.html
+     */
+    @Override
+    public String renderEntry(EntryPage page) {
+        Navigation navigation = page.navigation();
+        String basePath = navigation.basePath();
+        Html html = new Html(estimateSize(page.body()));
+        appendHead(html, navigation);
+        html.raw("\n\n    <!-- Content Section -->\n    <div class=\"content\">\n        <h1>").text(page.title())
+                .raw("</h1>\n        <div class=\"date-created\">\n            <span class=\"metadata-title\">Date created:</span>\n            <span>")
+                .text(page.dateCreated() != null ? DATE_FORMAT.format(page.dateCreated()) : null)
+                .raw("</span>\n        </div>\n        ");
+        if (!page.categories().isEmpty()) {
+            html.raw("<div class=\"categories\">\n            <span class=\"metadata-title\">Categories:</span>\n            ");
+            appendEntryLinks(html, "category", basePath, "categories/category_", page.categories());
+            html.raw("\n        </div>");
+        }
+        html.raw("\n        ");
+        if (!page.persons().isEmpty()) {
+            html.raw("<div class=\"persons\">\n            <span class=\"metadata-title\">Persons:</span>\n            ");
+            appendEntryLinks(html, "person", basePath, "persons/person_", page.persons());
+            html.raw("\n        </div>");
+        }
+        html.raw("\n        <hr>\n\n        <div class=\"entry-body\">\n            ");
+        boolean emptyBody = isEmpty(page.body());
+        if (emptyBody) {
+            html.raw("<span>[Empty body]</span>");
+        }
+        html.raw("\n            ");
+        if (!emptyBody) {
+            html.raw("<span>").raw(page.body()).raw("</span>");
+        }
+        html.raw("\n        </div>\n\n        <!-- Enhanced Attachments Section -->\n        ");
+        boolean hasImages = page.hasImageAttachments();
+        if (!page.attachments().isEmpty() || hasImages) {
+            appendAttachments(html, page, hasImages);
+        }
+        html.raw("\n\n\n    </div>\n</div>\n</body>\n</html>");
+        return html.toString();
+    }
+
+    private void appendAttachments(Html html, EntryPage page, boolean hasImages) {
+        String basePath = page.navigation().basePath();
+        html.raw("<div class=\"attachments-section\">\n            <hr>\n            ");
+        long nonImageCount = page.nonImageAttachmentsCount();
+        if (nonImageCount > 0) {
+            html.raw("<div class=\"attachments-header\">\n                <h3>Attachments</h3>\n                <span class=\"attachment-count\">")
+                    .text(nonImageCount + " file" + (nonImageCount > 1 ? "s" : ""))
+                    .raw("</span>\n            </div>");
+        }
+        html.raw("\n\n            <div class=\"attachments-grid\">\n                ");
+        List<Attachment> attachments = page.attachments();
+        for (int i = 0; i < attachments.size(); i++) {
+            Attachment attachment = attachments.get(i);
+            if (i > 0) {
+                html.raw("\n                ");
+            }
+            if (EntryPage.isImage(attachment)) {
+                continue;
+            }
+            String href = attachmentHref(basePath, attachment);
+            String extension = attachment.extension();
+            html.raw("<div class=\"attachment-item\">\n\n                    <div class=\"attachment-icon ")
+                    .text(extension != null ? "icon-" + extension.toLowerCase() : "icon-file")
+                    .raw("\">\n                        <span class=\"file-type-badge\">")
+                    .text(extension != null ? extension.toUpperCase() : "FILE")
+                    .raw("</span>\n                    </div>\n\n                    <div class=\"attachment-info\">\n                        <a class=\"attachment-name\"\n                           href=\"")
+                    .text(href)
+                    .raw("\"\n                           target=\"_blank\"\n                           rel=\"noopener noreferrer\">")
+                    .text(attachment.name())
+                    .raw("</a>\n\n                        <div class=\"attachment-meta\">\n                            ");
+            if (attachment.size() != null) {
+                html.raw("<span class=\"file-size\">").text(attachment.formattedSize()).raw("</span>");
+            }
+            html.raw("\n                            ");
+            if (attachment.mimeType() != null) {
+                html.raw("<span class=\"file-type\">").text(attachment.mimeType()).raw("</span>");
+            }
+            html.raw("\n                        </div>\n                    </div>\n\n                    <div class=\"attachment-actions\">\n                        <a class=\"btn-download\"\n                           href=\"")
+                    .text(href)
+                    .raw("\"\n                           download\n                           title=\"Download file\">\n                            📥\n                        </a>\n                        <a class=\"btn-external\"\n                           href=\"")
+                    .text(href)
+                    .raw("\"\n                           target=\"_blank\"\n                           title=\"Open in new tab\">\n                            🔗\n                        </a>\n                    </div>\n                </div>");
+        }
+        html.raw("\n            </div>\n            \n            <!-- Image Gallery Section -->\n            ");
+        if (hasImages) {
+            html.raw("<div>\n                <h3>Image Attachments</h3>\n                <div class=\"gallery-grid\">\n                    ");
+            for (int i = 0; i < attachments.size(); i++) {
+                Attachment attachment = attachments.get(i);
+                if (i > 0) {
+                    html.raw("\n                    ");
+                }
+                if (!EntryPage.isImage(attachment)) {
+                    continue;
+                }
+                String href = attachmentHref(basePath, attachment);
+                html.raw("<div class=\"gallery-item\">\n                        <a class=\"gallery-link\" href=\"").text(href)
+                        .raw("\" data-title=\"").text(attachment.name())
+                        .raw("\">\n                            <img class=\"gallery-image\" src=\"").text(href)
+                        .raw("\" alt=\"").text(attachment.name())
+                        .raw("\">\n                            <div class=\"gallery-caption\">\n                                <span class=\"gallery-image-name\">")
+                        .text(attachment.name())
+                        .raw("</span>\n                                <div class=\"gallery-actions\">\n                                    <a class=\"btn-external\"\n                                       href=\"")
+                        .text(href)
+                        .raw("\"\n                                       target=\"_blank\"\n                                       title=\"Open in a new tab\">\n                                        🔗\n                                    </a>\n                                </div>\n                            </div>\n                        </a>\n                    </div>");
+            }
+            html.raw("\n                </div>\n            </div>");
+        }
+        html.raw("\n        </div>");
+    }
+
+    /**
+     * journal_entries_display.html
+     */
+    @Override
+    public String renderEntryList(EntryListPage page) {
+        Navigation navigation = page.navigation();
+        String basePath = navigation.basePath();
+        Html html = new Html(64 * 1024 + page.entries().size() * 1024);
+        appendHead(html, navigation);
+        html.raw("\n\n    <!-- Content Section -->\n    <div class=\"content\">\n        <h1>")
+                .text("Journal Entries" + (navigation.currentItem() != null ? " - " + navigation.currentItem() : ""))
+                .raw("</h1>\n\n        ");
+        List<Entry> entries = page.entries();
+        if (!entries.isEmpty()) {
+            html.raw("<div class=\"journal-list\">\n            ");
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (i > 0) {
+                    html.raw("\n            ");
+                }
+                html.raw("<div class=\"journal-entry\">\n                <h2 class=\"title\">\n                    <a href=\"")
+                        .text(basePath + "entries/" + entry.location() + ".html")
+                        .raw("\">").text(entry.title())
+                        .raw("</a>\n                </h2>\n                <div class=\"metadata\">\n                    <div class=\"date-created\">\n                        <span class=\"metadata-title\">Date created:</span>\n                        <span>")
+                        .text(entry.created() != null ? DATE_FORMAT.format(entry.created()) : null)
+                        .raw("</span>\n                    </div>\n                    ");
+                if (!entry.categories().isEmpty()) {
+                    html.raw("<div class=\"categories\">\n                        <span class=\"metadata-title\">Categories:</span>\n                        ");
+                    appendEntryLinks(html, "category", basePath, "categories/category_", entry.categories());
+                    html.raw("\n                    </div>");
+                }
+                html.raw("\n                    ");
+                if (!entry.persons().isEmpty()) {
+                    html.raw("<div class=\"persons\">\n                        <span class=\"metadata-title\">Persons:</span>\n                        ");
+                    appendEntryLinks(html, "person", basePath, "persons/person_", entry.persons());
+                    html.raw("\n                    </div>");
+                }
+                html.raw("\n                </div>\n            </div>");
+            }
+            html.raw("\n        </div>");
+        }
+        html.raw("\n\n        ");
+        if (entries.isEmpty()) {
+            html.raw("<div class=\"no-entries\">\n            <p>No journal entries were found.</p>\n        </div>");
+        }
+        html.raw("\n    </div>\n</div>\n</body>\n</html>");
+        return html.toString();
+    }
+
+    /**
+     * generic_list.html with the list fragment
+     */
+    @Override
+    public String renderItemList(ItemListPage page) {
+        Navigation navigation = page.navigation();
+        String basePath = navigation.basePath();
+        String itemType = page.itemType();
+        List<String> items = page.items();
+        Html html = new Html(64 * 1024 + items.size() * 256);
+        appendHead(html, navigation);
+        html.raw("\n\n    <!-- Include List Template Fragment -->\n    <div class=\"content\">\n        <h1>").text(page.listTitle())
+                .raw("</h1>\n\n        ");
+        if (!items.isEmpty()) {
+            html.raw("<div class=\"list-container\">\n            <ul class=\"items-list\">\n                ");
+            for (int i = 0; i < items.size(); i++) {
+                String item = items.get(i);
+                if (i > 0) {
+                    html.raw("\n                ");
+                }
+                html.raw("<li>\n                    ");
+                if ("year".equals(itemType)) {
+                    html.raw("<a href=\"").text(concat(basePath, "years/", item, ".html")).raw("\">").text(item).raw("</a>");
+                }
+                html.raw("\n                    ");
+                if ("person".equals(itemType)) {
+                    html.raw("<a href=\"").text(concat(basePath, "persons/person_", underscored(item), ".html")).raw("\">").text(item).raw("</a>");
+                }
+                html.raw("\n                    ");
+                if ("category".equals(itemType)) {
+                    html.raw("<a href=\"").text(concat(basePath, "categories/category_", underscored(item), ".html")).raw("\">").text(item).raw("</a>");
+                }
+                html.raw("\n                    ");
+                if ("day".equals(itemType)) {
+                    html.raw("<a href=\"").text(concat(basePath, "days/", item, ".html")).raw("\">").text(item).raw("</a>");
+                }
+                html.raw("\n                    <span class=\"badge\">").text(count(navigation.counts(), item)).raw("</span>\n                </li>");
+            }
+            html.raw("\n            </ul>\n        </div>");
+        }
+        html.raw("\n\n        ");
+        if (items.isEmpty()) {
+            html.raw("<div class=\"no-items\">\n            <p>").text("No " + itemType + "s were found.").raw("</p>\n        </div>");
+        }
+        html.raw("\n    </div>\n</div>\n</body>\n</html>");
+        return html.toString();
+    }
+
+    /**
+     * Head fragment, the opening of the page body and the navigation fragment.
+     */
+    private void appendHead(Html html, Navigation navigation) {
+        html.raw("<!DOCTYPE html>\n<html>\n<head>\n    <meta charset=\"UTF-8\">\n</head><head>\n        <meta charset=\"UTF-8\">\n        <title>")
+                .text(navigation.pageTitle() != null ? navigation.pageTitle() : "Journal Entries")
+                .raw("</title>\n        <style>").raw(assets.css())
+                .raw("</style>\n        <script>").raw(assets.javaScript())
+                .raw("</script>\n    </head>\n<body>\n<!-- Outer container to center and limit width -->\n<div class=\"container\">\n    <!-- Include Navigation Panel Fragment -->\n    ");
+        appendNavigation(html, navigation);
+    }
+
+    /**
+     * fragments/navigation.html
+     */
+    private void appendNavigation(Html html, Navigation navigation) {
+        String pageType = navigation.pageType();
+        String basePath = navigation.basePath() != null ? navigation.basePath() : "xxx";
+        html.raw("<div class=\"navigation-panel\">\n        <h2>Browse By</h2>\n\n        <!-- Links to list pages -->\n        <ul class=\"list-pages\">\n            ");
+        appendListPageLink(html, basePath, pageType, "main", "index.html", "All Entries");
+        html.raw("\n            ");
+        appendListPageLink(html, basePath, pageType, "persons_list", "lists/persons_list.html", "Persons List");
+        html.raw("\n            ");
+        appendListPageLink(html, basePath, pageType, "categories_list", "lists/categories_list.html", "Categories List");
+        html.raw("\n            ");
+        appendListPageLink(html, basePath, pageType, "years_list", "lists/years_list.html", "Years List");
+        html.raw("\n            ");
+        appendListPageLink(html, basePath, pageType, "days_list", "lists/days_list.html", "Days List");
+        html.raw("\n        </ul>\n\n        <!-- Current filter info -->\n        ");
+        appendCurrentFilter(html, navigation, "person", "Current Person");
+        html.raw("\n        ");
+        appendCurrentFilter(html, navigation, "category", "Current Category");
+        html.raw("\n        ");
+        appendCurrentFilter(html, navigation, "year", "Current Year");
+        html.raw("\n        ");
+        appendCurrentFilter(html, navigation, "day", "Current Day");
+        html.raw("\n\n        <!-- Persons - only show if not on a person page or show filtered list -->\n        ");
+        if (!"person".equals(pageType)) {
+            appendNavigationSection(html, navigation.counts(), "persons", "Persons", navigation.persons(), basePath, "persons/person_", true);
+        }
+        html.raw("\n\n        <!-- Categories - only show if not on a category page or show filtered list -->\n        ");
+        if (!"category".equals(pageType)) {
+            appendNavigationSection(html, navigation.counts(), "categories", "Categories", navigation.categories(), basePath, "categories/category_", true);
+        }
+        html.raw("\n\n        <!-- Years - only show if not on a year page or show filtered list -->\n        ");
+        if (!"year".equals(pageType)) {
+            appendNavigationSection(html, navigation.counts(), "years", "Years", navigation.years(), basePath, "years/", false);
+        }
+        html.raw("\n    </div>");
+    }
+
+    private void appendListPageLink(Html html, String basePath, String pageType, String linkPageType, String path, String label) {
+        boolean current = linkPageType.equals(pageType);
+        html.raw("<li>");
+        if (!current) {
+            html.raw("<a href=\"").text(concat(basePath, path, null, null)).raw("\">").raw(label).raw("</a>");
+        }
+        html.raw("\n                ");
+        if (current) {
+            html.raw("<strong>").raw(label).raw("</strong>");
+        }
+        html.raw("</li>");
+    }
+
+    private void appendCurrentFilter(Html html, Navigation navigation, String pageType, String heading) {
+        if (pageType.equals(navigation.pageType())) {
+            html.raw("<div class=\"current-filter\">\n            <h3>").raw(heading).raw("</h3>\n            <p>")
+                    .text(navigation.currentItem()).raw("</p>\n        </div>");
+        }
+    }
+
+    private void appendNavigationSection(Html html, Map<String, Integer> counts, String sectionId, String heading, List<String> items,
+                                         String basePath, String pagePrefix, boolean underscored) {
+        html.raw("<div class=\"collapsible-section\" data-section-id=\"").raw(sectionId)
+                .raw("\">\n            <h3 class=\"collapsible-header\">").raw(heading).raw(" <span class=\"badge\">").text(String.valueOf(items.size()))
+                .raw("</span><span class=\"toggle-icon\"></span></h3>\n            <ul class=\"collapsible-content\">\n                ");
+        for (int i = 0; i < items.size(); i++) {
+            String item = items.get(i);
+            if (i > 0) {
+                html.raw("\n                ");
+            }
+            html.raw("<li>\n                    <a href=\"").text(concat(basePath, pagePrefix, underscored ? underscored(item) : item, ".html"))
+                    .raw("\">\n                        <span>").text(item).raw("</span>\n                        ");
+            if (counts != null && counts.containsKey(item)) {
+                html.raw("<span class=\"badge\">").text(count(counts, item)).raw("</span>");
+            }
+            html.raw("\n                    </a>\n                </li>");
+        }
+        html.raw("\n                ");
+        if (items.isEmpty()) {
+            html.raw("<li>\n                    <span>No ").raw(sectionId).raw(" available.</span>\n                </li>");
+        }
+        html.raw("\n            </ul>\n        </div>");
+    }
+
+    /**
+     * Inline links of an entry to its categories or persons.
+     */
+    private void appendEntryLinks(Html html, String cssClass, String basePath, String pagePrefix, List<String> items) {
+        for (String item : items) {
+            html.raw("<a class=\"").raw(cssClass).raw("\" href=\"").text(concat(basePath, pagePrefix, underscored(item), ".html"))
+                    .raw("\">").text(item).raw("</a>");
+        }
+    }
+
+    private static String attachmentHref(String basePath, Attachment attachment) {
+        return basePath + "attachments/" + attachment.relativeLocation();
+    }
+
+    private static String count(Map<String, Integer> counts, String item) {
+        Integer count = counts != null ? counts.get(item) : null;
+        return count != null ? count.toString() : null;
+    }
+
+    private static String underscored(String value) {
+        return value != null ? value.replace(" ", "_") : null;
+    }
+
+    /**
+     * Concatenation as done by {@code #strings.concat}, which skips null values.
+     */
+    private static String concat(String first, String second, String third, String fourth) {
+        StringBuilder result = new StringBuilder();
+        for (String value : new String[]{first, second, third, fourth}) {
+            if (value != null) {
+                result.append(value);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Same as {@code #strings.isEmpty}, which also treats whitespace only strings as empty.
+     */
+    private static boolean isEmpty(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private int estimateSize(String body) {
+        return assets.css().length() + assets.javaScript().length() + 16 * 1024 + (body != null ? body.length() : 0);
+    }
+
+    /**
+     * Builder of the markup, escaping text the same way Thymeleaf escapes text and attribute values.
+     */
+    private static final class Html {
+
+        private final StringBuilder builder;
+
+        private Html(int capacity) {
+            this.builder = new StringBuilder(capacity);
+        }
+
+        Html raw(String markup) {
+            builder.append(markup);
+            return this;
+        }
+
+        Html text(String text) {
+            if (text == null) {
+                return this;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '&' -> builder.append("&amp;");
+                    case '<' -> builder.append("&lt;");
+                    case '>' -> builder.append("&gt;");
+                    case '"' -> builder.append("&quot;");
+                    case '\'' -> builder.append("&#39;");
+                    default -> builder.append(c);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+    }
+}
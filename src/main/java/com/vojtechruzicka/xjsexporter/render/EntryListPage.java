@@ -0,0 +1,13 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import com.vojtechruzicka.xjsexporter.model.Entry;
+
+import java.util.List;
+
+/**
+ * A page listing entries.
+ *
+ * @param entries The listed entries, their location is the file name of the entry page
+ */
+public record EntryListPage(Navigation navigation, List<Entry> entries) {
+}
@@ -0,0 +1,32 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import com.vojtechruzicka.xjsexporter.model.Attachment;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The page of a single entry.
+ *
+ * @param body HTML body of the entry with attachment links already pointing to the site
+ */
+public record EntryPage(Navigation navigation,
+                        String title,
+                        LocalDate dateCreated,
+                        String body,
+                        List<String> categories,
+                        List<String> persons,
+                        List<Attachment> attachments) {
+
+    public static boolean isImage(Attachment attachment) {
+        return attachment.mimeType() != null && attachment.mimeType().startsWith("image/");
+    }
+
+    public boolean hasImageAttachments() {
+        return attachments.stream().anyMatch(EntryPage::isImage);
+    }
+
+    public long nonImageAttachmentsCount() {
+        return attachments.stream().filter(attachment -> !isImage(attachment)).count();
+    }
+}
@@ -0,0 +1,13 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import java.util.List;
+
+/**
+ * A page listing all persons, categories, years or days of the year with their entry counts, taken from the navigation.
+ *
+ * @param listTitle Heading of the list
+ * @param itemType  Type of the listed items (person, category, year, day)
+ * @param items     The listed items
+ */
+public record ItemListPage(Navigation navigation, String listTitle, String itemType, List<String> items) {
+}
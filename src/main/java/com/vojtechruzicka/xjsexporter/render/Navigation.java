@@ -0,0 +1,26 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content of the navigation panel and the page head, shared by all page kinds.
+ *
+ * @param pageType    Page type (entry, main, person, category, year, day, persons_list, categories_list, years_list, days_list)
+ * @param currentItem The person, category, year or day the page is filtered by, the entry title for entry pages, null otherwise
+ * @param pageTitle   Title of the page
+ * @param basePath    Relative path from the page to the site root
+ * @param persons     Persons to navigate to
+ * @param categories  Categories to navigate to
+ * @param years       Years to navigate to
+ * @param counts      Number of entries by person, category, year and day of the year, items without a count get no badge
+ */
+public record Navigation(String pageType,
+                         String currentItem,
+                         String pageTitle,
+                         String basePath,
+                         List<String> persons,
+                         List<String> categories,
+                         List<String> years,
+                         Map<String, Integer> counts) {
+}
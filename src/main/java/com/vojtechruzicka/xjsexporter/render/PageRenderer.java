@@ -0,0 +1,23 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+/**
+ * Renders the HTML pages of the generated site. All implementations produce the same markup,
+ * the one used is selected by the {@code xjs.renderer} property.
+ */
+public interface PageRenderer {
+
+    /**
+     * Renders the page of a single entry.
+     */
+    String renderEntry(EntryPage page);
+
+    /**
+     * Renders a page listing entries, i.e. the index and the year, person and category pages.
+     */
+    String renderEntryList(EntryListPage page);
+
+    /**
+     * Renders a page listing all persons, categories or years.
+     */
+    String renderItemList(ItemListPage page);
+}
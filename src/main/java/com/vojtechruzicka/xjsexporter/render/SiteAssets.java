@@ -0,0 +1,35 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Styles and scripts inlined into the head of every page. Read from the classpath once.
+ */
+@Component
+public class SiteAssets {
+
+    private final String css = read("/static/css/styles.css", "CSS");
+    private final String javaScript = read("/static/js/navigation.js", "JavaScript");
+
+    public String css() {
+        return css;
+    }
+
+    public String javaScript() {
+        return javaScript;
+    }
+
+    private String read(String resourcePath, String kind) {
+        try (var resource = getClass().getResourceAsStream(resourcePath)) {
+            if (resource != null) {
+                return new String(resource.readAllBytes());
+            } else {
+                return "/* " + kind + " file not found */";
+            }
+        } catch (IOException e) {
+            return "/* " + kind + " file not found: " + e.getMessage() + " */";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+/**
+ * Renders pages with the Thymeleaf templates in {@code src/main/resources/templates}. The default renderer.
+ */
+@Component
+@ConditionalOnProperty(name = "xjs.renderer", havingValue = "thymeleaf", matchIfMissing = true)
+public class ThymeleafPageRenderer implements PageRenderer {
+
+    private final TemplateEngine templateEngine;
+    private final SiteAssets assets;
+
+    public ThymeleafPageRenderer(TemplateEngine templateEngine, SiteAssets assets) {
+        this.templateEngine = templateEngine;
+        this.assets = assets;
+    }
+
+    @Override
+    public String renderEntry(EntryPage page) {
+        Context context = createContext(page.navigation());
+        context.setVariable("title", page.title());
+        context.setVariable("body", page.body());
+        // The entry's own categories and persons, the navigation uses the filtered lists
+        context.setVariable("categories", page.categories());
+        context.setVariable("persons", page.persons());
+        context.setVariable("attachments", page.attachments());
+        context.setVariable("dateCreated", page.dateCreated());
+        context.setVariable("hasImageAttachments", page.hasImageAttachments());
+        context.setVariable("nonImageAttachmentsCount", page.nonImageAttachmentsCount());
+        return templateEngine.process("entry", context);
+    }
+
+    @Override
+    public String renderEntryList(EntryListPage page) {
+        Context context = createContext(page.navigation());
+        context.setVariable("journalEntries", page.entries());
+        return templateEngine.process("journal_entries_display", context);
+    }
+
+    @Override
+    public String renderItemList(ItemListPage page) {
+        Context context = createContext(page.navigation());
+        context.setVariable("items", page.items());
+        context.setVariable("itemType", page.itemType());
+        context.setVariable("listTitle", page.listTitle());
+        return templateEngine.process("generic_list", context);
+    }
+
+    /**
+     * Sets up the variables of the head and navigation fragments.
+     */
+    private Context createContext(Navigation navigation) {
+        Context context = new Context();
+        context.setVariable("cssContent", assets.css());
+        context.setVariable("jsContent", assets.javaScript());
+        context.setVariable("pageType", navigation.pageType());
+        context.setVariable("currentItem", navigation.currentItem());
+        context.setVariable("pageTitle", navigation.pageTitle());
+        context.setVariable("basePath", navigation.basePath());
+        context.setVariable("counts", navigation.counts());
+        context.setVariable("persons", navigation.persons());
+        context.setVariable("categories", navigation.categories());
+        context.setVariable("years", navigation.years());
+        context.setVariable("filteredPersons", navigation.persons());
+        context.setVariable("filteredCategories", navigation.categories());
+        context.setVariable("filteredYears", navigation.years());
+        return context;
+    }
+}
@@ -0,0 +1,148 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Replaces identical files in several directory trees by hard links to a single file, so that attachments
+ * shared by several journals take disk space only once.
+ * <p>
+ * Files are grouped by size and only files of the same size are hashed. Files which are already hard links
+ * of each other are hashed once. If a link can't be created, e.g. because the trees are on different file
+ * systems, the copy is kept.
+ */
+@Service
+@Slf4j
+public class AttachmentDeduplicator {
+
+    private static final String LINK_SUFFIX = ".xjs-link";
+
+    /**
+     * Links identical files of the given directories. Directories which don't exist are skipped.
+     *
+     * @param directories The directory trees to deduplicate
+     * @return Number of linked files and saved bytes
+     * @throws IOException If the directories can't be listed
+     */
+    public Result deduplicate(List<Path> directories) throws IOException {
+        // Size -> file key -> paths, files with the same key are already the same file on disk
+        Map<Long, Map<Object, List<Path>>> bySize = new LinkedHashMap<>();
+        for (Path directory : directories) {
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attributes.isRegularFile() || attributes.size() == 0 || file.getFileName().toString().endsWith(LINK_SUFFIX)) {
+                        continue;
+                    }
+                    Object key = attributes.fileKey() != null ? attributes.fileKey() : file;
+                    bySize.computeIfAbsent(attributes.size(), size -> new LinkedHashMap<>())
+                            .computeIfAbsent(key, k -> new ArrayList<>())
+                            .add(file);
+                }
+            }
+        }
+
+        int linked = 0;
+        int failed = 0;
+        long savedBytes = 0;
+        for (Map.Entry<Long, Map<Object, List<Path>>> sameSize : bySize.entrySet()) {
+            if (sameSize.getValue().size() < 2) {
+                continue;
+            }
+            Map<String, List<List<Path>>> byHash = new LinkedHashMap<>();
+            for (List<Path> sameFile : sameSize.getValue().values()) {
+                try {
+                    byHash.computeIfAbsent(sha256(sameFile.get(0)), hash -> new ArrayList<>()).add(sameFile);
+                } catch (IOException e) {
+                    log.warn("Could not read {}: {}", sameFile.get(0), e.getMessage());
+                }
+            }
+            for (List<List<Path>> identical : byHash.values()) {
+                Path original = identical.get(0).get(0);
+                for (List<Path> duplicate : identical.subList(1, identical.size())) {
+                    boolean allLinked = true;
+                    for (Path file : duplicate) {
+                        if (link(original, file)) {
+                            linked++;
+                        } else {
+                            failed++;
+                            allLinked = false;
+                        }
+                    }
+                    // The space is only freed once no path refers to the duplicate any more
+                    if (allLinked) {
+                        savedBytes += sameSize.getKey();
+                    }
+                }
+            }
+        }
+        return new Result(linked, failed, savedBytes);
+    }
+
+    /**
+     * Replaces a file by a hard link of the original. The link is created next to the file first
+     * and then moved over it, so the file is never missing.
+     */
+    private boolean link(Path original, Path file) {
+        Path link = file.resolveSibling(file.getFileName() + LINK_SUFFIX);
+        try {
+            Files.deleteIfExists(link);
+            Files.createLink(link, original);
+            Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Could not link {} to {}: {}", file, original, e.getMessage());
+            try {
+                Files.deleteIfExists(link);
+            } catch (IOException deleteError) {
+                log.warn("Could not delete {}: {}", link, deleteError.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Outcome of a deduplication.
+     *
+     * @param linkedFiles Files replaced by a hard link
+     * @param failedLinks Identical files which could not be linked and were kept as copies
+     * @param savedBytes  Disk space freed by the links
+     */
+    public record Result(int linkedFiles, int failedLinks, long savedBytes) {
+    }
+}
@@ -0,0 +1,248 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the inner HTML of the {@code <body>} of an entry file without building a DOM.
+ * <p>
+ * The file is read whole into a heap buffer, so no file stays mapped or open after the call, and the body
+ * boundaries are found by scanning its bytes, which works for every ASCII compatible charset. Comments and
+ * the content of {@code script} and {@code style} elements are skipped, so a body tag inside them does not
+ * end the body. Only the body range is decoded, using the charset from the byte order mark or the
+ * {@code <meta>} declaration, UTF-8 otherwise. The original markup is returned unchanged. UTF-16 files,
+ * documents without a well formed body and documents with content after the body fall back to jsoup.
+ */
+@Service
+@Slf4j
+public class BodyExtractor {
+
+    private static final int CHARSET_SCAN_LIMIT = 4096;
+    private static final Pattern META_CHARSET = Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([A-Za-z0-9._:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final String BODY_OPEN = "<body";
+    private static final String BODY_CLOSE = "</body";
+    private static final String HTML_CLOSE = "</html";
+    private static final String COMMENT_OPEN = "<!--";
+    private static final String COMMENT_CLOSE = "-->";
+    private static final String[] RAW_TEXT_ELEMENTS = {"script", "style"};
+
+    /**
+     * Extracts the inner HTML of the body of the given file.
+     *
+     * @param path The HTML file, also a file in an archive
+     * @return The body markup as written in the file
+     * @throws IOException If the file can't be read
+     */
+    public String extractBody(Path path) throws IOException {
+        // Entry files are small enough to be read whole, mapping them would keep them locked on Windows until a GC
+        byte[] content = Files.readAllBytes(path);
+        return content.length == 0 ? extractWithJsoup(path) : extractBody(path, content);
+    }
+
+    private String extractBody(Path path, byte[] content) throws IOException {
+        int bomLength = 0;
+        Charset charset = null;
+        if (startsWith(content, (byte) 0xEF, (byte) 0xBB, (byte) 0xBF)) {
+            bomLength = 3;
+            charset = StandardCharsets.UTF_8;
+        } else if (startsWith(content, (byte) 0xFE, (byte) 0xFF) || startsWith(content, (byte) 0xFF, (byte) 0xFE)) {
+            // Tags are not single bytes in UTF-16, the byte scan does not apply
+            return extractWithJsoup(path);
+        }
+
+        // Every byte is one Latin-1 char at the same index, which lets the JDK search markup with vectorized indexOf
+        String text = new String(content, StandardCharsets.ISO_8859_1);
+        int bodyStart = findBodyStart(text, bomLength);
+        int bodyEnd = bodyStart >= 0 ? findBodyEnd(text, bodyStart) : -1;
+        if (bodyEnd < 0) {
+            log.debug("No well formed body in {}, falling back to jsoup", path);
+            return extractWithJsoup(path);
+        }
+
+        if (charset == null) {
+            charset = declaredCharset(text, Math.min(bodyStart, CHARSET_SCAN_LIMIT));
+        }
+        return new String(content, bodyStart, bodyEnd - bodyStart, charset);
+    }
+
+    /**
+     * The previous extraction through a full jsoup DOM, kept for malformed documents.
+     */
+    public String extractWithJsoup(Path path) throws IOException {
+        return Jsoup.parse(path).body().html();
+    }
+
+    /**
+     * Finds the first byte after the opening body tag, skipping comments.
+     */
+    private int findBodyStart(String text, int from) {
+        for (int i = text.indexOf('<', from); i >= 0; i = text.indexOf('<', i + 1)) {
+            if (text.startsWith(COMMENT_OPEN, i)) {
+                int end = text.indexOf(COMMENT_CLOSE, i + COMMENT_OPEN.length());
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + COMMENT_CLOSE.length() - 1;
+            } else if (isTag(text, i, BODY_OPEN)) {
+                return endOfTag(text, i + BODY_OPEN.length());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the closing body tag, skipping comments and the content of scripts and styles.
+     *
+     * @return The position of the closing tag, or -1 if there is none or content other than comments and the
+     * closing html tag follows it
+     */
+    private int findBodyEnd(String text, int from) {
+        int i = text.indexOf('<', from);
+        while (i >= 0) {
+            if (text.startsWith(COMMENT_OPEN, i)) {
+                int end = text.indexOf(COMMENT_CLOSE, i + COMMENT_OPEN.length());
+                if (end < 0) {
+                    return -1;
+                }
+                i = text.indexOf('<', end + COMMENT_CLOSE.length());
+                continue;
+            }
+            if (isTag(text, i, BODY_CLOSE)) {
+                return onlyClosingMarkupFollows(text, i) ? i : -1;
+            }
+            String rawTextElement = rawTextElementAt(text, i);
+            if (rawTextElement != null) {
+                int end = endOfRawText(text, i + 1 + rawTextElement.length(), rawTextElement);
+                if (end < 0) {
+                    return -1;
+                }
+                i = text.indexOf('<', end);
+                continue;
+            }
+            i = text.indexOf('<', i + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Whether only whitespace, comments and the closing html tag follow the closing body tag at the given position.
+     * jsoup moves any other content after the body into it, so such documents are left to jsoup.
+     */
+    private boolean onlyClosingMarkupFollows(String text, int bodyClose) {
+        int i = endOfTag(text, bodyClose + BODY_CLOSE.length());
+        while (i >= 0 && i < text.length()) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                i++;
+            } else if (text.startsWith(COMMENT_OPEN, i)) {
+                int end = text.indexOf(COMMENT_CLOSE, i + COMMENT_OPEN.length());
+                i = end < 0 ? -1 : end + COMMENT_CLOSE.length();
+            } else if (isTag(text, i, HTML_CLOSE)) {
+                i = endOfTag(text, i + HTML_CLOSE.length());
+            } else {
+                return false;
+            }
+        }
+        return i >= 0;
+    }
+
+    /**
+     * Name of the script or style element starting at the given position, null for other markup.
+     */
+    private String rawTextElementAt(String text, int i) {
+        for (String name : RAW_TEXT_ELEMENTS) {
+            if (text.regionMatches(true, i + 1, name, 0, name.length()) && isTagNameEnd(text, i + 1 + name.length())) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Position after the end tag of a script or style element whose start tag name ends at the given position.
+     */
+    private int endOfRawText(String text, int from, String name) {
+        int contentStart = endOfTag(text, from);
+        if (contentStart < 0) {
+            return -1;
+        }
+        for (int i = text.indexOf("</", contentStart); i >= 0; i = text.indexOf("</", i + 2)) {
+            if (text.regionMatches(true, i + 2, name, 0, name.length()) && isTagNameEnd(text, i + 2 + name.length())) {
+                return endOfTag(text, i + 2 + name.length());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Position after the {@code >} closing a tag, respecting quoted attribute values.
+     */
+    private int endOfTag(String text, int from) {
+        char quote = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private Charset declaredCharset(String text, int length) {
+        Matcher matcher = META_CHARSET.matcher(text).region(0, length);
+        if (matcher.find()) {
+            try {
+                Charset charset = Charset.forName(matcher.group(1));
+                // A UTF-16 declaration in a file without BOM is read as ASCII compatible, like browsers do
+                return charset.name().startsWith("UTF-16") ? StandardCharsets.UTF_8 : charset;
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                log.debug("Unknown charset {}, using UTF-8", matcher.group(1));
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Whether the tag with the given lower case prefix, e.g. {@code <body} or {@code </body}, starts at the position.
+     */
+    private static boolean isTag(String text, int i, String lowerCasePrefix) {
+        return text.regionMatches(true, i, lowerCasePrefix, 0, lowerCasePrefix.length()) && isTagNameEnd(text, i + lowerCasePrefix.length());
+    }
+
+    private static boolean isTagNameEnd(String text, int i) {
+        if (i >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(i);
+        return c == '>' || c == '/' || c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean startsWith(byte[] content, byte... prefix) {
+        if (content.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (content[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of long running commands. Interrupting the thread running a command stops
+ * it before its next entry, page or attachment.
+ */
+public final class Cancellation {
+
+    private Cancellation() {
+    }
+
+    /**
+     * Throws if the current thread was interrupted. The interrupt flag is cleared, so the checkpoint
+     * and output of the items done so far can still be written while the command unwinds.
+     *
+     * @throws CancellationException If the current thread was interrupted
+     */
+    public static void check() {
+        if (Thread.interrupted()) {
+            throw new CancellationException("Cancelled");
+        }
+    }
+}
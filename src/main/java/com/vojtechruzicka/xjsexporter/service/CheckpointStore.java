@@ -0,0 +1,238 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Durable progress of long running commands, so an interrupted run can be resumed.
+ * <p>
+ * A checkpoint records every finished item together with the size and SHA-256 hash of the file it
+ * produced. It is saved periodically as a whole to a temporary file which is then atomically renamed,
+ * so a crash leaves either the previous or the new checkpoint, never a partial one. A fingerprint of
+ * the inputs is stored too, and a checkpoint of different inputs is never resumed. On resume, an item
+ * counts as finished only if its file still exists with the recorded size and hash.
+ */
+@Service
+@Slf4j
+public class CheckpointStore {
+
+    public static final String CHECKPOINTS_DIR = ".checkpoints";
+    private static final String HEADER = "xjs-checkpoint 1";
+    private static final long FLUSH_INTERVAL_NANOS = 2_000_000_000L;
+    private static final String NO_HASH = "-";
+
+    /**
+     * Opens the checkpoint of a command.
+     *
+     * @param basePath    Directory holding the {@value #CHECKPOINTS_DIR} directory
+     * @param name        Name of the checkpoint, usually the command
+     * @param outputRoot  Directory the recorded files are relative to
+     * @param fingerprint Fingerprint of the inputs and options of the run
+     * @param resume      Whether to keep the finished items of a previous run with the same fingerprint
+     * @return The checkpoint
+     * @throws IOException If the checkpoint can't be read
+     */
+    public Checkpoint open(Path basePath, String name, Path outputRoot, String fingerprint, boolean resume) throws IOException {
+        Path file = basePath.resolve(CHECKPOINTS_DIR).resolve(name + ".checkpoint");
+        Checkpoint checkpoint = new Checkpoint(file, outputRoot, fingerprint);
+        if (resume && Files.exists(file)) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.size() >= 2 && lines.get(0).equals(HEADER) && lines.get(1).equals("fingerprint\t" + fingerprint)) {
+                for (String line : lines.subList(2, lines.size())) {
+                    String[] parts = line.split("\t", 5);
+                    if (parts.length == 5) {
+                        checkpoint.records.put(parts[0] + "\t" + parts[1], new Record(parts[0], parts[1], parts[2], Long.parseLong(parts[3]), parts[4]));
+                    }
+                }
+                checkpoint.resumed = checkpoint.records.size();
+                log.info("Resuming from checkpoint {} with {} finished items", file, checkpoint.resumed);
+            } else {
+                log.info("Checkpoint {} belongs to different inputs, starting over", file);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Fingerprint of arbitrary values describing the inputs of a run.
+     */
+    public static String fingerprint(Object... values) {
+        MessageDigest digest = sha256();
+        for (Object value : values) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Fingerprint of the names, sizes and modification times of all files in a directory tree,
+     * cheap enough to compute on every run. A missing directory has a fingerprint too.
+     */
+    public static String fingerprintFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return fingerprint(directory, "missing");
+        }
+        MessageDigest digest = sha256();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                String description = directory.relativize(file) + "\t" + Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis() + "\n";
+                digest.update(description.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hash(byte[] content) {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private record Record(String kind, String key, String file, long size, String hash) {
+    }
+
+    /**
+     * Progress of a single run.
+     */
+    public static class Checkpoint implements AutoCloseable {
+
+        private final Path file;
+        private final Path outputRoot;
+        private final String fingerprint;
+        private final Map<String, Record> records = new LinkedHashMap<>();
+        private int resumed;
+        private int skipped;
+        private boolean dirty;
+        private long lastFlush = System.nanoTime();
+
+        private Checkpoint(Path file, Path outputRoot, String fingerprint) {
+            this.file = file;
+            this.outputRoot = outputRoot;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Whether the item was finished by a previous run and its output is intact.
+         * Items whose output is missing or changed are forgotten and must be done again.
+         */
+        public synchronized boolean isDone(String kind, String key) {
+            Record record = records.get(kind + "\t" + key);
+            if (record == null) {
+                return false;
+            }
+            Path output = outputRoot.resolve(record.file());
+            try {
+                if (Files.exists(output) && Files.size(output) == record.size()
+                        && (record.hash().equals(NO_HASH) || record.hash().equals(hash(output)))) {
+                    skipped++;
+                    return true;
+                }
+            } catch (IOException e) {
+                log.debug("Could not verify {}: {}", output, e.getMessage());
+            }
+            log.info("Output of {} {} is missing or changed, doing it again", kind, key);
+            records.remove(kind + "\t" + key);
+            return false;
+        }
+
+        /**
+         * Records a finished item whose output content is at hand.
+         */
+        public synchronized void done(String kind, String key, String relativeFile, byte[] content) throws IOException {
+            record(new Record(kind, key, relativeFile, content.length, hash(content)));
+        }
+
+        /**
+         * Records a finished item by reading its output file. Large copied files can be
+         * recorded without a hash, they are then verified by size only.
+         */
+        public synchronized void done(String kind, String key, String relativeFile, boolean withHash) throws IOException {
+            Path output = outputRoot.resolve(relativeFile);
+            record(new Record(kind, key, relativeFile, Files.size(output), withHash ? hash(output) : NO_HASH));
+        }
+
+        private void record(Record record) throws IOException {
+            if (record.key().contains("\t") || record.key().contains("\n") || record.file().contains("\t") || record.file().contains("\n")) {
+                return;
+            }
+            records.put(record.kind() + "\t" + record.key(), record);
+            dirty = true;
+            if (System.nanoTime() - lastFlush > FLUSH_INTERVAL_NANOS) {
+                flush();
+            }
+        }
+
+        /**
+         * Saves the checkpoint, replacing the previous one atomically.
+         */
+        public synchronized void flush() throws IOException {
+            if (!dirty) {
+                return;
+            }
+            Files.createDirectories(file.getParent());
+            StringBuilder sb = new StringBuilder(records.size() * 100);
+            sb.append(HEADER).append('\n').append("fingerprint\t").append(fingerprint).append('\n');
+            for (Record record : records.values()) {
+                sb.append(record.kind()).append('\t').append(record.key()).append('\t').append(record.file()).append('\t')
+                        .append(record.size()).append('\t').append(record.hash()).append('\n');
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, sb, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            lastFlush = System.nanoTime();
+        }
+
+        /**
+         * Deletes the checkpoint after the run finished completely.
+         */
+        public synchronized void complete() throws IOException {
+            dirty = false;
+            Files.deleteIfExists(file);
+        }
+
+        public synchronized int skippedCount() {
+            return skipped;
+        }
+
+        public synchronized int resumedCount() {
+            return resumed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects timers, counters and distribution summaries for the export pipeline
+ * and writes them as a JSON run report and a Prometheus text file at the end of a command.
+ * <p>
+ * Every run of a command records into the metrics of its own pipeline, see {@link com.vojtechruzicka.xjsexporter.PipelineFactory}.
+ * The shared instance only collects what watch and serve record through the shared components, and is never reported.
+ */
+@Service
+@Slf4j
+public class ExportMetrics {
+
+    public static final String REPORTS_DIR = "reports";
+
+    private static final double[] PERCENTILES = {0.5, 0.99};
+    // Shared by the metrics of all pipelines, later runs of the same JVM have no startup to measure
+    private static final AtomicBoolean FIRST_ITEM_RECORDED = new AtomicBoolean();
+
+    private final ObjectMapper objectMapper;
+    private volatile PrometheusMeterRegistry registry;
+    private volatile LocalDateTime startedAt;
+    private volatile long startedNanos;
+    private final AtomicLong plannedItems = new AtomicLong();
+    private final AtomicLong doneItems = new AtomicLong();
+
+    public ExportMetrics() {
+        this.objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        reset();
+    }
+
+    /**
+     * Discards all values recorded so far, so every command of a pipeline reports only its own run.
+     */
+    public synchronized void reset() {
+        if (registry != null) {
+            registry.close();
+        }
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        startedAt = LocalDateTime.now();
+        startedNanos = System.nanoTime();
+        plannedItems.set(0);
+        doneItems.set(0);
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a whole pipeline phase (metadata, entries, load, render, attachments...).
+     */
+    public void recordPhase(String command, String phase, long startNanos) {
+        timer("xjs.phase", "Duration of a pipeline phase", Tag.of("command", command), Tag.of("phase", phase))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordXmlParse(long startNanos, long bytes) {
+        timer("xjs.extract.xml.parse", "Parsing of journal.xjn").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summary("xjs.extract.xml.bytes", "Size of journal.xjn", "bytes").record(bytes);
+    }
+
+    public void recordBodyParse(long startNanos, long bytes) {
+        timer("xjs.extract.body.parse", "Parsing of a single entry HTML body").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summary("xjs.extract.body.bytes", "Size of an extracted entry body", "bytes").record(bytes);
+    }
+
+    public void recordMarkdownWrite(long startNanos, long bytes) {
+        timer("xjs.extract.markdown.write", "Writing of a single entry Markdown file").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summary("xjs.extract.markdown.bytes", "Size of a written entry Markdown file", "bytes").record(bytes);
+    }
+
+    public void recordLoad(long startNanos, int entries) {
+        timer("xjs.generate.load", "Loading of the intermediate data").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        counter("xjs.generate.load.entries", "Entries loaded from the intermediate data").increment(entries);
+    }
+
+    public void recordRender(String template, long startNanos, long chars) {
+        timer("xjs.generate.render", "Rendering of a single page", Tag.of("template", template))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summary("xjs.generate.render.chars", "Size of a rendered page", "chars", Tag.of("template", template)).record(chars);
+    }
+
+    public void recordWrite(String kind, long startNanos, long bytes) {
+        timer("xjs.generate.write", "Writing of a single output file", Tag.of("kind", kind))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summary("xjs.generate.write.bytes", "Size of a written output file", "bytes", Tag.of("kind", kind)).record(bytes);
+    }
+
+    public void recordAttachmentCopy(String stage, long startNanos, long bytes) {
+        timer("xjs.attachment.copy", "Copying of a single attachment", Tag.of("stage", stage))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summary("xjs.attachment.copy.bytes", "Size of a copied attachment", "bytes", Tag.of("stage", stage)).record(bytes);
+    }
+
+    public void recordInlineImage(String outcome, long bytes) {
+        summary("xjs.extract.inline.bytes", "Size of a decoded inline image", "bytes", Tag.of("outcome", outcome)).record(bytes);
+    }
+
+    /**
+     * Adds items the current run is going to process, so that its progress can be followed with
+     * {@link #doneItems()} and {@link #plannedItems()}.
+     */
+    public void planItems(long items) {
+        plannedItems.addAndGet(items);
+    }
+
+    public long plannedItems() {
+        return plannedItems.get();
+    }
+
+    /**
+     * Items processed by the current run so far, successfully or not.
+     */
+    public long doneItems() {
+        return doneItems.get();
+    }
+
+    public void recordItem(String command, String outcome) {
+        doneItems.incrementAndGet();
+        if (outcome.equals("ok") && !FIRST_ITEM_RECORDED.get() && FIRST_ITEM_RECORDED.compareAndSet(false, true)) {
+            recordFirstItem(command);
+        }
+        counter("xjs.items", "Processed items by outcome", Tag.of("command", command), Tag.of("outcome", outcome)).increment();
+    }
+
+    /**
+     * Records the time from the JVM start to the first processed item, which shows the startup
+     * overhead of a one-shot run. Only the first item of the JVM is recorded.
+     */
+    private void recordFirstItem(String command) {
+        long sinceStartMs = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        timer("xjs.startup.first.item", "Time from the JVM start to the first processed item", Tag.of("command", command))
+                .record(sinceStartMs, TimeUnit.MILLISECONDS);
+        log.info("First {} item processed {} ms after JVM start", command, sinceStartMs);
+    }
+
+    public void recordError(String stage) {
+        counter("xjs.errors", "Errors by pipeline stage", Tag.of("stage", stage)).increment();
+    }
+
+    /**
+     * Writes {@code <command>-metrics.json} and {@code <command>-metrics.prom} into the reports
+     * directory under the given base path.
+     *
+     * @param basePath The base path (intermediate data directory)
+     * @param command  The command name used as report file prefix
+     * @param result   The human readable result of the command
+     * @return The path of the JSON report, or null if the base path does not exist, e.g. after a run failing to read it
+     * @throws IOException If an I/O error occurs
+     */
+    public Path writeReport(String basePath, String command, String result) throws IOException {
+        if (!Files.isDirectory(Path.of(basePath))) {
+            log.info("No metrics report written, {} does not exist", basePath);
+            return null;
+        }
+        Path reportsDir = Path.of(basePath).resolve(REPORTS_DIR);
+        Files.createDirectories(reportsDir);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("command", command);
+        report.put("startedAt", startedAt);
+        report.put("finishedAt", LocalDateTime.now());
+        report.put("durationMs", Duration.ofNanos(System.nanoTime() - startedNanos).toMillis());
+        report.put("result", result);
+        report.put("meters", describeMeters());
+
+        Path jsonReport = reportsDir.resolve(command + "-metrics.json");
+        objectMapper.writeValue(jsonReport.toFile(), report);
+        Files.writeString(reportsDir.resolve(command + "-metrics.prom"), registry.scrape());
+        log.info("Metrics report written to {}", jsonReport);
+        return jsonReport;
+    }
+
+    private List<Map<String, Object>> describeMeters() {
+        List<Map<String, Object>> meters = new ArrayList<>();
+        for (Meter meter : registry.getMeters()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("name", meter.getId().getName());
+            Map<String, String> tags = new LinkedHashMap<>();
+            meter.getId().getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+            values.put("tags", tags);
+
+            if (meter instanceof Timer timer) {
+                HistogramSnapshot snapshot = timer.takeSnapshot();
+                values.put("type", "timer");
+                values.put("count", snapshot.count());
+                values.put("totalMs", snapshot.total(TimeUnit.MILLISECONDS));
+                values.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+                values.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+                for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                    values.put(percentileKey(percentile) + "Ms", percentile.value(TimeUnit.MILLISECONDS));
+                }
+            } else if (meter instanceof DistributionSummary summary) {
+                HistogramSnapshot snapshot = summary.takeSnapshot();
+                values.put("type", "summary");
+                values.put("count", snapshot.count());
+                values.put("total", snapshot.total());
+                values.put("mean", snapshot.mean());
+                values.put("max", snapshot.max());
+                for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                    values.put(percentileKey(percentile), percentile.value());
+                }
+            } else if (meter instanceof Counter counter) {
+                values.put("type", "counter");
+                values.put("count", counter.count());
+            } else {
+                continue;
+            }
+            meters.add(values);
+        }
+        meters.sort((a, b) -> ((String) a.get("name")).compareTo((String) b.get("name")));
+        return meters;
+    }
+
+    private String percentileKey(ValueAtPercentile percentile) {
+        return "p" + Math.round(percentile.percentile() * 100);
+    }
+
+    private Timer timer(String name, String description, Tag... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(List.of(tags))
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private DistributionSummary summary(String name, String description, String baseUnit, Tag... tags) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(baseUnit)
+                .tags(List.of(tags))
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private Counter counter(String name, String description, Tag... tags) {
+        return Counter.builder(name)
+                .description(description)
+                .tags(List.of(tags))
+                .register(registry);
+    }
+}
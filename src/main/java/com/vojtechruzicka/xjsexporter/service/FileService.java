@@ -11,13 +11,22 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.LocalDateTime;
 
 @Service
 public class FileService {
 
+    public static final String ATTACHMENTS_DIR = "attachments";
+
+    private static final String UNDATED = "undated";
+
+    private final SourceFileSystems sources;
     private Slugify filenameSanitizer;
 
+    public FileService(SourceFileSystems sources) {
+        this.sources = sources;
+    }
+
     @PostConstruct
     public void init() {
         filenameSanitizer = Slugify.builder()
@@ -28,24 +37,85 @@ public class FileService {
 
 
     public String getEntryFileName(Entry entry) {
-        return getEntryFileName(entry.created(), entry.title());
+        return getEntryFileName(entry.id(), entry.created(), entry.title());
     }
 
-    public String getEntryFileName(java.time.LocalDateTime created, String titleRaw) {
+    /**
+     * @param id Id of the entry, which tells apart undated entries of the same title
+     */
+    public String getEntryFileName(String id, java.time.LocalDateTime created, String titleRaw) {
         String title = "untitled";
         if (StringUtils.isNotBlank(titleRaw)) {
             title = titleRaw.substring(0, Math.min(titleRaw.length(), 100));
         }
-        // Keep a timestamp at the beginning with date and time
+        // Keep a timestamp at the beginning with date and time, undated entries get the same name in every run
         String timestamp = created != null
                 ? created.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"))
-                : java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+                : UNDATED + "_" + id;
 
         String name = String.join("_", timestamp, title);
         // Sanitize to a safe filename (lowercase, underscores, strip disallowed chars)
         return filenameSanitizer.slugify(name);
     }
 
+    /**
+     * Path of a source file from its location in the metadata, see {@link SourceFileSystems#toPath(String)}.
+     */
+    public Path getSourcePath(String location) {
+        return sources.toPath(location);
+    }
+
+    /**
+     * Site relative path of the page of an entry.
+     */
+    public String getEntryPagePath(Entry entry) {
+        return "entries/" + getEntryFileName(entry) + ".html";
+    }
+
+    /**
+     * Site relative path of the listing page of a person.
+     */
+    public String getPersonPagePath(String person) {
+        return "persons/person_" + person.replace(' ', '_') + ".html";
+    }
+
+    /**
+     * Site relative path of the listing page of a category.
+     */
+    public String getCategoryPagePath(String category) {
+        return "categories/category_" + category.replace(' ', '_') + ".html";
+    }
+
+    /**
+     * Site relative path of the listing page of a year.
+     */
+    public String getYearPagePath(int year) {
+        return "years/" + year + ".html";
+    }
+
+    /**
+     * Day of the year an entry was created on, as month and day of month, e.g. 05-24.
+     */
+    public String getDayOfYear(LocalDateTime created) {
+        return String.format("%02d-%02d", created.getMonthValue(), created.getDayOfMonth());
+    }
+
+    /**
+     * Site relative path of the listing page of a day of the year, listing the entries of that day in all years.
+     *
+     * @param day Day of the year as returned by {@link #getDayOfYear(LocalDateTime)}
+     */
+    public String getDayPagePath(String day) {
+        return "days/" + day + ".html";
+    }
+
+    /**
+     * Site relative path of a copied attachment.
+     */
+    public String getAttachmentPath(String attachmentName) {
+        return ATTACHMENTS_DIR + "/" + attachmentName.replace('\\', '/');
+    }
+
     public Attachment getAttachmentFromMetadata(AttachmentMetadata attachmentMetadata) {
         String absolutePath = attachmentMetadata.absoluteSourcePath();
         Integer size = getFileSize(absolutePath);
@@ -79,7 +149,7 @@ public class FileService {
 
     private String getMimeType(String absolutePath) {
         try {
-            Path path = Paths.get(absolutePath);
+            Path path = sources.toPath(absolutePath);
             if (!Files.exists(path)) {
                 return null;
             }
@@ -133,7 +203,7 @@ public class FileService {
 
     private Integer getFileSize(String absolutePath) {
         try {
-            Path path = Paths.get(absolutePath);
+            Path path = sources.toPath(absolutePath);
             if (!Files.exists(path)) {
                 return null;
             }
@@ -159,7 +229,7 @@ public class FileService {
         }
 
         // Extract filename from path
-        Path path = Paths.get(absolutePath);
+        Path path = sources.toPath(absolutePath);
         String fileName = path.getFileName().toString();
 
         int lastDotIndex = fileName.lastIndexOf('.');
@@ -0,0 +1,149 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.jsoup.parser.Parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the {@code href} and {@code src} attribute values of an HTML page in a single forward scan over
+ * its bytes, without building a document tree.
+ * <p>
+ * Only attributes of start tags are read. Comments and the content of {@code script} and {@code style}
+ * elements are skipped, so URLs in the inlined scripts and styles of the pages are not mistaken for links.
+ * Tag and attribute names are ASCII, so the bytes are searched as they are and only attribute values are
+ * decoded from UTF-8, with character references resolved.
+ */
+public final class HtmlLinkExtractor {
+
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+
+    private HtmlLinkExtractor() {
+    }
+
+    /**
+     * Passes the value of every {@code href} and {@code src} attribute to the consumer, in document order.
+     */
+    public static void extract(byte[] html, Consumer<String> links) {
+        // Every byte is one Latin-1 char at the same index, which lets the JDK search markup with vectorized indexOf
+        String text = new String(html, StandardCharsets.ISO_8859_1);
+        int length = html.length;
+        int i = text.indexOf('<');
+        while (i >= 0 && i < length) {
+            if (text.startsWith(COMMENT_START, i)) {
+                int end = text.indexOf(COMMENT_END, i + COMMENT_START.length());
+                if (end < 0) {
+                    return;
+                }
+                i = text.indexOf('<', end + COMMENT_END.length());
+                continue;
+            }
+            int nameStart = i + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < length && isNameChar(html[nameEnd])) {
+                nameEnd++;
+            }
+            if (nameEnd == nameStart) {
+                // End tags, doctype and a lone '<' in text have no links
+                i = text.indexOf('<', i + 1);
+                continue;
+            }
+            i = readAttributes(html, nameEnd, links);
+            if (equalsIgnoreCase(html, nameStart, nameEnd, "script") || equalsIgnoreCase(html, nameStart, nameEnd, "style")) {
+                i = indexOfEndTag(text, i, text.substring(nameStart, nameEnd));
+                if (i < 0) {
+                    return;
+                }
+            }
+            i = text.indexOf('<', i);
+        }
+    }
+
+    /**
+     * Reads the attributes of a start tag.
+     *
+     * @return The position after the end of the tag
+     */
+    private static int readAttributes(byte[] html, int i, Consumer<String> links) {
+        int length = html.length;
+        while (i < length) {
+            while (i < length && (isWhitespace(html[i]) || html[i] == '/')) {
+                i++;
+            }
+            if (i >= length || html[i] == '>') {
+                return i + 1;
+            }
+            int nameStart = i;
+            while (i < length && !isWhitespace(html[i]) && html[i] != '=' && html[i] != '>' && html[i] != '/') {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < length && isWhitespace(html[i])) {
+                i++;
+            }
+            if (i >= length || html[i] != '=') {
+                continue;
+            }
+            i++;
+            while (i < length && isWhitespace(html[i])) {
+                i++;
+            }
+            int valueStart;
+            int valueEnd;
+            if (i < length && (html[i] == '"' || html[i] == '\'')) {
+                byte quote = html[i];
+                valueStart = i + 1;
+                valueEnd = valueStart;
+                while (valueEnd < length && html[valueEnd] != quote) {
+                    valueEnd++;
+                }
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while (i < length && !isWhitespace(html[i]) && html[i] != '>') {
+                    i++;
+                }
+                valueEnd = i;
+            }
+            if (equalsIgnoreCase(html, nameStart, nameEnd, "href") || equalsIgnoreCase(html, nameStart, nameEnd, "src")) {
+                String value = new String(html, valueStart, Math.min(valueEnd, length) - valueStart, StandardCharsets.UTF_8);
+                links.accept(value.indexOf('&') >= 0 ? Parser.unescapeEntities(value, true) : value);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Position after the end tag of a raw text element, or -1 if it has none.
+     */
+    private static int indexOfEndTag(String text, int from, String name) {
+        for (int i = text.indexOf("</", from); i >= 0; i = text.indexOf("</", i + 2)) {
+            if (text.regionMatches(true, i + 2, name, 0, name.length())) {
+                int end = text.indexOf('>', i + 2 + name.length());
+                return end < 0 ? -1 : end + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNameChar(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '-' || b == ':';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    private static boolean equalsIgnoreCase(byte[] html, int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase((char) html[start + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,195 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves images embedded in entry bodies as {@code data:image/...;base64} URIs of {@code src} attributes into
+ * separate files.
+ * <p>
+ * Images are decoded streaming straight from the body into a file named after the SHA-256 of its
+ * content, so an image pasted into several entries is stored once. The URI is replaced with a path
+ * relative to the entry, {@code ../attachments/inline/<hash>.<ext>}, which resolves both from the
+ * intermediate Markdown files and from the generated entry pages.
+ */
+@Service
+@Slf4j
+public class InlineImageExtractor {
+
+    public static final String INLINE_DIR = "inline";
+    public static final String SITE_PREFIX = "attachments/" + INLINE_DIR + "/";
+    private static final String ENTRY_RELATIVE_PREFIX = "../" + SITE_PREFIX;
+
+    // Only URIs starting a src attribute value, so a body writing about data URIs in its text is left alone
+    private static final Pattern DATA_URI = Pattern.compile("(?i:src)\\s*=\\s*[\"']?(data:image/([a-zA-Z0-9.+-]+);base64,)");
+
+    private final ExportMetrics metrics;
+
+    public InlineImageExtractor(ExportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Replaces all inline base64 images in the body with links to extracted files.
+     *
+     * @param htmlBody  The HTML body, may be null
+     * @param inlineDir The directory the images are written to
+     * @return The body with rewritten image URIs
+     */
+    public String extractImages(String htmlBody, Path inlineDir) {
+        if (htmlBody == null || !htmlBody.contains("data:image/")) {
+            return htmlBody;
+        }
+
+        Matcher matcher = DATA_URI.matcher(htmlBody);
+        StringBuilder result = null;
+        int copied = 0;
+        while (matcher.find(copied)) {
+            int dataStart = matcher.end();
+            int dataEnd = dataStart;
+            while (dataEnd < htmlBody.length() && isBase64Char(htmlBody.charAt(dataEnd))) {
+                dataEnd++;
+            }
+
+            String fileName;
+            try {
+                fileName = store(htmlBody, dataStart, dataEnd, extension(matcher.group(2)), inlineDir);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Could not extract inline image, keeping it embedded: {}", e.getMessage());
+                metrics.recordError("inline-image");
+                fileName = null;
+            }
+
+            if (result == null) {
+                result = new StringBuilder(htmlBody.length() / 2);
+            }
+            result.append(htmlBody, copied, matcher.start(1));
+            if (fileName != null) {
+                result.append(ENTRY_RELATIVE_PREFIX).append(fileName);
+            } else {
+                result.append(htmlBody, matcher.start(1), dataEnd);
+            }
+            copied = dataEnd;
+        }
+        if (result == null) {
+            return htmlBody;
+        }
+        result.append(htmlBody, copied, htmlBody.length());
+        return result.toString();
+    }
+
+    private String store(String body, int start, int end, String extension, Path inlineDir) throws IOException {
+        Files.createDirectories(inlineDir);
+        MessageDigest digest = sha256();
+        // Not createTempFile, its owner-only permissions would end up on the published image
+        Path temp = inlineDir.resolve(UUID.randomUUID() + ".tmp");
+        long bytes;
+        try {
+            try (InputStream in = Base64.getMimeDecoder().wrap(new CharRangeInputStream(body, start, end));
+                 OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                bytes = in.transferTo(out);
+            }
+            String fileName = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+            Path target = inlineDir.resolve(fileName);
+            if (Files.exists(target)) {
+                metrics.recordInlineImage("duplicate", bytes);
+            } else if (moveIfAbsent(temp, target)) {
+                metrics.recordInlineImage("stored", bytes);
+            } else {
+                metrics.recordInlineImage("duplicate", bytes);
+            }
+            return fileName;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Moves the decoded image into place, unless an extraction running concurrently stored the same image first.
+     * The name is the content hash, so an existing target already holds the same content. Whether an atomic move
+     * replaces an existing file depends on the platform, on Windows it fails.
+     *
+     * @return Whether the image was moved, false if the target already existed
+     */
+    private static boolean moveIfAbsent(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            if (Files.exists(target)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static String extension(String subtype) {
+        return switch (subtype.toLowerCase()) {
+            case "jpeg", "pjpeg" -> "jpg";
+            case "svg+xml" -> "svg";
+            case "x-icon", "vnd.microsoft.icon" -> "ico";
+            default -> subtype.toLowerCase().replaceAll("[^a-z0-9]", "");
+        };
+    }
+
+    private static boolean isBase64Char(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                || c == '+' || c == '/' || c == '=' || c == '\r' || c == '\n';
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads ASCII characters of a string range as bytes, without copying the range.
+     */
+    private static class CharRangeInputStream extends InputStream {
+
+        private final String source;
+        private final int end;
+        private int position;
+
+        private CharRangeInputStream(String source, int start, int end) {
+            this.source = source;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() {
+            return position < end ? source.charAt(position++) : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= end) {
+                return -1;
+            }
+            int count = Math.min(length, end - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) source.charAt(position++);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of parsed journal metadata and loaded intermediate data, shared by the
+ * commands of a long running process so that repeated exports of the same journal skip parsing.
+ * <p>
+ * Every value is stored with a fingerprint of the files it was read from and is loaded again once the
+ * fingerprint changes. Cached values are shared between threads and must not be modified.
+ */
+public class JournalCache {
+
+    private final int maxValues;
+    private final LinkedHashMap<String, CachedValue> values = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+
+    public JournalCache(int maxValues) {
+        this.maxValues = maxValues;
+    }
+
+    /**
+     * Returns the cached value of the key if it was loaded from files of the same fingerprint, otherwise
+     * loads and caches it. Values of the same key loaded at the same time are loaded twice, the last one is kept.
+     *
+     * @param key         What is cached, e.g. the kind and path of the data
+     * @param fingerprint Fingerprint of the files the value is read from
+     * @param loader      Loads the value on a miss
+     * @throws IOException If the value could not be loaded
+     */
+    public <T> T get(String key, String fingerprint, Loader<T> loader) throws IOException {
+        synchronized (this) {
+            CachedValue cached = values.get(key);
+            if (cached != null && cached.fingerprint().equals(fingerprint)) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                T value = (T) cached.value();
+                return value;
+            }
+            misses++;
+        }
+        T value = loader.load();
+        synchronized (this) {
+            values.put(key, new CachedValue(fingerprint, value));
+            if (values.size() > maxValues) {
+                values.pollFirstEntry();
+            }
+        }
+        return value;
+    }
+
+    public synchronized String describe() {
+        return values.size() + " of " + maxValues + " values, " + hits + " hits, " + misses + " misses";
+    }
+
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private record CachedValue(String fingerprint, Object value) {
+    }
+}
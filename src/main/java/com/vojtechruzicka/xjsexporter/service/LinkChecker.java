@@ -0,0 +1,212 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the internal links and assets of a generated site against its files.
+ * <p>
+ * The tree is listed once into a set of site relative paths. The HTML pages are then checked in parallel:
+ * every page is read as bytes, its {@code href} and {@code src} values are taken by
+ * {@link HtmlLinkExtractor} and each relative link is resolved against the directory of the page and looked
+ * up in the set, so no link touches the disk. Links with a scheme, protocol relative links and links to a
+ * fragment of the same page are external and not checked. Links to local files, e.g. attachment paths of
+ * the source machine which were not rewritten, are always broken.
+ */
+@Service
+public class LinkChecker {
+
+    private static final String INDEX_PAGE = "index.html";
+    private static final String EXTERNAL = "external";
+    private static final String WORKING = "working";
+    private static final Pattern SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*:");
+    private static final Pattern LOCAL_FILE = Pattern.compile("^([a-zA-Z]:[\\\\/]|\\\\\\\\|file:)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Checks all HTML pages under the root.
+     *
+     * @param root Root directory of the site, also the root of a mounted archive
+     * @return The numbers of checked files, pages and links and the broken links by page
+     * @throws IOException If the tree can't be listed or a page can't be read
+     */
+    public Result check(Path root) throws IOException {
+        Set<String> files = new HashSet<>();
+        Set<String> directories = new HashSet<>();
+        List<String> pages = new ArrayList<>();
+        // The walk passes the attributes read with the directory listing, so files are not checked one by one
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                directories.add(toSitePath(root.relativize(directory)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                String relative = toSitePath(root.relativize(file));
+                files.add(relative);
+                if (relative.endsWith(".html") || relative.endsWith(".htm")) {
+                    pages.add(relative);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Pages of the same directory share most links, the navigation above all, so each is resolved once
+        Map<String, Map<String, String>> checkedLinks = new ConcurrentHashMap<>();
+        List<PageResult> results;
+        try {
+            results = pages.parallelStream()
+                    .map(page -> checkPage(root, page, files, directories, checkedLinks))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Map<String, List<BrokenLink>> broken = new TreeMap<>();
+        long links = 0;
+        long external = 0;
+        for (PageResult result : results) {
+            links += result.links();
+            external += result.external();
+            if (!result.broken().isEmpty()) {
+                broken.put(result.page(), result.broken());
+            }
+        }
+        return new Result(files.size(), pages.size(), links, external, broken);
+    }
+
+    private PageResult checkPage(Path root, String page, Set<String> files, Set<String> directories, Map<String, Map<String, String>> checkedLinks) {
+        byte[] html;
+        try {
+            html = Files.readAllBytes(root.resolve(page));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + page, e);
+        }
+        String directory = page.contains("/") ? page.substring(0, page.lastIndexOf('/') + 1) : "";
+        Map<String, String> directoryLinks = checkedLinks.computeIfAbsent(directory, d -> new ConcurrentHashMap<>());
+        // The same broken link is reported once per page, e.g. a missing person linked by every listed entry
+        Map<String, BrokenLink> broken = new LinkedHashMap<>();
+        long[] counts = new long[2];
+        HtmlLinkExtractor.extract(html, link -> {
+            counts[0]++;
+            String cached = directoryLinks.get(link);
+            String problem = cached != null ? cached : check(link, directory, files, directories);
+            if (cached == null) {
+                directoryLinks.put(link, problem);
+            }
+            if (problem == EXTERNAL) {
+                counts[1]++;
+            } else if (problem != WORKING) {
+                broken.merge(link, new BrokenLink(link, problem, 1),
+                        (previous, next) -> new BrokenLink(link, problem, previous.occurrences() + 1));
+            }
+        });
+        return new PageResult(page, counts[0], counts[1], broken.isEmpty() ? List.of() : List.copyOf(broken.values()));
+    }
+
+    /**
+     * Checks a single link of a page.
+     *
+     * @return Why the link is broken, {@link #EXTERNAL} for unchecked links, or {@link #WORKING}
+     */
+    private static String check(String link, String directory, Set<String> files, Set<String> directories) {
+        String value = link.strip();
+        if (value.isEmpty() || value.startsWith("#")) {
+            return EXTERNAL;
+        }
+        if (LOCAL_FILE.matcher(value).find()) {
+            return "points to a local file";
+        }
+        if (value.startsWith("//") || SCHEME.matcher(value).find()) {
+            return EXTERNAL;
+        }
+
+        int end = value.length();
+        for (char delimiter : new char[]{'#', '?'}) {
+            int index = value.indexOf(delimiter);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        String path = value.substring(0, end).replace('\\', '/');
+        try {
+            path = URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return "invalid escape";
+        }
+
+        // Resolve against the directory of the page, or the site root for absolute paths
+        List<String> segments = new ArrayList<>();
+        String base = path.startsWith("/") ? "" : directory;
+        for (String segment : (base + path).split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) {
+                    return "points outside the site";
+                }
+                segments.removeLast();
+            } else {
+                segments.add(segment);
+            }
+        }
+        String resolved = String.join("/", segments);
+        if (files.contains(resolved)) {
+            return WORKING;
+        }
+        if (directories.contains(resolved)) {
+            String index = resolved.isEmpty() ? INDEX_PAGE : resolved + "/" + INDEX_PAGE;
+            return files.contains(index) ? WORKING : "directory without " + INDEX_PAGE;
+        }
+        return "not found";
+    }
+
+    private static String toSitePath(Path relative) {
+        return relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * @param link        The link as written in the page
+     * @param reason      Why the link is broken
+     * @param occurrences How many times the page has the link
+     */
+    public record BrokenLink(String link, String reason, int occurrences) {
+    }
+
+    /**
+     * @param files    Number of files of the site
+     * @param pages    Number of checked HTML pages
+     * @param links    Number of all links of the pages
+     * @param external Number of external links, which were not checked
+     * @param broken   Distinct broken links by site relative page path, pages sorted by path
+     */
+    public record Result(int files, int pages, long links, long external, Map<String, List<BrokenLink>> broken) {
+
+        public long brokenCount() {
+            return broken.values().stream().mapToLong(List::size).sum();
+        }
+    }
+
+    private record PageResult(String page, long links, long external, List<BrokenLink> broken) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of rendered pages bounded by the total size of the cached bodies.
+ */
+public class PageCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private long hits;
+    private long misses;
+
+    public PageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized CachedPage get(String path) {
+        CachedPage page = pages.get(path);
+        if (page != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return page;
+    }
+
+    /**
+     * Caches a rendered page, evicting the least recently used pages when over the size limit.
+     * Pages larger than the whole cache are returned but not cached.
+     */
+    public synchronized CachedPage put(String path, byte[] body) {
+        CachedPage page = new CachedPage(body, etag(body));
+        if (body.length > maxBytes) {
+            return page;
+        }
+        CachedPage previous = pages.put(path, page);
+        if (previous != null) {
+            currentBytes -= previous.body().length;
+        }
+        currentBytes += body.length;
+
+        Iterator<Map.Entry<String, CachedPage>> eldest = pages.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().getValue().body().length;
+            eldest.remove();
+        }
+        return page;
+    }
+
+    public synchronized String describe() {
+        return pages.size() + " pages, " + currentBytes + " of " + maxBytes + " bytes, " + hits + " hits, " + misses + " misses";
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return '"' + HexFormat.of().formatHex(digest, 0, 16) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record CachedPage(byte[] body, String etag) {
+    }
+}
@@ -0,0 +1,281 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes precompressed {@code .gz} siblings of generated HTML, CSS and JS files, so a web server
+ * with {@code gzip_static} never has to compress on the fly.
+ * <p>
+ * Compression runs in parallel on a session executor. Its queue is bounded, so when compression falls
+ * behind, the writing thread compresses the next file itself instead of queuing more page contents.
+ * A content hash per file is kept in {@value #INDEX_FILE} in the target directory and files whose
+ * content did not change since the last run are not compressed again. The {@code .gz} siblings of
+ * files which no longer exist are deleted when a session is closed.
+ */
+@Service
+@Slf4j
+public class Precompressor {
+
+    public static final String INDEX_FILE = ".precompress-index";
+    public static final String GZIP_SUFFIX = ".gz";
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of("html", "htm", "css", "js", "json");
+    // Files waiting for compression per thread, each holding the content of a page until it is compressed
+    private static final int QUEUED_FILES_PER_THREAD = 4;
+
+    public boolean isCompressible(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && COMPRESSIBLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    /**
+     * Opens a compression session for the given target directory.
+     *
+     * @param targetRoot The root of the generated site
+     * @return The session, which must be closed to wait for all files and to save the hash index
+     * @throws IOException If the hash index can't be read
+     */
+    public Session open(Path targetRoot) throws IOException {
+        return new Session(targetRoot, readIndex(targetRoot.resolve(INDEX_FILE)));
+    }
+
+    private Map<String, String> readIndex(Path indexFile) throws IOException {
+        Map<String, String> index = new ConcurrentHashMap<>();
+        if (Files.exists(indexFile)) {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    index.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+        }
+        return index;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void gzip(InputStream content, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            content.transferTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A single generation run writing {@code .gz} siblings into one target directory.
+     */
+    public class Session implements AutoCloseable {
+
+        private final Path targetRoot;
+        private final Map<String, String> index;
+        private final ExecutorService executor = newBoundedExecutor(Runtime.getRuntime().availableProcessors());
+        private final List<Future<?>> tasks = new ArrayList<>();
+        private final AtomicInteger compressed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger removed = new AtomicInteger();
+        private final Set<String> compressedFiles = ConcurrentHashMap.newKeySet();
+
+        private Session(Path targetRoot, Map<String, String> index) {
+            this.targetRoot = targetRoot;
+            this.index = index;
+        }
+
+        /**
+         * Schedules compression of content that was just written to the given file.
+         *
+         * @param compressed Run once the {@code .gz} sibling is up to date, right away for files which are not compressed
+         */
+        public void submit(Path file, byte[] content, Runnable compressed) {
+            if (!isCompressible(file)) {
+                compressed.run();
+                return;
+            }
+            schedule(() -> {
+                String hash = sha256(content);
+                if (!isUnchanged(file, hash)) {
+                    gzip(new ByteArrayInputStream(content), gzipSibling(file));
+                    remember(file, hash);
+                }
+                compressed.run();
+            });
+        }
+
+        /**
+         * Schedules compression of a file that was copied into the target directory.
+         *
+         * @param compressed Run once the {@code .gz} sibling is up to date, right away for files which are not compressed
+         */
+        public void submit(Path file, Runnable compressed) {
+            if (!isCompressible(file)) {
+                compressed.run();
+                return;
+            }
+            schedule(() -> {
+                String hash = sha256(Files.readAllBytes(file));
+                if (!isUnchanged(file, hash)) {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        gzip(in, gzipSibling(file));
+                    }
+                    remember(file, hash);
+                }
+                compressed.run();
+            });
+        }
+
+        private void schedule(CompressionTask task) {
+            synchronized (tasks) {
+                tasks.add(executor.submit(() -> {
+                    try {
+                        task.run();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+        }
+
+        private boolean isUnchanged(Path file, String hash) {
+            if (hash.equals(index.get(relative(file))) && Files.exists(gzipSibling(file))) {
+                skipped.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private void remember(Path file, String hash) {
+            index.put(relative(file), hash);
+            compressedFiles.add(relative(file) + GZIP_SUFFIX);
+            compressed.incrementAndGet();
+        }
+
+        private Path gzipSibling(Path file) {
+            return file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+        }
+
+        private String relative(Path file) {
+            return targetRoot.relativize(file).toString().replace('\\', '/');
+        }
+
+        /**
+         * Waits for all scheduled files and saves the hash index.
+         *
+         * @throws IOException If any file could not be compressed or the index could not be saved
+         */
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            try {
+                for (Future<?> task : tasks) {
+                    try {
+                        task.get();
+                    } catch (ExecutionException e) {
+                        log.error("Failed to precompress file: {}", e.getCause().getMessage());
+                        if (failure == null) {
+                            failure = new IOException("Failed to precompress file: " + e.getCause().getMessage(), e.getCause());
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for precompression", e);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            removeStaleFiles();
+            Files.createDirectories(targetRoot);
+            StringBuilder sb = new StringBuilder();
+            new TreeMap<>(index).forEach((path, hash) -> sb.append(hash).append(' ').append(path).append('\n'));
+            StableFiles.write(targetRoot.resolve(INDEX_FILE), sb.toString().getBytes(StandardCharsets.UTF_8));
+            log.info("Precompressed {} files, {} unchanged files skipped, {} stale files removed", compressed.get(), skipped.get(), removed.get());
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Deletes the {@code .gz} siblings of indexed files which no longer exist, e.g. pages of removed entries
+         * deleted from the target, and drops them from the index.
+         */
+        private void removeStaleFiles() throws IOException {
+            for (String path : List.copyOf(index.keySet())) {
+                Path file = targetRoot.resolve(path);
+                if (!Files.exists(file)) {
+                    Files.deleteIfExists(gzipSibling(file));
+                    index.remove(path);
+                    removed.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Target relative paths of the {@code .gz} files written by this session, complete once it is closed.
+         */
+        public Set<String> compressedFiles() {
+            return compressedFiles;
+        }
+
+        public int compressedCount() {
+            return compressed.get();
+        }
+
+        public int skippedCount() {
+            return skipped.get();
+        }
+    }
+
+    /**
+     * A fixed pool with a bounded queue. A file submitted to a full queue is compressed by the submitting thread.
+     */
+    private static ExecutorService newBoundedExecutor(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_FILES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @FunctionalInterface
+    private interface CompressionTask {
+        void run() throws IOException;
+    }
+}
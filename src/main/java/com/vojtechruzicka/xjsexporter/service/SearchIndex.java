@@ -0,0 +1,517 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import org.jsoup.Jsoup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Persistent inverted index of the entries in the intermediate data, for searching by words of titles,
+ * bodies (without tags), persons and categories.
+ * <p>
+ * Words are folded to lower case without diacritics, so {@code zlutoucky} finds {@code Žluťoučký}. Every
+ * document keeps the size and modification time of its entry file, and {@link #update} parses only entry
+ * files which were added or changed since the index was built, dropping those which were removed. Results are
+ * ranked by BM25 with title words weighted {@value #TITLE_WEIGHT} times and person and category words
+ * {@value #NAME_WEIGHT} times as much as body words.
+ * <p>
+ * The index is saved as a single binary file with delta encoded postings, see {@link #save(Path)}.
+ */
+public class SearchIndex {
+
+    public static final String INDEX_DIR = "search";
+    public static final String INDEX_FILE = "entries.idx";
+
+    private static final int MAGIC = 0x58_4A_53_49;
+    private static final int FORMAT_VERSION = 1;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int NAME_WEIGHT = 2;
+    private static final int BODY_WEIGHT = 1;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final String PREFIX_WILDCARD = "*";
+
+    private final List<Document> documents;
+    private final NavigableMap<String, Postings> postings;
+
+    private SearchIndex(List<Document> documents, NavigableMap<String, Postings> postings) {
+        this.documents = documents;
+        this.postings = postings;
+    }
+
+    public static SearchIndex empty() {
+        return new SearchIndex(List.of(), new TreeMap<>());
+    }
+
+    /**
+     * Path of the index file of an intermediate directory.
+     */
+    public static Path getIndexFile(String intermediatePath) {
+        return Path.of(intermediatePath).resolve(INDEX_DIR).resolve(INDEX_FILE);
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Builds a new index of the entry files, reusing the documents and postings of all unchanged files
+     * of this index.
+     *
+     * @param entriesDir The directory holding the Markdown entry files
+     * @param loader     Loads an entry from its file, returning null for a file which is no valid entry
+     * @param pagePath   Site relative path of the page of an entry
+     * @return The new index and what changed
+     * @throws IOException If the entry files can't be listed or read
+     */
+    public Update update(Path entriesDir, EntryLoader loader, Function<Entry, String> pagePath) throws IOException {
+        Map<String, long[]> files = new HashMap<>();
+        try (Stream<Path> list = Files.list(entriesDir)) {
+            for (Path file : (Iterable<Path>) list.filter(path -> path.toString().endsWith(".md"))::iterator) {
+                files.put(file.getFileName().toString(), new long[]{Files.size(file), Files.getLastModifiedTime(file).toMillis()});
+            }
+        }
+
+        // Unchanged documents keep their postings, renumbered without the dropped documents
+        List<Document> kept = new ArrayList<>();
+        int[] newIds = new int[documents.size()];
+        Set<String> keptFiles = new HashSet<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            long[] state = files.get(document.file());
+            if (state != null && state[0] == document.size() && state[1] == document.modified()) {
+                newIds[i] = kept.size();
+                kept.add(document);
+                keptFiles.add(document.file());
+            } else {
+                newIds[i] = -1;
+            }
+        }
+        Map<String, PostingsBuilder> builders = new HashMap<>();
+        for (Map.Entry<String, Postings> term : postings.entrySet()) {
+            Postings old = term.getValue();
+            PostingsBuilder builder = new PostingsBuilder();
+            for (int i = 0; i < old.documents().length; i++) {
+                int id = newIds[old.documents()[i]];
+                if (id >= 0) {
+                    builder.add(id, old.weights()[i]);
+                }
+            }
+            if (builder.size > 0) {
+                builders.put(term.getKey(), builder);
+            }
+        }
+
+        // Added and changed files are parsed in parallel, documents are added in file name order
+        List<String> changedFiles = files.keySet().stream().filter(file -> !keptFiles.contains(file)).sorted().toList();
+        List<ParsedEntry> parsed = changedFiles.parallelStream()
+                .map(file -> parse(entriesDir.resolve(file), file, files.get(file), loader, pagePath))
+                .toList();
+        List<Document> updated = new ArrayList<>(kept);
+        int skipped = 0;
+        for (ParsedEntry entry : parsed) {
+            if (entry == null) {
+                skipped++;
+                continue;
+            }
+            int id = updated.size();
+            updated.add(entry.document());
+            entry.weights().forEach((term, weight) -> builders.computeIfAbsent(term, t -> new PostingsBuilder()).add(id, weight));
+        }
+
+        NavigableMap<String, Postings> updatedPostings = new TreeMap<>();
+        builders.forEach((term, builder) -> updatedPostings.put(term, builder.build()));
+        Set<String> indexedFiles = new HashSet<>();
+        documents.forEach(document -> indexedFiles.add(document.file()));
+        int removed = (int) indexedFiles.stream().filter(file -> !files.containsKey(file)).count();
+        int added = (int) parsed.stream().filter(entry -> entry != null && !indexedFiles.contains(entry.document().file())).count();
+        return new Update(new SearchIndex(updated, updatedPostings), added, updated.size() - kept.size() - added, removed, kept.size(), skipped);
+    }
+
+    private ParsedEntry parse(Path file, String fileName, long[] state, EntryLoader loader, Function<Entry, String> pagePath) {
+        Entry entry;
+        try {
+            entry = loader.load(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not index " + file, e);
+        }
+        if (entry == null) {
+            return null;
+        }
+        Map<String, Integer> weights = new HashMap<>();
+        int length = addTerms(weights, entry.title(), TITLE_WEIGHT);
+        for (String person : entry.persons()) {
+            length += addTerms(weights, person, NAME_WEIGHT);
+        }
+        for (String category : entry.categories()) {
+            length += addTerms(weights, category, NAME_WEIGHT);
+        }
+        if (entry.html() != null && !entry.html().isEmpty()) {
+            length += addTerms(weights, Jsoup.parseBodyFragment(entry.html()).text(), BODY_WEIGHT);
+        }
+        Document document = new Document(fileName, state[0], state[1], entry.id(), entry.title(),
+                entry.created().toEpochSecond(ZoneOffset.UTC), List.copyOf(entry.persons()), List.copyOf(entry.categories()), pagePath.apply(entry), length);
+        return new ParsedEntry(document, weights);
+    }
+
+    private static int addTerms(Map<String, Integer> weights, String text, int weight) {
+        List<String> terms = tokenize(text);
+        for (String term : terms) {
+            weights.merge(term, weight, Integer::sum);
+        }
+        return terms.size() * weight;
+    }
+
+    /**
+     * Searches the index. All words of the query have to match, a word ending with {@value #PREFIX_WILDCARD}
+     * matches all words starting with it. A query without words lists all entries passing the filters.
+     *
+     * @param query The query
+     * @param limit Maximum number of hits returned
+     * @return Hits ordered by score, then newest first, and the total number of matching entries
+     */
+    public Result search(Query query, int limit) {
+        List<String> words = new ArrayList<>();
+        for (String word : query.text().strip().split("\\s+")) {
+            boolean prefix = word.endsWith(PREFIX_WILDCARD);
+            List<String> folded = tokenize(word);
+            if (!folded.isEmpty()) {
+                words.add(String.join("", folded) + (prefix ? PREFIX_WILDCARD : ""));
+            }
+        }
+
+        int count = documents.size();
+        double[] scores = new double[count];
+        int[] matchedWords = new int[count];
+        double averageLength = documents.stream().mapToInt(Document::length).average().orElse(1);
+        int[] weights = new int[count];
+        int[] matched = new int[count];
+        for (String word : words) {
+            // Weights of all terms matching the word, summed per document
+            int matchedCount = 0;
+            Iterable<Postings> matching = word.endsWith(PREFIX_WILDCARD)
+                    ? postings.subMap(word.substring(0, word.length() - 1), true, word.substring(0, word.length() - 1) + Character.MAX_VALUE, true).values()
+                    : Stream.ofNullable(postings.get(word)).toList();
+            for (Postings termPostings : matching) {
+                for (int i = 0; i < termPostings.documents().length; i++) {
+                    int id = termPostings.documents()[i];
+                    if (weights[id] == 0) {
+                        matched[matchedCount++] = id;
+                    }
+                    weights[id] += termPostings.weights()[i];
+                }
+            }
+            double idf = Math.log(1 + (count - matchedCount + 0.5) / (matchedCount + 0.5));
+            for (int i = 0; i < matchedCount; i++) {
+                int id = matched[i];
+                double norm = K1 * (1 - B + B * documents.get(id).length() / averageLength);
+                scores[id] += idf * weights[id] * (K1 + 1) / (weights[id] + norm);
+                matchedWords[id]++;
+                weights[id] = 0;
+            }
+        }
+
+        // Names are folded once per search, not once per entry
+        Predicate<String> person = containsFolded(query.person());
+        Predicate<String> category = containsFolded(query.category());
+        long from = query.from() != null ? query.from().atStartOfDay().toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+        long to = query.to() != null ? query.to().plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC) : Long.MAX_VALUE;
+        // Only the best hits are kept, the worst of them on top of the heap
+        Comparator<Hit> ranking = Comparator.comparingDouble(Hit::score).thenComparingLong(hit -> hit.document().created());
+        PriorityQueue<Hit> best = new PriorityQueue<>(ranking);
+        int total = 0;
+        for (int id = 0; id < count; id++) {
+            Document document = documents.get(id);
+            if (matchedWords[id] == words.size() && document.created() >= from && document.created() < to
+                    && (person == null || document.persons().stream().anyMatch(person))
+                    && (category == null || document.categories().stream().anyMatch(category))) {
+                total++;
+                Hit hit = new Hit(document, scores[id]);
+                if (best.size() < limit) {
+                    best.add(hit);
+                } else if (limit > 0 && ranking.compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(ranking.reversed());
+        return new Result(hits, total);
+    }
+
+    /**
+     * Matches names containing the folded filter, null without a filter.
+     */
+    private static Predicate<String> containsFolded(String filter) {
+        if (filter == null) {
+            return null;
+        }
+        String folded = fold(filter);
+        Map<String, Boolean> matches = new HashMap<>();
+        return name -> matches.computeIfAbsent(name, n -> fold(n).contains(folded));
+    }
+
+    /**
+     * Lower case text without diacritics.
+     */
+    public static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(Character.toLowerCase(c));
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Folded words of a text, split at everything but letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Loads an index, or returns an empty one if the file does not exist or was written by another version.
+     */
+    public static SearchIndex load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 256 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return empty();
+            }
+            int documentCount = in.readInt();
+            List<Document> documents = new ArrayList<>(documentCount);
+            for (int i = 0; i < documentCount; i++) {
+                documents.add(new Document(in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readLong(),
+                        readStrings(in), readStrings(in), in.readUTF(), in.readInt()));
+            }
+            int termCount = in.readInt();
+            NavigableMap<String, Postings> postings = new TreeMap<>();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                int size = readVarInt(in);
+                int[] ids = new int[size];
+                int[] weights = new int[size];
+                int previous = 0;
+                for (int j = 0; j < size; j++) {
+                    previous += readVarInt(in);
+                    ids[j] = previous;
+                    weights[j] = readVarInt(in);
+                }
+                postings.put(term, new Postings(ids, weights));
+            }
+            return new SearchIndex(documents, postings);
+        }
+    }
+
+    /**
+     * Saves the index into a temporary file moved over the previous index, so readers never see half an index.
+     * Postings are document ID deltas and weights as variable length integers.
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 256 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(documents.size());
+            for (Document document : documents) {
+                out.writeUTF(document.file());
+                out.writeLong(document.size());
+                out.writeLong(document.modified());
+                out.writeUTF(document.id());
+                out.writeUTF(document.title() != null ? document.title() : "");
+                out.writeLong(document.created());
+                writeStrings(out, document.persons());
+                writeStrings(out, document.categories());
+                out.writeUTF(document.page());
+                out.writeInt(document.length());
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Postings> term : postings.entrySet()) {
+                out.writeUTF(term.getKey());
+                int[] ids = term.getValue().documents();
+                int[] weights = term.getValue().weights();
+                writeVarInt(out, ids.length);
+                int previous = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    writeVarInt(out, ids[i] - previous);
+                    previous = ids[i];
+                    writeVarInt(out, weights[i]);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = in.readUTF();
+        }
+        return List.of(values);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryLoader {
+        Entry load(Path entryFile) throws IOException;
+    }
+
+    /**
+     * An indexed entry.
+     *
+     * @param file     Name of the entry file
+     * @param size     Size of the entry file when it was indexed
+     * @param modified Modification time of the entry file when it was indexed
+     * @param created  Creation time of the entry in epoch seconds
+     * @param page     Site relative path of the page of the entry
+     * @param length   Weighted number of words of the entry
+     */
+    public record Document(String file, long size, long modified, String id, String title, long created,
+                           List<String> persons, List<String> categories, String page, int length) {
+
+        public LocalDateTime createdAt() {
+            return LocalDateTime.ofEpochSecond(created, 0, ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * @param text     Words to search for, may be empty
+     * @param person   Part of a person name, accents and case ignored, or null
+     * @param category Part of a category title, accents and case ignored, or null
+     * @param from     First day of the entries, or null
+     * @param to       Last day of the entries, or null
+     */
+    public record Query(String text, String person, String category, LocalDate from, LocalDate to) {
+    }
+
+    public record Hit(Document document, double score) {
+    }
+
+    /**
+     * @param hits  The best hits
+     * @param total Number of all entries matching the query
+     */
+    public record Result(List<Hit> hits, int total) {
+    }
+
+    /**
+     * @param index     The updated index
+     * @param added     Entries of new files
+     * @param changed   Entries of changed files
+     * @param removed   Entries of removed files
+     * @param unchanged Entries kept without parsing their files
+     * @param skipped   Files which are no valid entries
+     */
+    public record Update(SearchIndex index, int added, int changed, int removed, int unchanged, int skipped) {
+    }
+
+    private record Postings(int[] documents, int[] weights) {
+    }
+
+    private record ParsedEntry(Document document, Map<String, Integer> weights) {
+    }
+
+    /**
+     * Growing postings of a term, in ascending document order.
+     */
+    private static class PostingsBuilder {
+
+        private int[] documents = new int[4];
+        private int[] weights = new int[4];
+        private int size;
+
+        void add(int document, int weight) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            documents[size] = document;
+            weights[size] = weight;
+            size++;
+        }
+
+        Postings build() {
+            return new Postings(Arrays.copyOf(documents, size), Arrays.copyOf(weights, size));
+        }
+    }
+}
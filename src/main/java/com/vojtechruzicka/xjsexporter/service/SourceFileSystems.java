@@ -0,0 +1,160 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Access to XJS sources, which are either journal directories or {@code .zip} backups of them.
+ * <p>
+ * Archives are mounted read-only through the zip file system provider, so entry files and attachments are
+ * read straight out of the archive without unpacking it. Locations of source files are kept as strings in
+ * the metadata: plain paths for files on the default file system and {@code jar:} URIs for files in an
+ * archive, see {@link #toLocation(Path)} and {@link #toPath(String)}. An archive stays mounted until it
+ * changes, until the {@value #MAX_MOUNTS} more recently used archives are mounted or until the application
+ * exits, and its file system is closed when it is unmounted.
+ */
+@Service
+@Slf4j
+public class SourceFileSystems {
+
+    public static final String JOURNAL_FILE = "journal.xjn";
+
+    private static final String ARCHIVE_SCHEME = "jar:";
+    private static final String ARCHIVE_SEPARATOR = "!/";
+    private static final int MAX_MOUNTS = 8;
+
+    /**
+     * Mounted archives by their real path, the least recently used first.
+     */
+    private final Map<Path, Mount> mounts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Mount> eldest) {
+            if (size() <= MAX_MOUNTS) {
+                return false;
+            }
+            unmount(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    public static boolean isArchive(String sourcePath) {
+        return sourcePath.toLowerCase().endsWith(".zip");
+    }
+
+    /**
+     * Opens a source and returns the location of its journal directory, ending with a separator so that
+     * file names can be appended. A directory is returned as is, an archive is mounted and its directory
+     * holding {@value #JOURNAL_FILE} is returned, which is the root or the least nested directory.
+     *
+     * @param sourcePath Journal directory or {@code .zip} archive
+     * @throws IOException If the archive can't be read or holds no single journal
+     */
+    public String open(String sourcePath) throws IOException {
+        if (!isArchive(sourcePath)) {
+            return sourcePath.endsWith(File.separator) ? sourcePath : sourcePath + File.separator;
+        }
+        FileSystem archive = mount(Path.of(sourcePath));
+        Path root = archive.getPath("/");
+        List<Path> journals;
+        try (Stream<Path> files = Files.find(root, Integer.MAX_VALUE,
+                (path, attributes) -> attributes.isRegularFile() && path.getFileName() != null && path.getFileName().toString().equals(JOURNAL_FILE))) {
+            journals = files.sorted(Comparator.comparingInt(Path::getNameCount)).toList();
+        }
+        if (journals.isEmpty()) {
+            throw new IOException("No " + JOURNAL_FILE + " in " + sourcePath);
+        }
+        if (journals.size() > 1 && journals.get(1).getNameCount() == journals.get(0).getNameCount()) {
+            throw new IOException("Several journals in " + sourcePath + ": " + journals.get(0) + ", " + journals.get(1));
+        }
+        String location = toLocation(journals.getFirst().getParent());
+        return location.endsWith("/") ? location : location + "/";
+    }
+
+    /**
+     * Location of a source file as kept in the metadata.
+     */
+    public static String toLocation(Path path) {
+        return path.getFileSystem() == FileSystems.getDefault() ? path.toString() : path.toUri().toString();
+    }
+
+    /**
+     * Path of a source file from its location, mounting its archive if it is not mounted yet.
+     */
+    public Path toPath(String location) {
+        if (!location.startsWith(ARCHIVE_SCHEME)) {
+            return Path.of(location);
+        }
+        URI uri = URI.create(location);
+        try {
+            return Path.of(uri);
+        } catch (FileSystemNotFoundException e) {
+            String archive = uri.getRawSchemeSpecificPart();
+            int separator = archive.indexOf(ARCHIVE_SEPARATOR);
+            try {
+                mount(Path.of(URI.create(separator >= 0 ? archive.substring(0, separator) : archive)));
+            } catch (IOException mountFailure) {
+                throw new FileSystemNotFoundException("Could not mount " + archive + ": " + mountFailure.getMessage());
+            }
+            return Path.of(uri);
+        }
+    }
+
+    /**
+     * Mounts an archive, or returns its mount if the archive did not change since it was mounted.
+     * A changed archive is mounted again, which fails reads still running on the previous mount.
+     */
+    private synchronized FileSystem mount(Path archive) throws IOException {
+        Path file = archive.toRealPath();
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Mount mount = mounts.get(file);
+        if (mount != null && mount.fileSystem().isOpen() && mount.size() == size && mount.modified() == modified) {
+            return mount.fileSystem();
+        }
+        if (mount != null) {
+            mounts.remove(file);
+            unmount(file, mount);
+        }
+        // Mounted by URI, so that jar: locations resolve to the mount through Path.of
+        FileSystem fileSystem = FileSystems.newFileSystem(URI.create(ARCHIVE_SCHEME + file.toUri()), Map.of("accessMode", "readOnly"));
+        mounts.put(file, new Mount(fileSystem, size, modified));
+        log.info("Mounted source archive {}", file);
+        return fileSystem;
+    }
+
+    /**
+     * Closes the file systems of all mounted archives.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        mounts.forEach(this::unmount);
+        mounts.clear();
+    }
+
+    private void unmount(Path file, Mount mount) {
+        try {
+            mount.fileSystem().close();
+            log.info("Unmounted source archive {}", file);
+        } catch (IOException e) {
+            log.warn("Could not close source archive {}: {}", file, e.getMessage());
+        }
+    }
+
+    private record Mount(FileSystem fileSystem, long size, long modified) {
+    }
+}
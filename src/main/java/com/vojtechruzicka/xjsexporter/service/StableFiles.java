@@ -0,0 +1,48 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Writes files only when their content changes, so that files of repeated runs keep their modification
+ * times and sync tools, backups and deployments transfer only what really changed.
+ * <p>
+ * The new content is compared with the file on disk, first by size and then byte by byte, which reads the
+ * file but never writes it. A file changed by someone else is always written again.
+ */
+public final class StableFiles {
+
+    private StableFiles() {
+    }
+
+    /**
+     * Writes the content unless the file already holds exactly the same bytes.
+     *
+     * @return Whether the file was written
+     * @throws IOException If an I/O error occurs
+     */
+    public static boolean write(Path file, byte[] content) throws IOException {
+        if (Files.isRegularFile(file) && Files.size(file) == content.length && Arrays.equals(Files.readAllBytes(file), content)) {
+            return false;
+        }
+        Files.write(file, content);
+        return true;
+    }
+
+    /**
+     * Copies the source unless the target already holds exactly the same bytes.
+     *
+     * @return Whether the target was written
+     * @throws IOException If an I/O error occurs
+     */
+    public static boolean copy(Path source, Path target) throws IOException {
+        if (Files.isRegularFile(target) && Files.size(target) == Files.size(source) && Files.mismatch(source, target) == -1) {
+            return false;
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+}
@@ -0,0 +1,295 @@
+/**
+ * Client side renderer of the JSON data output.
+ *
+ * Pages are addressed by the URL hash:
+ *   #/                          all entries
+ *   #/entry/<location>          a single entry
+ *   #/person/<slug>/<page>      entries of a person (likewise category and year)
+ *   #/index/<page>              all entries, given page
+ *   #/list/persons              all persons (likewise categories and years)
+ */
+(function() {
+    const navigationElement = document.getElementById('navigation');
+    const contentElement = document.getElementById('content');
+    const STATE_KEY = 'navigationCollapsibleState';
+
+    let navigation = null;
+
+    window.addEventListener('hashchange', render);
+    fetchJson('data/navigation.json')
+        .then(function(data) {
+            navigation = data;
+            render();
+        })
+        .catch(showError);
+
+    function render() {
+        if (!navigation) {
+            return;
+        }
+        const route = parseRoute();
+        renderNavigation(route);
+        Promise.resolve()
+            .then(function() {
+                if (route.type === 'entry') {
+                    return fetchJson('data/entries/' + encodeURIComponent(route.key) + '.json').then(renderEntry);
+                }
+                if (route.type === 'list') {
+                    return renderItemList(route.key);
+                }
+                return fetchJson(listingPath(route)).then(function(listing) {
+                    renderListing(route, listing);
+                });
+            })
+            .then(function() {
+                window.scrollTo(0, 0);
+            })
+            .catch(showError);
+    }
+
+    function parseRoute() {
+        const parts = location.hash.replace(/^#\/?/, '').split('/').map(decodeURIComponent);
+        const type = parts[0] || 'index';
+        if (type === 'entry' || type === 'list') {
+            return {type: type, key: parts.slice(1).join('/')};
+        }
+        if (type === 'index') {
+            return {type: type, key: null, page: parseInt(parts[1], 10) || 1};
+        }
+        return {type: type, key: parts[1], page: parseInt(parts[2], 10) || 1};
+    }
+
+    function listingPath(route) {
+        if (route.type === 'index') {
+            return 'data/index/' + route.page + '.json';
+        }
+        const directory = {person: 'persons', category: 'categories', year: 'years'}[route.type];
+        if (!directory) {
+            throw new Error('Unknown page: ' + location.hash);
+        }
+        return 'data/' + directory + '/' + encodeURIComponent(route.key) + '/' + route.page + '.json';
+    }
+
+    /**
+     * Navigation panel, the same structure and classes as in the HTML output
+     */
+    function renderNavigation(route) {
+        const listLinks = [
+            ['index', '#/', 'All Entries'],
+            ['persons', '#/list/persons', 'Persons List'],
+            ['categories', '#/list/categories', 'Categories List'],
+            ['years', '#/list/years', 'Years List']
+        ].map(function(link) {
+            const current = route.type === 'list' ? route.key === link[0] : route.type === 'index' && link[0] === 'index';
+            return '<li>' + (current ? '<strong>' + link[2] + '</strong>' : '<a href="' + link[1] + '">' + link[2] + '</a>') + '</li>';
+        }).join('');
+
+        navigationElement.innerHTML = '<h2>Browse By</h2>'
+            + '<ul class="list-pages">' + listLinks + '</ul>'
+            + navigationSection('persons', 'Persons', 'person', navigation.persons)
+            + navigationSection('categories', 'Categories', 'category', navigation.categories)
+            + navigationSection('years', 'Years', 'year', navigation.years);
+
+        const state = loadCollapsibleState();
+        navigationElement.querySelectorAll('.collapsible-header').forEach(function(header) {
+            const section = header.parentElement;
+            if (state[section.getAttribute('data-section-id')] === true) {
+                section.classList.add('collapsed');
+            }
+            header.addEventListener('click', function() {
+                section.classList.toggle('collapsed');
+                saveCollapsibleState();
+            });
+        });
+    }
+
+    function navigationSection(sectionId, title, type, items) {
+        const links = items.map(function(item) {
+            return '<li><a href="' + itemHref(type, item.slug) + '"><span>' + escapeHtml(item.name) + '</span>'
+                + '<span class="badge">' + item.count + '</span></a></li>';
+        }).join('');
+        return '<div class="collapsible-section" data-section-id="' + sectionId + '">'
+            + '<h3 class="collapsible-header">' + title + ' <span class="badge">' + items.length + '</span><span class="toggle-icon"></span></h3>'
+            + '<ul class="collapsible-content">' + (links || '<li><span>No ' + sectionId + ' available.</span></li>') + '</ul>'
+            + '</div>';
+    }
+
+    function loadCollapsibleState() {
+        try {
+            return JSON.parse(localStorage.getItem(STATE_KEY)) || {};
+        } catch (e) {
+            localStorage.removeItem(STATE_KEY);
+            return {};
+        }
+    }
+
+    function saveCollapsibleState() {
+        const state = {};
+        navigationElement.querySelectorAll('.collapsible-section').forEach(function(section) {
+            state[section.getAttribute('data-section-id')] = section.classList.contains('collapsed');
+        });
+        localStorage.setItem(STATE_KEY, JSON.stringify(state));
+    }
+
+    function renderListing(route, listing) {
+        const title = 'Journal Entries' + (route.key ? ' - ' + itemName(route) : '');
+        document.title = title;
+        const entries = listing.entries.map(function(entry) {
+            return '<div class="journal-entry">'
+                + '<h2 class="title"><a href="#/entry/' + encodeURIComponent(entry.location) + '">' + escapeHtml(entry.title) + '</a></h2>'
+                + '<div class="metadata">' + dateCreated(entry.created) + itemLinks('categories', 'category', entry.categories)
+                + itemLinks('persons', 'person', entry.persons) + '</div>'
+                + '</div>';
+        }).join('');
+        contentElement.innerHTML = '<h1>' + escapeHtml(title) + '</h1>'
+            + (entries ? '<div class="journal-list">' + entries + '</div>' : '<div class="no-entries"><p>No journal entries were found.</p></div>')
+            + pagination(route, listing);
+    }
+
+    function itemName(route) {
+        const items = navigation[{person: 'persons', category: 'categories', year: 'years'}[route.type]] || [];
+        const item = items.find(function(candidate) {
+            return candidate.slug === route.key;
+        });
+        return item ? item.name : route.key;
+    }
+
+    function pagination(route, listing) {
+        if (listing.pages <= 1) {
+            return '';
+        }
+        const base = route.type === 'index' ? '#/index/' : '#/' + route.type + '/' + encodeURIComponent(route.key) + '/';
+        return '<div class="pagination">'
+            + (listing.page > 1 ? '<a href="' + base + (listing.page - 1) + '">Newer</a> ' : '')
+            + '<span>Page ' + listing.page + ' of ' + listing.pages + '</span>'
+            + (listing.page < listing.pages ? ' <a href="' + base + (listing.page + 1) + '">Older</a>' : '')
+            + '</div>';
+    }
+
+    function renderEntry(entry) {
+        document.title = entry.title || 'Journal Entries';
+        const images = entry.attachments.filter(isImage);
+        const files = entry.attachments.filter(function(attachment) {
+            return !isImage(attachment);
+        });
+
+        let attachments = '';
+        if (entry.attachments.length > 0) {
+            attachments = '<div class="attachments-section"><hr>';
+            if (files.length > 0) {
+                attachments += '<div class="attachments-header"><h3>Attachments</h3>'
+                    + '<span class="attachment-count">' + files.length + ' file' + (files.length > 1 ? 's' : '') + '</span></div>'
+                    + '<div class="attachments-grid">' + files.map(attachmentItem).join('') + '</div>';
+            }
+            if (images.length > 0) {
+                attachments += '<div><h3>Image Attachments</h3><div class="gallery-grid">' + images.map(galleryItem).join('') + '</div></div>';
+            }
+            attachments += '</div>';
+        }
+
+        contentElement.innerHTML = '<h1>' + escapeHtml(entry.title) + '</h1>'
+            + dateCreated(entry.created)
+            + itemLinks('categories', 'category', entry.categories)
+            + itemLinks('persons', 'person', entry.persons)
+            + '<hr><div class="entry-body">'
+            + (entry.body && entry.body.trim() ? '<span>' + entry.body + '</span>' : '<span>[Empty body]</span>')
+            + '</div>'
+            + attachments;
+    }
+
+    function attachmentItem(attachment) {
+        const extension = attachment.extension;
+        const href = escapeHtml(attachment.href);
+        return '<div class="attachment-item">'
+            + '<div class="attachment-icon ' + (extension ? 'icon-' + escapeHtml(extension.toLowerCase()) : 'icon-file') + '">'
+            + '<span class="file-type-badge">' + (extension ? escapeHtml(extension.toUpperCase()) : 'FILE') + '</span></div>'
+            + '<div class="attachment-info">'
+            + '<a class="attachment-name" href="' + href + '" target="_blank" rel="noopener noreferrer">' + escapeHtml(attachment.name) + '</a>'
+            + '<div class="attachment-meta">'
+            + (attachment.size != null ? '<span class="file-size">' + escapeHtml(attachment.formattedSize) + '</span>' : '')
+            + (attachment.mimeType != null ? '<span class="file-type">' + escapeHtml(attachment.mimeType) + '</span>' : '')
+            + '</div></div>'
+            + '<div class="attachment-actions">'
+            + '<a class="btn-download" href="' + href + '" download title="Download file">📥</a>'
+            + '<a class="btn-external" href="' + href + '" target="_blank" title="Open in new tab">🔗</a>'
+            + '</div></div>';
+    }
+
+    function galleryItem(attachment) {
+        const href = escapeHtml(attachment.href);
+        const name = escapeHtml(attachment.name);
+        return '<div class="gallery-item">'
+            + '<a class="gallery-link" href="' + href + '" target="_blank" data-title="' + name + '">'
+            + '<img class="gallery-image" src="' + href + '" alt="' + name + '" loading="lazy">'
+            + '<div class="gallery-caption"><span class="gallery-image-name">' + name + '</span></div>'
+            + '</a></div>';
+    }
+
+    function renderItemList(listType) {
+        const items = navigation[listType];
+        if (!items) {
+            throw new Error('Unknown list: ' + listType);
+        }
+        const type = {persons: 'person', categories: 'category', years: 'year'}[listType];
+        const title = 'All ' + listType.charAt(0).toUpperCase() + listType.slice(1);
+        document.title = title;
+        const links = items.map(function(item) {
+            return '<li><a href="' + itemHref(type, item.slug) + '">' + escapeHtml(item.name) + '</a>'
+                + '<span class="badge">' + item.count + '</span></li>';
+        }).join('');
+        contentElement.innerHTML = '<h1>' + title + '</h1>'
+            + (links ? '<div class="list-container"><ul class="items-list">' + links + '</ul></div>'
+                : '<div class="no-items"><p>No ' + type + 's were found.</p></div>');
+    }
+
+    function dateCreated(created) {
+        // ISO date time, shown as dd. MM. yyyy
+        const date = created ? created.substring(8, 10) + '. ' + created.substring(5, 7) + '. ' + created.substring(0, 4) : '';
+        return '<div class="date-created"><span class="metadata-title">Date created:</span><span>' + date + '</span></div>';
+    }
+
+    function itemLinks(cssClass, type, items) {
+        if (!items || items.length === 0) {
+            return '';
+        }
+        const title = cssClass.charAt(0).toUpperCase() + cssClass.slice(1);
+        return '<div class="' + cssClass + '"><span class="metadata-title">' + title + ':</span>'
+            + items.map(function(item) {
+                return '<a class="' + type + '" href="' + itemHref(type, item.replace(/ /g, '_')) + '">' + escapeHtml(item) + '</a>';
+            }).join('')
+            + '</div>';
+    }
+
+    function itemHref(type, slug) {
+        return '#/' + type + '/' + encodeURIComponent(slug);
+    }
+
+    function isImage(attachment) {
+        return attachment.mimeType != null && attachment.mimeType.indexOf('image/') === 0;
+    }
+
+    function fetchJson(path) {
+        return fetch(path).then(function(response) {
+            if (!response.ok) {
+                throw new Error(path + ': ' + response.status);
+            }
+            return response.json();
+        });
+    }
+
+    function showError(error) {
+        contentElement.innerHTML = '<h1>Page not found</h1><p>' + escapeHtml(String(error)) + '</p>';
+    }
+
+    function escapeHtml(text) {
+        if (text == null) {
+            return '';
+        }
+        return String(text)
+            .replace(/&/g, '&amp;')
+            .replace(/</g, '&lt;')
+            .replace(/>/g, '&gt;')
+            .replace(/"/g, '&quot;')
+            .replace(/'/g, '&#39;');
+    }
+})();
@@ -0,0 +1,222 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.config.ExporterConfiguration;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.EntryMetadata;
+import com.vojtechruzicka.xjsexporter.model.Metadata;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.render.ThymeleafPageRenderer;
+import com.vojtechruzicka.xjsexporter.service.BodyExtractor;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalWatcherTest {
+
+    private static final String SNEZKA = entryXml("e0", "2023-07-14T09:30", "Sněžka", "<attachment-ids><id>a0</id></attachment-ids><category-ids><id>c0</id></category-ids><person-ids><id>p0</id></person-ids>");
+    private static final String DOMA = entryXml("e1", "2023-08-01T18:00", "Doma", "<category-ids><id>c1</id></category-ids>");
+    private static final String ZAHRADA = entryXml("e2", "2022-05-05T10:00", "Zahrada", "<category-ids><id>c1</id></category-ids>");
+
+    private static final SourceFileSystems sources = new SourceFileSystems();
+    private static final FileService fileService = new FileService(sources);
+    private static final ExecutorService attachmentCopyExecutor = new ExporterConfiguration().attachmentCopyExecutor();
+    private static final SiteAssets assets = new SiteAssets();
+    private static final OutputSinkFactory outputSinks = new OutputSinkFactory(new Precompressor());
+    private static PipelineFactory pipelines;
+    private static Terminal terminal;
+
+    @TempDir
+    Path workDir;
+
+    private Path journal;
+    private Path intermediate;
+    private Path target;
+    private JournalWatcher watcher;
+    private JournalWatcher.WatchState state;
+
+    @BeforeAll
+    static void createPipelines() throws IOException {
+        fileService.init();
+        terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        pipelines = new PipelineFactory(new MetadataExtractor(sources), new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets),
+                assets, fileService, new BodyExtractor(), new CheckpointStore(), outputSinks, new JfrRecorder(), sources, attachmentCopyExecutor);
+    }
+
+    @AfterAll
+    static void closeSources() {
+        attachmentCopyExecutor.shutdownNow();
+        sources.close();
+    }
+
+    @BeforeEach
+    void exportJournal() throws IOException {
+        journal = workDir.resolve("journal").toAbsolutePath().normalize();
+        intermediate = workDir.resolve("intermediate");
+        target = workDir.resolve("site");
+        Files.createDirectories(journal.resolve("Entries"));
+        Files.createDirectories(journal.resolve("Attachments"));
+        writeEntry("e0", "Na Sněžce foukalo.");
+        writeEntry("e1", "Celý den doma.");
+        writeEntry("e2", "Zasadili jsme rajčata.");
+        Files.writeString(journal.resolve("Attachments").resolve("mapa.pdf"), "first map");
+        writeJournal(SNEZKA, DOMA, ZAHRADA);
+
+        PipelineFactory.Pipeline pipeline = pipelines.create(terminal);
+        watcher = new JournalWatcher(pipeline.extractor(), new MetadataExtractor(sources), new JsonIntermediateStorage(fileService, pipeline.metrics()),
+                pipeline.generator(), fileService, outputSinks, terminal);
+        state = watcher.fullExport(journal + "/", intermediate + "/", target + "/");
+    }
+
+    @Test
+    void editedBodyRewritesOnlyItsEntry() throws IOException {
+        writeEntry("e1", "Celý den pršelo.");
+
+        JournalWatcher.Changes changes = JournalWatcher.findChanges(metadata(), metadata(), Set.of(journal.resolve("Entries/e1.html")));
+        List<Entry> before = state.entryList();
+        state = watcher.update(state, Set.of(journal.resolve("Entries/e1.html")));
+
+        assertThat(changes.entries()).containsExactly("e1");
+        assertThat(changes.attachments()).isEmpty();
+        assertThat(JournalWatcher.navigationChanged(before, state.entryList())).isFalse();
+        assertThat(Files.readString(target.resolve(entryPage("e1", "2023-08-01T18:00", "Doma")))).contains("Celý den pršelo.");
+        assertThat(Files.readString(intermediate.resolve("entries").resolve(markdownFile("e1", "2023-08-01T18:00", "Doma")))).contains("Celý den pršelo.");
+    }
+
+    @Test
+    void changedTitleRenamesTheEntryFiles() throws IOException {
+        Metadata before = metadata();
+        writeJournal(SNEZKA, DOMA.replace("<title>Doma</title>", "<title>Doma u moře</title>"), ZAHRADA);
+
+        JournalWatcher.Changes changes = JournalWatcher.findChanges(before, metadata(), Set.of(journal.resolve("journal.xjn")));
+        state = watcher.update(state, Set.of(journal.resolve("journal.xjn")));
+
+        assertThat(changes.entries()).containsExactly("e1");
+        Path entriesDir = intermediate.resolve("entries");
+        assertThat(entriesDir.resolve(markdownFile("e1", "2023-08-01T18:00", "Doma"))).doesNotExist();
+        assertThat(entriesDir.resolve(markdownFile("e1", "2023-08-01T18:00", "Doma u moře"))).exists();
+        assertThat(target.resolve(entryPage("e1", "2023-08-01T18:00", "Doma"))).doesNotExist();
+        assertThat(Files.readString(target.resolve(entryPage("e1", "2023-08-01T18:00", "Doma u moře")))).contains("Doma u moře");
+    }
+
+    @Test
+    void removedEntryDeletesItsStalePages() throws IOException {
+        Metadata before = metadata();
+        List<Entry> entriesBefore = state.entryList();
+        writeJournal(SNEZKA, DOMA);
+
+        JournalWatcher.Changes changes = JournalWatcher.findChanges(before, metadata(), Set.of(journal.resolve("journal.xjn")));
+        state = watcher.update(state, Set.of(journal.resolve("journal.xjn")));
+
+        assertThat(changes.entries()).containsExactly("e2");
+        assertThat(JournalWatcher.navigationChanged(entriesBefore, state.entryList())).isTrue();
+        assertThat(intermediate.resolve("entries").resolve(markdownFile("e2", "2022-05-05T10:00", "Zahrada"))).doesNotExist();
+        assertThat(target.resolve(entryPage("e2", "2022-05-05T10:00", "Zahrada"))).doesNotExist();
+        // e2 was the only entry of 2022
+        assertThat(target.resolve(fileService.getYearPagePath(2022))).doesNotExist();
+        assertThat(state.pages()).doesNotContain(fileService.getYearPagePath(2022));
+        assertThat(target.resolve(entryPage("e1", "2023-08-01T18:00", "Doma"))).exists();
+    }
+
+    @Test
+    void changedAttachmentIsCopiedWithItsEntries() throws IOException {
+        Path attachment = journal.resolve("Attachments").resolve("mapa.pdf");
+        Files.writeString(attachment, "second, larger map");
+
+        JournalWatcher.Changes changes = JournalWatcher.findChanges(metadata(), metadata(), Set.of(attachment));
+        state = watcher.update(state, Set.of(attachment));
+
+        assertThat(changes.attachments()).extracting(AttachmentMetadata::id).containsExactly("a0");
+        assertThat(changes.entries()).containsExactly("e0");
+        assertThat(Files.readString(intermediate.resolve("attachments").resolve("mapa.pdf"))).isEqualTo("second, larger map");
+        assertThat(Files.readString(target.resolve(fileService.getAttachmentPath("mapa.pdf")))).isEqualTo("second, larger map");
+    }
+
+    @Test
+    void ignoresUnrelatedFiles() throws IOException {
+        Path other = journal.resolve("notes.txt");
+        Files.writeString(other, "not part of the journal");
+
+        JournalWatcher.Changes changes = JournalWatcher.findChanges(metadata(), metadata(), Set.of(other));
+
+        assertThat(changes.entries()).isEmpty();
+        assertThat(changes.attachments()).isEmpty();
+    }
+
+    @Test
+    void changedCategoryChangesTheNavigation() {
+        Metadata before = metadata();
+        Map<String, EntryMetadata> entries = new HashMap<>(before.entries());
+        EntryMetadata doma = entries.get("e1");
+        entries.put("e1", new EntryMetadata(doma.id(), doma.title(), doma.location(), doma.dateCreated(), doma.attachmentIds(), List.of("c0"), doma.personIds()));
+        Metadata after = new Metadata(before.people(), before.categories(), before.attachments(), entries);
+
+        JournalWatcher.Changes changes = JournalWatcher.findChanges(before, after, Set.of());
+        List<Entry> entriesBefore = state.entryList();
+        List<Entry> entriesAfter = entriesBefore.stream()
+                .map(entry -> entry.id().equals("e1") ? new Entry(entry.id(), entry.title(), entry.created(), entry.html(), entry.persons(), List.of("Výlety"),
+                        entry.attachments(), entry.location()) : entry)
+                .toList();
+
+        assertThat(changes.entries()).containsExactly("e1");
+        assertThat(JournalWatcher.navigationChanged(entriesBefore, entriesAfter)).isTrue();
+    }
+
+    private Metadata metadata() {
+        try {
+            return new MetadataExtractor(sources).extractMetadata(journal + "/");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeEntry(String id, String text) throws IOException {
+        Files.writeString(journal.resolve("Entries").resolve(id + ".html"),
+                "<html><head><meta charset=\"utf-8\"></head><body><p>" + text + "</p></body></html>");
+    }
+
+    private void writeJournal(String... entries) throws IOException {
+        Files.writeString(journal.resolve("journal.xjn"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<journal>\n"
+                + "<people><person id=\"p0\"><first-name>Jan</first-name><last-name>Novák</last-name></person></people>\n"
+                + "<categories><category id=\"c0\"><title>Výlety</title></category><category id=\"c1\"><title>Rodina</title></category></categories>\n"
+                + "<attachments><attachment id=\"a0\"><location>mapa.pdf</location></attachment></attachments>\n"
+                + "<entries>\n" + String.join("\n", entries) + "\n</entries>\n</journal>\n");
+    }
+
+    private static String entryXml(String id, String created, String title, String ids) {
+        return "<entry id=\"" + id + "\" date-created=\"" + created + "\"><title>" + title + "</title><content><value>Entries/" + id
+                + ".html</value></content>" + ids + "</entry>";
+    }
+
+    private static String markdownFile(String id, String created, String title) {
+        return fileService.getEntryFileName(id, LocalDateTime.parse(created), title) + ".md";
+    }
+
+    private static String entryPage(String id, String created, String title) {
+        return "entries/" + fileService.getEntryFileName(id, LocalDateTime.parse(created), title) + ".html";
+    }
+}
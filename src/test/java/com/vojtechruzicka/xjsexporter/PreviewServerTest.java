@@ -0,0 +1,165 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.sun.net.httpserver.HttpServer;
+import com.vojtechruzicka.xjsexporter.service.PageCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreviewServerTest {
+
+    private static final byte[] ATTACHMENT = new byte[100];
+
+    static {
+        for (int i = 0; i < ATTACHMENT.length; i++) {
+            ATTACHMENT[i] = (byte) i;
+        }
+    }
+
+    @TempDir
+    Path workDir;
+
+    private final AtomicInteger renders = new AtomicInteger();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        Path attachmentsDir = workDir.resolve("attachments").toAbsolutePath().normalize();
+        Files.createDirectories(attachmentsDir);
+        Files.write(attachmentsDir.resolve("data.bin"), ATTACHMENT);
+        Files.writeString(workDir.resolve("secret.txt"), "outside of the attachments");
+
+        Map<String, Generator.Page> pages = Map.of(Generator.INDEX_PAGE, new Generator.Page(Generator.INDEX_PAGE, "index", null, () -> {
+            renders.incrementAndGet();
+            return "<html><body>Index</body></html>";
+        }));
+        server = new PreviewServer(null, null, null).start(new InetSocketAddress("localhost", 0), pages, new PageCache(1024), attachmentsDir);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void servesRangeFromStartToEnd() throws Exception {
+        HttpResponse<byte[]> response = get("/attachments/data.bin", "Range", "bytes=0-9");
+
+        assertThat(response.statusCode()).isEqualTo(206);
+        assertThat(response.headers().firstValue("Content-Range")).hasValue("bytes 0-9/100");
+        assertThat(response.body()).isEqualTo(Arrays.copyOfRange(ATTACHMENT, 0, 10));
+    }
+
+    @Test
+    void servesSuffixRange() throws Exception {
+        HttpResponse<byte[]> response = get("/attachments/data.bin", "Range", "bytes=-10");
+
+        assertThat(response.statusCode()).isEqualTo(206);
+        assertThat(response.headers().firstValue("Content-Range")).hasValue("bytes 90-99/100");
+        assertThat(response.body()).isEqualTo(Arrays.copyOfRange(ATTACHMENT, 90, 100));
+    }
+
+    @Test
+    void servesOpenRangeToTheEnd() throws Exception {
+        HttpResponse<byte[]> response = get("/attachments/data.bin", "Range", "bytes=5-");
+
+        assertThat(response.statusCode()).isEqualTo(206);
+        assertThat(response.headers().firstValue("Content-Range")).hasValue("bytes 5-99/100");
+        assertThat(response.body()).isEqualTo(Arrays.copyOfRange(ATTACHMENT, 5, 100));
+    }
+
+    @Test
+    void limitsRangeToTheFileSize() throws Exception {
+        HttpResponse<byte[]> response = get("/attachments/data.bin", "Range", "bytes=95-1000");
+
+        assertThat(response.statusCode()).isEqualTo(206);
+        assertThat(response.body()).isEqualTo(Arrays.copyOfRange(ATTACHMENT, 95, 100));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        HttpResponse<byte[]> response = get("/attachments/data.bin", "Range", "bytes=100-");
+
+        assertThat(response.statusCode()).isEqualTo(416);
+        assertThat(response.headers().firstValue("Content-Range")).hasValue("bytes */100");
+    }
+
+    @Test
+    void servesWholeFileForMultipleRanges() throws Exception {
+        HttpResponse<byte[]> response = get("/attachments/data.bin", "Range", "bytes=0-1,5-6");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Range")).isEmpty();
+        assertThat(response.body()).isEqualTo(ATTACHMENT);
+    }
+
+    @Test
+    void revalidatesAttachmentsWithETag() throws Exception {
+        HttpResponse<byte[]> response = get("/attachments/data.bin");
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<byte[]> revalidated = get("/attachments/data.bin", "If-None-Match", etag);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(revalidated.statusCode()).isEqualTo(304);
+        assertThat(revalidated.headers().firstValue("ETag")).hasValue(etag);
+        assertThat(revalidated.body()).isEmpty();
+    }
+
+    @Test
+    void revalidatesPagesWithETagAndRendersThemOnce() throws Exception {
+        HttpResponse<byte[]> response = get("/");
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<byte[]> revalidated = get("/index.html", "If-None-Match", etag);
+        HttpResponse<byte[]> changed = get("/index.html", "If-None-Match", "\"other\"");
+
+        assertThat(new String(response.body())).isEqualTo("<html><body>Index</body></html>");
+        assertThat(revalidated.statusCode()).isEqualTo(304);
+        assertThat(revalidated.headers().firstValue("ETag")).hasValue(etag);
+        assertThat(changed.statusCode()).isEqualTo(200);
+        assertThat(renders).hasValue(1);
+    }
+
+    @Test
+    void rejectsPathsOutsideOfTheAttachments() throws Exception {
+        assertThat(get("/attachments/../secret.txt").statusCode()).isEqualTo(404);
+        assertThat(get("/attachments/%2E%2E/secret.txt").statusCode()).isEqualTo(404);
+        assertThat(get("/attachments/..%2Fsecret.txt").statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void answersUnknownPagesAndMethods() throws Exception {
+        assertThat(get("/missing.html").statusCode()).isEqualTo(404);
+        HttpRequest post = HttpRequest.newBuilder(uri("/index.html")).POST(HttpRequest.BodyPublishers.noBody()).build();
+        assertThat(client.send(post, HttpResponse.BodyHandlers.ofByteArray()).statusCode()).isEqualTo(405);
+    }
+
+    private HttpResponse<byte[]> get(String path, String... headers) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path)).GET();
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+}
@@ -0,0 +1,163 @@
+package com.vojtechruzicka.xjsexporter;
+
+import com.vojtechruzicka.xjsexporter.benchmark.SyntheticJournalGenerator;
+import com.vojtechruzicka.xjsexporter.config.ExporterConfiguration;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.render.ThymeleafPageRenderer;
+import com.vojtechruzicka.xjsexporter.service.BodyExtractor;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardMergerTest {
+
+    private static final int ENTRIES = 40;
+
+    @TempDir
+    static Path journalDir;
+
+    private static final SourceFileSystems sources = new SourceFileSystems();
+    private static final FileService fileService = new FileService(sources);
+    private static final ExecutorService attachmentCopyExecutor = new ExporterConfiguration().attachmentCopyExecutor();
+    private static final SiteAssets assets = new SiteAssets();
+    private static final OutputSinkFactory outputSinks = new OutputSinkFactory(new Precompressor());
+    private static PipelineFactory pipelines;
+    private static Terminal terminal;
+    private static String intermediate;
+
+    @TempDir
+    Path workDir;
+
+    @BeforeAll
+    static void extractJournal() throws IOException {
+        fileService.init();
+        terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        pipelines = new PipelineFactory(new MetadataExtractor(sources), new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets),
+                assets, fileService, new BodyExtractor(), new CheckpointStore(), outputSinks, new JfrRecorder(), sources, attachmentCopyExecutor);
+        Path journal = journalDir.resolve("journal");
+        SyntheticJournalGenerator.generate(journal, ENTRIES, 7);
+        intermediate = journalDir.resolve("intermediate").toString();
+        assertSucceeded(pipelines.create(terminal).extractor().extract(journal.toString(), intermediate, false, false));
+    }
+
+    @AfterAll
+    static void closeSources() {
+        attachmentCopyExecutor.shutdownNow();
+        sources.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {Generator.FORMAT_HTML, Generator.FORMAT_JSON})
+    void mergedShardsMatchSingleRun(String format) throws IOException {
+        Path single = workDir.resolve("single");
+        Path sharded = workDir.resolve("sharded");
+        assertSucceeded(pipelines.create(terminal).generator().generate(intermediate, single.toString(), format, false, false, false, ""));
+        for (String shard : new String[]{"1/3", "2/3", "3/3"}) {
+            assertSucceeded(pipelines.create(terminal).generator().generate(intermediate, sharded.toString(), format, false, false, false, shard));
+        }
+
+        CommandResult merged = newMerger().merge(sharded.toString());
+
+        assertSucceeded(merged);
+        assertThat(merged.message()).contains("3 shards with " + ENTRIES + " entries");
+        assertThat(sharded.resolve(Generator.SHARDS_DIR)).doesNotExist();
+        Map<String, String> expected = readAll(single);
+        Map<String, String> actual = readAll(sharded);
+        assertThat(actual.keySet()).containsExactlyElementsOf(expected.keySet());
+        expected.forEach((path, content) -> assertThat(actual.get(path)).as(path).isEqualTo(content));
+    }
+
+    @Test
+    void mergeFailsWhileShardsAreMissing() throws IOException {
+        Path sharded = workDir.resolve("sharded");
+        assertSucceeded(generateShard(sharded, "1/3"));
+        assertSucceeded(generateShard(sharded, "3/3"));
+
+        CommandResult merged = newMerger().merge(sharded.toString());
+
+        assertThat(merged.failed()).isTrue();
+        assertThat(merged.message()).contains("shards [2] of 3 are not finished yet");
+        assertThat(sharded.resolve(Generator.INDEX_PAGE)).doesNotExist();
+        try (Stream<Path> summaries = Files.list(sharded.resolve(Generator.SHARDS_DIR))) {
+            assertThat(summaries).hasSize(2);
+        }
+    }
+
+    @Test
+    void mergeRejectsShardsOfDifferentGenerations() {
+        Path sharded = workDir.resolve("sharded");
+        assertSucceeded(generateShard(sharded, "1/2"));
+        assertSucceeded(generateShard(sharded, "2/3"));
+
+        CommandResult merged = newMerger().merge(sharded.toString());
+
+        assertThat(merged.failed()).isTrue();
+        assertThat(merged.message()).contains("is of a different generation");
+    }
+
+    @Test
+    void mergeFailsWithoutShards() {
+        CommandResult merged = newMerger().merge(workDir.resolve("empty").toString());
+
+        assertThat(merged.failed()).isTrue();
+        assertThat(merged.message()).startsWith("Failed to merge");
+    }
+
+    private CommandResult generateShard(Path target, String shard) {
+        return pipelines.create(terminal).generator().generate(intermediate, target.toString(), Generator.FORMAT_HTML, false, false, false, shard);
+    }
+
+    private ShardMerger newMerger() {
+        ExportMetrics metrics = new ExportMetrics();
+        JsonIntermediateStorage jsonStorage = new JsonIntermediateStorage(fileService, metrics);
+        HtmlGenerator htmlGenerator = new HtmlGenerator(new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets),
+                assets, fileService, metrics);
+        DataApiGenerator dataApiGenerator = new DataApiGenerator(htmlGenerator, fileService, assets, jsonStorage);
+        Generator generator = new Generator(htmlGenerator, dataApiGenerator, jsonStorage, terminal, fileService, metrics, new JfrRecorder(),
+                outputSinks, new CheckpointStore(), null);
+        return new ShardMerger(generator, dataApiGenerator, jsonStorage, outputSinks, terminal);
+    }
+
+    private static void assertSucceeded(CommandResult result) {
+        assertThat(result.failed()).as(result.message()).isFalse();
+    }
+
+    /**
+     * Contents of all files of a site by their relative path, read as Latin-1 to compare them byte by byte.
+     */
+    private static Map<String, String> readAll(Path root) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                files.put(root.relativize(file).toString(), Files.readString(file, StandardCharsets.ISO_8859_1));
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,89 @@
+package com.vojtechruzicka.xjsexporter.benchmark;
+
+import com.vojtechruzicka.xjsexporter.service.BodyExtractor;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the byte scanning {@link BodyExtractor} with the full jsoup DOM round trip on a
+ * synthetic journal, and checks that both read the same bodies.
+ * <p>
+ * Runs with {@code mvn -Pbenchmark test -Dtest=BodyExtractionBenchmarkTest}, the journal size and the number
+ * of measured rounds are set by {@code -Dbenchmark.entries} (50,000) and {@code -Dbenchmark.rounds} (3).
+ */
+@Tag("benchmark")
+class BodyExtractionBenchmarkTest {
+
+    @Test
+    void byteScanMatchesJsoup() throws IOException {
+        int entries = Integer.getInteger("benchmark.entries", 50_000);
+        int rounds = Integer.getInteger("benchmark.rounds", 3);
+        Path directory = SyntheticJournals.journal(entries);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory.resolve("Entries"))) {
+            files = list.filter(path -> path.toString().endsWith(".html")).sorted().toList();
+        }
+        long totalBytes = 0;
+        for (Path file : files) {
+            totalBytes += Files.size(file);
+        }
+        System.out.printf("%d files, %.1f MB%n", files.size(), totalBytes / (1024.0 * 1024.0));
+
+        BodyExtractor extractor = new BodyExtractor();
+
+        // Both paths have to describe the same document
+        List<Path> mismatches = new ArrayList<>();
+        for (Path file : files) {
+            String expected = extractor.extractWithJsoup(file);
+            String actual = Jsoup.parseBodyFragment(extractor.extractBody(file)).body().html();
+            if (!expected.equals(actual)) {
+                mismatches.add(file);
+            }
+        }
+        assertThat(mismatches).as("files with a different body").isEmpty();
+
+        for (int round = 1; round <= rounds; round++) {
+            long jsoupNanos = measure(files, file -> extractor.extractWithJsoup(file));
+            long scanNanos = measure(files, extractor::extractBody);
+            System.out.printf("Round %d: jsoup %d ms (%.0f MB/s), byte scan %d ms (%.0f MB/s), %.1fx faster%n",
+                    round,
+                    jsoupNanos / 1_000_000, throughput(totalBytes, jsoupNanos),
+                    scanNanos / 1_000_000, throughput(totalBytes, scanNanos),
+                    (double) jsoupNanos / scanNanos);
+        }
+    }
+
+    private static long measure(List<Path> files, BodyReader reader) throws IOException {
+        long chars = 0;
+        long start = System.nanoTime();
+        for (Path file : files) {
+            chars += reader.read(file).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        // Keep the result observable so the work is not optimized away
+        if (chars < 0) {
+            System.out.println(chars);
+        }
+        return elapsed;
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1_000_000_000.0);
+    }
+
+    @FunctionalInterface
+    private interface BodyReader {
+        String read(Path file) throws IOException;
+    }
+}
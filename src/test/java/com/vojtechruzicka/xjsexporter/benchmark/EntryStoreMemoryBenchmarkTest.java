@@ -0,0 +1,120 @@
+package com.vojtechruzicka.xjsexporter.benchmark;
+
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.EntryStore;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the live heap held by loaded entries, as plain {@link Entry} records and in the compact
+ * {@link EntryStore}, and checks that the store holds less.
+ * <p>
+ * Runs with {@code mvn -Pbenchmark test -Dtest=EntryStoreMemoryBenchmarkTest}, the journal size is set by
+ * {@code -Dbenchmark.entries} (50,000). The benchmark profile runs the tests with {@code -XX:+UseSerialGC},
+ * so that the heap usage after a full GC is exact.
+ */
+@Tag("benchmark")
+class EntryStoreMemoryBenchmarkTest {
+
+    @Test
+    void storeHoldsLessThanRecords() throws IOException {
+        int entryCount = Integer.getInteger("benchmark.entries", 50_000);
+        Path intermediate = SyntheticJournals.intermediate(entryCount);
+
+        FileService fileService = new FileService(new SourceFileSystems());
+        fileService.init();
+        JsonIntermediateStorage jsonStorage = new JsonIntermediateStorage(fileService, new ExportMetrics());
+        List<Path> files;
+        try (Stream<Path> list = Files.list(jsonStorage.getEntriesDirectory(intermediate.toString()))) {
+            files = list.filter(path -> path.toString().endsWith(".md")).sorted().toList();
+        }
+        Path attachmentsDir = jsonStorage.getAttachmentsDirectory(intermediate.toString());
+
+        long baseline = liveHeap();
+        List<Entry> records = load(jsonStorage, files, attachmentsDir);
+        long recordsHeap = liveHeap() - baseline;
+        long bodyChars = records.stream().mapToLong(entry -> entry.html() != null ? entry.html().length() : 0).sum();
+        long traversalRecords = traverse(records);
+
+        // Drop the records before loading again, so that nothing is shared between the two measurements
+        int loaded = records.size();
+        records = null;
+        baseline = liveHeap();
+        EntryStore.Builder builder = EntryStore.builder();
+        for (Entry entry : load(jsonStorage, files, attachmentsDir)) {
+            builder.add(entry);
+        }
+        EntryStore store = builder.build();
+        builder = null;
+        long storeHeap = liveHeap() - baseline;
+        long traversalStore = traverse(store.entries());
+
+        System.out.printf("%d entries, %.1f MB of body text%n", loaded, bodyChars / (1024.0 * 1024.0));
+        System.out.printf("Entry records: %8.1f MB live heap, %5d bytes per entry, full traversal %d ms%n",
+                mb(recordsHeap), recordsHeap / loaded, traversalRecords);
+        System.out.printf("Entry store:   %8.1f MB live heap, %5d bytes per entry, full traversal %d ms%n",
+                mb(storeHeap), storeHeap / loaded, traversalStore);
+        System.out.printf("Reduction:     %8.1f MB (%.0f %%)%n", mb(recordsHeap - storeHeap), 100.0 * (recordsHeap - storeHeap) / recordsHeap);
+
+        assertThat(store.size()).isEqualTo(loaded);
+        assertThat(storeHeap).isLessThan(recordsHeap);
+    }
+
+    private static List<Entry> load(JsonIntermediateStorage jsonStorage, List<Path> files, Path attachmentsDir) throws IOException {
+        List<Entry> entries = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Entry entry = jsonStorage.loadEntry(file, attachmentsDir);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Reads every field of every entry, the way the navigation of each page does.
+     */
+    private static long traverse(List<Entry> entries) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (Entry entry : entries) {
+            sum += entry.created().getYear() + entry.persons().size() + entry.categories().size() + entry.attachments().size();
+            for (String person : entry.persons()) {
+                sum += person.length();
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        // Keep the result observable so the work is not optimized away
+        if (sum < 0) {
+            System.out.println(sum);
+        }
+        return elapsed;
+    }
+
+    private static long liveHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,390 @@
+package com.vojtechruzicka.xjsexporter.benchmark;
+
+import com.vojtechruzicka.xjsexporter.CommandResult;
+import com.vojtechruzicka.xjsexporter.DataApiGenerator;
+import com.vojtechruzicka.xjsexporter.Generator;
+import com.vojtechruzicka.xjsexporter.HtmlGenerator;
+import com.vojtechruzicka.xjsexporter.MetadataExtractor;
+import com.vojtechruzicka.xjsexporter.PipelineFactory;
+import com.vojtechruzicka.xjsexporter.ShardMerger;
+import com.vojtechruzicka.xjsexporter.config.ExporterConfiguration;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.render.DirectPageRenderer;
+import com.vojtechruzicka.xjsexporter.render.PageRenderer;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.render.ThymeleafPageRenderer;
+import com.vojtechruzicka.xjsexporter.service.BodyExtractor;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.JournalCache;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that performance features produce the same site as the reference configuration.
+ * <p>
+ * A fixture journal is extracted and generated in HTML and JSON with the Thymeleaf renderer in a single
+ * sequential run, which is the reference. The same journal is then generated by the optimized configurations:
+ * the direct renderer, an interrupted and resumed run, concurrent shards with a merge, pipelines sharing a
+ * {@link JournalCache}, generation from an interrupted and resumed extraction, a {@code .zip} target, which
+ * is unpacked before the comparison, and precompression, whose {@code .gz} siblings have to decompress to
+ * the files next to them. The HTML site is also exported directly from the journal, without intermediate
+ * files. Every file of every output is hashed in parallel and compared with the reference. Files which differ, are missing or are extra
+ * are reported, HTML pages also with whether they are still the same after normalization by jsoup, which
+ * tells formatting differences from different content.
+ * <p>
+ * The fixture is a synthetic journal of {@code -Dgolden.entries} entries (100), or the journal directory or
+ * {@code .zip} given by {@code -Dgolden.journal}.
+ */
+class GoldenOutputTest {
+
+    private static final int SHARDS = 3;
+    private static final int REPORTED_FILES = 10;
+    private static final List<String> FORMATS = List.of(Generator.FORMAT_HTML, Generator.FORMAT_JSON);
+    private static final List<String> VARIANTS = List.of("direct-renderer", "resumed", "sharded", "cached", "resumed-extraction", "zip", "precompressed");
+    // Export writes the HTML site only
+    private static final String EXPORTED = "exported";
+
+    @TempDir
+    static Path workDir;
+
+    private static final SourceFileSystems sources = new SourceFileSystems();
+    private static final FileService fileService = new FileService(sources);
+    private static final ExecutorService attachmentCopyExecutor = new ExporterConfiguration().attachmentCopyExecutor();
+    private static final SiteAssets assets = new SiteAssets();
+    private static final CheckpointStore checkpoints = new CheckpointStore();
+    private static final OutputSinkFactory outputSinks = new OutputSinkFactory(new Precompressor());
+    private static final PageRenderer thymeleafRenderer = new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets);
+    private static final PageRenderer directRenderer = new DirectPageRenderer(assets);
+    private static final Map<String, Map<String, String>> referenceHashes = new HashMap<>();
+    private static Terminal terminal;
+    private static String journal;
+    private static String intermediate;
+
+    /**
+     * Extracts the fixture journal and generates the reference outputs.
+     */
+    @BeforeAll
+    static void generateReference() throws IOException {
+        fileService.init();
+        terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        String journalProperty = System.getProperty("golden.journal");
+        if (journalProperty != null && !journalProperty.isBlank()) {
+            journal = journalProperty;
+        } else {
+            Path synthetic = workDir.resolve("journal");
+            SyntheticJournalGenerator.generate(synthetic, Integer.getInteger("golden.entries", 100), 42);
+            journal = synthetic.toString();
+        }
+        intermediate = workDir.resolve("intermediate").toString();
+        check(newPipeline(thymeleafRenderer).extractor().extract(journal, intermediate, false, false));
+
+        for (String format : FORMATS) {
+            Path reference = site("reference", format);
+            check(newPipeline(thymeleafRenderer).generator().generate(intermediate, reference.toString(), format, false, false, false, ""));
+            referenceHashes.put(format, hashAll(reference));
+        }
+    }
+
+    @AfterAll
+    static void closeSources() {
+        attachmentCopyExecutor.shutdownNow();
+        sources.close();
+    }
+
+    static Stream<Arguments> variants() {
+        return Stream.concat(
+                FORMATS.stream().flatMap(format -> VARIANTS.stream().map(variant -> Arguments.of(format, variant))),
+                Stream.of(Arguments.of(Generator.FORMAT_HTML, EXPORTED)));
+    }
+
+    @ParameterizedTest(name = "{1} {0}")
+    @MethodSource("variants")
+    void matchesReference(String format, String variant) throws Exception {
+        Path target = site(variant, format);
+        switch (variant) {
+            case "direct-renderer" -> generate(newPipeline(directRenderer).generator(), intermediate, target.toString(), format);
+            case "resumed" -> generateResumed(intermediate, target.toString(), format);
+            case "sharded" -> generateSharded(intermediate, target.toString(), format);
+            case "cached" -> generateCached(intermediate, target.toString(), format);
+            case "resumed-extraction" -> generateFromResumedExtraction(journal, target.toString(), format);
+            case "zip" -> generateZip(intermediate, target, format);
+            case "precompressed" -> generatePrecompressed(intermediate, target, format);
+            case EXPORTED -> check(newPipeline(thymeleafRenderer).exporter().export(journal, target.toString(), "", false, false));
+            default -> throw new IllegalArgumentException("Unknown variant " + variant);
+        }
+
+        Comparison comparison = compare(site("reference", format), referenceHashes.get(format), target);
+        assertThat(comparison.identical()).as(comparison.describe(variant + "/" + format)).isTrue();
+    }
+
+    private static void generate(Generator generator, String intermediate, String target, String format) {
+        check(generator.generate(intermediate, target, format, false, false, false, ""));
+    }
+
+    /**
+     * Interrupts a run halfway and resumes it, like a cancelled job or a killed process.
+     */
+    private static void generateResumed(String intermediate, String target, String format) throws Exception {
+        PipelineFactory.Pipeline interrupted = newPipeline(thymeleafRenderer);
+        interruptHalfway(() -> interrupted.generator().generate(intermediate, target, format, false, false, false, ""), interrupted.metrics());
+        check(newPipeline(thymeleafRenderer).generator().generate(intermediate, target, format, false, false, true, ""));
+    }
+
+    /**
+     * Generates all shards concurrently, each with its own generator, and merges them.
+     */
+    private static void generateSharded(String intermediate, String target, String format) throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(SHARDS)) {
+            List<Future<CommandResult>> shards = new ArrayList<>();
+            for (int shard = 1; shard <= SHARDS; shard++) {
+                String name = shard + "/" + SHARDS;
+                shards.add(executor.submit(() -> newPipeline(thymeleafRenderer).generator().generate(intermediate, target, format, false, false, false, name)));
+            }
+            for (Future<CommandResult> shard : shards) {
+                check(shard.get());
+            }
+        }
+        ExportMetrics metrics = new ExportMetrics();
+        JsonIntermediateStorage jsonStorage = new JsonIntermediateStorage(fileService, metrics);
+        HtmlGenerator htmlGenerator = new HtmlGenerator(thymeleafRenderer, assets, fileService, metrics);
+        DataApiGenerator dataApiGenerator = new DataApiGenerator(htmlGenerator, fileService, assets, jsonStorage);
+        Generator generator = new Generator(htmlGenerator, dataApiGenerator, jsonStorage, terminal, fileService, metrics, new JfrRecorder(), outputSinks, checkpoints, null);
+        check(new ShardMerger(generator, dataApiGenerator, jsonStorage, outputSinks, terminal).merge(target));
+    }
+
+    /**
+     * Generates twice with a shared cache, like the job server, and keeps the output of the second run served from the cache.
+     */
+    private static void generateCached(String intermediate, String target, String format) {
+        JournalCache cache = new JournalCache(4);
+        check(newPipeline(thymeleafRenderer, cache).generator().generate(intermediate, target, format, false, false, false, ""));
+        check(newPipeline(thymeleafRenderer, cache).generator().generate(intermediate, target, format, false, false, false, ""));
+    }
+
+    /**
+     * Interrupts an extraction halfway, resumes it, and generates from its intermediate data.
+     */
+    private static void generateFromResumedExtraction(String journal, String target, String format) throws Exception {
+        String intermediate = workDir.resolve("intermediate-resumed-" + format).toString();
+        PipelineFactory.Pipeline interrupted = newPipeline(thymeleafRenderer);
+        interruptHalfway(() -> interrupted.extractor().extract(journal, intermediate, false, false), interrupted.metrics());
+        check(newPipeline(thymeleafRenderer).extractor().extract(journal, intermediate, false, true));
+        check(newPipeline(thymeleafRenderer).generator().generate(intermediate, target, format, false, false, false, ""));
+    }
+
+    /**
+     * Generates a {@code .zip} archive and unpacks it into the target directory.
+     */
+    private static void generateZip(String intermediate, Path target, String format) throws IOException {
+        Path archive = workDir.resolve("zip-" + format + ".zip");
+        check(newPipeline(thymeleafRenderer).generator().generate(intermediate, archive.toString(), format, false, false, false, ""));
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                Path file = target.resolve(entry.getName()).normalize();
+                if (!file.startsWith(target)) {
+                    throw new IOException("Archive entry outside of the target: " + entry.getName());
+                }
+                if (!entry.isDirectory()) {
+                    Files.createDirectories(file.getParent());
+                    Files.copy(zip, file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates with precompression, checks that every {@code .gz} sibling decompresses to the file next to it,
+     * and removes the siblings and the precompression index, which the reference does not have.
+     */
+    private static void generatePrecompressed(String intermediate, Path target, String format) throws IOException {
+        check(newPipeline(thymeleafRenderer).generator().generate(intermediate, target.toString(), format, false, true, false, ""));
+        List<Path> compressed;
+        try (Stream<Path> files = Files.walk(target)) {
+            compressed = files.filter(file -> file.toString().endsWith(Precompressor.GZIP_SUFFIX)).toList();
+        }
+        assertThat(compressed).as("precompressed files").isNotEmpty();
+        for (Path file : compressed) {
+            String name = file.getFileName().toString();
+            Path sibling = file.resolveSibling(name.substring(0, name.length() - Precompressor.GZIP_SUFFIX.length()));
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                assertThat(in.readAllBytes()).as("decompressed " + relativePath(target, file)).isEqualTo(Files.readAllBytes(sibling));
+            }
+            Files.delete(file);
+        }
+        Files.delete(target.resolve(Precompressor.INDEX_FILE));
+    }
+
+    /**
+     * Runs a command and interrupts it once half of its planned items are done. A command finishing
+     * before that is not interrupted.
+     */
+    private static void interruptHalfway(Callable<CommandResult> command, ExportMetrics metrics) throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<CommandResult> run = executor.submit(command);
+        while (!run.isDone() && (metrics.plannedItems() == 0 || metrics.doneItems() < metrics.plannedItems() / 2)) {
+            Thread.sleep(1);
+        }
+        run.cancel(true);
+        executor.shutdown();
+        // A cancelled future returns at once, the command has to stop before it is resumed
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Interrupted command did not stop");
+        }
+    }
+
+    private static PipelineFactory.Pipeline newPipeline(PageRenderer renderer) {
+        return newPipeline(renderer, null);
+    }
+
+    private static PipelineFactory.Pipeline newPipeline(PageRenderer renderer, JournalCache cache) {
+        return new PipelineFactory(new MetadataExtractor(sources), renderer, assets, fileService, new BodyExtractor(), checkpoints, outputSinks, new JfrRecorder(),
+                sources, attachmentCopyExecutor)
+                .create(terminal, cache);
+    }
+
+    private static Path site(String configuration, String format) {
+        return workDir.resolve(configuration).resolve(format);
+    }
+
+    private static void check(CommandResult result) {
+        if (result.failed()) {
+            throw new IllegalStateException(result.message());
+        }
+    }
+
+    /**
+     * SHA-256 hashes of all files of an output by their relative path, computed in parallel.
+     */
+    private static Map<String, String> hashAll(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .toList()
+                    .parallelStream()
+                    .collect(Collectors.toConcurrentMap(file -> relativePath(root, file), GoldenOutputTest::hash));
+        }
+    }
+
+    /**
+     * Compares an output with the expected output and its hashes. Differing HTML pages are parsed and
+     * compared once more after normalization, in parallel too.
+     */
+    private static Comparison compare(Path expectedRoot, Map<String, String> expected, Path actualRoot) throws IOException {
+        Map<String, String> actual = hashAll(actualRoot);
+        List<String> missing = expected.keySet().stream().filter(path -> !actual.containsKey(path)).sorted().toList();
+        List<String> extra = actual.keySet().stream().filter(path -> !expected.containsKey(path)).sorted().toList();
+        List<String> different = actual.keySet().parallelStream()
+                .filter(path -> expected.containsKey(path) && !expected.get(path).equals(actual.get(path)))
+                .map(path -> path + describeDifference(expectedRoot.resolve(path), actualRoot.resolve(path)))
+                .sorted()
+                .toList();
+        return new Comparison(expected.size(), missing, extra, different);
+    }
+
+    /**
+     * Tells whether a differing HTML page has the same content after normalization, and where the normalized pages differ.
+     */
+    private static String describeDifference(Path expected, Path actual) {
+        if (!expected.toString().endsWith(".html")) {
+            return "";
+        }
+        try {
+            String[] expectedLines = normalizeHtml(expected).split("\n");
+            String[] actualLines = normalizeHtml(actual).split("\n");
+            int line = 0;
+            while (line < expectedLines.length && line < actualLines.length && expectedLines[line].equals(actualLines[line])) {
+                line++;
+            }
+            if (line == expectedLines.length && line == actualLines.length) {
+                return " (same after HTML normalization)";
+            }
+            return " (normalized HTML differs at line " + (line + 1) + ": expected '"
+                    + (line < expectedLines.length ? expectedLines[line].strip() : "") + "', was '"
+                    + (line < actualLines.length ? actualLines[line].strip() : "") + "')";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Markup of a page with whitespace and formatting normalized by jsoup, one element per line.
+     */
+    private static String normalizeHtml(Path page) throws IOException {
+        Document document = Jsoup.parse(page.toFile(), StandardCharsets.UTF_8.name());
+        document.outputSettings().prettyPrint(true).outline(true).indentAmount(1);
+        return document.outerHtml();
+    }
+
+    private static String hash(Path file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String relativePath(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private record Comparison(int expectedFiles, List<String> missing, List<String> extra, List<String> different) {
+
+        boolean identical() {
+            return missing.isEmpty() && extra.isEmpty() && different.isEmpty();
+        }
+
+        String describe(String name) {
+            if (identical()) {
+                return name + ": all " + expectedFiles + " files identical";
+            }
+            StringBuilder report = new StringBuilder(name + ": " + different.size() + " different, " + missing.size() + " missing, " + extra.size() + " extra of " + expectedFiles + " files");
+            missing.stream().limit(REPORTED_FILES).forEach(path -> report.append(System.lineSeparator()).append("  missing   ").append(path));
+            extra.stream().limit(REPORTED_FILES).forEach(path -> report.append(System.lineSeparator()).append("  extra     ").append(path));
+            different.stream().limit(REPORTED_FILES).forEach(path -> report.append(System.lineSeparator()).append("  different ").append(path));
+            return report.toString();
+        }
+    }
+}
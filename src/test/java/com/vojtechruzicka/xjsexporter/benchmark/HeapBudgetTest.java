@@ -0,0 +1,282 @@
+package com.vojtechruzicka.xjsexporter.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.vojtechruzicka.xjsexporter.BatchRunner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@code extract} and {@code generate} of large journals stay within a heap budget.
+ * <p>
+ * Every budget is a number of entries and a heap cap, e.g. {@code 50000:640m}. A synthetic journal of that
+ * size is extracted and generated by the batch commands, each in a forked JVM started with the cap as
+ * {@code -Xmx}, the parallel collector and {@code -XX:+ExitOnOutOfMemoryError}. The same collector on every
+ * machine keeps the numbers comparable, and its GC overhead limit ends a command that only collects garbage
+ * close to the cap instead of letting it crawl for minutes. A {@link Probe} in the forked JVM
+ * records the peak heap usage, the peak live heap after a collection and the GC time. A command fails its budget
+ * when it does not finish successfully, which includes running out of heap, or when it spends more than
+ * {@value #MAX_GC_SHARE} of its run time in GC, which is how a heap that is just big enough shows. The probe
+ * ends a command which spends that share of any 20 seconds in GC right away, as it would crawl for a long
+ * time before running out of heap. The results are printed and written to {@value #REPORT_FILE} in
+ * {@code target/heap-budget}, where the synthetic journals are kept for the next runs.
+ * <p>
+ * Runs with {@code mvn -Pheap test}, the budgets are set by {@code -Dheap.budgets}, e.g. {@code 5000:64m,50000:640m}.
+ */
+@Tag("heap")
+class HeapBudgetTest {
+
+    static final double MAX_GC_SHARE = 0.5;
+    static final String REPORT_FILE = "heap-budget-report.json";
+
+    private static final String DEFAULT_BUDGETS = "5000:64m,50000:640m";
+    private static final Path WORK_DIR = Path.of("target", "heap-budget");
+    private static final long GC_WINDOW_MILLIS = 20_000;
+    private static final int OUT_OF_MEMORY_EXIT_CODE = 3;
+    private static final int GC_THRASHING_EXIT_CODE = 4;
+
+    private static final List<Result> results = new ArrayList<>();
+
+    static Stream<Budget> budgets() {
+        return Arrays.stream(System.getProperty("heap.budgets", DEFAULT_BUDGETS).split(","))
+                .map(String::strip)
+                .map(Budget::parse);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("budgets")
+    void staysWithinBudget(Budget budget) throws Exception {
+        Path journal = WORK_DIR.resolve("journal-" + budget.entries());
+        Path intermediate = WORK_DIR.resolve("intermediate-" + budget.entries());
+        Path target = WORK_DIR.resolve("out-" + budget.entries());
+        if (!Files.exists(journal.resolve("journal.xjn"))) {
+            System.out.println("Generating " + budget.entries() + " synthetic entries into " + journal.toAbsolutePath());
+            SyntheticJournalGenerator.generate(journal, budget.entries(), 42);
+        }
+        deleteRecursively(intermediate);
+        deleteRecursively(target);
+
+        Result extracted = run(budget, "extract", "--sourcePath", journal.toString(), "--intermediatePath", intermediate.toString());
+        results.add(extracted);
+        System.out.println(extracted.describe());
+        assertThat(extracted.passed()).as(extracted.describe()).isTrue();
+
+        Result generated = run(budget, "generate", "--intermediatePath", intermediate.toString(), "--targetPath", target.toString());
+        results.add(generated);
+        System.out.println(generated.describe());
+        assertThat(generated.passed()).as(generated.describe()).isTrue();
+    }
+
+    @AfterAll
+    static void writeReport() throws IOException {
+        Files.createDirectories(WORK_DIR);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(WORK_DIR.resolve(REPORT_FILE).toFile(), results);
+    }
+
+    /**
+     * Runs a batch command in a forked JVM capped to the heap of the budget.
+     */
+    private static Result run(Budget budget, String command, String... options) throws IOException, InterruptedException {
+        String name = command + "-" + budget.entries() + "-" + budget.heap();
+        Path probeFile = WORK_DIR.resolve(name + ".probe");
+        Path logFile = WORK_DIR.resolve(name + ".log");
+        Files.createDirectories(WORK_DIR);
+        Files.deleteIfExists(probeFile);
+
+        List<String> commandLine = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + budget.heap(),
+                "-XX:+UseParallelGC",
+                "-XX:+ExitOnOutOfMemoryError",
+                "-cp", System.getProperty("java.class.path"),
+                Probe.class.getName(),
+                probeFile.toString(),
+                command));
+        commandLine.addAll(List.of(options));
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(commandLine)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        int exitCode = process.waitFor();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        // The probe writes nothing when the JVM is ended by running out of memory
+        long peakHeap = -1;
+        long peakLiveHeap = -1;
+        long gcMillis = -1;
+        long gcCount = -1;
+        if (Files.exists(probeFile)) {
+            String[] values = Files.readString(probeFile).strip().split(" ");
+            peakHeap = Long.parseLong(values[0]);
+            peakLiveHeap = Long.parseLong(values[1]);
+            gcMillis = Long.parseLong(values[2]);
+            gcCount = Long.parseLong(values[3]);
+        }
+        String failure = null;
+        if (exitCode == OUT_OF_MEMORY_EXIT_CODE) {
+            failure = "out of memory";
+        } else if (exitCode == GC_THRASHING_EXIT_CODE) {
+            failure = "stopped after spending over " + Math.round(MAX_GC_SHARE * 100) + " % of " + GC_WINDOW_MILLIS / 1000 + " s in GC";
+        } else if (exitCode != 0) {
+            failure = "ended with exit code " + exitCode + ", see " + logFile;
+        } else if (gcMillis > millis * MAX_GC_SHARE) {
+            failure = "spent " + gcMillis + " of " + millis + " ms in GC";
+        }
+        return new Result(command, budget.entries(), budget.heap(), failure == null, failure, millis,
+                toMegabytes(peakHeap), toMegabytes(peakLiveHeap), gcMillis, gcCount);
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes < 0 ? -1 : bytes / (1024 * 1024);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * @param heap Heap cap in the {@code -Xmx} syntax
+     */
+    record Budget(int entries, String heap) {
+
+        static Budget parse(String value) {
+            String[] parts = value.split(":");
+            if (parts.length != 2 || !parts[1].matches("\\d+[kKmMgG]?")) {
+                throw new IllegalArgumentException("Heap budget " + value + " is not entries:cap, e.g. 50000:640m");
+            }
+            return new Budget(Integer.parseInt(parts[0]), parts[1]);
+        }
+
+        @Override
+        public String toString() {
+            return entries + ":" + heap;
+        }
+    }
+
+    /**
+     * Result of a command, with -1 for the heap and GC numbers of a JVM ended by running out of memory.
+     */
+    record Result(String command, int entries, String heap, boolean passed, String failure, long millis,
+                  long peakHeapMb, long peakLiveHeapMb, long gcMillis, long gcCount) {
+
+        String describe() {
+            String run = String.format("%-8s %,7d entries, -Xmx%-5s %s in %,d ms", command, entries, heap, passed ? "passed" : "FAILED (" + failure + ")", millis);
+            return gcMillis < 0 ? run : run + String.format(", peak heap %d MB, peak live heap %d MB, GC %,d ms in %d collections",
+                    peakHeapMb, peakLiveHeapMb, gcMillis, gcCount);
+        }
+    }
+
+    /**
+     * Runs a batch command in the forked JVM and writes its peak heap usage, peak live heap after a collection,
+     * GC time and number of collections into the file given as the first argument.
+     */
+    public static class Probe {
+
+        private static final AtomicLong peakLiveHeap = new AtomicLong();
+
+        public static void main(String[] args) throws IOException {
+            Path probeFile = Path.of(args[0]);
+            Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .map(MemoryPoolMXBean::getName)
+                    .collect(Collectors.toSet());
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                    if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                        long live = info.getGcInfo().getMemoryUsageAfterGc().entrySet().stream()
+                                .filter(pool -> heapPools.contains(pool.getKey()))
+                                .mapToLong(pool -> pool.getValue().getUsed())
+                                .sum();
+                        peakLiveHeap.accumulateAndGet(live, Math::max);
+                    }
+                }, null, null);
+            }
+            Thread.ofPlatform().daemon().name("gc-watchdog").start(() -> watchGc(probeFile));
+
+            int exitCode = BatchRunner.run(Arrays.copyOfRange(args, 1, args.length));
+            writeProbe(probeFile);
+            System.exit(exitCode);
+        }
+
+        /**
+         * Halts the JVM once the GC time of the last {@value #GC_WINDOW_MILLIS} ms exceeds the allowed share.
+         */
+        private static void watchGc(Path probeFile) {
+            ArrayDeque<long[]> samples = new ArrayDeque<>();
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    long gcMillis = gcMillis();
+                    samples.addLast(new long[]{now, gcMillis});
+                    while (now - samples.getFirst()[0] > GC_WINDOW_MILLIS) {
+                        samples.removeFirst();
+                    }
+                    long[] oldest = samples.getFirst();
+                    if (now - oldest[0] >= GC_WINDOW_MILLIS * 9 / 10 && gcMillis - oldest[1] > (now - oldest[0]) * MAX_GC_SHARE) {
+                        writeProbe(probeFile);
+                        Runtime.getRuntime().halt(GC_THRASHING_EXIT_CODE);
+                    }
+                    Thread.sleep(1_000);
+                }
+            } catch (InterruptedException | IOException e) {
+                // The command decides the result
+            }
+        }
+
+        private static void writeProbe(Path probeFile) throws IOException {
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+            long gcCount = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += collector.getCollectionCount();
+            }
+            Files.writeString(probeFile, peakHeap + " " + peakLiveHeap.get() + " " + gcMillis() + " " + gcCount);
+        }
+
+        private static long gcMillis() {
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcMillis += collector.getCollectionTime();
+            }
+            return gcMillis;
+        }
+    }
+}
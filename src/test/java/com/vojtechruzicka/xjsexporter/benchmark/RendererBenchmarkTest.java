@@ -0,0 +1,114 @@
+package com.vojtechruzicka.xjsexporter.benchmark;
+
+import com.vojtechruzicka.xjsexporter.DataApiGenerator;
+import com.vojtechruzicka.xjsexporter.Generator;
+import com.vojtechruzicka.xjsexporter.HtmlGenerator;
+import com.vojtechruzicka.xjsexporter.config.ExporterConfiguration;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage.MetadataAndEntries;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.render.DirectPageRenderer;
+import com.vojtechruzicka.xjsexporter.render.PageRenderer;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.render.ThymeleafPageRenderer;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the rendering throughput of the Thymeleaf templates with the {@link DirectPageRenderer}
+ * on all pages of a synthetic journal, and checks that both render the same markup.
+ * <p>
+ * Runs with {@code mvn -Pbenchmark test -Dtest=RendererBenchmarkTest}, the journal size and the number of
+ * measured rounds are set by {@code -Dbenchmark.entries} (2,000) and {@code -Dbenchmark.rounds} (3).
+ */
+@Tag("benchmark")
+class RendererBenchmarkTest {
+
+    @Test
+    void directRendererMatchesThymeleaf() throws IOException {
+        int entries = Integer.getInteger("benchmark.entries", 2_000);
+        int rounds = Integer.getInteger("benchmark.rounds", 3);
+
+        FileService fileService = new FileService(new SourceFileSystems());
+        fileService.init();
+        ExportMetrics metrics = new ExportMetrics();
+        JsonIntermediateStorage jsonStorage = new JsonIntermediateStorage(fileService, metrics);
+        MetadataAndEntries data = jsonStorage.loadAll(SyntheticJournals.intermediate(entries).toString());
+        SiteAssets assets = new SiteAssets();
+        List<Generator.Page> thymeleafPages = getPages(new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets),
+                assets, data, jsonStorage, fileService, metrics);
+        List<Generator.Page> directPages = getPages(new DirectPageRenderer(assets), assets, data, jsonStorage, fileService, metrics);
+
+        // Both renderers have to produce the same markup
+        List<String> mismatches = new ArrayList<>();
+        long totalChars = 0;
+        for (int i = 0; i < thymeleafPages.size(); i++) {
+            String expected = thymeleafPages.get(i).renderer().get();
+            String actual = directPages.get(i).renderer().get();
+            totalChars += expected.length();
+            if (!expected.equals(actual)) {
+                mismatches.add(thymeleafPages.get(i).path() + " at character " + firstDifference(expected, actual));
+            }
+        }
+        System.out.printf("%d entries, %d pages, %.1f MB of HTML%n", data.entries().size(), thymeleafPages.size(), totalChars / (1024.0 * 1024.0));
+        assertThat(mismatches).as("pages with different markup").isEmpty();
+
+        for (int round = 1; round <= rounds; round++) {
+            long thymeleafNanos = measure(thymeleafPages);
+            long directNanos = measure(directPages);
+            System.out.printf("Round %d: Thymeleaf %d ms (%.0f pages/s), direct %d ms (%.0f pages/s), %.1fx faster%n",
+                    round,
+                    thymeleafNanos / 1_000_000, pagesPerSecond(thymeleafPages.size(), thymeleafNanos),
+                    directNanos / 1_000_000, pagesPerSecond(directPages.size(), directNanos),
+                    (double) thymeleafNanos / directNanos);
+        }
+    }
+
+    private static List<Generator.Page> getPages(PageRenderer renderer, SiteAssets assets, MetadataAndEntries data, JsonIntermediateStorage jsonStorage,
+                                                 FileService fileService, ExportMetrics metrics) {
+        HtmlGenerator htmlGenerator = new HtmlGenerator(renderer, assets, fileService, metrics);
+        Generator generator = new Generator(htmlGenerator, new DataApiGenerator(htmlGenerator, fileService, assets, jsonStorage), jsonStorage, null, fileService, metrics, new JfrRecorder(),
+                new OutputSinkFactory(new Precompressor()), new CheckpointStore(), null);
+        return generator.getPages(data.metadata(), Generator.sortNewestFirst(data.entries()));
+    }
+
+    private static long measure(List<Generator.Page> pages) {
+        long chars = 0;
+        long start = System.nanoTime();
+        for (Generator.Page page : pages) {
+            chars += page.renderer().get().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        // Keep the result observable so the work is not optimized away
+        if (chars < 0) {
+            System.out.println(chars);
+        }
+        return elapsed;
+    }
+
+    private static int firstDifference(String expected, String actual) {
+        int length = Math.min(expected.length(), actual.length());
+        for (int i = 0; i < length; i++) {
+            if (expected.charAt(i) != actual.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static double pagesPerSecond(int pages, long nanos) {
+        return pages / (nanos / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,173 @@
+package com.vojtechruzicka.xjsexporter.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a synthetic XJS journal ({@code journal.xjn}, {@code Entries/} and {@code Attachments/})
+ * for benchmarks and load tests. The same seed always produces the same journal.
+ * <p>
+ * Entry bodies are Czech text with diacritics. A share of the entries is written in windows-1250,
+ * embeds base64 images, or lacks a well formed body, like real journals do.
+ */
+public class SyntheticJournalGenerator {
+
+    private static final String[] WORDS = {
+            "dnes", "jsme", "byli", "na", "výletě", "v", "horách", "počasí", "bylo", "krásné", "večer",
+            "přijela", "babička", "děti", "si", "hrály", "na", "zahradě", "uvařili", "jsme", "guláš",
+            "procházka", "kolem", "rybníka", "žluťoučký", "kůň", "úpěl", "ďábelské", "ódy", "škola",
+            "práce", "nákup", "návštěva", "nemocnice", "dovolená", "moře", "sníh", "léto", "podzim", "jaro"
+    };
+    private static final String[] FIRST_NAMES = {"Jan", "Eva", "Petr", "Jana", "Tomáš", "Lucie", "Jiří", "Marie", "Pavel", "Věra"};
+    private static final String[] LAST_NAMES = {"Novák", "Svobodová", "Dvořák", "Černá", "Procházka", "Kučerová", "Veselý", "Horáková"};
+    private static final String[] CATEGORY_NAMES = {"Výlety", "Rodina", "Práce", "Zdraví", "Škola", "Dovolená", "Sport", "Kultura", "Zahrada", "Vaření"};
+
+    // 1x1 PNG pixels in a few colors, so some pasted images repeat
+    private static final String[] INLINE_IMAGES = {
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==",
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==",
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8BQDwAEhQGAhKmMIQAAAABJRU5ErkJggg=="
+    };
+
+    private static final Charset WINDOWS_1250 = Charset.forName("windows-1250");
+
+    /**
+     * Writes a journal into the given directory.
+     *
+     * @param directory  The journal directory, created if missing
+     * @param entryCount Number of entries
+     * @param seed       Seed of the random content
+     * @throws IOException If an I/O error occurs
+     */
+    public static void generate(Path directory, int entryCount, long seed) throws IOException {
+        Random random = new Random(seed);
+        Path entriesDir = directory.resolve("Entries");
+        Path attachmentsDir = directory.resolve("Attachments");
+        Files.createDirectories(entriesDir);
+        Files.createDirectories(attachmentsDir);
+
+        int personCount = Math.max(2, Math.min(200, entryCount / 50));
+        int categoryCount = Math.max(2, Math.min(40, entryCount / 200));
+        int attachmentCount = Math.max(1, entryCount / 10);
+
+        StringBuilder xml = new StringBuilder(entryCount * 400);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<journal>\n<people>\n");
+        for (int i = 0; i < personCount; i++) {
+            xml.append("<person id=\"p").append(i).append("\"><first-name>").append(FIRST_NAMES[i % FIRST_NAMES.length])
+                    .append("</first-name><last-name>").append(LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]).append(i / (FIRST_NAMES.length * LAST_NAMES.length) > 0 ? " " + i : "")
+                    .append("</last-name></person>\n");
+        }
+        xml.append("</people>\n<categories>\n");
+        for (int i = 0; i < categoryCount; i++) {
+            xml.append("<category id=\"c").append(i).append("\"><title>").append(CATEGORY_NAMES[i % CATEGORY_NAMES.length])
+                    .append(i >= CATEGORY_NAMES.length ? " " + (i / CATEGORY_NAMES.length) : "").append("</title></category>\n");
+        }
+        xml.append("</categories>\n<attachments>\n");
+        for (int i = 0; i < attachmentCount; i++) {
+            String name = "file_" + i + (i % 3 == 0 ? ".pdf" : ".jpg");
+            byte[] content = new byte[1024 + random.nextInt(16 * 1024)];
+            random.nextBytes(content);
+            Files.write(attachmentsDir.resolve(name), content);
+            xml.append("<attachment id=\"a").append(i).append("\"><location>").append(name).append("</location></attachment>\n");
+        }
+        xml.append("</attachments>\n<entries>\n");
+
+        LocalDateTime created = LocalDateTime.of(2005, 1, 1, 8, 0);
+        for (int i = 0; i < entryCount; i++) {
+            created = created.plusMinutes(60 + random.nextInt(60 * 24 * 3));
+            String fileName = "e" + i + ".html";
+            writeEntryFile(entriesDir.resolve(fileName), random);
+
+            xml.append("<entry id=\"e").append(i).append("\" date-created=\"").append(created).append("\"><title>")
+                    .append(sentence(random, 2 + random.nextInt(5))).append("</title><content><value>Entries/").append(fileName)
+                    .append("</value></content>");
+            appendIds(xml, "attachment-ids", "a", attachmentCount, random.nextInt(10) == 0 ? 1 + random.nextInt(3) : 0, random);
+            appendIds(xml, "category-ids", "c", categoryCount, 1 + random.nextInt(2), random);
+            appendIds(xml, "person-ids", "p", personCount, random.nextInt(4), random);
+            xml.append("</entry>\n");
+        }
+        xml.append("</entries>\n</journal>\n");
+        Files.writeString(directory.resolve("journal.xjn"), xml, StandardCharsets.UTF_8);
+    }
+
+    private static void writeEntryFile(Path file, Random random) throws IOException {
+        boolean legacyCharset = random.nextInt(10) == 0;
+        boolean malformed = random.nextInt(100) == 0;
+
+        StringBuilder html = new StringBuilder(4096);
+        html.append("<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=")
+                .append(legacyCharset ? "windows-1250" : "utf-8").append("\"><title>Entry</title></head>\n");
+        if (!malformed) {
+            html.append("<body style=\"font-family: Arial\">\n");
+        }
+        int paragraphs = 1 + random.nextInt(8);
+        for (int p = 0; p < paragraphs; p++) {
+            html.append("<p>").append(sentence(random, 10 + random.nextInt(60))).append("</p>\n");
+        }
+        if (random.nextInt(20) == 0) {
+            html.append("<p><img src=\"data:image/png;base64,").append(INLINE_IMAGES[random.nextInt(INLINE_IMAGES.length)]).append("\"></p>\n");
+        }
+        if (random.nextInt(8) == 0) {
+            // A larger pasted image with random content
+            byte[] image = new byte[8 * 1024 + random.nextInt(64 * 1024)];
+            random.nextBytes(image);
+            html.append("<p><img src=\"data:image/jpeg;base64,").append(Base64.getMimeEncoder().encodeToString(image)).append("\"></p>\n");
+        }
+        if (!malformed) {
+            html.append("</body>");
+        }
+        html.append("</html>\n");
+
+        try (Writer writer = Files.newBufferedWriter(file, legacyCharset ? WINDOWS_1250 : StandardCharsets.UTF_8)) {
+            writer.write(html.toString());
+        }
+    }
+
+    private static void appendIds(StringBuilder xml, String element, String prefix, int max, int count, Random random) {
+        if (count == 0) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>();
+        while (ids.size() < Math.min(count, max)) {
+            int id = random.nextInt(max);
+            if (!ids.contains(id)) {
+                ids.add(id);
+            }
+        }
+        xml.append('<').append(element).append('>');
+        ids.forEach(id -> xml.append("<id>").append(prefix).append(id).append("</id>"));
+        xml.append("</").append(element).append('>');
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "synthetic-journal");
+        int entries = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        long start = System.nanoTime();
+        generate(directory, entries, seed);
+        System.out.println("Generated " + entries + " entries into " + directory.toAbsolutePath() + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,78 @@
+package com.vojtechruzicka.xjsexporter.benchmark;
+
+import com.vojtechruzicka.xjsexporter.CommandResult;
+import com.vojtechruzicka.xjsexporter.MetadataExtractor;
+import com.vojtechruzicka.xjsexporter.PipelineFactory;
+import com.vojtechruzicka.xjsexporter.config.ExporterConfiguration;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.render.SiteAssets;
+import com.vojtechruzicka.xjsexporter.render.ThymeleafPageRenderer;
+import com.vojtechruzicka.xjsexporter.service.BodyExtractor;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.jline.terminal.impl.DumbTerminal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Synthetic journals of the benchmarks, generated into {@code target/benchmark} once and reused by later runs.
+ */
+final class SyntheticJournals {
+
+    private static final Path DIRECTORY = Path.of("target", "benchmark");
+
+    private SyntheticJournals() {
+    }
+
+    /**
+     * The journal with the given number of entries, generated with the seed 42 if it does not exist yet.
+     */
+    static Path journal(int entries) throws IOException {
+        Path journal = DIRECTORY.resolve("journal-" + entries);
+        if (!Files.exists(journal.resolve(SourceFileSystems.JOURNAL_FILE))) {
+            System.out.println("Generating " + entries + " synthetic entries into " + journal.toAbsolutePath());
+            SyntheticJournalGenerator.generate(journal, entries, 42);
+        }
+        return journal;
+    }
+
+    /**
+     * The intermediate data of the journal with the given number of entries, extracted if it does not exist yet.
+     */
+    static Path intermediate(int entries) throws IOException {
+        Path intermediate = DIRECTORY.resolve("intermediate-" + entries);
+        if (Files.exists(intermediate.resolve("manifest.json"))) {
+            return intermediate;
+        }
+        Path journal = journal(entries);
+        System.out.println("Extracting into " + intermediate.toAbsolutePath());
+        SourceFileSystems sources = new SourceFileSystems();
+        FileService fileService = new FileService(sources);
+        fileService.init();
+        SiteAssets assets = new SiteAssets();
+        ExecutorService attachmentCopyExecutor = new ExporterConfiguration().attachmentCopyExecutor();
+        try {
+            PipelineFactory pipelines = new PipelineFactory(new MetadataExtractor(sources),
+                    new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets), assets, fileService,
+                    new BodyExtractor(), new CheckpointStore(), new OutputSinkFactory(new Precompressor()), new JfrRecorder(),
+                    sources, attachmentCopyExecutor);
+            CommandResult result = pipelines.create(new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream()))
+                    .extractor().extract(journal.toString(), intermediate.toString(), false, false);
+            if (result.failed()) {
+                throw new IllegalStateException(result.message());
+            }
+        } finally {
+            attachmentCopyExecutor.shutdownNow();
+            sources.close();
+        }
+        return intermediate;
+    }
+}
@@ -0,0 +1,72 @@
+package com.vojtechruzicka.xjsexporter.config;
+
+import com.vojtechruzicka.xjsexporter.Generator;
+import com.vojtechruzicka.xjsexporter.JobServer;
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.EntryStore;
+import com.vojtechruzicka.xjsexporter.model.json.EntryJson;
+import com.vojtechruzicka.xjsexporter.model.json.JobRequestJson;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeHintsTest {
+
+    private static final RuntimeHints hints = new RuntimeHints();
+
+    @BeforeAll
+    static void registerHints() {
+        new NativeHints().registerHints(hints, NativeHintsTest.class.getClassLoader());
+    }
+
+    @Test
+    void registersTemplatesAndStaticResources() {
+        for (String resource : List.of("templates/entry.html", "templates/journal_entries_display.html", "static/css/styles.css",
+                "jfr/xjs-exporter.jfc", "org/thymeleaf/thymeleaf.properties")) {
+            assertThat(RuntimeHintsPredicates.resource().forResource(resource)).as(resource).accepts(hints);
+        }
+    }
+
+    @Test
+    void registersJsonBindings() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(EntryJson.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(JobRequestJson.class)).accepts(hints);
+    }
+
+    @Test
+    void registersShellCommandsForBatchMode() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(Generator.class).withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(JobServer.class).withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS)).accepts(hints);
+    }
+
+    @Test
+    void registersRuntimeClassesOfTemplateCollections() {
+        Entry entry = new Entry("1", "Title", LocalDateTime.of(2024, 1, 1, 0, 0), "", List.of("Person"), List.of("Category"), List.of(), null);
+        List<Object> collections = List.of(
+                new ArrayList<>(List.of(1)),
+                new HashMap<>(),
+                List.of("single"),
+                List.of("a", "b", "c"),
+                Stream.of("a").toList(),
+                Stream.of("a", "b", "c").toList(),
+                Stream.of("a", "b", "c").sorted().toList().reversed(),
+                Collections.unmodifiableList(new ArrayList<>()),
+                EntryStore.of(List.of(entry)).entries().getFirst().persons());
+        for (Object collection : collections) {
+            assertThat(RuntimeHintsPredicates.reflection().onType(collection.getClass()).withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS))
+                    .as(collection.getClass().getName())
+                    .accepts(hints);
+        }
+    }
+}
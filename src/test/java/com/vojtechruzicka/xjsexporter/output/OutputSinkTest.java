@@ -0,0 +1,107 @@
+package com.vojtechruzicka.xjsexporter.output;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputSinkTest {
+
+    @TempDir
+    Path workDir;
+
+    private Path firstAttachment;
+    private Path secondAttachment;
+
+    @BeforeEach
+    void createAttachments() throws IOException {
+        firstAttachment = Files.writeString(workDir.resolve("first.pdf"), "first attachment");
+        secondAttachment = Files.writeString(workDir.resolve("second.pdf"), "second attachment with the same name");
+    }
+
+    @Test
+    void directoryAndArchiveHoldTheSameSite() throws IOException {
+        Path directory = workDir.resolve("site");
+        Path archive = workDir.resolve("site.zip");
+        try (OutputSink sink = new DirectoryOutputSink(directory, null)) {
+            writeSite(sink);
+            sink.commit();
+        }
+        try (OutputSink sink = new ZipOutputSink(archive)) {
+            writeSite(sink);
+            sink.commit();
+        }
+
+        Map<String, String> files = readDirectory(directory);
+        assertThat(readArchive(archive)).isEqualTo(files);
+        assertThat(files).containsOnlyKeys("index.html", "entries/a.html", "attachments/file.pdf")
+                .containsEntry("index.html", "<html>first index</html>")
+                .containsEntry("attachments/file.pdf", "first attachment");
+    }
+
+    @Test
+    void duplicatesAreNotCopied() throws IOException {
+        try (OutputSink directory = new DirectoryOutputSink(workDir.resolve("site"), null);
+             OutputSink archive = new ZipOutputSink(workDir.resolve("site.zip"))) {
+            for (OutputSink sink : new OutputSink[]{directory, archive}) {
+                assertThat(sink.copy("attachments/file.pdf", firstAttachment)).isEqualTo(Files.size(firstAttachment));
+                assertThat(sink.copy("attachments/file.pdf", secondAttachment)).isZero();
+            }
+        }
+    }
+
+    @Test
+    void duplicatesCompleteRightAway() throws IOException {
+        boolean[] completed = new boolean[1];
+        try (OutputSink sink = new DirectoryOutputSink(workDir.resolve("site"), null)) {
+            sink.write("index.html", bytes("first"));
+            sink.write("index.html", bytes("second"), () -> completed[0] = true);
+        }
+
+        assertThat(completed[0]).isTrue();
+        assertThat(workDir.resolve("site/index.html")).hasContent("first");
+    }
+
+    private void writeSite(OutputSink sink) throws IOException {
+        sink.write("index.html", bytes("<html>first index</html>"));
+        sink.write("entries/a.html", bytes("<html>entry</html>"));
+        sink.copy("attachments/file.pdf", firstAttachment);
+        sink.copy("attachments/file.pdf", secondAttachment);
+        sink.write("index.html", bytes("<html>second index</html>"));
+    }
+
+    private static Map<String, String> readDirectory(Path root) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        try (Stream<Path> tree = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) tree.filter(Files::isRegularFile)::iterator) {
+                files.put(root.relativize(file).toString().replace('\\', '/'), Files.readString(file));
+            }
+        }
+        return files;
+    }
+
+    private static Map<String, String> readArchive(Path archive) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                files.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return files;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package com.vojtechruzicka.xjsexporter.render;
+
+import com.vojtechruzicka.xjsexporter.DataApiGenerator;
+import com.vojtechruzicka.xjsexporter.Generator;
+import com.vojtechruzicka.xjsexporter.HtmlGenerator;
+import com.vojtechruzicka.xjsexporter.config.ExporterConfiguration;
+import com.vojtechruzicka.xjsexporter.jfr.JfrRecorder;
+import com.vojtechruzicka.xjsexporter.model.Attachment;
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import com.vojtechruzicka.xjsexporter.model.json.JsonIntermediateStorage;
+import com.vojtechruzicka.xjsexporter.output.OutputSinkFactory;
+import com.vojtechruzicka.xjsexporter.service.CheckpointStore;
+import com.vojtechruzicka.xjsexporter.service.ExportMetrics;
+import com.vojtechruzicka.xjsexporter.service.FileService;
+import com.vojtechruzicka.xjsexporter.service.Precompressor;
+import com.vojtechruzicka.xjsexporter.service.SourceFileSystems;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The direct renderer replaces the Thymeleaf templates and has to write the same markup for every page.
+ */
+class PageRendererParityTest {
+
+    private static final List<Entry> ENTRIES = List.of(
+            new Entry("e1", "Výlet na Sněžku", LocalDateTime.of(2023, 7, 14, 9, 30),
+                    "<p>První den &amp; <b>déšť</b></p><img src=\"C:\\Deník\\Attachments\\foto.jpg\">",
+                    List.of("Jan Novák", "Eva Černá"), List.of("Cesty"),
+                    List.of(new Attachment("C:\\Deník\\Attachments\\foto.jpg", "foto.jpg", "attachments/e1/foto.jpg", "jpg", "image/jpeg", 2048, "2 KB")),
+                    null),
+            new Entry("e2", "Title with <markup> & \"quotes\"", LocalDateTime.of(2023, 7, 14, 20, 0),
+                    "<script>var x = '<b>';</script><p>Second</p>", List.of("Jan Novák"), List.of("Cesty", "Práce"), List.of(), null),
+            new Entry("e3", "", LocalDateTime.of(2021, 1, 2, 0, 0), "", List.of(), List.of(), List.of(), null),
+            new Entry("e4", "Čtvrtý záznam", LocalDateTime.of(2022, 12, 31, 23, 59), "<ul><li>ä</li></ul>",
+                    List.of("Žofie"), List.of("Ostatní"), List.of(), null));
+
+    @Test
+    void rendersEveryPageKindLikeTheTemplates() {
+        SiteAssets assets = new SiteAssets();
+        List<Generator.Page> thymeleafPages = getPages(new ThymeleafPageRenderer(new ExporterConfiguration().defaultTemplatingEngine(), assets), assets);
+        List<Generator.Page> directPages = getPages(new DirectPageRenderer(assets), assets);
+
+        Set<String> kinds = thymeleafPages.stream().map(Generator.Page::kind).collect(Collectors.toSet());
+        assertThat(kinds).containsExactlyInAnyOrder("entry", "index", "year", "day", "person", "category", "list");
+        assertThat(directPages).hasSameSizeAs(thymeleafPages);
+        for (int i = 0; i < thymeleafPages.size(); i++) {
+            assertThat(directPages.get(i).path()).isEqualTo(thymeleafPages.get(i).path());
+            assertThat(directPages.get(i).renderer().get())
+                    .as(thymeleafPages.get(i).path())
+                    .isEqualTo(thymeleafPages.get(i).renderer().get());
+        }
+    }
+
+    private static List<Generator.Page> getPages(PageRenderer renderer, SiteAssets assets) {
+        FileService fileService = new FileService(new SourceFileSystems());
+        fileService.init();
+        ExportMetrics metrics = new ExportMetrics();
+        JsonIntermediateStorage jsonStorage = new JsonIntermediateStorage(fileService, metrics);
+        HtmlGenerator htmlGenerator = new HtmlGenerator(renderer, assets, fileService, metrics);
+        Generator generator = new Generator(htmlGenerator, new DataApiGenerator(htmlGenerator, fileService, assets, jsonStorage), jsonStorage,
+                null, fileService, metrics, new JfrRecorder(), new OutputSinkFactory(new Precompressor()), new CheckpointStore(), null);
+        List<Entry> sortedEntries = Generator.sortNewestFirst(ENTRIES);
+        return generator.getPages(jsonStorage.buildMetadata(sortedEntries), sortedEntries);
+    }
+}
@@ -0,0 +1,103 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BodyExtractorTest {
+
+    @TempDir
+    Path directory;
+
+    private final BodyExtractor extractor = new BodyExtractor();
+
+    @Test
+    void returnsTheBodyMarkupUnchanged() throws IOException {
+        assertThat(extract("<html><head><title>T</title></head><body>\n<p class=\"a\">Text<br></p>\n</body></html>"))
+                .isEqualTo("\n<p class=\"a\">Text<br></p>\n");
+    }
+
+    @Test
+    void skipsBodyTagsInCommentsScriptsAndStyles() throws IOException {
+        String body = "<!-- </body> --><p>A</p><script>document.write('</body>');</script>"
+                + "<style>/* </body> */ p { color: red }</style><p>B</p>";
+
+        assertThat(extract("<html><!-- <body> --><body>" + body + "</body></html>")).isEqualTo(body);
+    }
+
+    @Test
+    void findsUpperCaseBodyWithAttributes() throws IOException {
+        assertThat(extract("<HTML><BODY class=\"entry\" data-x='a>b'><P>Text</P></BODY></HTML>")).isEqualTo("<P>Text</P>");
+    }
+
+    @Test
+    void allowsCommentsAndWhitespaceAfterTheBody() throws IOException {
+        assertThat(extract("<body><p>A</p></body>\n<!-- end -->\n</html>\n")).isEqualTo("<p>A</p>");
+    }
+
+    @Test
+    void skipsUtf8ByteOrderMark() throws IOException {
+        Path file = write("bom.html", concat(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+                "<html><body><p>Žluťoučký kůň</p></body></html>".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(extractor.extractBody(file)).isEqualTo("<p>Žluťoučký kůň</p>");
+    }
+
+    @Test
+    void decodesDeclaredCharset() throws IOException {
+        Path file = write("cp1250.html", ("<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1250\"></head>"
+                + "<body><p>Žluťoučký kůň úpěl ďábelské ódy</p></body></html>").getBytes(Charset.forName("windows-1250")));
+
+        assertThat(extractor.extractBody(file)).isEqualTo("<p>Žluťoučký kůň úpěl ďábelské ódy</p>");
+    }
+
+    @Test
+    void readsUnknownCharsetAsUtf8() throws IOException {
+        assertThat(extract("<html><head><meta charset=\"x-no-such-charset\"></head><body><p>Sněžka</p></body></html>"))
+                .isEqualTo("<p>Sněžka</p>");
+    }
+
+    @Test
+    void fallsBackToJsoupForUtf16() throws IOException {
+        Path file = write("utf16.html", "<html><body><p>Sněžka</p></body></html>".getBytes(StandardCharsets.UTF_16));
+
+        assertThat(extractor.extractBody(file)).isEqualTo("<p>Sněžka</p>").isEqualTo(extractor.extractWithJsoup(file));
+    }
+
+    @Test
+    void fallsBackToJsoupWithoutClosingBody() throws IOException {
+        Path file = write("unclosed.html", "<html><body><p>A</p>".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(extractor.extractBody(file)).isEqualTo("<p>A</p>").isEqualTo(extractor.extractWithJsoup(file));
+    }
+
+    @Test
+    void fallsBackToJsoupWithContentAfterTheBody() throws IOException {
+        Path file = write("after.html", "<html><body><p>A</p></body><p>B</p></html>".getBytes(StandardCharsets.UTF_8));
+
+        // jsoup moves the content after the body into it
+        assertThat(extractor.extractBody(file)).isEqualTo("<p>A</p>\n<p>B</p>").isEqualTo(extractor.extractWithJsoup(file));
+    }
+
+    private String extract(String html) throws IOException {
+        return extractor.extractBody(write("entry.html", html.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Path write(String fileName, byte[] content) throws IOException {
+        return Files.write(directory.resolve(fileName), content);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
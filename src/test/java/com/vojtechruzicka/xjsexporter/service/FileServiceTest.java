@@ -0,0 +1,37 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileServiceTest {
+
+    private final FileService fileService = new FileService(new SourceFileSystems());
+
+    @BeforeEach
+    void init() {
+        fileService.init();
+    }
+
+    @Test
+    void datedEntriesAreNamedAfterTheirTime() {
+        assertThat(fileService.getEntryFileName("e1", LocalDateTime.of(2024, 5, 24, 18, 30, 5), "Výlet na Sněžku"))
+                .isEqualTo("2024-05-24_18-30-05_vylet_na_snezku");
+    }
+
+    @Test
+    void undatedEntriesAreNamedAfterTheirId() {
+        assertThat(fileService.getEntryFileName("e1", null, "Výlet")).isEqualTo("undated_e1_vylet");
+    }
+
+    @Test
+    void undatedEntriesOfTheSameTitleGetDifferentNames() {
+        assertThat(fileService.getEntryFileName("e1", null, "Výlet"))
+                .isNotEqualTo(fileService.getEntryFileName("e2", null, "Výlet"));
+        assertThat(fileService.getEntryFileName("e1", null, " "))
+                .isNotEqualTo(fileService.getEntryFileName("e2", null, null));
+    }
+}
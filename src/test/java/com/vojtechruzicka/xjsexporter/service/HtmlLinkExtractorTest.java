@@ -0,0 +1,75 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlLinkExtractorTest {
+
+    @Test
+    void extractsHrefAndSrcInDocumentOrder() {
+        assertThat(links("<a href=\"a.html\">A</a><img alt=\"x\" src='b.png'><link rel=stylesheet href=\"c.css\">"))
+                .containsExactly("a.html", "b.png", "c.css");
+    }
+
+    @Test
+    void ignoresOtherAttributes() {
+        assertThat(links("<a title=\"d.html\" data-href=\"e.html\" href=\"f.html\">")).containsExactly("f.html");
+    }
+
+    @Test
+    void skipsComments() {
+        assertThat(links("<!-- <a href=\"commented.html\"> --><a href=\"a.html\"><!--<img src=x.png>-->"))
+                .containsExactly("a.html");
+    }
+
+    @Test
+    void stopsAtAnUnterminatedComment() {
+        assertThat(links("<a href=\"a.html\"><!-- <a href=\"b.html\">")).containsExactly("a.html");
+    }
+
+    @Test
+    void skipsScriptAndStyleContent() {
+        assertThat(links("<script src=\"app.js\">var a = '<a href=\"script.html\">';</script>"
+                + "<STYLE>body { background: url(\"<img src=style.png>\") }</STYLE>"
+                + "<a href=\"a.html\">"))
+                .containsExactly("app.js", "a.html");
+    }
+
+    @Test
+    void readsUnquotedValues() {
+        assertThat(links("<a href=a.html>A</a><img src = b.png/><a class=x href=c.html title=y>"))
+                .containsExactly("a.html", "b.png/", "c.html");
+    }
+
+    @Test
+    void ignoresCaseOfNames() {
+        assertThat(links("<A HREF=\"a.html\"><IMG Src=\"b.png\">")).containsExactly("a.html", "b.png");
+    }
+
+    @Test
+    void resolvesCharacterReferences() {
+        assertThat(links("<a href=\"search.html?q=a&amp;page=2\"><a href=\"x&#47;y.html\"><a href=\"a&b.html\">"))
+                .containsExactly("search.html?q=a&page=2", "x/y.html", "a&b.html");
+    }
+
+    @Test
+    void decodesUtf8Values() {
+        assertThat(links("<a href=\"výlet/sněžka.html\">Sněžka</a>")).containsExactly("výlet/sněžka.html");
+    }
+
+    @Test
+    void ignoresEndTagsAndText() {
+        assertThat(links("<!DOCTYPE html><p>a < b href=\"no.html\"</p><a href=\"a.html\"></a>")).containsExactly("a.html");
+    }
+
+    private static List<String> links(String html) {
+        List<String> links = new ArrayList<>();
+        HtmlLinkExtractor.extract(html.getBytes(StandardCharsets.UTF_8), links::add);
+        return links;
+    }
+}
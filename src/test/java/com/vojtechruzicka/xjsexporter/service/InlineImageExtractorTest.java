@@ -0,0 +1,108 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InlineImageExtractorTest {
+
+    private static final byte[] IMAGE = "not really a PNG, but bytes all the same".getBytes(StandardCharsets.UTF_8);
+    private static final String PAYLOAD = Base64.getEncoder().encodeToString(IMAGE);
+
+    @TempDir
+    Path inlineDir;
+
+    private final RecordingMetrics metrics = new RecordingMetrics();
+    private final InlineImageExtractor extractor = new InlineImageExtractor(metrics);
+
+    @Test
+    void rewritesImagesToContentAddressedFiles() throws Exception {
+        String body = extractor.extractImages("<p><img alt=\"a\" src=\"data:image/png;base64," + PAYLOAD + "\"></p>", inlineDir);
+
+        String fileName = sha256(IMAGE) + ".png";
+        assertThat(body).isEqualTo("<p><img alt=\"a\" src=\"../attachments/inline/" + fileName + "\"></p>");
+        assertThat(Files.readAllBytes(inlineDir.resolve(fileName))).isEqualTo(IMAGE);
+        assertThat(metrics.outcomes).containsExactly("stored");
+    }
+
+    @Test
+    void storesIdenticalImagesOnce() throws Exception {
+        String body = extractor.extractImages("<img src='data:image/jpeg;base64," + PAYLOAD + "'><img SRC = data:image/jpeg;base64," + PAYLOAD + ">", inlineDir);
+
+        String link = "../attachments/inline/" + sha256(IMAGE) + ".jpg";
+        assertThat(body).isEqualTo("<img src='" + link + "'><img SRC = " + link + ">");
+        assertThat(files()).containsExactly(sha256(IMAGE) + ".jpg");
+        assertThat(metrics.outcomes).containsExactly("stored", "duplicate");
+    }
+
+    @Test
+    void decodesPayloadsWithLineBreaks() throws Exception {
+        String wrapped = Base64.getMimeEncoder(8, "\r\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(IMAGE);
+
+        String body = extractor.extractImages("<img src=\"data:image/gif;base64," + wrapped + "\">", inlineDir);
+
+        assertThat(body).isEqualTo("<img src=\"../attachments/inline/" + sha256(IMAGE) + ".gif\">");
+        assertThat(Files.readAllBytes(inlineDir.resolve(sha256(IMAGE) + ".gif"))).isEqualTo(IMAGE);
+    }
+
+    @Test
+    void keepsInvalidPayloadsEmbedded() throws IOException {
+        String html = "<img src=\"data:image/png;base64,QQ=QQ\"><img src=\"data:image/png;base64,Q\">";
+
+        assertThat(extractor.extractImages(html, inlineDir)).isEqualTo(html);
+        assertThat(files()).isEmpty();
+        assertThat(metrics.outcomes).isEmpty();
+    }
+
+    @Test
+    void leavesDataUrisOutsideOfSrcAttributes() throws IOException {
+        String html = "<p>Paste it as data:image/png;base64," + PAYLOAD + " into the editor</p>"
+                + "<a href=\"data:image/png;base64," + PAYLOAD + "\">link</a>";
+
+        assertThat(extractor.extractImages(html, inlineDir)).isEqualTo(html);
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void returnsBodiesWithoutImagesUnchanged() {
+        assertThat(extractor.extractImages(null, inlineDir)).isNull();
+        assertThat(extractor.extractImages("<p>Text</p>", inlineDir)).isEqualTo("<p>Text</p>");
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(inlineDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    /**
+     * Remembers the outcome of every stored inline image.
+     */
+    private static class RecordingMetrics extends ExportMetrics {
+
+        private final List<String> outcomes = new ArrayList<>();
+
+        @Override
+        public void recordInlineImage(String outcome, long bytes) {
+            super.recordInlineImage(outcome, bytes);
+            outcomes.add(outcome);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageCacheTest {
+
+    private final PageCache cache = new PageCache(10);
+
+    @Test
+    void evictsLeastRecentlyUsedPagesOverTheSizeLimit() {
+        cache.put("a.html", bytes("aaaa"));
+        cache.put("b.html", bytes("bbbb"));
+        cache.get("a.html");
+
+        cache.put("c.html", bytes("cccc"));
+
+        assertThat(cache.get("b.html")).isNull();
+        assertThat(cache.get("a.html")).isNotNull();
+        assertThat(cache.get("c.html")).isNotNull();
+        assertThat(cache.describe()).startsWith("2 pages, 8 of 10 bytes");
+    }
+
+    @Test
+    void evictsAsManyPagesAsNeeded() {
+        cache.put("a.html", bytes("aaa"));
+        cache.put("b.html", bytes("bbb"));
+        cache.put("c.html", bytes("ccc"));
+
+        cache.put("d.html", bytes("dddddddd"));
+
+        assertThat(cache.get("a.html")).isNull();
+        assertThat(cache.get("b.html")).isNull();
+        assertThat(cache.get("c.html")).isNull();
+        assertThat(cache.describe()).startsWith("1 pages, 8 of 10 bytes");
+    }
+
+    @Test
+    void replacingPageFreesItsPreviousSize() {
+        cache.put("a.html", bytes("aaaaaa"));
+        cache.put("a.html", bytes("aa"));
+        cache.put("b.html", bytes("bbbbbbbb"));
+
+        assertThat(cache.get("a.html").body()).isEqualTo(bytes("aa"));
+        assertThat(cache.describe()).startsWith("2 pages, 10 of 10 bytes");
+    }
+
+    @Test
+    void returnsPagesLargerThanTheCacheWithoutCachingThem() {
+        cache.put("a.html", bytes("aaaa"));
+
+        PageCache.CachedPage large = cache.put("large.html", bytes("larger than the cache"));
+
+        assertThat(large.body()).isEqualTo(bytes("larger than the cache"));
+        assertThat(cache.get("large.html")).isNull();
+        assertThat(cache.get("a.html")).isNotNull();
+    }
+
+    @Test
+    void derivesETagsFromTheContent() {
+        String etag = cache.put("a.html", bytes("same")).etag();
+
+        assertThat(cache.put("b.html", bytes("same")).etag()).isEqualTo(etag);
+        assertThat(cache.put("c.html", bytes("other")).etag()).isNotEqualTo(etag).startsWith("\"").endsWith("\"");
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        cache.put("a.html", bytes("a"));
+        cache.get("a.html");
+        cache.get("b.html");
+
+        assertThat(cache.describe()).endsWith("1 hits, 1 misses");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
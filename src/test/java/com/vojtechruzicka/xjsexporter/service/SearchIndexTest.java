@@ -0,0 +1,154 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import com.vojtechruzicka.xjsexporter.model.Entry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTest {
+
+    @TempDir
+    Path entriesDir;
+
+    // Entries by the name of their file, the loader returns null for files which are no valid entries
+    private final Map<String, Entry> entries = new HashMap<>();
+    private SearchIndex index;
+
+    @BeforeEach
+    void buildIndex() throws IOException {
+        write("e1.md", new Entry("e1", "Výlet na Sněžku", LocalDateTime.of(2023, 7, 14, 9, 30),
+                "<p>Žluťoučký kůň úpěl ďábelské ódy</p>", List.of("Jan Novák"), List.of("Cesty"), List.of(), null));
+        write("e2.md", new Entry("e2", "Doma", LocalDateTime.of(2023, 8, 1, 18, 0),
+                "<p>Plánujeme další <b>výlet</b>, tentokrát k moři</p>", List.of("Eva Černá"), List.of("Rodina"), List.of(), null));
+        write("e3.md", new Entry("e3", "Práce", LocalDateTime.of(2022, 3, 5, 8, 0),
+                "<p>Porada o výletech firmy</p>", List.of("Jan Novák", "Eva Černá"), List.of("Práce"), List.of(), null));
+        index = update(SearchIndex.empty()).index();
+    }
+
+    @Test
+    void ranksTitleMatchesAboveBodyMatches() {
+        SearchIndex.Result result = index.search(query("výlet"), 10);
+
+        assertThat(ids(result)).containsExactly("e1", "e2");
+        assertThat(result.hits().get(0).score()).isGreaterThan(result.hits().get(1).score());
+    }
+
+    @Test
+    void requiresAllWords() {
+        assertThat(ids(index.search(query("výlet moři"), 10))).containsExactly("e2");
+        assertThat(ids(index.search(query("výlet porada"), 10))).isEmpty();
+    }
+
+    @Test
+    void matchesWordPrefixes() {
+        assertThat(ids(index.search(query("vyle*"), 10))).containsExactlyInAnyOrder("e1", "e2", "e3");
+        assertThat(ids(index.search(query("vyle"), 10))).isEmpty();
+    }
+
+    @Test
+    void ignoresCaseAndDiacritics() {
+        assertThat(ids(index.search(query("ZLUTOUCKY kun"), 10))).containsExactly("e1");
+        assertThat(ids(index.search(query("žluťoučký"), 10))).containsExactly("e1");
+        assertThat(ids(index.search(query("snezku"), 10))).containsExactly("e1");
+    }
+
+    @Test
+    void filtersByPersonCategoryAndDates() {
+        assertThat(ids(index.search(new SearchIndex.Query("", "novak", null, null, null), 10))).containsExactly("e1", "e3");
+        assertThat(ids(index.search(new SearchIndex.Query("", null, "RODINA", null, null), 10))).containsExactly("e2");
+        assertThat(ids(index.search(new SearchIndex.Query("", null, null, LocalDate.of(2023, 7, 14), LocalDate.of(2023, 7, 31)), 10)))
+                .containsExactly("e1");
+        assertThat(ids(index.search(new SearchIndex.Query("výlet", "černá", null, null, null), 10))).containsExactly("e2");
+    }
+
+    @Test
+    void listsNewestFirstWithoutWords() {
+        assertThat(ids(index.search(query(""), 10))).containsExactly("e2", "e1", "e3");
+    }
+
+    @Test
+    void countsAllMatchesBeyondTheLimit() {
+        SearchIndex.Result result = index.search(query("vyle*"), 1);
+
+        assertThat(result.hits()).hasSize(1);
+        assertThat(result.total()).isEqualTo(3);
+    }
+
+    @Test
+    void updatesOnlyAddedChangedAndRemovedFiles() throws IOException {
+        write("e2.md", new Entry("e2", "Doma u moře", LocalDateTime.of(2023, 8, 1, 18, 0),
+                "<p>Nakonec jsme zůstali</p>", List.of("Eva Černá"), List.of("Rodina"), List.of(), null));
+        Files.delete(entriesDir.resolve("e3.md"));
+        write("e4.md", new Entry("e4", "Sníh", LocalDateTime.of(2024, 1, 10, 7, 0),
+                "<p>Napadl sníh</p>", List.of(), List.of(), List.of(), null));
+        write("broken.md", null);
+
+        SearchIndex.Update update = update(index);
+
+        assertThat(update.added()).isEqualTo(1);
+        assertThat(update.changed()).isEqualTo(1);
+        assertThat(update.removed()).isEqualTo(1);
+        assertThat(update.unchanged()).isEqualTo(1);
+        assertThat(update.skipped()).isEqualTo(1);
+        assertThat(update.index().size()).isEqualTo(3);
+        assertThat(ids(update.index().search(query("výlet"), 10))).containsExactly("e1");
+        assertThat(ids(update.index().search(query("moře"), 10))).containsExactly("e2");
+        assertThat(ids(update.index().search(query("porada"), 10))).isEmpty();
+        assertThat(ids(update.index().search(query("snih"), 10))).containsExactly("e4");
+    }
+
+    @Test
+    void keepsTheIndexOfUnchangedFiles() throws IOException {
+        SearchIndex.Update update = update(index);
+
+        assertThat(update.unchanged()).isEqualTo(3);
+        assertThat(update.added() + update.changed() + update.removed() + update.skipped()).isZero();
+        assertThat(update.index().termCount()).isEqualTo(index.termCount());
+    }
+
+    @Test
+    void savesAndLoadsTheIndex() throws IOException {
+        Path file = entriesDir.resolve(SearchIndex.INDEX_DIR).resolve(SearchIndex.INDEX_FILE);
+        index.save(file);
+
+        SearchIndex loaded = SearchIndex.load(file);
+
+        assertThat(loaded.size()).isEqualTo(index.size());
+        assertThat(loaded.search(query("vyle*"), 10)).isEqualTo(index.search(query("vyle*"), 10));
+    }
+
+    private SearchIndex.Update update(SearchIndex previous) throws IOException {
+        return previous.update(entriesDir, file -> entries.get(file.getFileName().toString()), entry -> "entries/" + entry.id() + ".html");
+    }
+
+    /**
+     * Writes an entry file whose size and modification time change with every write.
+     */
+    private void write(String fileName, Entry entry) throws IOException {
+        Path file = entriesDir.resolve(fileName);
+        long previousSize = Files.exists(file) ? Files.size(file) : 0;
+        Files.writeString(file, "x".repeat((int) previousSize + 1));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L + previousSize));
+        entries.put(fileName, entry);
+    }
+
+    private static SearchIndex.Query query(String text) {
+        return new SearchIndex.Query(text, null, null, null, null);
+    }
+
+    private static List<String> ids(SearchIndex.Result result) {
+        return result.hits().stream().map(hit -> hit.document().id()).toList();
+    }
+}
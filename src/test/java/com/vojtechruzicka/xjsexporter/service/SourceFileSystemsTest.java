@@ -0,0 +1,104 @@
+package com.vojtechruzicka.xjsexporter.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mounting of archived journals and closing of their file systems.
+ */
+class SourceFileSystemsTest {
+
+    @TempDir
+    Path dir;
+
+    private final SourceFileSystems sources = new SourceFileSystems();
+
+    @AfterEach
+    void close() {
+        sources.close();
+    }
+
+    @Test
+    void opensJournalInArchive() throws IOException {
+        Path archive = archive("journal.zip", "Deník/");
+
+        String location = sources.open(archive.toString());
+
+        assertThat(location).startsWith("jar:").endsWith("/");
+        assertThat(Files.readString(sources.toPath(location + SourceFileSystems.JOURNAL_FILE))).isEqualTo("<journal/>");
+    }
+
+    @Test
+    void reusesMountOfUnchangedArchive() throws IOException {
+        Path archive = archive("journal.zip", "");
+
+        FileSystem first = mounted(archive);
+
+        assertThat(mounted(archive)).isSameAs(first);
+        assertThat(first.isOpen()).isTrue();
+    }
+
+    @Test
+    void closesMountOfChangedArchive() throws IOException {
+        Path archive = archive("journal.zip", "");
+        FileSystem first = mounted(archive);
+
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(Files.getLastModifiedTime(archive).toMillis() - 60_000));
+        FileSystem second = mounted(archive);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(first.isOpen()).isFalse();
+        assertThat(second.isOpen()).isTrue();
+    }
+
+    @Test
+    void closesLeastRecentlyUsedMounts() throws IOException {
+        List<FileSystem> mounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            mounts.add(mounted(archive("journal" + i + ".zip", "")));
+        }
+
+        assertThat(mounts.subList(0, 2)).noneMatch(FileSystem::isOpen);
+        assertThat(mounts.subList(2, 10)).allMatch(FileSystem::isOpen);
+    }
+
+    @Test
+    void closesAllMounts() throws IOException {
+        FileSystem first = mounted(archive("journal1.zip", ""));
+        FileSystem second = mounted(archive("journal2.zip", ""));
+
+        sources.close();
+
+        assertThat(first.isOpen()).isFalse();
+        assertThat(second.isOpen()).isFalse();
+    }
+
+    private FileSystem mounted(Path archive) throws IOException {
+        return sources.toPath(sources.open(archive.toString())).getFileSystem();
+    }
+
+    private Path archive(String name, String journalDirectory) throws IOException {
+        Path archive = dir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(archive); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry(journalDirectory + SourceFileSystems.JOURNAL_FILE));
+            zip.write("<journal/>".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return archive;
+    }
+}